@@ -0,0 +1,124 @@
+/*
+ * A NDNx library benchmark.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ndnx.ndn.impl.encoding.BinaryXMLCodec;
+import org.ndnx.ndn.io.content.ContentDecodingException;
+import org.ndnx.ndn.io.content.ContentEncodingException;
+import org.ndnx.ndn.profiles.SegmentationProfile;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Exclude;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding Interests and ContentObjects with the binary XML codec.
+ * The interest looks like one an NDNAbstractInputStream expresses for the next segment
+ * of a versioned stream, and the object like a segment it gets back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	@Param({"0", "1024", "4096"})
+	public int contentLength;
+
+	Interest _interest;
+	byte [] _interestEncoding;
+	ContentObject _object;
+	byte [] _objectEncoding;
+
+	@Setup
+	public void setUp() throws Exception {
+		Random rnd = new Random(1);
+		ContentName versionName = VersioningProfile.addVersion(ContentName.fromNative("/ndnx.org/benchmark/codec/file.txt"), 1234567890L);
+
+		_interest = new Interest(SegmentationProfile.segmentName(versionName, 17));
+		_interest.maxSuffixComponents(1);
+		_interest.childSelector(Interest.CHILD_SELECTOR_LEFT);
+		byte [][] omissions = new byte[4][];
+		for (int i = 0; i < omissions.length; i++) {
+			omissions[i] = new byte[32];
+			rnd.nextBytes(omissions[i]);
+		}
+		_interest.exclude(new Exclude(omissions));
+		_interestEncoding = _interest.encode(BinaryXMLCodec.CODEC_NAME);
+
+		byte [] publisher = new byte[32];
+		rnd.nextBytes(publisher);
+		SignedInfo si = new SignedInfo(new PublisherPublicKeyDigest(publisher), NDNTime.now(), SignedInfo.ContentType.DATA,
+				new KeyLocator(ContentName.fromNative("/ndnx.org/benchmark/key")));
+		byte [] content = new byte[contentLength];
+		rnd.nextBytes(content);
+		byte [] signature = new byte[128];
+		rnd.nextBytes(signature);
+		_object = new ContentObject(SegmentationProfile.segmentName(versionName, 17), si, content, new Signature(signature));
+		_objectEncoding = _object.encode(BinaryXMLCodec.CODEC_NAME);
+	}
+
+	@Benchmark
+	public byte [] encodeInterest() throws ContentEncodingException {
+		return _interest.encode(BinaryXMLCodec.CODEC_NAME);
+	}
+
+	@Benchmark
+	public Interest decodeInterest() throws ContentDecodingException {
+		Interest interest = new Interest();
+		interest.decode(_interestEncoding, BinaryXMLCodec.CODEC_NAME);
+		return interest;
+	}
+
+	@Benchmark
+	public byte [] encodeContentObject() throws ContentEncodingException {
+		return _object.encode(BinaryXMLCodec.CODEC_NAME);
+	}
+
+	@Benchmark
+	public ContentObject decodeContentObject() throws ContentDecodingException {
+		ContentObject object = new ContentObject();
+		object.decode(_objectEncoding, BinaryXMLCodec.CODEC_NAME);
+		return object;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * A NDNx library benchmark.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ndnx.ndn.profiles.SegmentationProfile;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.MalformedContentNameStringException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing, printing and comparing ContentNames. The names are segment names of a
+ * versioned stream, so they have binary version and segment components that have
+ * to be escaped in URIs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentNameBenchmark {
+
+	ContentName _name;
+	ContentName _sibling;
+	ContentName _prefix;
+	ContentName _other;
+	String _uri;
+
+	@Setup
+	public void setUp() throws Exception {
+		_prefix = VersioningProfile.addVersion(ContentName.fromNative("/ndnx.org/benchmark/naming/some/longer/path/file.txt"), 1234567890L);
+		_name = SegmentationProfile.segmentName(_prefix, 1000);
+		_sibling = SegmentationProfile.segmentName(_prefix, 1001);
+		_other = SegmentationProfile.segmentName(ContentName.fromNative("/ndnx.org/benchmark/naming/some/longer/path/other.txt"), 1000);
+		_uri = _name.toURIString();
+	}
+
+	@Benchmark
+	public ContentName fromURI() throws MalformedContentNameStringException {
+		return ContentName.fromURI(_uri);
+	}
+
+	@Benchmark
+	public String toURIString() {
+		return _name.toURIString();
+	}
+
+	/**
+	 * Names that differ only in the last component, as when ordering segments.
+	 */
+	@Benchmark
+	public int compareToSibling() {
+		return _name.compareTo(_sibling);
+	}
+
+	@Benchmark
+	public int compareToOther() {
+		return _name.compareTo(_other);
+	}
+
+	@Benchmark
+	public boolean isPrefixOf() {
+		return _prefix.isPrefixOf(_name);
+	}
+
+	@Benchmark
+	public boolean isNotPrefixOf() {
+		return _prefix.isPrefixOf(_other);
+	}
+}
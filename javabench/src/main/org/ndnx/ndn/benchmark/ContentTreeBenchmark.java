@@ -0,0 +1,131 @@
+/*
+ * A NDNx library benchmark.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ndnx.ndn.impl.repo.ContentRef;
+import org.ndnx.ndn.impl.repo.ContentTree;
+import org.ndnx.ndn.profiles.SegmentationProfile;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building and searching the ContentTree a repository keeps its names in. The content
+ * is a number of versioned files with ten segments each, the usual shape of a repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentTreeBenchmark {
+
+	public static final int SEGMENTS = 10;
+	public static final int INSERTS = 1000;
+
+	@Param({"1000", "10000"})
+	public int treeSize;
+
+	static class BenchmarkRef extends ContentRef {
+		final int index;
+
+		BenchmarkRef(int index) {
+			this.index = index;
+		}
+	}
+
+	ContentName [] _names;
+	ContentObject [] _objects;
+	BenchmarkRef [] _refs;
+	Interest [] _interests;
+	ContentTree _tree;
+	int _next = 0;
+
+	ContentTree.ContentGetter _getter = new ContentTree.ContentGetter() {
+		public ContentObject get(ContentRef ref) {
+			return _objects[((BenchmarkRef)ref).index];
+		}
+	};
+
+	@Setup
+	public void setUp() throws Exception {
+		SignedInfo si = new SignedInfo(new PublisherPublicKeyDigest(new byte[32]), NDNTime.now(), SignedInfo.ContentType.DATA,
+				new KeyLocator(ContentName.fromNative("/ndnx.org/benchmark/key")));
+		Signature signature = new Signature(new byte[64]);
+		ContentName base = ContentName.fromNative("/ndnx.org/benchmark/repo");
+
+		_names = new ContentName[treeSize];
+		_objects = new ContentObject[treeSize];
+		_refs = new BenchmarkRef[treeSize];
+		_interests = new Interest[treeSize];
+		_tree = new ContentTree();
+		for (int i = 0; i < treeSize; i++) {
+			ContentName fileName = new ContentName(base, "dir" + (i % 97), "file" + (i / SEGMENTS));
+			ContentName segmentName = SegmentationProfile.segmentName(VersioningProfile.addVersion(fileName, 1000L), i % SEGMENTS);
+			_objects[i] = new ContentObject(segmentName, si, ("segment" + i).getBytes(), signature);
+			_names[i] = _objects[i].fullName();
+			_refs[i] = new BenchmarkRef(i);
+			_interests[i] = new Interest(segmentName);
+			_tree.insert(_names[i], _refs[i], i);
+		}
+	}
+
+	/**
+	 * Insert the first INSERTS names into an empty tree.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(INSERTS)
+	public ContentTree insert() {
+		ContentTree tree = new ContentTree();
+		for (int i = 0; i < INSERTS; i++)
+			tree.insert(_names[i], _refs[i], i);
+		return tree;
+	}
+
+	/**
+	 * Find a segment by name, as the repository does to answer an interest.
+	 */
+	@Benchmark
+	public ContentObject get() {
+		return _tree.get(_interests[_next++ % treeSize], _getter);
+	}
+}
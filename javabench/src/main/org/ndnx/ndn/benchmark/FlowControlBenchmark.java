@@ -0,0 +1,124 @@
+/*
+ * A NDNx library benchmark.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.benchmark;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.ndnx.ndn.impl.NDNFlowControl;
+import org.ndnx.ndn.profiles.SegmentationProfile;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finding the object in NDNFlowControl's holding area that best matches an incoming
+ * interest, as it does for every interest, against the scan of every held object it
+ * used to do. The holding area holds the segments of several streams being published
+ * at once, and interests ask for the next segment of a stream or for its latest segment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowControlBenchmark {
+
+	public static final int NUM_STREAMS = 8;
+	public static final int NUM_INTERESTS = 1024;
+
+	@Param({"100", "1000", "10000"})
+	public int holdingSize;
+
+	Random _rnd = new Random(1);
+	TreeMap<ContentName, ContentObject> _holdingArea;
+	Interest [] _interests;
+	int _next = 0;
+
+	@Setup
+	public void setUp() throws Exception {
+		byte [] publisher = new byte[32];
+		_rnd.nextBytes(publisher);
+		SignedInfo si = new SignedInfo(new PublisherPublicKeyDigest(publisher), NDNTime.now(), SignedInfo.ContentType.DATA,
+				new KeyLocator(ContentName.fromNative("/key")));
+		Signature signature = new Signature(new byte[64]);
+
+		ContentName [] streams = new ContentName[NUM_STREAMS];
+		for (int i = 0; i < NUM_STREAMS; i++)
+			streams[i] = VersioningProfile.addVersion(ContentName.fromNative("/benchmark/flow/stream" + i));
+		_holdingArea = new TreeMap<ContentName, ContentObject>();
+		for (int i = 0; i < holdingSize; i++) {
+			ContentName name = SegmentationProfile.segmentName(streams[i % NUM_STREAMS], i / NUM_STREAMS);
+			_holdingArea.put(name, new ContentObject(name, si, new byte[8], signature));
+		}
+
+		int segments = holdingSize / NUM_STREAMS;
+		_interests = new Interest[NUM_INTERESTS];
+		for (int i = 0; i < NUM_INTERESTS; i++) {
+			ContentName stream = streams[_rnd.nextInt(NUM_STREAMS)];
+			if (_rnd.nextInt(4) == 0) {
+				_interests[i] = new Interest(stream);
+				_interests[i].childSelector(Interest.CHILD_SELECTOR_RIGHT);
+			} else
+				_interests[i] = Interest.next(SegmentationProfile.segmentName(stream, _rnd.nextInt(segments + 1)), stream.count(), null);
+		}
+	}
+
+	@Benchmark
+	public ContentObject indexed() {
+		return NDNFlowControl.getBestMatch(_holdingArea, _interests[_next++ % NUM_INTERESTS]);
+	}
+
+	@Benchmark
+	public ContentObject linearScan() {
+		Interest interest = _interests[_next++ % NUM_INTERESTS];
+		ContentObject bestMatch = null;
+		for (Map.Entry<ContentName, ContentObject> entry : _holdingArea.entrySet()) {
+			if (interest.matches(entry.getValue())) {
+				if (null == interest.childSelector() || interest.childSelector() != Interest.CHILD_SELECTOR_RIGHT)
+					return entry.getValue();
+				if (null == bestMatch || entry.getKey().compareTo(bestMatch.name()) > 0)
+					bestMatch = entry.getValue();
+			}
+		}
+		return bestMatch;
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * A NDNx library benchmark.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.ndnx.ndn.impl.InterestTable;
+import org.ndnx.ndn.impl.InterestTable.Entry;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching arriving content against an InterestTable, as NDNNetworkManager does for
+ * every object it reads, and removing and re-adding an interest, as it does when
+ * an interest is satisfied and expressed again. The scan benchmarks do the same
+ * against the TreeMap ordered longest name first that InterestTable used to scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterestTableBenchmark {
+
+	public static final int MAX_DEPTH = 8;
+	public static final int NUM_TARGETS = 1024;
+
+	@Param({"100", "1000", "10000"})
+	public int tableSize;
+
+	Random _rnd = new Random(1);
+	InterestTable<Integer> _table;
+	SortedMap<ContentName, List<Interest>> _scanTable;
+	Interest [] _interests;
+	ContentObject [] _targets;
+	int _next = 0;
+
+	ContentName randomName(int depth) {
+		// Use a small alphabet near the root so that names share prefixes
+		byte [][] components = new byte[depth][];
+		for (int i = 0; i < depth; i++)
+			components[i] = ("c" + _rnd.nextInt(i < 2 ? 4 : 16)).getBytes();
+		return new ContentName(components);
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		_table = new InterestTable<Integer>();
+		_scanTable = new TreeMap<ContentName, List<Interest>>(new Comparator<ContentName>() {
+			public int compare(ContentName o1, ContentName o2) {
+				int thisCount = o1.count();
+				int oCount = o2.count();
+				if (thisCount == oCount)
+					return o1.compareTo(o2);
+				return (oCount - thisCount);
+			}
+		});
+		_interests = new Interest[tableSize];
+		for (int i = 0; i < tableSize; i++) {
+			_interests[i] = new Interest(randomName(1 + _rnd.nextInt(MAX_DEPTH)));
+			_table.add(_interests[i], i);
+			scanAdd(_interests[i]);
+		}
+
+		byte [] publisher = new byte[32];
+		_rnd.nextBytes(publisher);
+		SignedInfo si = new SignedInfo(new PublisherPublicKeyDigest(publisher), NDNTime.now(), SignedInfo.ContentType.DATA,
+				new KeyLocator(ContentName.fromNative("/key")));
+		Signature signature = new Signature(new byte[64]);
+		_targets = new ContentObject[NUM_TARGETS];
+		for (int i = 0; i < _targets.length; i++)
+			_targets[i] = new ContentObject(randomName(MAX_DEPTH + 2), si, new byte[8], signature);
+	}
+
+	@Benchmark
+	public Entry<Integer> getMatch() {
+		return _table.getMatch(_targets[_next++ % NUM_TARGETS]);
+	}
+
+	@Benchmark
+	public int getMatches() {
+		return _table.getMatches(_targets[_next++ % NUM_TARGETS]).size();
+	}
+
+	@Benchmark
+	public Entry<Integer> removeAndAdd() {
+		int i = _next++ % tableSize;
+		Entry<Integer> removed = _table.remove(_interests[i], i);
+		_table.add(_interests[i], i);
+		return removed;
+	}
+
+	void scanAdd(Interest interest) {
+		List<Interest> list = _scanTable.get(interest.name());
+		if (null == list) {
+			list = new ArrayList<Interest>(1);
+			_scanTable.put(interest.name(), list);
+		}
+		list.add(interest);
+	}
+
+	@Benchmark
+	public Interest scanGetMatch() {
+		ContentObject target = _targets[_next++ % NUM_TARGETS];
+		for (List<Interest> list : _scanTable.values()) {
+			for (Interest interest : list) {
+				if (interest.matches(target))
+					return interest;
+			}
+		}
+		return null;
+	}
+
+	@Benchmark
+	public int scanGetMatches() {
+		ContentObject target = _targets[_next++ % NUM_TARGETS];
+		List<Interest> matches = new ArrayList<Interest>();
+		for (List<Interest> list : _scanTable.values()) {
+			for (Interest interest : list) {
+				if (interest.matches(target))
+					matches.add(interest);
+			}
+		}
+		return matches.size();
+	}
+
+	@Benchmark
+	public boolean scanRemoveAndAdd() {
+		Interest interest = _interests[_next++ % tableSize];
+		List<Interest> list = _scanTable.get(interest.name());
+		boolean removed = list.remove(interest);
+		if (list.isEmpty())
+			_scanTable.remove(interest.name());
+		scanAdd(interest);
+		return removed;
+	}
+}
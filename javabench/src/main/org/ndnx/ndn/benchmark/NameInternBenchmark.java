@@ -0,0 +1,122 @@
+/*
+ * A NDNx library benchmark.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.repo.ContentRef;
+import org.ndnx.ndn.impl.repo.ContentTree;
+import org.ndnx.ndn.profiles.SegmentationProfile;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a repository's index of names into a ContentTree with and without interning
+ * the name components, as a repository does when it starts. Each name is built from
+ * components of its own, as if it had been read from the index file. The time to load
+ * is what JMH reports; the heap the loaded tree holds on to is printed after each
+ * iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NameInternBenchmark {
+
+	public static final int SEGMENTS = 10;
+
+	@Param({"100000"})
+	public int indexSize;
+
+	@Param({"false", "true"})
+	public boolean intern;
+
+	static class BenchmarkRef extends ContentRef {}
+
+	byte [][][] _components;
+	BenchmarkRef _ref = new BenchmarkRef();
+	ContentTree _tree;
+
+	@Setup
+	public void setUp() throws Exception {
+		ContentName base = ContentName.fromNative("/ndnx.org/benchmark/repo");
+		byte [] digest = new byte[32];
+		_components = new byte[indexSize][][];
+		for (int i = 0; i < indexSize; i++) {
+			ContentName fileName = new ContentName(base, "dir" + (i % 97), "file" + (i / SEGMENTS));
+			ContentName segmentName = SegmentationProfile.segmentName(VersioningProfile.addVersion(fileName, 1000L + i / SEGMENTS), i % SEGMENTS);
+			digest[0] = (byte)i;
+			digest[1] = (byte)(i >> 8);
+			digest[2] = (byte)(i >> 16);
+			ContentName fullName = new ContentName(segmentName, digest.clone());
+			_components[i] = new byte[fullName.count()][];
+			for (int j = 0; j < _components[i].length; j++)
+				_components[i][j] = fullName.component(j);
+		}
+		SystemConfiguration.REPO_INTERN_NAMES = intern;
+	}
+
+	@Benchmark
+	public ContentTree load() {
+		ContentTree tree = new ContentTree();
+		for (int i = 0; i < indexSize; i++) {
+			byte [][] components = new byte[_components[i].length][];
+			for (int j = 0; j < components.length; j++)
+				components[j] = _components[i][j].clone();
+			tree.insert(new ContentName(components), _ref, i);
+		}
+		_tree = tree;
+		return tree;
+	}
+
+	@TearDown(Level.Iteration)
+	public void footprint() throws InterruptedException {
+		long withTree = usedAfterGC();
+		_tree = null;
+		long withoutTree = usedAfterGC();
+		System.out.println("\nRetained by the index: " + (withTree - withoutTree) / indexSize + " bytes per name");
+	}
+
+	static long usedAfterGC() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
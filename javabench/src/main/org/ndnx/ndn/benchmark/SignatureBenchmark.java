@@ -0,0 +1,84 @@
+/*
+ * A NDNx library benchmark.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.benchmark;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ndnx.ndn.impl.security.crypto.util.SignatureHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Signing and verifying a segment-sized buffer with RSA keys of the lengths we use,
+ * with the default digest algorithm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+
+	public static final int DATA_LENGTH = 4096;
+
+	@Param({"1024", "2048"})
+	public int keyLength;
+
+	KeyPair _keyPair;
+	byte [] _data;
+	byte [] _signature;
+
+	@Setup
+	public void setUp() throws Exception {
+		KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+		kpg.initialize(keyLength, new SecureRandom(new byte[]{1}));
+		_keyPair = kpg.generateKeyPair();
+		_data = new byte[DATA_LENGTH];
+		new Random(1).nextBytes(_data);
+		_signature = SignatureHelper.sign(null, _data, _keyPair.getPrivate());
+		if (!SignatureHelper.verify(_data, _signature, null, _keyPair.getPublic()))
+			throw new IllegalStateException("Signature does not verify");
+	}
+
+	@Benchmark
+	public byte [] sign() throws Exception {
+		return SignatureHelper.sign(null, _data, _keyPair.getPrivate());
+	}
+
+	@Benchmark
+	public boolean verify() throws Exception {
+		return SignatureHelper.verify(_data, _signature, null, _keyPair.getPublic());
+	}
+}
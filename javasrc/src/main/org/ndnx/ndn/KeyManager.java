@@ -35,6 +35,7 @@ import org.ndnx.ndn.config.ConfigurationException;
 import org.ndnx.ndn.config.SystemConfiguration;
 import org.ndnx.ndn.impl.NDNFlowControl;
 import org.ndnx.ndn.impl.NDNFlowControl.SaveType;
+import org.ndnx.ndn.impl.security.crypto.VerifiedSignatureCache;
 import org.ndnx.ndn.impl.security.keys.BasicKeyManager;
 import org.ndnx.ndn.impl.security.keys.PublicKeyCache;
 import org.ndnx.ndn.impl.security.keys.SecureKeyCache;
@@ -204,11 +205,15 @@ public abstract class KeyManager {
 	 * reopen them when they are next needed.
 	 */
 	public void close() {
+		boolean wasDefault = false;
 		synchronized (KeyManager.class) {
 			if (_defaultKeyManager == this) {
 				_defaultKeyManager = null;
+				wasDefault = true;
 			}
 		}
+		if (wasDefault)
+			VerifiedSignatureCache.saveDefault();
 	}
 
 	/**
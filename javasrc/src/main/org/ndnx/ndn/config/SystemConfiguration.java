@@ -97,10 +97,19 @@ public class SystemConfiguration {
 	
 	protected static final String NDN_PROTOCOL_PROPERTY = "org.ndnx.protocol";
 	
-	public static final String DEFAULT_PROTOCOL = "TCP";  // UDP or TCP allowed
+	public static final String DEFAULT_PROTOCOL = "TCP";  // UDP, TCP, UNIX or LOOPBACK (in-process, no ndnd) allowed
 	public static NetworkProtocol AGENT_PROTOCOL = null; // Set up below
 	public static final String AGENT_PROTOCOL_PROPERTY = "org.ndnx.agent.protocol";
 	public static final String AGENT_PROTOCOL_ENVIRONMENT_VARIABLE = "NDN_AGENT_PROTOCOL";
+
+	/**
+	 * Name stem of the unix domain socket used to contact ndnd with the UNIX agent protocol.
+	 * As in the C library, ".port" is appended if the agent port isn't the default one.
+	 */
+	public static final String DEFAULT_LOCAL_SOCKNAME = "/tmp/.ndnd.sock";
+	public static String LOCAL_SOCKNAME = DEFAULT_LOCAL_SOCKNAME;
+	public static final String LOCAL_SOCKNAME_PROPERTY = "org.ndnx.agent.sockname";
+	public static final String LOCAL_SOCKNAME_ENVIRONMENT_VARIABLE = "NDN_LOCAL_SOCKNAME";
 	
 	/**
 	 * Controls whether we should exit on severe errors in the network manager. This should only be
@@ -118,6 +127,21 @@ public class SystemConfiguration {
 	public static final int INTEREST_REEXPRESSION_DEFAULT = 4000;
 
 	public enum DEBUGGING_FLAGS {DEBUG_SIGN, DEBUG_VERIFY, DUMP_DAEMONCMD, REPO_EXITDUMP};
+	
+	/**
+	 * When the repository forces data it has written out to disk.
+	 * NONE leaves it to the operating system, BATCH syncs after each batch of
+	 * objects is written and PERIODIC syncs every REPO_SYNC_INTERVAL ms if anything was written.
+	 */
+	public enum RepoSyncPolicy {NONE, BATCH, PERIODIC};
+
+	/**
+	 * How NDNAbstractInputStream sizes its window of outstanding segment interests.
+	 * FIXED always uses PIPELINE_SIZE, AIMD and CUBIC grow the window from PIPELINE_SIZE
+	 * up to PIPELINE_MAX_SIZE while segments arrive and shrink it when they time out.
+	 * @see org.ndnx.ndn.io.PipelineWindow
+	 */
+	public enum PipelineWindowType {FIXED, AIMD, CUBIC};
 	protected static HashMap<DEBUGGING_FLAGS,Boolean> DEBUG_FLAG_VALUES = new HashMap<DEBUGGING_FLAGS,Boolean>();
 
 	/**
@@ -176,6 +200,23 @@ public class SystemConfiguration {
 	protected static final String PIPELINE_SIZE_ENV_VAR = "JAVA_PIPELINE_SIZE";
 	public static int PIPELINE_SIZE = 4;
 
+	/**
+	 * Largest window an adaptive pipeline in NDNAbstractInputStream may grow to
+	 * Default is 64
+	 */
+	protected static final String PIPELINE_MAX_SIZE_PROPERTY = "org.ndnx.PipelineMaxSize";
+	protected static final String PIPELINE_MAX_SIZE_ENV_VAR = "JAVA_PIPELINE_MAX_SIZE";
+	public static int PIPELINE_MAX_SIZE = 64;
+
+	/**
+	 * Window controller for pipeline in NDNAbstractInputStream
+	 * Default is AIMD
+	 * @see PipelineWindowType
+	 */
+	protected static final String PIPELINE_WINDOW_PROPERTY = "org.ndnx.PipelineWindow";
+	protected static final String PIPELINE_WINDOW_ENV_VAR = "JAVA_PIPELINE_WINDOW";
+	public static PipelineWindowType PIPELINE_WINDOW = PipelineWindowType.AIMD;
+
 	/**
 	 * Pipeline segment attempts for pipeline in NDNAbstractInputStream
 	 * Default is 5
@@ -187,7 +228,10 @@ public class SystemConfiguration {
 	/**
 	 * Pipeline round trip time factor for pipeline in NDNAbstractInputStream
 	 * Default is 2
+	 * @deprecated NDNAbstractInputStream now times out segments using the round trip time
+	 * variation measured by its PipelineWindow
 	 */
+	@Deprecated
 	protected static final String PIPELINE_RTT_PROPERTY = "org.ndnx.PipelineRTTFactor";
 	protected static final String PIPELINE_RTT_ENV_VAR = "JAVA_PIPELINE_RTTFACTOR";
 	public static int PIPELINE_RTTFACTOR = 2;
@@ -199,6 +243,230 @@ public class SystemConfiguration {
 	protected static final String PIPELINE_STATS_PROPERTY = "org.ndnx.PipelineStats";
 	protected static final String PIPELINE_STATS_ENV_VAR = "JAVA_PIPELINE_STATS";
 	public static boolean PIPELINE_STATS = false;
+
+	/**
+	 * Number of threads shared by all NDNAbstractInputStreams to verify the signatures on
+	 * pipelined segments. 0 verifies segments on the thread that delivers them.
+	 * Default is the number of available processors.
+	 */
+	protected static final String PIPELINE_VERIFY_THREADS_PROPERTY = "org.ndnx.PipelineVerifyThreads";
+	protected static final String PIPELINE_VERIFY_THREADS_ENV_VAR = "JAVA_PIPELINE_VERIFY_THREADS";
+	public static int PIPELINE_VERIFY_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Number of threads shared by all NDNSegmenters to sign batches of segments while
+	 * the writer carries on producing the next batch. 0 signs segments on the writer's thread.
+	 * Default is the number of available processors.
+	 */
+	protected static final String SIGNING_THREADS_PROPERTY = "org.ndnx.SigningThreads";
+	protected static final String SIGNING_THREADS_ENV_VAR = "NDNX_SIGNING_THREADS";
+	public static int SIGNING_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Maximum number of successful signature verifications remembered by VerifiedSignatureCache,
+	 * so that objects seen again are not verified again. 0 turns the cache off.
+	 */
+	protected static final String VERIFY_CACHE_SIZE_PROPERTY = "org.ndnx.VerifyCacheSize";
+	protected static final String VERIFY_CACHE_SIZE_ENV_VAR = "NDNX_VERIFY_CACHE_SIZE";
+	public static int VERIFY_CACHE_SIZE = 10000;
+
+	/**
+	 * How long, in seconds, a verification stays in the VerifiedSignatureCache. 0 keeps
+	 * verifications until they are evicted to make room for newer ones.
+	 */
+	protected static final String VERIFY_CACHE_TTL_PROPERTY = "org.ndnx.VerifyCacheTTL";
+	protected static final String VERIFY_CACHE_TTL_ENV_VAR = "NDNX_VERIFY_CACHE_TTL";
+	public static int VERIFY_CACHE_TTL = 3600;
+
+	/**
+	 * File in which the VerifiedSignatureCache is saved when the default KeyManager is closed,
+	 * and from which it is loaded on first use. Relative names are in the user configuration
+	 * directory. Unset (the default) keeps the cache in memory only.
+	 */
+	protected static final String VERIFY_CACHE_FILE_PROPERTY = "org.ndnx.VerifyCacheFile";
+	protected static final String VERIFY_CACHE_FILE_ENV_VAR = "NDNX_VERIFY_CACHE_FILE";
+	public static String VERIFY_CACHE_FILE = null;
+
+	/**
+	 * Maximum number of keys of each kind held by a SecureKeyCache, not counting our own
+	 * signing keys, which are never evicted. 0 or less keeps every key.
+	 */
+	protected static final String SECURE_KEY_CACHE_SIZE_PROPERTY = "org.ndnx.SecureKeyCacheSize";
+	protected static final String SECURE_KEY_CACHE_SIZE_ENV_VAR = "NDNX_SECURE_KEY_CACHE_SIZE";
+	public static int SECURE_KEY_CACHE_SIZE = 1000;
+
+	/**
+	 * Maximum number of public keys and certificates held by a PublicKeyCache, not counting
+	 * those loaded from our own keystore. 0 or less keeps every key.
+	 */
+	protected static final String PUBLIC_KEY_CACHE_SIZE_PROPERTY = "org.ndnx.PublicKeyCacheSize";
+	protected static final String PUBLIC_KEY_CACHE_SIZE_ENV_VAR = "NDNX_PUBLIC_KEY_CACHE_SIZE";
+	public static int PUBLIC_KEY_CACHE_SIZE = 1000;
+
+	/**
+	 * Whether public keys evicted from a PublicKeyCache are kept through soft references
+	 * until the garbage collector needs the memory, so they don't have to be fetched again.
+	 */
+	protected static final String PUBLIC_KEY_CACHE_SOFT_SPILL_PROPERTY = "org.ndnx.PublicKeyCacheSoftSpill";
+	protected static final String PUBLIC_KEY_CACHE_SOFT_SPILL_ENV_VAR = "NDNX_PUBLIC_KEY_CACHE_SOFT_SPILL";
+	public static boolean PUBLIC_KEY_CACHE_SOFT_SPILL = true;
+
+	/**
+	 * Whether KeyDirectory interns the names of the children it finds, which turn up in
+	 * many directories, so that each is kept once. Default is false.
+	 */
+	protected static final String KEY_DIRECTORY_INTERN_NAMES_PROPERTY = "org.ndnx.KeyDirectoryInternNames";
+	protected static final String KEY_DIRECTORY_INTERN_NAMES_ENV_VAR = "NDNX_KEY_DIRECTORY_INTERN_NAMES";
+	public static boolean KEY_DIRECTORY_INTERN_NAMES = false;
+
+	/**
+	 * Number of threads NDNNetworkManager uses to run content and interest handlers.
+	 * 0 (the default) runs handlers directly on the network manager's reader thread.
+	 */
+	protected static final String DISPATCH_THREADS_PROPERTY = "org.ndnx.DispatchThreads";
+	protected static final String DISPATCH_THREADS_ENV_VAR = "NDNX_DISPATCH_THREADS";
+	public static int DISPATCH_THREADS = 0;
+
+	/**
+	 * Whether NDNNetworkManager uses a separate thread to write packets to ndnd.
+	 * Default is off - packets are written by the thread sending them.
+	 */
+	protected static final String WRITER_THREAD_PROPERTY = "org.ndnx.WriterThread";
+	protected static final String WRITER_THREAD_ENV_VAR = "NDNX_WRITER_THREAD";
+	public static boolean WRITER_THREAD = false;
+
+	/**
+	 * Maximum number of bytes queued for the writer thread before senders have to wait.
+	 * Default is 1MB
+	 */
+	protected static final String WRITE_QUEUE_LIMIT_PROPERTY = "org.ndnx.WriteQueueLimit";
+	protected static final String WRITE_QUEUE_LIMIT_ENV_VAR = "NDNX_WRITE_QUEUE_LIMIT";
+	public static int WRITE_QUEUE_LIMIT = 1024 * 1024;
+
+	/**
+	 * Whether NDNNetworkChannel decodes packets directly out of its receive buffer
+	 * rather than reading them through its InputStream interface.
+	 * Default is off.
+	 */
+	protected static final String BUFFER_DECODING_PROPERTY = "org.ndnx.BufferDecoding";
+	protected static final String BUFFER_DECODING_ENV_VAR = "NDNX_BUFFER_DECODING";
+	public static boolean BUFFER_DECODING = false;
+
+	/**
+	 * Whether ContentObjects decoded from the network by buffer decoding have only their
+	 * name decoded initially, with the rest decoded when first used.
+	 * Default is off.
+	 */
+	protected static final String LAZY_DECODING_PROPERTY = "org.ndnx.LazyDecoding";
+	protected static final String LAZY_DECODING_ENV_VAR = "NDNX_LAZY_DECODING";
+	public static boolean LAZY_DECODING = false;
+
+	/**
+	 * When the repository syncs written data to disk. Default is to leave it to the operating system.
+	 * @see RepoSyncPolicy
+	 */
+	protected static final String REPO_SYNC_PROPERTY = "org.ndnx.RepoSync";
+	protected static final String REPO_SYNC_ENV_VAR = "NDNX_REPO_SYNC";
+	public static RepoSyncPolicy REPO_SYNC = RepoSyncPolicy.NONE;
+
+	/**
+	 * Interval in ms between syncs for the PERIODIC repository sync policy.
+	 * Default is 1 second
+	 */
+	protected static final String REPO_SYNC_INTERVAL_PROPERTY = "org.ndnx.RepoSyncInterval";
+	protected static final String REPO_SYNC_INTERVAL_ENV_VAR = "NDNX_REPO_SYNC_INTERVAL";
+	public static int REPO_SYNC_INTERVAL = 1000;
+
+	/**
+	 * Size in MB at which the repository starts a new data file. Only data files that are no longer
+	 * being written can be compacted. Default is 0, which keeps writing the same file.
+	 */
+	protected static final String REPO_FILE_SIZE_PROPERTY = "org.ndnx.RepoFileSize";
+	protected static final String REPO_FILE_SIZE_ENV_VAR = "NDNX_REPO_FILE_SIZE";
+	public static int REPO_FILE_SIZE = 0;
+
+	/**
+	 * Number of versions of each versioned name the repository keeps when compacting. When this is
+	 * non zero, compaction also keeps only the newest of several objects with the same name.
+	 * Default is 0, which keeps everything.
+	 */
+	protected static final String REPO_KEEP_VERSIONS_PROPERTY = "org.ndnx.RepoKeepVersions";
+	protected static final String REPO_KEEP_VERSIONS_ENV_VAR = "NDNX_REPO_KEEP_VERSIONS";
+	public static int REPO_KEEP_VERSIONS = 0;
+
+	/**
+	 * Interval in seconds between background compactions of the repository data files.
+	 * Default is 0, which means no background compaction.
+	 */
+	protected static final String REPO_COMPACT_INTERVAL_PROPERTY = "org.ndnx.RepoCompactInterval";
+	protected static final String REPO_COMPACT_INTERVAL_ENV_VAR = "NDNX_REPO_COMPACT_INTERVAL";
+	public static int REPO_COMPACT_INTERVAL = 0;
+
+	/**
+	 * Number of threads the repository uses to answer interests. Default is 0, which uses
+	 * one for each available processor.
+	 */
+	protected static final String REPO_INTEREST_THREADS_PROPERTY = "org.ndnx.RepoInterestThreads";
+	protected static final String REPO_INTEREST_THREADS_ENV_VAR = "NDNX_REPO_INTEREST_THREADS";
+	public static int REPO_INTEREST_THREADS = 0;
+
+	/**
+	 * Number of interests the repository lets wait for a thread. Interests that arrive when
+	 * this many are waiting are dropped. Default is 1000.
+	 */
+	protected static final String REPO_INTEREST_QUEUE_SIZE_PROPERTY = "org.ndnx.RepoInterestQueueSize";
+	protected static final String REPO_INTEREST_QUEUE_SIZE_ENV_VAR = "NDNX_REPO_INTEREST_QUEUE_SIZE";
+	public static int REPO_INTEREST_QUEUE_SIZE = 1000;
+
+	/**
+	 * Bytes of encoded objects the repository keeps in memory to answer the interests it sees
+	 * most often without reading from disk. 0 turns the cache off. Default is 16MB.
+	 */
+	protected static final String REPO_RESPONSE_CACHE_SIZE_PROPERTY = "org.ndnx.RepoResponseCacheSize";
+	protected static final String REPO_RESPONSE_CACHE_SIZE_ENV_VAR = "NDNX_REPO_RESPONSE_CACHE_SIZE";
+	public static int REPO_RESPONSE_CACHE_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Whether the repository interns the name components in its index, so that components
+	 * many names have in common, like segment numbers, are kept once, and interns the names
+	 * its response cache groups objects by. Default is false.
+	 */
+	protected static final String REPO_INTERN_NAMES_PROPERTY = "org.ndnx.RepoInternNames";
+	protected static final String REPO_INTERN_NAMES_ENV_VAR = "NDNX_REPO_INTERN_NAMES";
+	public static boolean REPO_INTERN_NAMES = false;
+
+	/**
+	 * Maximum number of sync tree nodes a SliceComparator prefetches in parallel while
+	 * comparing. 0 fetches only the nodes the comparison is waiting for.
+	 */
+	protected static final String SYNC_FETCH_WINDOW_PROPERTY = "org.ndnx.SyncFetchWindow";
+	protected static final String SYNC_FETCH_WINDOW_ENV_VAR = "NDNX_SYNC_FETCH_WINDOW";
+	public static int SYNC_FETCH_WINDOW = 32;
+
+	/**
+	 * Bytes of sync tree nodes fetched from the network that each slice's SyncNodeCache
+	 * keeps in memory. The least recently used nodes beyond this are dropped or spilled.
+	 */
+	protected static final String SYNC_NODE_CACHE_SIZE_PROPERTY = "org.ndnx.SyncNodeCacheSize";
+	protected static final String SYNC_NODE_CACHE_SIZE_ENV_VAR = "NDNX_SYNC_NODE_CACHE_SIZE";
+	public static int SYNC_NODE_CACHE_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * Bytes of encoded sync tree nodes each slice's SyncNodeCache keeps outside the heap
+	 * after evicting them, so they can be decoded again rather than fetched again.
+	 * 0 (the default) turns spilling off.
+	 */
+	protected static final String SYNC_NODE_SPILL_SIZE_PROPERTY = "org.ndnx.SyncNodeSpillSize";
+	protected static final String SYNC_NODE_SPILL_SIZE_ENV_VAR = "NDNX_SYNC_NODE_SPILL_SIZE";
+	public static int SYNC_NODE_SPILL_SIZE = 0;
+
+	/**
+	 * Maximum number of hashes each SyncHashCache remembers, not counting those of nodes
+	 * we built ourselves. 0 or less for no limit.
+	 */
+	protected static final String SYNC_HASH_CACHE_SIZE_PROPERTY = "org.ndnx.SyncHashCacheSize";
+	protected static final String SYNC_HASH_CACHE_SIZE_ENV_VAR = "NDNX_SYNC_HASH_CACHE_SIZE";
+	public static int SYNC_HASH_CACHE_SIZE = 100000;
 	
 	/**
 	 * Default block size for IO
@@ -351,26 +619,36 @@ public class SystemConfiguration {
 		DEBUG_DATA_DIRECTORY = System.getProperty(DEBUG_DATA_DIRECTORY_PROPERTY, DEFAULT_DEBUG_DATA_DIRECTORY);
 	}
 
+	/**
+	 * Find the agent protocol with the given name, ignoring case.
+	 * @param proto
+	 * @return the protocol
+	 * @throws IllegalArgumentException if there is no protocol of that name
+	 */
+	public static NetworkProtocol parseAgentProtocol(String proto) {
+		for (NetworkProtocol p : NetworkProtocol.values()) {
+			if (p.toString().equalsIgnoreCase(proto))
+				return p;
+		}
+		throw new IllegalArgumentException("Invalid protocol '" + proto + "' specified in " + AGENT_PROTOCOL_PROPERTY);
+	}
+
 	static {
 		// NOTE: do not call Log.* methods from the initializer as log depends on SystemConfiguration.
 		
 		// Allow override of basic protocol
 		String proto = SystemConfiguration.retrievePropertyOrEnvironmentVariable(AGENT_PROTOCOL_PROPERTY, AGENT_PROTOCOL_ENVIRONMENT_VARIABLE, DEFAULT_PROTOCOL);
 
-		boolean found = false;
-		for (NetworkProtocol p : NetworkProtocol.values()) {
-			String pAsString = p.toString();
-			if (proto.equalsIgnoreCase(pAsString)) {
-//				if (!pAsString.equalsIgnoreCase(DEFAULT_PROTOCOL)) System.err.println("NDN agent protocol changed to " + pAsString + " per property");
-				AGENT_PROTOCOL = p;
-				found = true;
-				break;
-			}
-		}
-		if (!found) {
-			System.err.println("The protocol must be UDP(17) or TCP (6)");
-			throw new IllegalArgumentException("Invalid protocol '" + proto + "' specified in " + AGENT_PROTOCOL_PROPERTY);
+		try {
+			AGENT_PROTOCOL = parseAgentProtocol(proto);
+		} catch (IllegalArgumentException e) {
+			System.err.println("The protocol must be UDP(17), TCP (6), UNIX or LOOPBACK");
+			throw e;
 		}
+
+		String sockname = SystemConfiguration.retrievePropertyOrEnvironmentVariable(LOCAL_SOCKNAME_PROPERTY, LOCAL_SOCKNAME_ENVIRONMENT_VARIABLE, DEFAULT_LOCAL_SOCKNAME);
+		if (sockname.length() > 0)
+			LOCAL_SOCKNAME = sockname;
 		
 		// Allow override of exit on network error
 		try {
@@ -400,6 +678,29 @@ public class SystemConfiguration {
 			throw e;
 		}
 
+		// Allow override of maximum adaptive pipeline size for NDNAbstractInputStream
+		try {
+			PIPELINE_MAX_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(PIPELINE_MAX_SIZE_PROPERTY, PIPELINE_MAX_SIZE_ENV_VAR, "64"));
+		} catch (NumberFormatException e) {
+			System.err.println("The PipelineMaxSize must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the pipeline window controller for NDNAbstractInputStream
+		String pipelineWindow = retrievePropertyOrEnvironmentVariable(PIPELINE_WINDOW_PROPERTY, PIPELINE_WINDOW_ENV_VAR, PIPELINE_WINDOW.toString());
+		boolean found = false;
+		for (PipelineWindowType t : PipelineWindowType.values()) {
+			if (pipelineWindow.equalsIgnoreCase(t.toString())) {
+				PIPELINE_WINDOW = t;
+				found = true;
+				break;
+			}
+		}
+		if (!found) {
+			System.err.println("The PipelineWindow must be fixed, aimd or cubic.");
+			throw new IllegalArgumentException("Invalid pipeline window '" + pipelineWindow + "' specified in " + PIPELINE_WINDOW_PROPERTY);
+		}
+
 		// Allow override of default pipeline size for NDNAbstractInputStream
 		try {
 			PIPELINE_SEGMENTATTEMPTS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(PIPELINE_ATTEMPTS_PROPERTY, PIPELINE_ATTEMPTS_ENV_VAR, "5"));
@@ -420,6 +721,187 @@ public class SystemConfiguration {
 		// Allow printing of pipeline stats in NDNAbstractInputStream
 		PIPELINE_STATS = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(PIPELINE_STATS_PROPERTY, PIPELINE_STATS_ENV_VAR, STRING_FALSE));
 
+		// Allow override of number of segment verification threads for NDNAbstractInputStream
+		try {
+			PIPELINE_VERIFY_THREADS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(PIPELINE_VERIFY_THREADS_PROPERTY, PIPELINE_VERIFY_THREADS_ENV_VAR,
+					Integer.toString(PIPELINE_VERIFY_THREADS)));
+		} catch (NumberFormatException e) {
+			System.err.println("The PipelineVerifyThreads must be an integer.");
+			throw e;
+		}
+
+		// Allow override of number of segment signing threads for NDNSegmenter
+		try {
+			SIGNING_THREADS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(SIGNING_THREADS_PROPERTY, SIGNING_THREADS_ENV_VAR,
+					Integer.toString(SIGNING_THREADS)));
+		} catch (NumberFormatException e) {
+			System.err.println("The SigningThreads must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the size, lifetime and location of the verified signature cache
+		try {
+			VERIFY_CACHE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(VERIFY_CACHE_SIZE_PROPERTY, VERIFY_CACHE_SIZE_ENV_VAR,
+					Integer.toString(VERIFY_CACHE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The VerifyCacheSize must be an integer.");
+			throw e;
+		}
+		try {
+			VERIFY_CACHE_TTL = Integer.parseInt(retrievePropertyOrEnvironmentVariable(VERIFY_CACHE_TTL_PROPERTY, VERIFY_CACHE_TTL_ENV_VAR,
+					Integer.toString(VERIFY_CACHE_TTL)));
+		} catch (NumberFormatException e) {
+			System.err.println("The VerifyCacheTTL must be an integer.");
+			throw e;
+		}
+		VERIFY_CACHE_FILE = retrievePropertyOrEnvironmentVariable(VERIFY_CACHE_FILE_PROPERTY, VERIFY_CACHE_FILE_ENV_VAR, null);
+
+		// Allow override of the key cache sizes
+		try {
+			SECURE_KEY_CACHE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(SECURE_KEY_CACHE_SIZE_PROPERTY, SECURE_KEY_CACHE_SIZE_ENV_VAR,
+					Integer.toString(SECURE_KEY_CACHE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The SecureKeyCacheSize must be an integer.");
+			throw e;
+		}
+		try {
+			PUBLIC_KEY_CACHE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(PUBLIC_KEY_CACHE_SIZE_PROPERTY, PUBLIC_KEY_CACHE_SIZE_ENV_VAR,
+					Integer.toString(PUBLIC_KEY_CACHE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The PublicKeyCacheSize must be an integer.");
+			throw e;
+		}
+		PUBLIC_KEY_CACHE_SOFT_SPILL = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(PUBLIC_KEY_CACHE_SOFT_SPILL_PROPERTY,
+				PUBLIC_KEY_CACHE_SOFT_SPILL_ENV_VAR, Boolean.toString(PUBLIC_KEY_CACHE_SOFT_SPILL)));
+		KEY_DIRECTORY_INTERN_NAMES = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(KEY_DIRECTORY_INTERN_NAMES_PROPERTY,
+				KEY_DIRECTORY_INTERN_NAMES_ENV_VAR, Boolean.toString(KEY_DIRECTORY_INTERN_NAMES)));
+
+		// Allow override of number of handler dispatch threads in NDNNetworkManager
+		try {
+			DISPATCH_THREADS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(DISPATCH_THREADS_PROPERTY, DISPATCH_THREADS_ENV_VAR, "0"));
+		} catch (NumberFormatException e) {
+			System.err.println("The DispatchThreads must be an integer.");
+			throw e;
+		}
+
+		// Allow use of a writer thread in NDNNetworkManager
+		WRITER_THREAD = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(WRITER_THREAD_PROPERTY, WRITER_THREAD_ENV_VAR, STRING_FALSE));
+
+		// Allow override of the writer thread queue limit
+		try {
+			WRITE_QUEUE_LIMIT = Integer.parseInt(retrievePropertyOrEnvironmentVariable(WRITE_QUEUE_LIMIT_PROPERTY, WRITE_QUEUE_LIMIT_ENV_VAR, Integer.toString(WRITE_QUEUE_LIMIT)));
+		} catch (NumberFormatException e) {
+			System.err.println("The WriteQueueLimit must be an integer.");
+			throw e;
+		}
+
+		// Allow decoding of packets directly from the network buffer
+		BUFFER_DECODING = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(BUFFER_DECODING_PROPERTY, BUFFER_DECODING_ENV_VAR, STRING_FALSE));
+
+		// Allow lazy decoding of content objects from the network
+		LAZY_DECODING = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(LAZY_DECODING_PROPERTY, LAZY_DECODING_ENV_VAR, STRING_FALSE));
+
+		// Allow override of when the repository syncs data to disk
+		String repoSync = retrievePropertyOrEnvironmentVariable(REPO_SYNC_PROPERTY, REPO_SYNC_ENV_VAR, REPO_SYNC.toString());
+		found = false;
+		for (RepoSyncPolicy p : RepoSyncPolicy.values()) {
+			if (repoSync.equalsIgnoreCase(p.toString())) {
+				REPO_SYNC = p;
+				found = true;
+				break;
+			}
+		}
+		if (!found) {
+			System.err.println("The RepoSync policy must be none, batch or periodic.");
+			throw new IllegalArgumentException("Invalid repository sync policy '" + repoSync + "' specified in " + REPO_SYNC_PROPERTY);
+		}
+
+		// Allow override of the periodic repository sync interval
+		try {
+			REPO_SYNC_INTERVAL = Integer.parseInt(retrievePropertyOrEnvironmentVariable(REPO_SYNC_INTERVAL_PROPERTY, REPO_SYNC_INTERVAL_ENV_VAR, Integer.toString(REPO_SYNC_INTERVAL)));
+		} catch (NumberFormatException e) {
+			System.err.println("The RepoSyncInterval must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the repository data file size
+		try {
+			REPO_FILE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(REPO_FILE_SIZE_PROPERTY, REPO_FILE_SIZE_ENV_VAR, Integer.toString(REPO_FILE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The RepoFileSize must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the repository retention policy
+		try {
+			REPO_KEEP_VERSIONS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(REPO_KEEP_VERSIONS_PROPERTY, REPO_KEEP_VERSIONS_ENV_VAR, Integer.toString(REPO_KEEP_VERSIONS)));
+		} catch (NumberFormatException e) {
+			System.err.println("The RepoKeepVersions must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the repository compaction interval
+		try {
+			REPO_COMPACT_INTERVAL = Integer.parseInt(retrievePropertyOrEnvironmentVariable(REPO_COMPACT_INTERVAL_PROPERTY, REPO_COMPACT_INTERVAL_ENV_VAR, Integer.toString(REPO_COMPACT_INTERVAL)));
+		} catch (NumberFormatException e) {
+			System.err.println("The RepoCompactInterval must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the number of repository interest threads
+		try {
+			REPO_INTEREST_THREADS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(REPO_INTEREST_THREADS_PROPERTY, REPO_INTEREST_THREADS_ENV_VAR, Integer.toString(REPO_INTEREST_THREADS)));
+		} catch (NumberFormatException e) {
+			System.err.println("The RepoInterestThreads must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the number of interests waiting for a repository interest thread
+		try {
+			REPO_INTEREST_QUEUE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(REPO_INTEREST_QUEUE_SIZE_PROPERTY, REPO_INTEREST_QUEUE_SIZE_ENV_VAR, Integer.toString(REPO_INTEREST_QUEUE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The RepoInterestQueueSize must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the size of the repository response cache
+		try {
+			REPO_RESPONSE_CACHE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(REPO_RESPONSE_CACHE_SIZE_PROPERTY, REPO_RESPONSE_CACHE_SIZE_ENV_VAR, Integer.toString(REPO_RESPONSE_CACHE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The RepoResponseCacheSize must be an integer.");
+			throw e;
+		}
+		REPO_INTERN_NAMES = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(REPO_INTERN_NAMES_PROPERTY, REPO_INTERN_NAMES_ENV_VAR,
+				Boolean.toString(REPO_INTERN_NAMES)));
+
+		// Allow override of the number of sync nodes fetched in parallel
+		try {
+			SYNC_FETCH_WINDOW = Integer.parseInt(retrievePropertyOrEnvironmentVariable(SYNC_FETCH_WINDOW_PROPERTY, SYNC_FETCH_WINDOW_ENV_VAR, Integer.toString(SYNC_FETCH_WINDOW)));
+		} catch (NumberFormatException e) {
+			System.err.println("The SyncFetchWindow must be an integer.");
+			throw e;
+		}
+
+		// Allow override of the sync cache sizes
+		try {
+			SYNC_NODE_CACHE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(SYNC_NODE_CACHE_SIZE_PROPERTY, SYNC_NODE_CACHE_SIZE_ENV_VAR, Integer.toString(SYNC_NODE_CACHE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The SyncNodeCacheSize must be an integer.");
+			throw e;
+		}
+		try {
+			SYNC_NODE_SPILL_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(SYNC_NODE_SPILL_SIZE_PROPERTY, SYNC_NODE_SPILL_SIZE_ENV_VAR, Integer.toString(SYNC_NODE_SPILL_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The SyncNodeSpillSize must be an integer.");
+			throw e;
+		}
+		try {
+			SYNC_HASH_CACHE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(SYNC_HASH_CACHE_SIZE_PROPERTY, SYNC_HASH_CACHE_SIZE_ENV_VAR, Integer.toString(SYNC_HASH_CACHE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The SyncHashCacheSize must be an integer.");
+			throw e;
+		}
+
 		// Allow override of default ndndID discovery timeout.
 		try {
 			NDNDID_DISCOVERY_TIMEOUT = Integer.parseInt(System.getProperty(NDNDID_DISCOVERY_TIMEOUT_PROPERTY, Integer.toString(NDNDID_DISCOVERY_TIMEOUT_DEFAULT)));
@@ -21,14 +21,12 @@
 package org.ndnx.ndn.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.logging.Level;
 
 import org.ndnx.ndn.impl.support.Log;
@@ -46,6 +44,10 @@ import org.ndnx.ndn.protocol.Interest;
  * is not recommended. InterestTables are synchronized using _contents as a synchronization
  * object
  *
+ * Entries are kept in a trie of name components, so finding the entries whose names are
+ * prefixes of a target name takes time proportional to the number of components in the target
+ * rather than the size of the table, and doesn't require building the prefix names.
+ *
  * Since interests can be reexpressed we could end up with duplicate
  * interests in the table. To avoid that an LRU algorithm is
  * optionally implemented to keep the table from growing without
@@ -74,31 +76,130 @@ public class InterestTable<V> {
 		public T value();
 	}
 
-    protected final static class LongestFirstComparator implements Comparator<ContentName>{
-        public int compare(ContentName o1, ContentName o2) {
-            if (o1 == o2)
-                return 0;
-            int thisCount = o1.count();
-            int oCount = o2.count();
-            if (thisCount == oCount)
-                return o1.compareTo(o2);
-            return (oCount - thisCount);
-        }
-    }
-
-    protected SortedMap<ContentName,List<Holder<V>>> _contents = new TreeMap<ContentName,List<Holder<V>>>(new LongestFirstComparator()) {
-        private static final long serialVersionUID = -2774858588706066528L;
-
-        @Override
-		public String toString() {
-            StringBuffer s = new StringBuffer();
-            for(ContentName n : keySet() )
-                s.append(n.toString() + " ");
-            return s.toString();
-        }
-    };
-
-	protected List<ContentName> _contentNamesLRU = null;
+	/**
+	 * Key for a name component in the trie. Just gives us equals and hashCode for the
+	 * component bytes, which aren't copied.
+	 */
+	protected final static class ComponentKey {
+		protected final byte [] component;
+		protected final int hash;
+
+		public ComponentKey(byte [] component) {
+			this.component = component;
+			hash = Arrays.hashCode(component);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ComponentKey))
+				return false;
+			ComponentKey other = (ComponentKey)obj;
+			return hash == other.hash && Arrays.equals(component, other.component);
+		}
+	}
+
+	/**
+	 * Stands in for the ComponentKey of a component of a name to look it up in a node's
+	 * children without copying it. Only HashMap.get() may be given one, since only its
+	 * equals() knows about ComponentKeys. Protected by _contents like the rest of the table.
+	 */
+	protected final static class ComponentProbe {
+		protected ContentName name;
+		protected int index;
+		protected int hash;
+
+		protected ComponentProbe set(ContentName name, int index) {
+			this.name = name;
+			this.index = index;
+			hash = name.componentHashCode(index);
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ComponentKey))
+				return false;
+			ComponentKey other = (ComponentKey)obj;
+			return hash == other.hash && name.componentEquals(index, other.component);
+		}
+	}
+
+	/**
+	 * A node in the trie. A node has entries (holders) if some entry in the table has
+	 * the name leading to this node. Nodes with neither entries nor children are removed.
+	 */
+	protected final class Node {
+		protected final Node parent;
+		protected final ComponentKey key;
+		protected final int depth;
+		protected HashMap<ComponentKey, Node> children = null;
+		protected ContentName name = null;
+		protected List<Holder<V>> holders = null;
+
+		public Node(Node parent, ComponentKey key) {
+			this.parent = parent;
+			this.key = key;
+			depth = (null == parent) ? 0 : parent.depth + 1;
+		}
+
+		public Node child(byte [] component) {
+			if (null == children)
+				return null;
+			return children.get(new ComponentKey(component));
+		}
+
+		/**
+		 * @return the child for the i'th component of name, or null
+		 */
+		public Node child(ContentName name, int i) {
+			if (null == children)
+				return null;
+			Node child = children.get(_probe.set(name, i));
+			_probe.name = null;
+			return child;
+		}
+
+		/**
+		 * Get the child for the i'th component of name, adding it if there isn't one.
+		 * The component is only copied if the child is new.
+		 */
+		public Node addChild(ContentName name, int i) {
+			Node child = child(name, i);
+			if (null == child) {
+				ComponentKey childKey = new ComponentKey(name.component(i));
+				if (null == children)
+					children = new HashMap<ComponentKey, Node>(4);
+				child = new Node(this, childKey);
+				children.put(childKey, child);
+			}
+			return child;
+		}
+	}
+
+	/**
+	 * Root of the trie. Also the lock for the table.
+	 */
+	protected final Node _contents = new Node(null, null);
+
+	// Used for all lookups of name components in the trie
+	protected final ComponentProbe _probe = new ComponentProbe();
+
+	protected int _nameCount = 0;
+	protected int _entryCount = 0;
+
+	protected LinkedHashSet<ContentName> _contentNamesLRU = null;
 
 	protected Integer _capacity = null;	// For LRU size control - default is none
 
@@ -147,7 +248,7 @@ public class InterestTable<V> {
 	public void setCapacity(int capacity) {
 		synchronized (_contents) {
 			_capacity = capacity;
-			_contentNamesLRU = new LinkedList<ContentName>();
+			_contentNamesLRU = new LinkedHashSet<ContentName>();
 		}
 	}
 
@@ -204,50 +305,148 @@ public class InterestTable<V> {
 	protected void add(Holder<V> holder) {
 		ContentName name = holder.name();
 		synchronized (_contents) {
-			if (_contents.containsKey(name)) {
-				List<Holder<V>> list = _contents.get(name);
-				list.add(holder);
+			Node node = findNode(name);
+			if (null != node && null != node.holders) {
+				node.holders.add(holder);
+				_entryCount++;
 				if (null != _capacity) {
 					// Have to update our LRUness
 					_contentNamesLRU.remove(name);
 					_contentNamesLRU.add(name);
 				}
 			} else {
-				ArrayList<Holder<V>> list = new ArrayList<Holder<V>>(1);
-				list.add(holder);
-
 				if (null != _capacity) {
-					if ( _contents.size() >= _capacity) {
+					if (_nameCount >= _capacity && !_contentNamesLRU.isEmpty()) {
 						// The LRU is the first key in the LRU list. So remove the contents
 						// corresponding to that one.
 						// XXX - should we care about whether the key has multiple
 						// interests attached?
+						ContentName lru = _contentNamesLRU.iterator().next();
 						if (Log.isLoggable(Log.FAC_ENCODING, Level.INFO)) {
-							Log.info(Log.FAC_ENCODING, "removing entry associated with name {0}", _contentNamesLRU.get(0));
+							Log.info(Log.FAC_ENCODING, "removing entry associated with name {0}", lru);
+						}
+						Node lruNode = findNode(lru);
+						if (null != lruNode && null != lruNode.holders) {
+							_entryCount -= lruNode.holders.size();
+							lruNode.holders.clear();
+							prune(lruNode);
 						}
-						_contents.remove(_contentNamesLRU.get(0));
-						_contentNamesLRU.remove(0);
 					}
 					_contentNamesLRU.add(name);
 				}
-				_contents.put(name, list);
+				node = findOrAddNode(name);
+				node.name = name;
+				node.holders = new ArrayList<Holder<V>>(1);
+				node.holders.add(holder);
+				_nameCount++;
+				_entryCount++;
 			}
 		}
 	}
 
-	protected Holder<V> getMatchByName(ContentName name, ContentObject target) {
-		List<Holder<V>> list;
-		synchronized (_contents) {
-			list = _contents.get(name);
-			if (Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
-				Log.finest(Log.FAC_ENCODING, "name: {0} target: {1} possible matches: {2}", name, target.name(), ((null == list) ? 0 : list.size()));
-			if (null != list) {
-				for (Iterator<Holder<V>> holdIt = list.iterator(); holdIt.hasNext(); ) {
-					Holder<V> holder = holdIt.next();
-					if (null != holder.interest()) {
-						if (holder.interest().matches(target)) {
-							return holder;
-						}
+	/**
+	 * Find the node for a name.
+	 * @param name
+	 * @return the node or null if there isn't one
+	 */
+	protected Node findNode(ContentName name) {
+		Node node = _contents;
+		int count = name.count();
+		for (int i = 0; i < count && null != node; i++)
+			node = node.child(name, i);
+		return node;
+	}
+
+	protected Node findOrAddNode(ContentName name) {
+		Node node = _contents;
+		int count = name.count();
+		for (int i = 0; i < count; i++)
+			node = node.addChild(name, i);
+		return node;
+	}
+
+	/**
+	 * Find the node for the longest prefix of name that is in the trie (which may not
+	 * have any entries).
+	 * @param name
+	 * @return the deepest node found. Never null since the root is a prefix of everything.
+	 */
+	protected Node findDeepest(ContentName name) {
+		Node node = _contents;
+		int count = name.count();
+		for (int i = 0; i < count; i++) {
+			Node child = node.child(name, i);
+			if (null == child)
+				break;
+			node = child;
+		}
+		return node;
+	}
+
+	/**
+	 * Clean up after entries have been removed from a node. Removes the node if it has
+	 * no entries and no children, and then does the same for its parents.
+	 * @param node
+	 */
+	protected void prune(Node node) {
+		if (null != node.holders && node.holders.size() == 0) {
+			if (null != _contentNamesLRU)
+				_contentNamesLRU.remove(node.name);
+			node.holders = null;
+			node.name = null;
+			_nameCount--;
+		}
+		while (null != node.parent && null == node.holders &&
+				(null == node.children || node.children.size() == 0)) {
+			node.parent.children.remove(node.key);
+			node = node.parent;
+		}
+	}
+
+	/**
+	 * Get the node for the full name (including digest) of target if there are
+	 * any such nodes in the table, without computing the digest if there aren't.
+	 * @param node the node for target's name
+	 * @param target
+	 * @return the node or null
+	 */
+	protected Node digestNode(Node node, ContentObject target) {
+		if (null == node.children || node.children.size() == 0)
+			return null;
+		return node.child(target.digest());
+	}
+
+	/**
+	 * Find the nodes to check for a ContentObject, ordered longest first. These are the
+	 * nodes for the prefixes of the target's full name.
+	 * @param target
+	 * @param digest if true include the node for the full name including the digest
+	 * @return the nodes
+	 */
+	protected ArrayList<Node> candidates(ContentObject target, boolean digest) {
+		ArrayList<Node> nodes = new ArrayList<Node>();
+		ContentName name = target.name();
+		Node node = findDeepest(name);
+		if (digest && node.depth == name.count()) {
+			Node digestNode = digestNode(node, target);
+			if (null != digestNode && null != digestNode.holders)
+				nodes.add(digestNode);
+		}
+		for (; null != node; node = node.parent) {
+			if (null != node.holders)
+				nodes.add(node);
+		}
+		return nodes;
+	}
+
+	protected Holder<V> getMatchByNode(Node node, ContentObject target) {
+		if (Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
+			Log.finest(Log.FAC_ENCODING, "name: {0} target: {1} possible matches: {2}", node.name, target.name(), ((null == node.holders) ? 0 : node.holders.size()));
+		if (null != node.holders) {
+			for (Holder<V> holder : node.holders) {
+				if (null != holder.interest()) {
+					if (holder.interest().matches(target)) {
+						return holder;
 					}
 				}
 			}
@@ -256,55 +455,32 @@ public class InterestTable<V> {
 	}
 
 	/**
-	 * Internal: return all the entries having exactly the specified name,
-	 * useful once you have found the matching names to collect entries from them
+	 * Internal: return all the entries at a node that match the target
 	 *
-	 * @param name
+	 * @param node
 	 * @param target
+	 * @param remove if true also remove the matching entries
 	 * @return
 	 */
-	protected List<Holder<V>> getAllMatchByName(ContentName name, ContentObject target) {
+	protected List<Holder<V>> getAllMatchByNode(Node node, ContentObject target, boolean remove) {
 		if(Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
-			Log.finest(Log.FAC_ENCODING, "name: {0} target: {1}", name, target.name());
+			Log.finest(Log.FAC_ENCODING, "name: {0} target: {1}", node.name, target.name());
 		List<Holder<V>> matches = new ArrayList<Holder<V>>();
-		List<Holder<V>> list;
-		synchronized (_contents) {
-			list = _contents.get(name);
-			if (null != list) {
-				for (Iterator<Holder<V>> holdIt = list.iterator(); holdIt.hasNext(); ) {
-					Holder<V> holder = holdIt.next();
-					if (null != holder.interest()) {
-						if (holder.interest().matches(target)) {
-							matches.add(holder);
-						}
-					}
-				}
-			}
-		}
-		return matches;
-	}
-
-	protected Holder<V> removeMatchByName(ContentName name, ContentObject target) {
-		if(Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
-			Log.finest(Log.FAC_ENCODING, "name: {0} target: {1}", name, target.name());
-		synchronized (_contents) {
-			List<Holder<V>> list = _contents.get(name);
-			if (null != list) {
-				for (Iterator<Holder<V>> holdIt = list.iterator(); holdIt.hasNext(); ) {
-					Holder<V> holder = holdIt.next();
-					if (null != holder.interest()) {
-						if (holder.interest().matches(target)) {
+		if (null != node.holders) {
+			for (Iterator<Holder<V>> holdIt = node.holders.iterator(); holdIt.hasNext(); ) {
+				Holder<V> holder = holdIt.next();
+				if (null != holder.interest()) {
+					if (holder.interest().matches(target)) {
+						matches.add(holder);
+						if (remove) {
 							holdIt.remove();
-							if (list.size() == 0) {
-								_contents.remove(name);
-							}
-							return holder;
+							_entryCount--;
 						}
 					}
 				}
 			}
 		}
-		return null;
+		return matches;
 	}
 
 	/**
@@ -318,27 +494,25 @@ public class InterestTable<V> {
 	public Entry<V> remove(ContentName name, V value) {
 		Holder<V> result = null;
 		synchronized (_contents) {
-			List<Holder<V>> list = _contents.get(name);
-			if (null != list) {
-				for (Iterator<Holder<V>> holdIt = list.iterator(); holdIt.hasNext(); ) {
+			Node node = findNode(name);
+			if (null != node && null != node.holders) {
+				for (Iterator<Holder<V>> holdIt = node.holders.iterator(); holdIt.hasNext(); ) {
 					Holder<V> holder = holdIt.next();
 					if (null == holder.value()) {
 						if (null == value) {
 							holdIt.remove();
+							_entryCount--;
 							result = holder;
 						}
 					} else {
 						if (holder.value().equals(value)) {
 							holdIt.remove();
+							_entryCount--;
 							result = holder;
 						}
 					}
 				}
-				if (list.size() == 0) {
-					synchronized (_contents) {
-						_contents.remove(name);
-					}
-				}
+				prune(node);
 			}
 		}
 		return result;
@@ -355,55 +529,33 @@ public class InterestTable<V> {
 		Holder<V> result = null;
 		ContentName name = interest.name();
 		synchronized (_contents) {
-			List<Holder<V>> list = _contents.get(name);
-			if (null != list) {
-				for (Iterator<Holder<V>> holdIt = list.iterator(); holdIt.hasNext(); ) {
+			Node node = findNode(name);
+			if (null != node && null != node.holders) {
+				for (Iterator<Holder<V>> holdIt = node.holders.iterator(); holdIt.hasNext(); ) {
 					Holder<V> holder = holdIt.next();
 					if (interest.equals(holder.interest())) {
 						if (null == holder.value()) {
 							if (null == value) {
 								holdIt.remove();
+								_entryCount--;
 								result = holder;
 
 							}
 						} else {
 							if (holder.value().equals(value)) {
 								holdIt.remove();
+								_entryCount--;
 								result = holder;
 							}
 						}
 					}
 				}
-				if (list.size() == 0) {
-					_contents.remove(name);
-				}
+				prune(node);
 			}
 		}
 		return result;
 	}
 
-	protected List<Holder<V>> removeAllMatchByName(ContentName name, ContentObject target) {
-		List<Holder<V>> matches = new ArrayList<Holder<V>>();
-		synchronized (_contents) {
-			List<Holder<V>> list = _contents.get(name);
-			if (null != list) {
-				for (Iterator<Holder<V>> holdIt = list.iterator(); holdIt.hasNext(); ) {
-					Holder<V> holder = holdIt.next();
-					if (null != holder.interest()) {
-						if (holder.interest().matches(target)) {
-							holdIt.remove();
-							matches.add(holder);
-						}
-					}
-				}
-				if (list.size() == 0) {
-					_contents.remove(name);
-				}
-			}
-		}
-		return matches;
-	}
-
 	/**
 	 * Get value of longest matching Interest for a ContentObject, where longest is defined
 	 * as longest ContentName.  Any ContentName entries in the table will be
@@ -433,17 +585,14 @@ public class InterestTable<V> {
 	public Entry<V> getMatch(ContentObject target) {
 		if(Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
 			Log.finest(Log.FAC_ENCODING, "target: {0}", target.name());
-		Entry<V> match = null;
-		Set<ContentName> names;
 		synchronized (_contents) {
-			names = _contents.keySet();
-			for (ContentName name : names) {
-				match = getMatchByName(name, target);
+			for (Node node : candidates(target, true)) {
+				Entry<V> match = getMatchByNode(node, target);
 				if (null != match)
-					break;
+					return match;
 			}
 		}
-		return match;
+		return null;
 	}
 
 	/**
@@ -485,9 +634,9 @@ public class InterestTable<V> {
 		List<Entry<V>> matches = new ArrayList<Entry<V>>();
 		if (null != target) {
 			synchronized (_contents) {
-				for (ContentName name : _contents.keySet()) {
+				for (Node node : candidates(target, true)) {
 					// Name match - is there an interest match here?
-					matches.addAll(getAllMatchByName(name, target));
+					matches.addAll(getAllMatchByNode(node, target, false));
 				}
 			}
 		}
@@ -527,16 +676,13 @@ public class InterestTable<V> {
 		if (Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
 			Log.finest(Log.FAC_ENCODING, "target: {0}", target);
 
-		Entry<V> match = null;
 		synchronized (_contents) {
-			for (ContentName name : _contents.keySet()) {
-				if (name.isPrefixOf(target)) {
-					match = _contents.get(name).get(0);
-					break;
-				}
+			for (Node node = findDeepest(target); null != node; node = node.parent) {
+				if (null != node.holders)
+					return node.holders.get(0);
 			}
 		}
-		return match;
+		return null;
 	}
 
 	/**
@@ -573,10 +719,9 @@ public class InterestTable<V> {
 
 		List<Entry<V>> matches = new ArrayList<Entry<V>>();
 		synchronized (_contents) {
-			for (ContentName name : _contents.keySet()) {
-				if (name.isPrefixOf(target)) {
-					matches.addAll(_contents.get(name));
-				}
+			for (Node node = findDeepest(target); null != node; node = node.parent) {
+				if (null != node.holders)
+					matches.addAll(node.holders);
 			}
 		}
 		return matches;
@@ -589,12 +734,16 @@ public class InterestTable<V> {
 	 * @return Collection of entries in arbitrary order
 	 */
 	public Collection<Entry<V>> values() {
-		List<Entry<V>> results =  new ArrayList<Entry<V>>();
+		List<Entry<V>> results =  new ArrayList<Entry<V>>(_entryCount);
 		synchronized (_contents) {
-			for (Iterator<ContentName> keyIt = _contents.keySet().iterator(); keyIt.hasNext();) {
-				ContentName name = keyIt.next();
-				List<Holder<V>> list = _contents.get(name);
-				results.addAll(list);
+			ArrayList<Node> toVisit = new ArrayList<Node>();
+			toVisit.add(_contents);
+			while (toVisit.size() > 0) {
+				Node node = toVisit.remove(toVisit.size() - 1);
+				if (null != node.holders)
+					results.addAll(node.holders);
+				if (null != node.children)
+					toVisit.addAll(node.children.values());
 			}
 		}
 		return results;
@@ -627,28 +776,22 @@ public class InterestTable<V> {
 	 * @return Entry of longest match if any, null if no match
 	 */
 	public Entry<V> removeMatch(ContentObject target) {
-		Entry<V> match = null;
 		if (null != target) {
-			ContentName matchName = null;
 			if(Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
-				Log.finest(Log.FAC_ENCODING, "removeMatch: looking for match to target {0} among {1} possibilities.", target.name(), _contents.keySet().size());
-			Set<ContentName> names;
+				Log.finest(Log.FAC_ENCODING, "removeMatch: looking for match to target {0} among {1} possibilities.", target.name(), _nameCount);
 			synchronized (_contents) {
-				names = _contents.keySet();
-				for (ContentName name : names) {
-					match = getMatchByName(name, target);
+				for (Node node : candidates(target, true)) {
+					Holder<V> match = getMatchByNode(node, target);
 					if (null != match) {
-						matchName = name;
-						break;
+						node.holders.remove(match);
+						_entryCount--;
+						prune(node);
+						return match;
 					}
-					// Do not remove here -- need to find best match and avoid disturbing iterator
-				}
-				if (null != match) {
-					return removeMatchByName(matchName, target);
 				}
 			}
 		}
-		return match;
+		return null;
 	}
 
 	/**
@@ -682,21 +825,11 @@ public class InterestTable<V> {
 	 */
 	public List<Entry<V>> removeMatches(ContentObject target) {
 		List<Entry<V>> matches = new ArrayList<Entry<V>>();
-		List<ContentName> names = new ArrayList<ContentName>();
-		Set<ContentName> LFCnames;
 		synchronized (_contents) {
-			LFCnames = _contents.keySet();
-			for (ContentName name : LFCnames) {
-				if (name.isPrefixOf(target.name())) {
-					// Name match - is there an interest match here?
-					matches.addAll(getAllMatchByName(name, target));
-					names.add(name);
-				}
-			}
-			if (matches.size() != 0) {
-				for (ContentName contentName : names) {
-					removeAllMatchByName(contentName, target);
-				}
+			for (Node node : candidates(target, false)) {
+				// Name match - is there an interest match here?
+				matches.addAll(getAllMatchByNode(node, target, true));
+				prune(node);
 			}
 		}
 		return matches;
@@ -710,15 +843,9 @@ public class InterestTable<V> {
 	 * @return the number of entries in the table
 	 */
 	public int size() {
-		int result = 0;
 		synchronized (_contents) {
-			for (Iterator<ContentName> nameIt = _contents.keySet().iterator(); nameIt.hasNext();) {
-				ContentName name = nameIt.next();
-				List<Holder<V>> list = _contents.get(name);
-				result += list.size();
-			}
+			return _entryCount;
 		}
-		return result;
 	}
 
 	/**
@@ -730,7 +857,7 @@ public class InterestTable<V> {
 	 */
 	public int sizeNames() {
 		synchronized (_contents) {
-			return _contents.size();
+			return _nameCount;
 		}
 	}
 
@@ -739,7 +866,13 @@ public class InterestTable<V> {
 	 */
 	public void clear() {
 		synchronized (_contents) {
-			_contents.clear();
+			_contents.children = null;
+			_contents.holders = null;
+			_contents.name = null;
+			_nameCount = 0;
+			_entryCount = 0;
+			if (null != _contentNamesLRU)
+				_contentNamesLRU.clear();
 		}
 	}
 
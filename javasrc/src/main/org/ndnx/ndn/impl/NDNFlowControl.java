@@ -35,6 +35,7 @@ import org.ndnx.ndn.impl.InterestTable.Entry;
 import org.ndnx.ndn.impl.support.Log;
 import org.ndnx.ndn.protocol.ContentName;
 import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Exclude;
 import org.ndnx.ndn.protocol.Interest;
 import org.ndnx.ndn.protocol.MalformedContentNameStringException;
 
@@ -595,27 +596,89 @@ public class NDNFlowControl implements NDNInterestHandler {
 	 * @return
 	 */
 	private ContentObject getBestMatch(Interest interest) {
-		ContentObject bestMatch = null;
 		if( Log.isLoggable(Log.FAC_IO, Level.FINEST))
 			Log.finest(Log.FAC_IO, "Looking for best match to {0} among {1} options.", interest, _holdingArea.size());
-		for ( java.util.Map.Entry<ContentName, ContentObject> entry :  _holdingArea.entrySet() ) {
-			ContentName name = entry.getKey();
-			ContentObject result = entry.getValue();
-
-			// We only have to do something unusual here if the caller is looking for CHILD_SELECTOR_RIGHT
-			if (null != interest.childSelector() && interest.childSelector() == Interest.CHILD_SELECTOR_RIGHT) {
-				if (interest.matches(result)) {
-					if (bestMatch == null)
-						bestMatch = result;
-					if (name.compareTo(bestMatch.name()) > 0) {
-						bestMatch = result;
-					}
+		return getBestMatch(_holdingArea, interest);
+	}
+	
+	/**
+	 * Find the object in a holding area that best matches an interest - the first matching
+	 * object in name order, or the last if the interest asks for CHILD_SELECTOR_RIGHT.
+	 * 
+	 * Only objects the interest could match are looked at. Names sort in canonical order, so the
+	 * objects whose names start with the interest's name are in one contiguous range of the map,
+	 * which we walk from whichever end the child selector asks for. The only other candidate is
+	 * the object named by the interest less its last component, when that component is the
+	 * object's digest. Children of the interest's name that are excluded are skipped as a whole,
+	 * as are runs of children excluded by an Any filler, so that an interest from Interest.next
+	 * or Interest.last goes straight to the first child it allows.
+	 * 
+	 * @param holdingArea objects by name
+	 * @param interest
+	 * @return the best match or null if nothing matches
+	 */
+	public static ContentObject getBestMatch(TreeMap<ContentName, ContentObject> holdingArea, Interest interest) {
+		ContentName prefix = interest.name();
+		int prefixCount = prefix.count();
+		Exclude exclude = interest.exclude();
+		if (null != exclude && exclude.empty())
+			exclude = null;
+		boolean rightmost = null != interest.childSelector() && interest.childSelector() == Interest.CHILD_SELECTOR_RIGHT;
+		
+		// This sorts before everything in the range
+		ContentObject digestMatch = null;
+		if (prefixCount > 0) {
+			ContentObject co = holdingArea.get(prefix.parent());
+			if (null != co && interest.matches(co)) {
+				if (!rightmost)
+					return co;
+				digestMatch = co;
+			}
+		}
+		
+		ContentName key;
+		if (rightmost) {
+			ContentName end = following(prefix);
+			key = (null == end) ? (holdingArea.isEmpty() ? null : holdingArea.lastKey()) : holdingArea.lowerKey(end);
+		} else
+			key = holdingArea.ceilingKey(prefix);
+		while (null != key && prefix.isPrefixOf(key)) {
+			ContentObject co = holdingArea.get(key);
+			if (interest.matches(co))
+				return co;
+			if (null != exclude && key.count() > prefixCount && exclude.match(key, prefixCount)) {
+				byte [] end = exclude.excludedRunEnd(key.component(prefixCount), !rightmost);
+				if (null == end) {
+					// Every child from here on is excluded, but going left the prefix itself is still to come
+					key = rightmost ? holdingArea.floorKey(prefix) : null;
+					continue;
 				}
+				ContentName child = new ContentName(prefix, end);
+				key = rightmost ? holdingArea.lowerKey(child) : holdingArea.ceilingKey(following(child));
 			} else
-				if (interest.matches(result))
-					return result;
+				key = rightmost ? holdingArea.lowerKey(key) : holdingArea.higherKey(key);
 		}
-		return bestMatch;
+		return digestMatch;
+	}
+	
+	/**
+	 * @return the first name after all names starting with prefix, or null if there is none
+	 * because prefix is the root
+	 */
+	protected static ContentName following(ContentName prefix) {
+		int count = prefix.count();
+		if (count == 0)
+			return null;
+		// component() gives us our own copy to change
+		byte [] next = prefix.component(count - 1);
+		int i = next.length - 1;
+		while (i >= 0 && next[i] == (byte)0xff)
+			next[i--] = 0;
+		if (i >= 0)
+			next[i]++;
+		else
+			next = new byte[next.length + 1];	// Shortlex - the next length up comes next
+		return new ContentName(prefix.parent(), next);
 	}
 
 	/**
@@ -0,0 +1,200 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.impl;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.ndnx.ndn.impl.NDNNetworkManager.NetworkProtocol;
+import org.ndnx.ndn.impl.encoding.XMLEncodable;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.profiles.ndnd.PrefixRegistrationManager.ActionType;
+import org.ndnx.ndn.profiles.ndnd.PrefixRegistrationManager.ForwardingEntry;
+import org.ndnx.ndn.protocol.ContentName;
+
+/**
+ * A network channel connected to an NDNLoopbackForwarder in this JVM rather than to ndnd.
+ * Selected with the LOOPBACK agent protocol (see SystemConfiguration.AGENT_PROTOCOL).
+ *
+ * Packets written to the channel are handed straight to the forwarder, and packets the
+ * forwarder sends us are queued until the network manager reads them, so nothing goes
+ * through a socket. Prefixes are registered directly with the forwarder instead of by
+ * sending requests to ndnd.
+ */
+public class NDNLoopbackChannel extends NDNNetworkChannel {
+
+	/**
+	 * The most packets we queue for the network manager before dropping them.
+	 */
+	public static final int QUEUE_LIMIT = 10000;
+
+	// Queued to wake up a reader blocked in getPacket()
+	protected static final byte [] WAKEUP = new byte[0];
+
+	protected final NDNLoopbackForwarder _forwarder;
+	protected final LinkedBlockingQueue<byte []> _incoming = new LinkedBlockingQueue<byte []>(QUEUE_LIMIT);
+	protected int _faceId = -1;
+
+	public NDNLoopbackChannel(NDNLoopbackForwarder forwarder, FileOutputStream tapStreamIn) throws IOException {
+		super("loopback", 0, NetworkProtocol.LOOPBACK, tapStreamIn);
+		_forwarder = forwarder;
+	}
+
+	/**
+	 * Connect to the forwarder
+	 */
+	@Override
+	public void open() throws IOException {
+		synchronized (_opencloseLock) {
+			if (_ncConnected)
+				throw new IOException("NetworkChannel " + _channelId + ": channel already connected");
+			_faceId = _forwarder.attach(this);
+			_ncInitialized = true;
+			synchronized (_ncConnectedLock) {
+				_ncConnected = true;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (_opencloseLock) {
+			if (Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO))
+				Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: close()",  _channelId);
+			_retry = false;
+			synchronized (_ncConnectedLock) {
+				if (!_ncConnected)
+					return;
+				_ncConnected = false;
+			}
+			_forwarder.detach(this);
+			_incoming.clear();
+			wakeup();
+		}
+	}
+
+	/**
+	 * Wait up to SOCKET_TIMEOUT for a packet from the forwarder.
+	 * @return a ContentObject, an Interest, or null if there's no data waiting
+	 */
+	@Override
+	public XMLEncodable getPacket() throws IOException {
+		if (!isConnected()) {
+			// We do not want to spin without a delay
+			try {
+				Thread.sleep(_downDelay);
+			} catch (InterruptedException e) {}
+			return null;
+		}
+		byte [] frame;
+		try {
+			frame = _incoming.poll(SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: interrupted",  _channelId);
+			return null;
+		}
+		if (null == frame || frame == WAKEUP || !isConnected())
+			return null;
+		if (null != _ncTapStreamIn)
+			_ncTapStreamIn.write(frame);
+		_decoder.beginDecoding(ByteBuffer.wrap(frame));
+		return _decoder.getPacket();
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		if (!isConnected())
+			return -1;
+		int length = src.remaining();
+		byte [] data = new byte[length];
+		src.get(data);
+		_forwarder.receive(this, data);
+		return length;
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		if (!isConnected())
+			return -1;
+		int size = 0;
+		for (int i = offset; i < offset + length; i++)
+			size += srcs[i].remaining();
+		byte [] data = new byte[size];
+		int position = 0;
+		for (int i = offset; i < offset + length; i++) {
+			int remaining = srcs[i].remaining();
+			srcs[i].get(data, position, remaining);
+			position += remaining;
+		}
+		_forwarder.receive(this, data);
+		return size;
+	}
+
+	/**
+	 * Called by the forwarder to send us a packet.
+	 * @return false if the queue is full and the packet was dropped
+	 */
+	protected boolean deliver(byte [] frame) {
+		if (!isConnected())
+			return true;
+		return _incoming.offer(frame);
+	}
+
+	/**
+	 * Register a prefix with the forwarder.
+	 * @return a forwarding entry like the one ndnd would return
+	 */
+	public ForwardingEntry registerPrefix(ContentName prefix, Integer flags) {
+		_forwarder.registerPrefix(prefix, this);
+		return new ForwardingEntry(ActionType.Register, prefix, null, _faceId, flags, Integer.MAX_VALUE);
+	}
+
+	public void unregisterPrefix(ContentName prefix) {
+		_forwarder.unregisterPrefix(prefix, this);
+	}
+
+	public int faceId() {
+		return _faceId;
+	}
+
+	/**
+	 * Wake up a reader waiting in getPacket()
+	 * @return null - there is no selector
+	 */
+	@Override
+	public Selector wakeup() {
+		_incoming.offer(WAKEUP);
+		return null;
+	}
+
+	/**
+	 * Nothing to keep alive
+	 */
+	@Override
+	public boolean heartbeat() {
+		return true;
+	}
+}
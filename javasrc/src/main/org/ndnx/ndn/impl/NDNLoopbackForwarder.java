@@ -0,0 +1,358 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.ndnx.ndn.impl.InterestTable.Entry;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats.IStatsEnum;
+import org.ndnx.ndn.impl.NDNStats.NDNStatistics;
+import org.ndnx.ndn.impl.encoding.BinaryXMLDecoder;
+import org.ndnx.ndn.impl.encoding.XMLEncodable;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.io.content.ContentDecodingException;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+
+/**
+ * A minimal in-process stand-in for ndnd, used by NDNLoopbackChannel. It lets the handles
+ * in one JVM exchange interests and content without a running ndnd, which is mainly useful
+ * for benchmarking the library itself and for tests.
+ *
+ * Like ndnd it keeps a FIB of prefixes registered by each face and a PIT of the interests
+ * it has forwarded. An interest is forwarded to every other face with a prefix matching
+ * its name; content is returned to every face with an unexpired pending interest it
+ * satisfies, and that interest is consumed. Unsolicited content is dropped. There is no
+ * content store, no interest suppression and no strategy layer - every matching face gets
+ * every interest.
+ */
+public class NDNLoopbackForwarder implements NDNStatistics {
+
+	/**
+	 * How long we remember an interest that doesn't say how long it lives. Same as ndnd.
+	 * Interests encoded by this library never do.
+	 */
+	public static final long DEFAULT_INTEREST_LIFETIME = 4000;
+
+	/**
+	 * How often expired interests are cleared out of the PIT, in ms.
+	 */
+	public static final long PURGE_INTERVAL = 1000;
+
+	protected static NDNLoopbackForwarder _defaultForwarder = null;
+
+	protected final long _defaultLifetime;
+	protected final AtomicInteger _faceIdCounter = new AtomicInteger(0);
+
+	// Registered prefixes, with the face they were registered on
+	protected final InterestTable<NDNLoopbackChannel> _fib = new InterestTable<NDNLoopbackChannel>();
+
+	// Interests we have forwarded, with the face they came from
+	protected final InterestTable<PendingInterest> _pit = new InterestTable<PendingInterest>();
+	protected long _nextPurge = 0;
+
+	/**
+	 * An interest waiting for content. Equal to any other pending interest from the same
+	 * face, so that an interest expressed again replaces the original.
+	 */
+	protected static class PendingInterest {
+		protected final NDNLoopbackChannel _face;
+		protected final long _expires;
+
+		public PendingInterest(NDNLoopbackChannel face, long expires) {
+			_face = face;
+			_expires = expires;
+		}
+
+		@Override
+		public int hashCode() {
+			return _face.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof PendingInterest))
+				return false;
+			return _face == ((PendingInterest)obj)._face;
+		}
+	}
+
+	/**
+	 * @return the forwarder shared by all LOOPBACK network managers in this JVM
+	 */
+	public static synchronized NDNLoopbackForwarder getDefault() {
+		if (null == _defaultForwarder)
+			_defaultForwarder = new NDNLoopbackForwarder();
+		return _defaultForwarder;
+	}
+
+	public NDNLoopbackForwarder() {
+		this(DEFAULT_INTEREST_LIFETIME);
+	}
+
+	/**
+	 * @param defaultLifetime how long to remember interests with no lifetime of their own, in ms
+	 */
+	public NDNLoopbackForwarder(long defaultLifetime) {
+		_defaultLifetime = defaultLifetime;
+	}
+
+	/**
+	 * Connect a face.
+	 * @return the face ID
+	 */
+	public int attach(NDNLoopbackChannel face) {
+		int faceId = _faceIdCounter.incrementAndGet();
+		if (Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO))
+			Log.info(Log.FAC_NETMANAGER, "LoopbackForwarder: attached face {0}", faceId);
+		return faceId;
+	}
+
+	/**
+	 * Disconnect a face, forgetting its registrations and pending interests.
+	 */
+	public void detach(NDNLoopbackChannel face) {
+		for (Entry<NDNLoopbackChannel> entry : _fib.values()) {
+			if (entry.value() == face)
+				_fib.remove(entry.name(), face);
+		}
+		for (Entry<PendingInterest> entry : _pit.values()) {
+			if (entry.value()._face == face)
+				_pit.remove(entry.interest(), entry.value());
+		}
+		if (Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO))
+			Log.info(Log.FAC_NETMANAGER, "LoopbackForwarder: detached face {0}", face.faceId());
+	}
+
+	/**
+	 * Send interests matching prefix to face.
+	 */
+	public void registerPrefix(ContentName prefix, NDNLoopbackChannel face) {
+		synchronized (_fib) {
+			if (null == _fib.remove(prefix, face))
+				_stats.increment(StatsEnum.Registrations);
+			_fib.add(prefix, face);
+		}
+		if (Log.isLoggable(Log.FAC_NETMANAGER, Level.FINE))
+			Log.fine(Log.FAC_NETMANAGER, "LoopbackForwarder: registered {0} on face {1}", prefix, face.faceId());
+	}
+
+	public void unregisterPrefix(ContentName prefix, NDNLoopbackChannel face) {
+		_fib.remove(prefix, face);
+		if (Log.isLoggable(Log.FAC_NETMANAGER, Level.FINE))
+			Log.fine(Log.FAC_NETMANAGER, "LoopbackForwarder: unregistered {0} on face {1}", prefix, face.faceId());
+	}
+
+	/**
+	 * Forward packets written by a face. The data may hold any number of complete packets.
+	 */
+	public void receive(NDNLoopbackChannel from, byte [] data) {
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		BinaryXMLDecoder decoder = new BinaryXMLDecoder();
+		while (buffer.hasRemaining()) {
+			byte [] frame;
+			XMLEncodable packet;
+			try {
+				int length = BinaryXMLDecoder.frameLength(buffer);
+				if (length < 0) {
+					Log.warning(Log.FAC_NETMANAGER, "LoopbackForwarder: face {0} wrote a partial packet - discarding {1} bytes",
+							from.faceId(), buffer.remaining());
+					_stats.increment(StatsEnum.DecodeErrors);
+					return;
+				}
+				frame = Arrays.copyOfRange(data, buffer.position(), buffer.position() + length);
+				buffer.position(buffer.position() + length);
+				decoder.beginDecoding(ByteBuffer.wrap(frame));
+				packet = decoder.getPacket();
+			} catch (ContentDecodingException e) {
+				Log.warning(Log.FAC_NETMANAGER, "LoopbackForwarder: cannot decode packet from face {0}: {1}", from.faceId(), e.getMessage());
+				_stats.increment(StatsEnum.DecodeErrors);
+				return;
+			}
+
+			if (packet instanceof Interest)
+				forwardInterest(from, (Interest)packet, frame);
+			else if (packet instanceof ContentObject)
+				forwardContent(from, (ContentObject)packet, frame);
+		}
+	}
+
+	protected void forwardInterest(NDNLoopbackChannel from, Interest interest, byte [] frame) {
+		_stats.increment(StatsEnum.Interests);
+		long now = System.currentTimeMillis();
+		purge(now);
+
+		List<NDNLoopbackChannel> faces = new ArrayList<NDNLoopbackChannel>();
+		for (NDNLoopbackChannel face : _fib.getValues(interest.name())) {
+			if (face != from && !faces.contains(face))
+				faces.add(face);
+		}
+		if (faces.isEmpty()) {
+			_stats.increment(StatsEnum.InterestsUnrouted);
+			if (Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER))
+				Log.finer(Log.FAC_NETMANAGER, "LoopbackForwarder: no route for {0}", interest.name());
+			return;
+		}
+
+		PendingInterest pending = new PendingInterest(from, now + lifetime(interest));
+		synchronized (_pit) {
+			_pit.remove(interest, pending);
+			_pit.add(interest, pending);
+		}
+		for (NDNLoopbackChannel face : faces)
+			deliver(face, frame);
+	}
+
+	protected void forwardContent(NDNLoopbackChannel from, ContentObject co, byte [] frame) {
+		_stats.increment(StatsEnum.Content);
+		long now = System.currentTimeMillis();
+		List<NDNLoopbackChannel> faces = new ArrayList<NDNLoopbackChannel>();
+		for (Entry<PendingInterest> entry : _pit.removeMatches(co)) {
+			PendingInterest pending = entry.value();
+			if (pending._expires > now && pending._face != from && !faces.contains(pending._face))
+				faces.add(pending._face);
+		}
+		if (faces.isEmpty()) {
+			_stats.increment(StatsEnum.ContentUnsolicited);
+			if (Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER))
+				Log.finer(Log.FAC_NETMANAGER, "LoopbackForwarder: dropping unsolicited content {0}", co.name());
+			return;
+		}
+		for (NDNLoopbackChannel face : faces)
+			deliver(face, frame);
+	}
+
+	protected void deliver(NDNLoopbackChannel face, byte [] frame) {
+		if (!face.deliver(frame)) {
+			_stats.increment(StatsEnum.Dropped);
+			if (Log.isLoggable(Log.FAC_NETMANAGER, Level.FINE))
+				Log.fine(Log.FAC_NETMANAGER, "LoopbackForwarder: face {0} is full - dropping packet", face.faceId());
+		}
+	}
+
+	/**
+	 * Clear out expired pending interests, at most once every PURGE_INTERVAL
+	 */
+	protected void purge(long now) {
+		synchronized (_pit) {
+			if (now < _nextPurge)
+				return;
+			_nextPurge = now + PURGE_INTERVAL;
+		}
+		for (Entry<PendingInterest> entry : _pit.values()) {
+			if (entry.value()._expires <= now)
+				_pit.remove(entry.interest(), entry.value());
+		}
+	}
+
+	/**
+	 * @return the lifetime of the interest in ms
+	 */
+	protected long lifetime(Interest interest) {
+		byte [] lifetime = interest.interestLifetime();
+		if (null == lifetime || lifetime.length == 0)
+			return _defaultLifetime;
+		// Binary fixed point in units of 1/4096 second
+		long value = 0;
+		for (byte b : lifetime)
+			value = (value << 8) | (b & 0xff);
+		return value * 1000 / 4096;
+	}
+
+	/**
+	 * @return the number of pending interests, including expired ones not yet purged
+	 */
+	public int pendingInterests() {
+		return _pit.size();
+	}
+
+	// ==============================================================
+	// Statistics
+
+	protected NDNEnumStats<StatsEnum> _stats = new NDNEnumStats<StatsEnum>(StatsEnum.Interests);
+
+	public NDNStats getStats() {
+		return _stats;
+	}
+
+	public enum StatsEnum implements IStatsEnum {
+		// ====================================
+		// Just edit this list, dont need to change anything else
+
+		Registrations ("count", "Prefixes registered"),
+		Interests ("count", "Interests received"),
+		InterestsUnrouted ("count", "Interests dropped because no face registered a matching prefix"),
+		Content ("count", "Content objects received"),
+		ContentUnsolicited ("count", "Content objects dropped because no interest was waiting for them"),
+		Dropped ("count", "Packets dropped because the receiving face was full"),
+		DecodeErrors ("count", "Writes that could not be decoded"),
+		;
+
+		// ====================================
+		// This is the same for every user of IStatsEnum
+
+		protected final String _units;
+		protected final String _description;
+		protected final static String [] _names;
+
+		static {
+			_names = new String[StatsEnum.values().length];
+			for(StatsEnum stat : StatsEnum.values() )
+				_names[stat.ordinal()] = stat.toString();
+
+		}
+
+		StatsEnum(String units, String description) {
+			_units = units;
+			_description = description;
+		}
+
+		public String getDescription(int index) {
+			return StatsEnum.values()[index]._description;
+		}
+
+		public int getIndex(String name) {
+			StatsEnum x = StatsEnum.valueOf(name);
+			return x.ordinal();
+		}
+
+		public String getName(int index) {
+			return StatsEnum.values()[index].toString();
+		}
+
+		public String getUnits(int index) {
+			return StatsEnum.values()[index]._units;
+		}
+
+		public String [] getNames() {
+			return _names;
+		}
+	}
+}
@@ -22,8 +22,11 @@ package org.ndnx.ndn.impl;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.net.PortUnreachableException;
+import java.net.SocketAddress;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
@@ -38,11 +41,14 @@ import org.ndnx.ndn.config.SystemConfiguration;
 import org.ndnx.ndn.impl.NDNNetworkManager.NetworkProtocol;
 import org.ndnx.ndn.impl.encoding.BinaryXMLDecoder;
 import org.ndnx.ndn.impl.encoding.XMLEncodable;
+import org.ndnx.ndn.io.content.ContentDecodingException;
 import org.ndnx.ndn.impl.support.Log;
 
 /**
  *  This guy manages all of the access to the network connection.
- *  It is capable of supporting both UDP and TCP transport protocols
+ *  It is capable of supporting UDP and TCP transport protocols, and ndnd's unix domain
+ *  socket. A unix domain socket is used just like a TCP connection but skips the TCP/IP
+ *  stack, so is cheaper for applications running on the same machine as ndnd.
  *
  *  It also creates a stream interface for input to the decoders. It is necessary to
  *  create our own input stream for TCP because the stream that can be obtained via the
@@ -85,6 +91,7 @@ public class NDNNetworkChannel extends InputStream {
 	protected Boolean _ncStarted = false;
 
 	protected BinaryXMLDecoder _decoder = null;
+	protected final boolean _bufferDecoding = SystemConfiguration.BUFFER_DECODING;
 
 	// Allocate datagram buffer
 	protected ByteBuffer _datagram = ByteBuffer.allocateDirect(NDNNetworkManager.MAX_PAYLOAD);
@@ -105,6 +112,7 @@ public class NDNNetworkChannel extends InputStream {
 		_channelId = _channelIdCounter.incrementAndGet();
 		_decoder = new BinaryXMLDecoder();
 		_decoder.setResyncable(true);
+		_decoder.setLazyDecoding(SystemConfiguration.LAZY_DECODING);
 
 		if (Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO))
 			Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: Starting up NDNNetworkChannel using {1}.",  _channelId, proto.toString());
@@ -156,23 +164,32 @@ public class NDNNetworkChannel extends InputStream {
 					ioe.printStackTrace();
 					return;
 				}
-			} else if (_ncProto == NetworkProtocol.TCP) {
-				_ncSockChannel = SocketChannel.open();
+			} else if (_ncProto == NetworkProtocol.TCP || _ncProto == NetworkProtocol.UNIX) {
 				try {
-					_ncSockChannel.connect(new InetSocketAddress(_ncHost, _ncPort));
+					if (_ncProto == NetworkProtocol.TCP) {
+						_ncSockChannel = SocketChannel.open();
+						_ncSockChannel.connect(new InetSocketAddress(_ncHost, _ncPort));
+					} else {
+						_ncSockChannel = openUnixSocket();
+						_ncSockChannel.connect(unixSocketAddress(unixSocketName(_ncPort)));
+					}
 				} catch (IOException ioe) {
+					if (null != _ncSockChannel)
+						_ncSockChannel.close();
 					if (!_ncInitialized) {
-						Log.warning(Log.FAC_NETMANAGER, "NetworkChannel {0}: TCP open exception {1}",  _channelId, ioe.getMessage());
+						Log.warning(Log.FAC_NETMANAGER, "NetworkChannel {0}: {1} open exception {2}",  _channelId, _ncProto, ioe.getMessage());
 						throw ioe;
 					}
-					Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: TCP (re)open exception {1}",  _channelId, ioe.getMessage());
+					Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: {1} (re)open exception {2}",  _channelId, _ncProto, ioe.getMessage());
 					return;
 				}
 				_ncSockChannel.configureBlocking(false);
 				_ncSockChannel.register(_ncReadSelector, SelectionKey.OP_READ);
 				_ncWriteSelector = Selector.open();
 				_ncSockChannel.register(_ncWriteSelector, SelectionKey.OP_WRITE);
-				_ncLocalPort = _ncSockChannel.socket().getLocalPort();
+				// Unix domain socket channels have no Socket
+				if (_ncProto == NetworkProtocol.TCP)
+					_ncLocalPort = _ncSockChannel.socket().getLocalPort();
 				//_ncSockChannel.socket().setSoLinger(true, LINGER_TIME);
 			} else {
 				throw new IOException("NetworkChannel " + _channelId + ": invalid protocol specified");
@@ -180,7 +197,11 @@ public class NDNNetworkChannel extends InputStream {
 
 			if (Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO)) {
 				String connecting = (_ncInitialized ? "Reconnecting to" : "Contacting");
-				Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: {1} NDN agent at {2}:{3} on local port {4}",
+				if (_ncProto == NetworkProtocol.UNIX)
+					Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: {1} NDN agent at {2}",
+							_channelId, connecting, unixSocketName(_ncPort));
+				else
+					Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: {1} NDN agent at {2}:{3} on local port {4}",
 						_channelId,
 						connecting,
 						_ncHost,
@@ -197,6 +218,61 @@ public class NDNNetworkChannel extends InputStream {
 		}
 	}
 
+	/**
+	 * The unix domain socket ndnd listens on for the given port, named as by the C library:
+	 * SystemConfiguration.LOCAL_SOCKNAME, with ".port" appended if port isn't the default.
+	 */
+	public static String unixSocketName(int port) {
+		if (port > 0 && port != NDNNetworkManager.DEFAULT_AGENT_PORT)
+			return SystemConfiguration.LOCAL_SOCKNAME + "." + port;
+		return SystemConfiguration.LOCAL_SOCKNAME;
+	}
+
+	/**
+	 * Unix domain socket channels arrived in Java 16, and we still build for older versions,
+	 * so we get at them by reflection.
+	 */
+	protected static SocketChannel openUnixSocket() throws IOException {
+		return openUnixSocket("java.net.StandardProtocolFamily");
+	}
+
+	/**
+	 * @param familyClassName the protocol family enum with a UNIX member. Only tests should
+	 * 	need anything other than the standard one.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static SocketChannel openUnixSocket(String familyClassName) throws IOException {
+		try {
+			Class familyClass = Class.forName(familyClassName);
+			Object unix = Enum.valueOf(familyClass, "UNIX");
+			Method open = SocketChannel.class.getMethod("open", Class.forName("java.net.ProtocolFamily"));
+			return (SocketChannel)open.invoke(null, unix);
+		} catch (InvocationTargetException ite) {
+			if (ite.getCause() instanceof IOException)
+				throw (IOException)ite.getCause();
+			throw new IOException("Cannot open unix domain socket: " + ite.getCause());
+		} catch (Exception e) {
+			throw new IOException("Unix domain sockets need Java 16 or later: " + e);
+		}
+	}
+
+	protected static SocketAddress unixSocketAddress(String path) throws IOException {
+		return unixSocketAddress("java.net.UnixDomainSocketAddress", path);
+	}
+
+	/**
+	 * @param addressClassName the unix domain socket address class. Only tests should need
+	 * 	anything other than the standard one.
+	 */
+	static SocketAddress unixSocketAddress(String addressClassName, String path) throws IOException {
+		try {
+			Method of = Class.forName(addressClassName).getMethod("of", String.class);
+			return (SocketAddress)of.invoke(null, path);
+		} catch (Exception e) {
+			throw new IOException("Unix domain sockets need Java 16 or later: " + e);
+		}
+	}
+
 	/**
 	 * Get the next packet from the network. It could be either an interest or data. If ndnd is
 	 * down this is where we do a sleep to avoid a busy wait.  We go ahead and try to read in
@@ -210,11 +286,16 @@ public class NDNNetworkChannel extends InputStream {
 	 * to us are complete ndn packets. This code does not have the ability to recover from
 	 * receiving a partial ndn packet followed by correctly formed ones.
 	 *
+	 * If buffer decoding is configured (see SystemConfiguration.BUFFER_DECODING) the packet is
+	 * decoded directly out of the receive buffer instead - see getBufferedPacket().
+	 *
 	 * @return a ContentObject, an Interest, or null if there's no data waiting
 	 * @throws IOException
 	 */
 	public XMLEncodable getPacket() throws IOException {
 		if (isConnected()) {
+			if (_bufferDecoding)
+				return getBufferedPacket();
 			_mark = -1;
 			_readLimit = 0;
 			if (! _datagram.hasRemaining()) {
@@ -245,6 +326,70 @@ public class NDNNetworkChannel extends InputStream {
 		return null;
 	}
 
+	/**
+	 * Decode the next packet straight out of the receive buffer. We first check that the buffer
+	 * holds a complete packet, reading in more data if it doesn't, so the decoder never has to
+	 * wait for data in the middle of a packet. For TCP a partial packet at the end of the buffer
+	 * is moved to the start of the buffer before reading more, and the buffer is grown if the
+	 * packet won't fit in it. For UDP a partial packet is thrown away and each datagram is read
+	 * into an empty buffer.
+	 *
+	 * On seeing bad data we skip a byte and try again with the next one, which is a simpler
+	 * version of the resync done by the decoder in the stream case.
+	 *
+	 * @return a ContentObject, an Interest, or null if there's no complete packet waiting
+	 * @throws IOException
+	 */
+	private XMLEncodable getBufferedPacket() throws IOException {
+		int length = -1;
+		while (true) {
+			if (_datagram.hasRemaining()) {
+				try {
+					length = BinaryXMLDecoder.frameLength(_datagram);
+				} catch (ContentDecodingException cde) {
+					Log.severe(Log.FAC_NETMANAGER, "NetworkChannel {0}: saw error: {1} - skipping a byte",  _channelId, cde.getMessage());
+					_datagram.get();
+					return null;
+				}
+				if (length >= 0)
+					break;
+			}
+
+			int remaining = _datagram.remaining();
+			if (null != _ncDGrmChannel) {
+				// Packets don't span datagrams, so anything left can never be completed. Start
+				// again with an empty buffer so the next datagram can't be truncated.
+				if (remaining > 0)
+					Log.warning(Log.FAC_NETMANAGER, "NetworkChannel {0}: discarding {1} bytes of incomplete packet",  _channelId, remaining);
+				initStream();
+				int ret = doReadIn(0);
+				if (ret <= 0 || !isConnected())
+					return null;
+				continue;
+			}
+
+			// Need more data. Move what we have to the start of the buffer, growing the
+			// buffer if it is already full.
+			if (remaining == 0) {
+				initStream();
+			} else if (_datagram.position() > 0) {
+				_datagram.compact();
+				_datagram.flip();
+			} else if (remaining == _datagram.capacity()) {
+				ByteBuffer newBuffer = ByteBuffer.allocateDirect(_datagram.capacity() * 2);
+				newBuffer.put(_datagram);
+				newBuffer.flip();
+				_datagram = newBuffer;
+			}
+			int ret = doReadIn(_datagram.limit());
+			_datagram.position(0);
+			if (ret <= 0 || !isConnected())
+				return null;
+		}
+		_decoder.beginDecoding(_datagram);
+		return _decoder.getPacket();
+	}
+
 	/**
 	 * Close the channel depending on the protocol
 	 * @throws IOException
@@ -328,6 +473,75 @@ public class NDNNetworkChannel extends InputStream {
 		return -1;
 	}
 
+	/**
+	 * Write several buffers to ndnd with as few system calls as possible. Each buffer must
+	 * contain one or more complete packets. For TCP the buffers are written with a gathering
+	 * write. For UDP consecutive buffers are combined into datagrams of up to MAX_PAYLOAD bytes
+	 * (ndnd will decode more than one packet from a datagram); a buffer larger than that is sent
+	 * in a datagram of its own.
+	 *
+	 * @param srcs - ByteBuffers to write
+	 * @return - number of bytes written
+	 * @throws IOException
+	 */
+	public long write(ByteBuffer[] srcs) throws IOException {
+		return write(srcs, 0, srcs.length);
+	}
+
+	/**
+	 * Write length buffers from srcs starting at offset
+	 * @see #write(ByteBuffer[])
+	 */
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		if (! isConnected())
+			return -1;
+		if (Log.isLoggable(Log.FAC_NETMANAGER, Level.FINEST))
+			Log.finest(Log.FAC_NETMANAGER,
+					"NetworkChannel {0}: write() of {1} buffers on port {2}", _channelId, length, _ncLocalPort);
+
+		int last = offset + length;
+		try {
+			long written = 0;
+			if (_ncDGrmChannel != null) {
+				int start = offset;
+				while (start < last) {
+					int end = start + 1;
+					long size = srcs[start].remaining();
+					while (end < last && size + srcs[end].remaining() <= NDNNetworkManager.MAX_PAYLOAD) {
+						size += srcs[end].remaining();
+						end++;
+					}
+					written += _ncDGrmChannel.write(srcs, start, end - start);
+					start = end;
+				}
+				return written;
+			} else {
+				// XXX -this depends on synchronization in caller, which is less than ideal.
+				int first = offset;
+				while (first < last) {
+					if (! srcs[first].hasRemaining()) {
+						first++;
+						continue;
+					}
+					if (! isConnected())
+						return -1;
+					long b = _ncSockChannel.write(srcs, first, last - first);
+					if (b > 0) {
+						written += b;
+					} else {
+						_ncWriteSelector.selectedKeys().clear();
+						_ncWriteSelector.select();
+					}
+				}
+				return written;
+			}
+		} catch (PortUnreachableException pue) {}
+		  catch (ClosedChannelException cce) {}
+		Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: closing due to error on write", _channelId);
+		close(true);
+		return -1;
+	}
+
 	/**
 	 * Force wakeup from a select
 	 * @return the selector
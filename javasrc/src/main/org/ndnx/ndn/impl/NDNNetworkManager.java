@@ -30,11 +30,19 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.NotYetConnectedException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 
 import org.ndnx.ndn.NDNContentHandler;
@@ -45,7 +53,8 @@ import org.ndnx.ndn.config.SystemConfiguration;
 import org.ndnx.ndn.impl.NDNStats.NDNEnumStats;
 import org.ndnx.ndn.impl.NDNStats.NDNEnumStats.IStatsEnum;
 import org.ndnx.ndn.impl.InterestTable.Entry;
-import org.ndnx.ndn.impl.encoding.GenericXMLEncodable;
+import org.ndnx.ndn.impl.encoding.BinaryXMLEncoder;
+import org.ndnx.ndn.impl.encoding.ByteBufferOutputStream;
 import org.ndnx.ndn.impl.encoding.XMLEncodable;
 import org.ndnx.ndn.impl.support.Log;
 import org.ndnx.ndn.io.content.ContentEncodingException;
@@ -68,10 +77,18 @@ import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
  *
  * The read API is implemented in a thread that continuously reads from ndnd. Whenever the thread reads
  * a complete packet, it calls back a handler or handlers that have been previously setup by users. Since
- * there is only one callback thread, users must take care to avoid slow or blocking processing directly
+ * there is by default only one callback thread, users must take care to avoid slow or blocking processing directly
  * within the callback. This is similar to the restrictions on the event dispatching thread in Swing. The
  * setup of callback handlers should also normally be done via the NDNHandle API.
  *
+ * Optionally (see SystemConfiguration.DISPATCH_THREADS) the callbacks can be run by a set of dispatch
+ * threads instead. The reader thread then only decodes packets, matches them against the registered
+ * interests and filters, and queues them for delivery. Each handler is always called from the same
+ * dispatch thread, so deliveries to any one handler stay in the order the packets were received.
+ *
+ * Similarly, writes to ndnd can optionally (see SystemConfiguration.WRITER_THREAD) be done by a
+ * separate writer thread which batches packets queued by any number of sending threads.
+ *
  * The class also has a separate timer process which is used to refresh unsatisfied interests and to
  * keep UDP connections alive by sending a heartbeat packet at regular intervals.
  *
@@ -103,10 +120,15 @@ public class NDNNetworkManager implements Runnable {
 
 	/**
 	 *  Definitions for which network protocol to use.  This allows overriding
-	 *  the current default.
+	 *  the current default. UNIX connects to ndnd's unix domain socket (see
+	 *  SystemConfiguration.LOCAL_SOCKNAME), which needs Java 16 or later. LOOPBACK doesn't use
+	 *  ndnd at all - packets are forwarded between the network managers in this JVM by
+	 *  NDNLoopbackForwarder (see NDNLoopbackChannel). Neither is an IP protocol, so their
+	 *  values are never sent to ndnd. UNIX has a value outside the IP protocol numbers so that
+	 *  it can't be mistaken for one.
 	 */
 	public enum NetworkProtocol {
-		UDP (17), TCP (6);
+		UDP (17), TCP (6), UNIX (-1), LOOPBACK (0);
 		NetworkProtocol(Integer i) { this._i = i; }
 		private final Integer _i;
 		public Integer value() { return _i; }
@@ -176,10 +198,21 @@ public class NDNNetworkManager implements Runnable {
 	protected long _currentHandler = 0;
 	protected long _lastHandler = -1;
 
-	// Atomic cancel
-	protected InterestRegistration _beingDelivered = null;
+	// Atomic cancel - with dispatch threads more than one registration can be in delivery at once
+	protected ArrayList<InterestRegistration> _beingDelivered = new ArrayList<InterestRegistration>();
+	// Registrations with content waiting in, or being run from, a dispatch lane. Also protected by _beingDeliveredLock
+	protected ArrayList<InterestRegistration> _queuedForDelivery = new ArrayList<InterestRegistration>();
 	protected Object _beingDeliveredLock = new Object();
 
+	// Optional dispatch stage. If there are dispatch lanes, handlers are run on them rather than
+	// on the reader thread. Each lane is single threaded to preserve per-handler ordering.
+	// The lanes are set up before the reader thread starts, and never change after that.
+	protected int _dispatchThreads = SystemConfiguration.DISPATCH_THREADS;
+	protected volatile ThreadPoolExecutor[] _dispatchLanes = null;
+
+	// Optional writer thread
+	protected ChannelWriter _writer = null;
+
 	/**
 	 * Keep track of prefixes that are actually registered with ndnd (as opposed to Filters used
 	 * to dispatch interests). There may be several filters for each registered prefix.
@@ -251,8 +284,10 @@ public class NDNNetworkManager implements Runnable {
             long ourTime = System.currentTimeMillis();
             long minInterestRefreshTime = PERIOD + ourTime;
 
-			// Re-express interests that need to be re-expressed
+			// Re-express interests that need to be re-expressed. These are written to the
+			// channel all together to reduce the number of system calls.
 			try {
+				ArrayList<Interest> refreshes = new ArrayList<Interest>();
 				for (Entry<InterestRegistration> entry : _myInterests.values()) {
 					InterestRegistration reg = entry.value();
 					 // allow some slop for scheduling
@@ -261,16 +296,18 @@ public class NDNNetworkManager implements Runnable {
                                     Log.finer(Log.FAC_NETMANAGER, "Refresh interest: {0}", reg.interest);
                             _lastHeartbeat = ourTime;
                             reg.nextRefresh = ourTime + SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT;
-;
-                            try {
-                                write(reg.interest);
-                        } catch (NotYetConnectedException nyce) {
-                                refreshError = true;
-                        }
+                            refreshes.add(reg.interest);
                     }
 					if (minInterestRefreshTime > reg.nextRefresh)
 						minInterestRefreshTime = reg.nextRefresh;
 				}
+				if (refreshes.size() > 0) {
+					try {
+						write(refreshes.toArray(new Interest[refreshes.size()]));
+					} catch (NotYetConnectedException nyce) {
+						refreshError = true;
+					}
+				}
 
 			} catch (ContentEncodingException xmlex) {
                 Log.severe(Log.FAC_NETMANAGER, "PeriodicWriter interest refresh thread failure (Malformed datagram): {0}", xmlex.getMessage());
@@ -401,6 +438,9 @@ public class NDNNetworkManager implements Runnable {
 	private void setupTimers() throws IOException {
 		synchronized (_timersSetupLock) {
 			if (!_timersSetup) {
+				// The reader thread dispatches to the lanes, so they have to be there first
+				setupDispatchLanes();
+
 				// Create main processing thread
 				_thread = new Thread(this, "NDNNetworkManager " + _managerId);
 				_thread.setPriority(Thread.MAX_PRIORITY);
@@ -421,6 +461,109 @@ public class NDNNetworkManager implements Runnable {
 		}
 	}
 
+	/**
+	 * Create the dispatch threads if we are using them. Each lane is a single thread executor
+	 * so that everything queued to a lane is run in order.
+	 */
+	private void setupDispatchLanes() {
+		if (_dispatchThreads <= 0)
+			return;
+		if( Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO) )
+			Log.info(Log.FAC_NETMANAGER, formatMessage("Using {0} dispatch threads for handler delivery"), _dispatchThreads);
+		ThreadPoolExecutor[] lanes = new ThreadPoolExecutor[_dispatchThreads];
+		for (int i = 0; i < lanes.length; i++) {
+			final String threadName = "NDNNetworkManager " + _managerId + " dispatch " + i;
+			lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, threadName);
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		_dispatchLanes = lanes;
+	}
+
+	/**
+	 * Choose the dispatch lane for a handler. Equal handlers always get the same lane.
+	 * @param handler the handler or null if none
+	 * @param other object to use to choose a lane if there is no handler
+	 * @return the lane
+	 */
+	private ThreadPoolExecutor getDispatchLane(Object handler, Object other) {
+		int hash = (null != handler) ? handler.hashCode() : System.identityHashCode(other);
+		return _dispatchLanes[(hash & Integer.MAX_VALUE) % _dispatchLanes.length];
+	}
+
+	/**
+	 * Delivery of content which has been queued to a dispatch lane. The registration stays on
+	 * _queuedForDelivery until we are done so that cancelInterest can see it, and we don't call
+	 * the handler if it has been cancelled since the content was queued.
+	 */
+	private class ContentDelivery implements Runnable {
+		private final InterestRegistration _ireg;
+		private final ContentObject _co;
+		private final long _queuedTime = System.nanoTime();
+
+		public ContentDelivery(InterestRegistration ireg, ContentObject co) {
+			_ireg = ireg;
+			_co = co;
+		}
+
+		public void run() {
+			_stats.addSample(StatsEnum.ContentQueueTime, System.nanoTime() - _queuedTime);
+			boolean cancelled;
+			synchronized (_beingDeliveredLock) {
+				cancelled = _ireg.cancelled;
+			}
+			try {
+				if (cancelled) {
+					_stats.increment(StatsEnum.DeliverContentCancelled);
+					if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER) )
+						Log.finer(Log.FAC_NETMANAGER, "Content callback skipped (cancelled) for: {0}", _ireg.interest.name());
+				} else
+					deliverContent(_ireg, _co);
+			} finally {
+				synchronized (_beingDeliveredLock) {
+					Iterator<InterestRegistration> it = _queuedForDelivery.iterator();
+					while (it.hasNext()) {
+						if (it.next() == _ireg) {
+							it.remove();
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delivery of an interest to one filter handler, queued to that handler's dispatch lane.
+	 * If the handler doesn't handle the interest, it is passed on to the lane of the next
+	 * matching handler.
+	 */
+	private class InterestDelivery implements Runnable {
+		private final List<Filter> _filters;
+		private final int _index;
+		private final InterestRegistration _ireg;
+		private final Interest _interest;
+		private final long _queuedTime = System.nanoTime();
+
+		public InterestDelivery(List<Filter> filters, int index, InterestRegistration ireg, Interest interest) {
+			_filters = filters;
+			_index = index;
+			_ireg = ireg;
+			_interest = interest;
+		}
+
+		public void run() {
+			_stats.addSample(StatsEnum.InterestQueueTime, System.nanoTime() - _queuedTime);
+			if (!deliverInterest(_filters.get(_index), _interest))
+				dispatchInterest(_filters, _index + 1, _ireg, _interest);
+		}
+	}
+
 	/** Generic superclass for registration objects that may have a callback handler
 	 */
 	protected class CallbackHandlerRegistration {
@@ -492,7 +635,7 @@ public class NDNNetworkManager implements Runnable {
 		 */
 		public void deliver(ContentObject co) {
 			synchronized (_beingDeliveredLock) {
-				_beingDelivered = this;
+				_beingDelivered.add(this);
 			}
 			try {
 				if (null != this.handler) {
@@ -542,7 +685,7 @@ public class NDNNetworkManager implements Runnable {
 			}
 
 			synchronized (_beingDeliveredLock) {
-				_beingDelivered = null;
+				_beingDelivered.remove(this);
 			}
 		}
 
@@ -673,8 +816,16 @@ public class NDNNetworkManager implements Runnable {
 			setTap(unique_tapname);
 		}
 
-		_channel = new NDNNetworkChannel(_host, _port, _protocol, _tapStreamIn);
+		if (_protocol == NetworkProtocol.LOOPBACK)
+			_channel = new NDNLoopbackChannel(NDNLoopbackForwarder.getDefault(), _tapStreamIn);
+		else
+			_channel = new NDNNetworkChannel(_host, _port, _protocol, _tapStreamIn);
 		_channel.open();
+
+		if (SystemConfiguration.WRITER_THREAD) {
+			_writer = new ChannelWriter();
+			_writer.start();
+		}
 	}
 
 	/**
@@ -686,8 +837,14 @@ public class NDNNetworkManager implements Runnable {
 		_run = false;
 		if (_periodicTimer != null)
 			_periodicTimer.shutdownNow();
+		if (_dispatchLanes != null) {
+			for (ThreadPoolExecutor lane : _dispatchLanes)
+				lane.shutdownNow();
+		}
 		if (_thread != null)
 			_thread.interrupt();
+		if (null != _writer)
+			_writer.shutdown();
 		if (null != _channel) {
 			try {
 				setTap(null);
@@ -719,6 +876,30 @@ public class NDNNetworkManager implements Runnable {
 		}
 	}
 
+	/**
+	 * Set the number of threads used to run content and interest handlers. 0 means run them
+	 * on the reader thread. This has no effect once the network manager has started processing
+	 * (i.e. after the first interest or filter has been registered).
+	 * @param threads the number of dispatch threads
+	 */
+	public void setDispatchThreads(int threads) {
+		synchronized (_timersSetupLock) {
+			if (_timersSetup) {
+				Log.warning(Log.FAC_NETMANAGER, formatMessage("setDispatchThreads called after startup - ignored"));
+				return;
+			}
+			_dispatchThreads = threads;
+		}
+	}
+
+	/**
+	 * Get the number of threads used to run content and interest handlers
+	 * @return the number of dispatch threads, 0 if handlers are run on the reader thread
+	 */
+	public int getDispatchThreads() {
+		return _dispatchThreads;
+	}
+
 	/**
 	 * Get the protocol this network manager is using
 	 * @return the protocol
@@ -826,6 +1007,23 @@ public class NDNNetworkManager implements Runnable {
 		return co;
 	}
 
+	/**
+	 * Write several content objects to ndnd at once. This uses fewer system calls than
+	 * putting them individually.
+	 *
+	 * @param cos the content
+	 * @throws IOException
+	 */
+	public void put(ContentObject [] cos) throws IOException {
+		_stats.increment(StatsEnum.Puts, cos.length);
+
+		try {
+			write(cos);
+		} catch (ContentEncodingException e) {
+			Log.warning(Log.FAC_NETMANAGER, formatMessage("Exception in lowest-level put of {0} objects! {1}"), cos.length, e);
+		}
+	}
+
 	/**
 	 * get content matching an interest from ndnd. Expresses an interest, waits for ndnd to
 	 * return matching the data, then removes the interest and returns the data to the caller.
@@ -947,10 +1145,17 @@ public class NDNNetworkManager implements Runnable {
 		// Remove interest from repeated presentation to the network.
 		InterestRegistration reg = unregisterInterest(caller, interest, handler);
 
-		// Make sure potential remnants of cancelled interest are also cancelled
+		// Make sure potential remnants of cancelled interest are also cancelled, including
+		// content for it that is still waiting in a dispatch lane
 		synchronized (_beingDeliveredLock) {
-			if (null != _beingDelivered  && _beingDelivered.equals(reg))
-				_beingDelivered.cancelled = true;
+			for (InterestRegistration delivering : _beingDelivered) {
+				if (delivering.equals(reg))
+					delivering.cancelled = true;
+			}
+			for (InterestRegistration queued : _queuedForDelivery) {
+				if (queued.equals(reg))
+					queued.cancelled = true;
+			}
 		}
 	}
 
@@ -1065,7 +1270,9 @@ public class NDNNetworkManager implements Runnable {
 	 */
     private RegisteredPrefix registerPrefix(ContentName filter, Integer registrationFlags) throws NDNDaemonException {
     	ForwardingEntry entry = null;
-    	if (_channel.isConnected()) {
+    	if (_channel instanceof NDNLoopbackChannel) {
+    		entry = ((NDNLoopbackChannel)_channel).registerPrefix(filter, registrationFlags);
+    	} else if (_channel.isConnected()) {
 	    	if (null == registrationFlags) {
 				entry = _prefixMgr.selfRegisterPrefix(filter);
 			} else {
@@ -1136,7 +1343,11 @@ public class NDNNetworkManager implements Runnable {
 						if (null == _prefixMgr) {
 							_prefixMgr = new PrefixRegistrationManager(this);
 						}
-						if (_channel.isConnected()) {
+						if (_channel instanceof NDNLoopbackChannel) {
+							// Nothing to wait for - finish the deregistration ourselves
+							((NDNLoopbackChannel)_channel).unregisterPrefix(filter);
+							prefix.handleContent(null, null);
+						} else if (_channel.isConnected()) {
 							ForwardingEntry entry = prefix._forwarding;
 							_prefixMgr.unRegisterPrefix(filter, prefix, entry.getFaceID());
 						} else
@@ -1193,6 +1404,14 @@ public class NDNNetworkManager implements Runnable {
 			Log.finest(Log.FAC_NETMANAGER, formatMessage("Wrote content object: {0}"), data.name());
 	}
 
+	protected void write(ContentObject [] data) throws ContentEncodingException {
+		_stats.increment(StatsEnum.WriteObject, data.length);
+
+		writeInner(data);
+		if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINEST) )
+			Log.finest(Log.FAC_NETMANAGER, formatMessage("Wrote {0} content objects"), data.length);
+	}
+
 	/**
 	 * Write an interest directly to ndnd
 	 * Don't do this unless you know what you are doing! See NDNHandle.expressInterest for the proper
@@ -1206,32 +1425,229 @@ public class NDNNetworkManager implements Runnable {
 		writeInner(interest);
 	}
 
+	/**
+	 * Write several interests directly to ndnd at once
+	 * @see #write(Interest)
+	 *
+	 * @param interests
+	 * @throws ContentEncodingException
+	 */
+	public void write(Interest [] interests) throws ContentEncodingException {
+		_stats.increment(StatsEnum.WriteInterest, interests.length);
+		writeInner(interests);
+	}
+
+	/**
+	 * Per thread state for encoding packets on the send path. Packets are encoded straight into
+	 * a reusable direct buffer which is then handed to the channel, so sending a packet doesn't
+	 * need a new encoder, byte array and ByteBuffer each time. The wire encoding to ndnd is
+	 * always ndnb, regardless of the default codec.
+	 */
+	protected static class PacketEncoder {
+		protected final BinaryXMLEncoder _encoder = new BinaryXMLEncoder();
+		protected final ByteBufferOutputStream _ostream = new ByteBufferOutputStream(MAX_PAYLOAD, true);
+
+		/**
+		 * @param packet packet to encode
+		 * @return the encoded packet - only valid until the next call to encode by this thread
+		 * @throws ContentEncodingException
+		 */
+		public ByteBuffer encode(XMLEncodable packet) throws ContentEncodingException {
+			_ostream.reset();
+			append(packet);
+			return _ostream.getBuffer();
+		}
+
+		/**
+		 * @param packets packets to encode
+		 * @return the encoded packets, one per buffer - only valid until the next call to encode
+		 * 		by this thread
+		 * @throws ContentEncodingException
+		 */
+		public ByteBuffer [] encode(XMLEncodable [] packets) throws ContentEncodingException {
+			_ostream.reset();
+			ByteBuffer [] result = new ByteBuffer[packets.length];
+			int start = 0;
+			for (int i = 0; i < packets.length; i++) {
+				append(packets[i]);
+				result[i] = _ostream.getBuffer(start, _ostream.size());
+				start = _ostream.size();
+			}
+			return result;
+		}
+
+		protected void append(XMLEncodable packet) throws ContentEncodingException {
+			_encoder.beginEncoding(_ostream);
+			packet.encode(_encoder);
+			_encoder.endEncoding();
+		}
+	}
+
+	protected static final ThreadLocal<PacketEncoder> _packetEncoders = new ThreadLocal<PacketEncoder>() {
+		@Override
+		protected PacketEncoder initialValue() {
+			return new PacketEncoder();
+		}
+	};
+
+	/**
+	 * Writer thread used if SystemConfiguration.WRITER_THREAD is set. Senders encode their packets
+	 * and queue them here without taking the channel lock, and the writer thread drains the queue
+	 * writing as many packets as it can with each gathering write. If more than
+	 * SystemConfiguration.WRITE_QUEUE_LIMIT bytes are queued (normally because the socket buffer is
+	 * full) senders wait until the writer has caught up. This pushes back on producers such as
+	 * NDNFlowControl rather than letting the queue grow without bound.
+	 */
+	protected class ChannelWriter implements Runnable {
+		protected static final int MAX_BATCH = 64;		// most packets written at once
+		protected static final int MAX_POOLED = 256;	// most buffers kept for reuse
+		protected static final long IDLE_WAIT = 100000000L; // in ns
+
+		protected final ConcurrentLinkedQueue<ByteBuffer> _queue = new ConcurrentLinkedQueue<ByteBuffer>();
+		protected final AtomicLong _queuedBytes = new AtomicLong(0);
+		protected final ConcurrentLinkedQueue<ByteBuffer> _pool = new ConcurrentLinkedQueue<ByteBuffer>();
+		protected final AtomicInteger _poolSize = new AtomicInteger(0);
+		protected final AtomicInteger _waiting = new AtomicInteger(0);
+		protected final Object _drainLock = new Object();
+		protected final ByteBuffer [] _batch = new ByteBuffer[MAX_BATCH];
+		protected volatile boolean _running = true;
+		protected Thread _writerThread = null;
+
+		public void start() {
+			_writerThread = new Thread(this, "NDNNetworkManager " + _managerId + " writer");
+			_writerThread.setDaemon(true);
+			_writerThread.start();
+		}
+
+		/**
+		 * Stop the writer after it has written anything already queued
+		 */
+		public void shutdown() {
+			_running = false;
+			LockSupport.unpark(_writerThread);
+			synchronized (_drainLock) {
+				_drainLock.notifyAll();
+			}
+			try {
+				_writerThread.join(PERIOD);
+			} catch (InterruptedException e) {}
+		}
+
+		/**
+		 * Queue a packet to be written. The packet is copied so the caller can reuse its buffer.
+		 * Only blocks if the queue is over its limit.
+		 * @param packet the encoded packet
+		 */
+		public void enqueue(ByteBuffer packet) {
+			int length = packet.remaining();
+			ByteBuffer copy = null;
+			if (length <= MAX_PAYLOAD) {
+				copy = _pool.poll();
+				if (null != copy)
+					_poolSize.decrementAndGet();
+			}
+			if (null == copy)
+				copy = ByteBuffer.allocateDirect(length > MAX_PAYLOAD ? length : MAX_PAYLOAD);
+			copy.clear();
+			copy.put(packet);
+			copy.flip();
+			long queued = _queuedBytes.addAndGet(length);
+			_queue.offer(copy);
+			LockSupport.unpark(_writerThread);
+			if (queued > SystemConfiguration.WRITE_QUEUE_LIMIT)
+				waitForDrain();
+		}
+
+		protected void waitForDrain() {
+			_stats.increment(StatsEnum.WriteQueueBlocked);
+			_waiting.incrementAndGet();
+			try {
+				synchronized (_drainLock) {
+					while (_running && _channel.isConnected() && _queuedBytes.get() > SystemConfiguration.WRITE_QUEUE_LIMIT) {
+						_drainLock.wait(PERIOD);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				_waiting.decrementAndGet();
+			}
+		}
+
+		public void run() {
+			while (true) {
+				int count = 0;
+				long bytes = 0;
+				ByteBuffer packet;
+				while (count < MAX_BATCH && null != (packet = _queue.poll())) {
+					bytes += packet.remaining();
+					_batch[count++] = packet;
+				}
+				if (count == 0) {
+					if (!_running)
+						break;
+					LockSupport.parkNanos(this, IDLE_WAIT);
+					continue;
+				}
+				_stats.addSample(StatsEnum.WriteBatchSize, count);
+				try {
+					writeDatagrams(_batch, count);
+				} catch (IOException io) {
+					_stats.increment(StatsEnum.WriteErrors);
+					Log.warning(Log.FAC_NETMANAGER, formatMessage("Error sending packets: " + io.toString()));
+				} catch (RuntimeException e) {
+					// Such as NotYetConnectedException while we reconnect. The packets are lost as
+					// they would be with an IOException, but we must keep going or nothing more is sent.
+					_stats.increment(StatsEnum.WriteErrors);
+					Log.warning(Log.FAC_NETMANAGER, formatMessage("Unexpected error sending packets: " + e.toString()));
+					Log.logStackTrace(Log.FAC_NETMANAGER, Level.WARNING, e);
+				}
+				_queuedBytes.addAndGet(-bytes);
+				for (int i = 0; i < count; i++) {
+					ByteBuffer done = _batch[i];
+					_batch[i] = null;
+					if (done.capacity() == MAX_PAYLOAD && _poolSize.get() < MAX_POOLED) {
+						_poolSize.incrementAndGet();
+						_pool.offer(done);
+					}
+				}
+				if (_waiting.get() > 0) {
+					synchronized (_drainLock) {
+						_drainLock.notifyAll();
+					}
+				}
+			}
+			if( Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO) )
+				Log.info(Log.FAC_NETMANAGER, formatMessage("Writer thread stopped"));
+		}
+	}
+
 	// DKS TODO unthrown exception
-	private void writeInner(GenericXMLEncodable packet) throws ContentEncodingException {
+	private void writeInner(XMLEncodable packet) throws ContentEncodingException {
 		try {
-			byte[] bytes = packet.encode();
-			ByteBuffer datagram = ByteBuffer.wrap(bytes);
+			ByteBuffer datagram = _packetEncoders.get().encode(packet);
+			if (null != _writer) {
+				_writer.enqueue(datagram);
+				return;
+			}
+			int length = datagram.remaining();
 			synchronized (_channel) {
+				ByteBuffer tapView = (null != _tapStreamOut) ? datagram.duplicate() : null;
 				int result = _channel.write(datagram);
 				if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINEST) )
 					Log.finest(Log.FAC_NETMANAGER, formatMessage("Wrote datagram (" + datagram.position() + " bytes, result " + result + ")"));
 
-				if( result < bytes.length ) {
+				if( result < length ) {
 					_stats.increment(StatsEnum.WriteUnderflows);
 					if( Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO) )
 						Log.info(Log.FAC_NETMANAGER,
 								formatMessage("Wrote datagram {0} bytes to channel, but packet was {1} bytes"),
 								result,
-								bytes.length);
+								length);
 				}
 
-				if (null != _tapStreamOut) {
-					try {
-						_tapStreamOut.write(bytes);
-					} catch (IOException io) {
-						Log.warning(Log.FAC_NETMANAGER, formatMessage("Unable to write packet to tap stream for debugging"));
-					}
-				}
+				if (null != tapView)
+					writeTap(tapView);
 			}
 		} catch (IOException io) {
 			_stats.increment(StatsEnum.WriteErrors);
@@ -1242,6 +1658,72 @@ public class NDNNetworkManager implements Runnable {
 		}
 	}
 
+	/**
+	 * Write several packets to the channel using a single gathering write where possible
+	 */
+	private void writeInner(XMLEncodable [] packets) throws ContentEncodingException {
+		try {
+			ByteBuffer [] datagrams = _packetEncoders.get().encode(packets);
+			if (null != _writer) {
+				for (ByteBuffer datagram : datagrams)
+					_writer.enqueue(datagram);
+				return;
+			}
+			writeDatagrams(datagrams, datagrams.length);
+		} catch (IOException io) {
+			_stats.increment(StatsEnum.WriteErrors);
+
+			// We do not see errors on send typically even if
+			// agent is gone, so log each but do not track
+			Log.warning(Log.FAC_NETMANAGER, formatMessage("Error sending packet: " + io.toString()));
+		}
+	}
+
+	/**
+	 * Write the first count of datagrams to the channel using a single gathering write where possible
+	 */
+	private void writeDatagrams(ByteBuffer [] datagrams, int count) throws IOException {
+		long length = 0;
+		for (int i = 0; i < count; i++)
+			length += datagrams[i].remaining();
+		synchronized (_channel) {
+			ByteBuffer [] tapViews = null;
+			if (null != _tapStreamOut) {
+				tapViews = new ByteBuffer[count];
+				for (int i = 0; i < count; i++)
+					tapViews[i] = datagrams[i].duplicate();
+			}
+			long result = _channel.write(datagrams, 0, count);
+			if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINEST) )
+				Log.finest(Log.FAC_NETMANAGER, formatMessage("Wrote " + count + " datagrams (" + length + " bytes, result " + result + ")"));
+
+			if( result < length ) {
+				_stats.increment(StatsEnum.WriteUnderflows);
+				if( Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO) )
+					Log.info(Log.FAC_NETMANAGER,
+							formatMessage("Wrote datagrams {0} bytes to channel, but packets were {1} bytes"),
+							result,
+							length);
+			}
+
+			if (null != tapViews) {
+				for (ByteBuffer tapView : tapViews)
+					writeTap(tapView);
+			}
+		}
+	}
+
+	/**
+	 * Must be called with the channel locked
+	 */
+	private void writeTap(ByteBuffer packet) {
+		try {
+			_tapStreamOut.getChannel().write(packet);
+		} catch (IOException io) {
+			Log.warning(Log.FAC_NETMANAGER, formatMessage("Unable to write packet to tap stream for debugging"));
+		}
+	}
+
 	/**
 	 * Internal registration of interest to callback for matching data relationship.
 	 *
@@ -1351,42 +1833,98 @@ public class NDNNetworkManager implements Runnable {
 	}
 
 	/**
-	 * Internal delivery of interests to pending filter handlers
+	 * Internal delivery of interests to pending filter handlers. If we are using dispatch threads
+	 * each handler is called from its own dispatch lane.
 	 * @param ireg
 	 */
 	protected void deliverInterest(InterestRegistration ireg, Interest interest) {
 		_stats.increment(StatsEnum.DeliverInterest);
 
-		// Call any handlers with matching filters
-		for (Filter filter : _myFilters.getValues(ireg.interest.name())) {
+		List<Filter> filters = _myFilters.getValues(ireg.interest.name());
+		if (null == _dispatchLanes) {
+			// Call any handlers with matching filters
+			for (Filter filter : filters) {
+				if (filter.owner != ireg.owner) {
+					if (deliverInterest(filter, interest))
+						break;	// We only run interest handlers until one succeeds
+				}
+			}
+			return;
+		}
+		dispatchInterest(filters, 0, ireg, interest);
+	}
+
+	/**
+	 * Queue an interest to the dispatch lane of the next matching filter handler. Handlers are
+	 * still tried one at a time in order, until one of them handles the interest.
+	 * @param filters the matching filters in the order they should be tried
+	 * @param start index of the first filter to try
+	 * @param ireg
+	 * @param interest
+	 */
+	protected void dispatchInterest(List<Filter> filters, int start, InterestRegistration ireg, Interest interest) {
+		for (int i = start; i < filters.size(); i++) {
+			Filter filter = filters.get(i);
 			if (filter.owner != ireg.owner) {
-				if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER) )
-					Log.finer(Log.FAC_NETMANAGER, formatMessage("Schedule delivery for interest: {0}"), interest);
-				_stats.increment(StatsEnum.DeliverInterestMatchingFilters);
-				long startTime = System.nanoTime();
-				boolean succeeded = filter.deliver(interest);
-				_stats.addSample(StatsEnum.InterestHandlerTime, System.nanoTime() - startTime);
-				if (succeeded)
-					break;	// We only run interest handlers until one succeeds
+				getDispatchLane(filter.handler, ireg).execute(new InterestDelivery(filters, i, ireg, interest));
+				return;
 			}
 		}
 	}
 
 	/**
-	 *  Deliver data to all blocked getters and registered interests
+	 * Call a single matching filter handler
+	 * @param filter
+	 * @param interest
+	 * @return true if the handler handled the interest
+	 */
+	protected boolean deliverInterest(Filter filter, Interest interest) {
+		if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER) )
+			Log.finer(Log.FAC_NETMANAGER, formatMessage("Schedule delivery for interest: {0}"), interest);
+		_stats.increment(StatsEnum.DeliverInterestMatchingFilters);
+		long startTime = System.nanoTime();
+		boolean succeeded = filter.deliver(interest);
+		_stats.addSample(StatsEnum.InterestHandlerTime, System.nanoTime() - startTime);
+		return succeeded;
+	}
+
+	/**
+	 *  Deliver data to all blocked getters and registered interests. If we are using dispatch threads
+	 *  the data is queued to the dispatch lane of each matching handler.
 	 * @param co
 	 */
 	protected void deliverContent(ContentObject co) {
 		_stats.increment(StatsEnum.DeliverContent);
 
+		ThreadPoolExecutor[] lanes = _dispatchLanes;
 		for (InterestRegistration ireg : _myInterests.getValues(co)) {
-			_stats.increment(StatsEnum.DeliverContentMatchingInterests);
-			long startTime = System.nanoTime();
-			ireg.deliver(co);
-			_stats.addSample(StatsEnum.ContentHandlerTime, System.nanoTime() - startTime);
+			if (null == lanes) {
+				deliverContent(ireg, co);
+			} else {
+				// Unregister now rather than in the handler so that the same registration can't
+				// be matched again by data read in before the handler gets to run
+				if (null != ireg.handler)
+					unregisterInterest(ireg);
+				synchronized (_beingDeliveredLock) {
+					_queuedForDelivery.add(ireg);
+				}
+				getDispatchLane(ireg.handler, ireg).execute(new ContentDelivery(ireg, co));
+			}
 		}
 	}
 
+	/**
+	 * Deliver data to a single matching registration
+	 * @param ireg
+	 * @param co
+	 */
+	protected void deliverContent(InterestRegistration ireg, ContentObject co) {
+		_stats.increment(StatsEnum.DeliverContentMatchingInterests);
+		long startTime = System.nanoTime();
+		ireg.deliver(co);
+		_stats.addSample(StatsEnum.ContentHandlerTime, System.nanoTime() - startTime);
+	}
+
 	/**
 	 * Diagnostic routine to get a handler stack trace in time of suspected problem
 	 */
@@ -1485,6 +2023,8 @@ public class NDNNetworkManager implements Runnable {
 		WriteObject ("calls", "The number of calls to write(ContentObject)"),
 		WriteErrors ("count", "Error count for writeInner()"),
 		WriteUnderflows ("count", "The count of times when the bytes written to the channel < buffer size"),
+		WriteQueueBlocked ("count", "The number of times a sender waited because the write queue was full"),
+		WriteBatchSize ("packets", "The average number of packets written at once by the writer thread"),
 
 		ExpressInterest ("calls", "The number of calls to expressInterest"),
 		CancelInterest ("calls", "The number of calls to cancelInterest"),
@@ -1494,9 +2034,12 @@ public class NDNNetworkManager implements Runnable {
 		DeliverContentMatchingInterests ("calls", "Count of the number of calls to content handlers"),
 		DeliverContentFailed ("calls", "The number of content deliveries that failed"),
 		DeliverInterestFailed ("calls", "The number of interest deliveries that failed"),
+		DeliverContentCancelled ("calls", "The number of queued content deliveries dropped because the interest was cancelled"),
 
 		InterestHandlerTime("nanos", "The average amount of time spent in interest handlers"),
 		ContentHandlerTime("nanos", "The average amount of time spent in content handlers"),
+		InterestQueueTime("nanos", "The average time interests wait for a dispatch thread"),
+		ContentQueueTime("nanos", "The average time content waits for a dispatch thread"),
 
 		ReceiveObject ("objects", "Receive count of ContentObjects from channel"),
 		ReceiveInterest ("interests", "Receive count of Interests from channel"),
@@ -29,6 +29,14 @@ import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.crypto.BadPaddingException;
@@ -127,6 +135,19 @@ public class NDNSegmenter {
 
 	protected ArrayList<ContentObject> _blocks = new ArrayList<ContentObject>(HOLD_COUNT + 1);
 
+	/**
+	 * Full batches of blocks being signed in the background, oldest first. Each batch is
+	 * put to the flow controller once it and every batch before it has been signed, so
+	 * segments reach the flow controller in the order they were made.
+	 */
+	protected LinkedList<Future<ContentObject[]>> _signing = new LinkedList<Future<ContentObject[]>>();
+
+	/**
+	 * Threads shared by all segmenters to sign batches of blocks.
+	 * @see SystemConfiguration#SIGNING_THREADS
+	 */
+	private static ThreadPoolExecutor _signingPool = null;
+
 	protected NDNHandle _handle;
 
 	/**
@@ -250,6 +271,14 @@ public class NDNSegmenter {
 	 * @return The first segment or null if no segments generated yet
 	 */
 	public ContentObject getFirstSegment() {
+		// Make sure it has its signature
+		for (Future<ContentObject[]> batch : _signing) {
+			try {
+				batch.get();
+			} catch (Exception e) {
+				// reported when the batch is put
+			}
+		}
 		return _firstSegment;
 	}
 
@@ -508,8 +537,10 @@ public class NDNSegmenter {
 					new SignedInfo(publisher, timestamp, type, locator, freshnessSeconds, finalBlockID),
 					content, offset, length, blockWidth, keys, signingKey, null != finalSegmentIndex);
 
-		if (_blocks.size() >= HOLD_COUNT || null != finalSegmentIndex) {
+		if (null != finalSegmentIndex) {
 			outputCurrentBlocks(signingKey);
+		} else if (_blocks.size() >= HOLD_COUNT) {
+			queueCurrentBlocks(signingKey);
 		}
 
 		return nextSegmentIndex;
@@ -618,7 +649,7 @@ public class NDNSegmenter {
 								contentBlocks[i], 0, (i < firstBlockIndex + blockCount - 1)
 								?  contentBlocks[i].length : lastBlockLength, keys);
 			if (_blocks.size() >= HOLD_COUNT) {
-				outputCurrentBlocks(signingKey);
+				queueCurrentBlocks(signingKey);
 			}
 		}
 		if (flushNow || null != finalSegmentIndex) {
@@ -629,8 +660,9 @@ public class NDNSegmenter {
 	}
 
 	/**
-	 * Sign and output all outstanding blocks to the flow controller. This is done when the number of
-	 * blocks reaches HOLD_COUNT (see above) or we are doing a final flush of a file.
+	 * Sign and output all outstanding blocks to the flow controller. This is done when we are doing
+	 * a final flush of a file, or the caller needs everything written so far to be on its way.
+	 * Batches still being signed in the background are waited for and output first.
 	 *
 	 * There are 2 cases:
 	 * 1) we're flushing a single block and can put it out with a straight signature (includes
@@ -644,42 +676,155 @@ public class NDNSegmenter {
 	 * after a bulk signing pass.
 	 *
 	 * @param signingKey
-	 * @param finalFlush sign and dump everything if true
 	 * @throws InvalidKeyException
 	 * @throws SignatureException
 	 * @throws NoSuchAlgorithmException
 	 * @throws IOException
 	 */
 	protected void outputCurrentBlocks(Key signingKey) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException, IOException {
+		ContentObject [] blocks = null;
+		if (_blocks.size() > 0) {
+			blocks = new ContentObject[_blocks.size()];
+			_blocks.toArray(blocks);
+			_blocks.clear();
+			// Sign these while any earlier batches finish in the background
+			signBlocks(blocks, signingKey);
+		}
+		while (!_signing.isEmpty())
+			putSignedBatch();
+		if (null != blocks)
+			putBlocks(blocks);
+	}
+
+	/**
+	 * Start signing a full batch of blocks in the background, so the caller can go on to build
+	 * the next batch. Any earlier batches that have finished signing are output. If too many
+	 * batches are waiting to be signed, wait for the oldest so we don't run ahead of the signers
+	 * without bound. Without signing threads this is the same as outputCurrentBlocks.
+	 *
+	 * @param signingKey
+	 * @throws InvalidKeyException
+	 * @throws SignatureException
+	 * @throws NoSuchAlgorithmException
+	 * @throws IOException
+	 */
+	protected void queueCurrentBlocks(final Key signingKey) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException, IOException {
+		ThreadPoolExecutor pool = getSigningPool();
+		if (null == pool) {
+			outputCurrentBlocks(signingKey);
+			return;
+		}
 		if (_blocks.size() == 0)
 			return;
 
-		if (_blocks.size() == 1) {
+		final ContentObject [] blocks = new ContentObject[_blocks.size()];
+		_blocks.toArray(blocks);
+		_blocks.clear();
+		_signing.add(pool.submit(new Callable<ContentObject[]>() {
+			public ContentObject[] call() throws Exception {
+				signBlocks(blocks, signingKey);
+				return blocks;
+			}
+		}));
 
-			ContentObject co = _blocks.get(0);
-			co.sign(signingKey);
-			if( Log.isLoggable(Level.FINER))
-				Log.finer("NDNSegmenter: putting " + co.name() + " (timestamp: " + co.signedInfo().getTimestamp() + ", length: " + co.contentLength() + ")");
-			_flowControl.put(co);
+		while (!_signing.isEmpty() && (_signing.getFirst().isDone() || _signing.size() > pool.getMaximumPoolSize() + 1))
+			putSignedBatch();
+	}
 
+	/**
+	 * Sign a batch of blocks. A single block gets its own signature, more than one are signed
+	 * with the bulk signer.
+	 */
+	protected void signBlocks(ContentObject [] blocks, Key signingKey) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException, IOException {
+		if (blocks.length == 1) {
+			blocks[0].sign(signingKey);
 		} else {
-
 			// Digest of complete contents
 			// If we're going to unique-ify the block names
 			// (or just in general) we need to incorporate the names
 			// and signedInfos in the MerkleTree blocks.
 			// For now, this generates the root signature too, so can
 			// ask for the signature for each block.
-			ContentObject[] blocks = new ContentObject[_blocks.size()];
-			_blocks.toArray(blocks);
+			_bulkSigner.signBlocks(blocks, signingKey);
+		}
+	}
 
+	/**
+	 * Output a batch of signed blocks to the flow controller.
+	 */
+	protected void putBlocks(ContentObject [] blocks) throws IOException {
+		if (blocks.length == 1) {
+			ContentObject co = blocks[0];
+			if( Log.isLoggable(Level.FINER))
+				Log.finer("NDNSegmenter: putting " + co.name() + " (timestamp: " + co.signedInfo().getTimestamp() + ", length: " + co.contentLength() + ")");
+			_flowControl.put(co);
+		} else {
 			if (Log.isLoggable(Log.FAC_IO, Level.INFO))
 				Log.info(Log.FAC_IO, "flush: putting merkle tree to the network, name starts with " + blocks[0].name() + "; "
-	                    + _blocks.size() + " blocks");
-			_bulkSigner.signBlocks(blocks, signingKey);
+	                    + blocks.length + " blocks");
 			getFlowControl().put(blocks);
 		}
-		_blocks.clear();
+	}
+
+	/**
+	 * Wait for the oldest batch being signed in the background and output it.
+	 */
+	protected void putSignedBatch() throws InvalidKeyException, SignatureException, NoSuchAlgorithmException, IOException {
+		Future<ContentObject[]> batch = _signing.removeFirst();
+		ContentObject [] blocks;
+		try {
+			blocks = batch.get();
+		} catch (InterruptedException e) {
+			batch.cancel(false);
+			throw new IOException("Interrupted waiting for segments to be signed");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InvalidKeyException)
+				throw (InvalidKeyException)cause;
+			if (cause instanceof SignatureException)
+				throw (SignatureException)cause;
+			if (cause instanceof NoSuchAlgorithmException)
+				throw (NoSuchAlgorithmException)cause;
+			if (cause instanceof IOException)
+				throw (IOException)cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			throw new IOException("Unexpected exception signing segments: " + cause);
+		}
+		putBlocks(blocks);
+	}
+
+	/**
+	 * @return the pool of signing threads, sized by the current SystemConfiguration.SIGNING_THREADS,
+	 * 		or null if that is 0
+	 */
+	private static synchronized ThreadPoolExecutor getSigningPool() {
+		int threads = SystemConfiguration.SIGNING_THREADS;
+		if (threads <= 0)
+			return null;
+		if (null != _signingPool) {
+			// Grow or shrink the pool if the setting has changed since it was made
+			if (threads > _signingPool.getMaximumPoolSize()) {
+				_signingPool.setMaximumPoolSize(threads);
+				_signingPool.setCorePoolSize(threads);
+			} else if (threads < _signingPool.getMaximumPoolSize()) {
+				_signingPool.setCorePoolSize(threads);
+				_signingPool.setMaximumPoolSize(threads);
+			}
+		} else {
+			_signingPool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private int _count = 0;
+						public synchronized Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "NDNSegmenter signer " + _count++);
+							t.setDaemon(true);
+							return t;
+						}
+					});
+			_signingPool.allowCoreThreadTimeOut(true);
+		}
+		return _signingPool;
 	}
 
 	/**
@@ -748,8 +893,10 @@ public class NDNSegmenter {
 
 		segmentNumber = newBlock(rootName, segmentNumber,
 				signedInfo, content, offset, length, keys);
-		if (_blocks.size() >= HOLD_COUNT + 1 || null != finalSegmentIndex)
+		if (null != finalSegmentIndex)
 			outputCurrentBlocks(signingKey);
+		else if (_blocks.size() >= HOLD_COUNT + 1)
+			queueCurrentBlocks(signingKey);
 
 		return segmentNumber;
 	}
@@ -814,8 +961,10 @@ public class NDNSegmenter {
 					co.contentLength());
 			offset += blockWidth;
 			length -= blockWidth;
-			if (_blocks.size() >= HOLD_COUNT + 1 || finalFlush) {
+			if (finalFlush) {
 				outputCurrentBlocks(signingKey);
+			} else if (_blocks.size() >= HOLD_COUNT + 1) {
+				queueCurrentBlocks(signingKey);
 			}
 		}
 		return nextSegmentIndex;
@@ -22,6 +22,7 @@ package org.ndnx.ndn.impl.encoding;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.TreeMap;
 import java.util.logging.Level;
 
@@ -43,6 +44,12 @@ import org.ndnx.ndn.protocol.Interest;
  * It also exposes the segment buffer through getBytes() and the
  * segment DOM via getElement().
  *
+ * Packets can also be decoded directly out of a ByteBuffer using beginDecoding(ByteBuffer).
+ * In that case the type/value pairs are parsed with direct buffer accesses rather than
+ * per-byte InputStream reads, and BLOB and UDATA contents are only copied out of the
+ * buffer when they are read. frameLength(ByteBuffer) can be used beforehand to determine
+ * whether the buffer holds a complete packet.
+ *
  * TODO:
  * - Try buffering reads from the network channel rather than byte-by-byte.
  *   NDNNetworkChannel is rewindable, so if we read past the end of the
@@ -74,6 +81,7 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 	public final int RESYNC_LIMIT = 512;	// Default max we can go back for a resync
 	protected int _resyncLimit = RESYNC_LIMIT;
 	protected boolean _resyncable = false;
+	protected boolean _lazyDecoding = false;
 
 	public BinaryXMLDecoder() {
 		super();
@@ -100,7 +108,15 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 				Log.fine(Log.FAC_ENCODING, "Decoding ContentObject");
 
 				ContentObject co = new ContentObject();
-				co.decode(this);
+				if (_lazyDecoding && null != _source && 0 == _parsingElement) {
+					// Keep a copy of the packet and only decode the name for now
+					byte [] wireEncoding = new byte[_packetEnd - _packetStart];
+					_source.limit(_packetEnd);
+					_source.position(_packetStart);
+					_source.get(wireEncoding);
+					co.decodeLazily(this, wireEncoding);
+				} else
+					co.decode(this);
 				return co;
 			}
 
@@ -129,6 +145,8 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 		_elements_type = new byte[_currentElements];
 		_elements_value = new int[_currentElements];
 		_elements_blob = new byte[_currentElements][];
+		_elements_offset = new int[_currentElements];
+		_source = null;
 
 		try {
 			setupForDecoding(istream);
@@ -159,6 +177,90 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 		}
 	}
 
+	/**
+	 * Reset the Decoder's state and start parsing a packet from the current position of buffer.
+	 * The buffer must contain the complete packet (see frameLength) and is positioned after
+	 * the packet on return. BLOB and UDATA contents are left in the buffer until they are read,
+	 * so the buffer contents must not be changed until decoding is complete.
+	 * There is no resync in this mode - a caller seeing an error can skip forward in the buffer
+	 * and try again.
+	 *
+	 * @param buffer
+	 * @throws ContentDecodingException if the packet is not complete or is not valid
+	 */
+	public final void beginDecoding(ByteBuffer buffer) throws ContentDecodingException {
+		if (null == _elements_type) {
+			_elements_type = new byte[_currentElements];
+			_elements_value = new int[_currentElements];
+			_elements_blob = new byte[_currentElements][];
+			_elements_offset = new int[_currentElements];
+		}
+		_source = buffer.duplicate();
+		setupForDecoding(buffer);
+	}
+
+	/**
+	 * Find the length of the complete element (normally a packet) starting at the current
+	 * position of buffer. Only the type/value pairs are examined - BLOB and UDATA contents
+	 * are skipped. The position of the buffer is not changed.
+	 *
+	 * @param buffer
+	 * @return the length in bytes, or -1 if the buffer does not contain the whole element
+	 * @throws ContentDecodingException if an invalid type or blob size is seen
+	 */
+	public static int frameLength(ByteBuffer buffer) throws ContentDecodingException {
+		final int start = buffer.position();
+		final int limit = buffer.limit();
+		int position = start;
+		int opentags = 0;
+
+		do {
+			byte typ = -1;
+			long val = 0;
+			boolean more = false;
+			while (true) {
+				if (position >= limit)
+					return -1;
+				int next = buffer.get(position++) & 0xff;
+				if (!more && 0 == next) {
+					typ = BinaryXMLCodec.XML_CLOSE;
+					break;
+				}
+				more = (0 == (next & BinaryXMLCodec.XML_TT_NO_MORE));
+				if (more) {
+					val = val << BinaryXMLCodec.XML_REG_VAL_BITS;
+					val |= (next & BinaryXMLCodec.XML_REG_VAL_MASK);
+				} else {
+					typ = (byte) (next & BinaryXMLCodec.XML_TT_MASK);
+					val = val << BinaryXMLCodec.XML_TT_VAL_BITS;
+					val |= ((next >>> BinaryXMLCodec.XML_TT_BITS) & BinaryXMLCodec.XML_TT_VAL_MASK);
+					break;
+				}
+			}
+
+			switch (typ) {
+			case BinaryXMLCodec.XML_DTAG:
+				opentags++;
+				break;
+			case BinaryXMLCodec.XML_CLOSE:
+				opentags--;
+				break;
+			case BinaryXMLCodec.XML_BLOB:
+			case BinaryXMLCodec.XML_UDATA:
+				if (val < 0 || val > NDNNetworkManager.MAX_PAYLOAD)
+					throw new ContentDecodingException("Invalid blob size: " + val);
+				position += (int)val;
+				if (position > limit)
+					return -1;
+				break;
+			default:
+				throw new ContentDecodingException("Type value invalid: " + typ);
+			}
+		} while (opentags > 0);
+
+		return position - start;
+	}
+
 	/**
 	 * This method does the initial parsing into elements
 	 * @param istream
@@ -192,6 +294,81 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 //			System.out.println("count = " + _elements.size() + ", bytes = " + _buffer.position());
 	}
 
+	/**
+	 * The equivalent of setupForDecoding(InputStream) for a buffer. Blobs are not read
+	 * here - we just remember where they are.
+	 * @param buffer
+	 * @throws ContentDecodingException
+	 */
+	private final void setupForDecoding(ByteBuffer buffer) throws ContentDecodingException {
+		initialize();
+
+		int opentags = 0;
+		int position = buffer.position();
+		final int limit = buffer.limit();
+		_packetStart = position;
+
+		do {
+			byte typ = -1;
+			long val = 0;
+			int next = 0;
+			boolean more = false;
+			while (position < limit) {
+				next = buffer.get(position++) & 0xff;
+
+				// detect the CLOSE marker
+				if( !more && (0 == next) ) {
+					typ = 0;
+					val = 0;
+					break;
+				}
+
+				more = (0 == (next & BinaryXMLCodec.XML_TT_NO_MORE));
+
+				if  (more) {
+					val = val << BinaryXMLCodec.XML_REG_VAL_BITS;
+					val |= (next & BinaryXMLCodec.XML_REG_VAL_MASK);
+				} else {
+					// last byte
+					typ = (byte) (next & BinaryXMLCodec.XML_TT_MASK);
+					val = val << BinaryXMLCodec.XML_TT_VAL_BITS;
+					val |= ((next >>> BinaryXMLCodec.XML_TT_BITS) & BinaryXMLCodec.XML_TT_VAL_MASK);
+					break;
+				}
+			}
+
+			if (typ == -1 || more)
+				throw new ContentDecodingException("Unexpected end of buffer");
+
+			int offset = 0;
+			switch (typ) {
+			case BinaryXMLCodec.XML_DTAG:
+				opentags++;
+				break;
+			case BinaryXMLCodec.XML_CLOSE:
+				opentags--;
+				break;
+			case BinaryXMLCodec.XML_BLOB:
+			case BinaryXMLCodec.XML_UDATA:
+				if (val < 0 || val > NDNNetworkManager.MAX_PAYLOAD)
+					throw new ContentDecodingException("Invalid blob size: " + val);
+				offset = position;
+				position += (int)val;
+				if (position > limit)
+					throw new ContentDecodingException("Unexpected end of buffer");
+				break;
+			default:
+				throw new ContentDecodingException("Type value invalid: " + typ);
+			}
+
+			setElement(_elementCount, typ, (int)val, null, offset);
+			_elementCount++;
+		} while(opentags > 0);
+
+		_packetEnd = position;
+		buffer.position(position);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
@@ -227,6 +404,12 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 	private byte [] _elements_type;
 	private int [] _elements_value;
 	private byte [][] _elements_blob;
+	private int [] _elements_offset;	// where the blob is in _source if not yet copied out
+
+	// Buffer we are decoding from when decoding from a ByteBuffer
+	private ByteBuffer _source = null;
+	private int _packetStart = 0;
+	private int _packetEnd = 0;
 
 	// BLOB and UDATA now go in their own buffers, so don't really need the full BLOCKSIZE
 
@@ -323,7 +506,7 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 //		System.out.println(String.format("Decode tag 0x%02x value 0x%02x pos %d", typ, val, pos));
 
 		int index = _elementCount;
-		setElement(index, typ, (int)val, buffer);
+		setElement(index, typ, (int)val, buffer, 0);
 		_elementCount++;
 		return index;
 	}
@@ -334,8 +517,9 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 	 * @param typ
 	 * @param val
 	 * @param buffer
+	 * @param offset
 	 */
-	private void setElement(int index, byte typ, int val, byte[] buffer) {
+	private void setElement(int index, byte typ, int val, byte[] buffer, int offset) {
 		try {
 			_elements_type[index]  = typ;
 		} catch (ArrayIndexOutOfBoundsException aiobe) {
@@ -351,12 +535,16 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 			byte[][] newBlobs = new byte[_currentElements][];
 			System.arraycopy(_elements_blob, 0, newBlobs, 0, prevElements);
 			_elements_blob = newBlobs;
+			int[] newOffsets = new int[_currentElements];
+			System.arraycopy(_elements_offset, 0, newOffsets, 0, prevElements);
+			_elements_offset = newOffsets;
 			_elements_type[index] = typ;
 			if (Log.isLoggable(Log.FAC_ENCODING, Level.INFO))
 				Log.info(Log.FAC_ENCODING, "Reset decode array sizes to {0}", _currentElements);
 		}
 		_elements_value[index] = val;
 		_elements_blob[index]  = buffer;
+		_elements_offset[index] = offset;
 	}
 
 	/**
@@ -397,10 +585,11 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 		// This seems a little bogus but it emulates what the original code did...
 		if (type == BinaryXMLCodec.XML_BLOB) {
 			for (int i = _elementCount; i > _parsingElement; i--) {
-				setElement(i, _elements_type[i - 1], _elements_value[i - 1], _elements_blob[i - 1]);
+				setElement(i, _elements_type[i - 1], _elements_value[i - 1], _elements_blob[i - 1], _elements_offset[i - 1]);
 			}
 			_elementCount++;
 			_elements_blob[_parsingElement] = new byte[0];
+			_elements_value[_parsingElement] = 0;
 			_elements_type[_parsingElement] = type;
 			return;
 		}
@@ -474,11 +663,41 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 //		Log.fine(Log.FAC_ENCODING, "readBinary type {0} start {1} length {2} buffer len {3}",
 //				type, elem.position, elem.value, _bytes.length);
 
-		final byte [] buffer = _elements_blob[index];
+		byte [] buffer = _elements_blob[index];
+		if (null == buffer) {
+			// Decoding from a ByteBuffer - copy the blob out now that someone wants it
+			buffer = new byte[_elements_value[index]];
+			_source.limit(_source.capacity());
+			_source.position(_elements_offset[index]);
+			_source.get(buffer);
+			_elements_blob[index] = buffer;
+		}
 
 		return buffer;
 	}
 
+	/**
+	 * Skip over the current element, including anything it contains, without
+	 * decoding it.
+	 * @param startTag the tag the element must have
+	 * @throws ContentDecodingException if the current element isn't a startTag element
+	 */
+	public final void skipElement(long startTag) throws ContentDecodingException {
+		peekTag(BinaryXMLCodec.XML_DTAG, startTag);
+		int opentags = 0;
+		do {
+			if( _parsingElement >= _elementCount )
+				throw new ContentDecodingException(
+						String.format("Past end of DOM! size %d position %d", _elementCount, _parsingElement));
+			byte type = _elements_type[_parsingElement];
+			if (type == BinaryXMLCodec.XML_DTAG)
+				opentags++;
+			else if (type == BinaryXMLCodec.XML_CLOSE)
+				opentags--;
+			advanceParser();
+		} while (opentags > 0);
+	}
+
 	/**
 	 * Advances the parser by 3 elements (start tag, blob, end tag)
 	 */
@@ -625,6 +844,15 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 		_resyncable = value;
 	}
 
+	/**
+	 * If set, ContentObjects decoded from a ByteBuffer by getPacket() only have their name
+	 * decoded initially.
+	 * @see ContentObject#decodeLazily(BinaryXMLDecoder, byte[])
+	 */
+	public void setLazyDecoding(boolean value) {
+		_lazyDecoding = value;
+	}
+
 	public void setLimit(int limit) {
 		_resyncLimit = limit;
 	}
@@ -94,6 +94,22 @@ public class BinaryXMLEncoder extends GenericXMLEncoder implements XMLEncoder {
 		}
 	}
 	
+	/**
+	 * Write out something that is already in binary encoded form, such as a complete
+	 * element that was received from the network.
+	 * @param encoded the encoded bytes
+	 * @param offset
+	 * @param length
+	 * @throws ContentEncodingException
+	 */
+	public void writeEncoded(byte [] encoded, int offset, int length) throws ContentEncodingException {
+		try {
+			_ostream.write(encoded, offset, length);
+		} catch (IOException e) {
+			throw new ContentEncodingException(e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * Compact binary encoding of time, same as used for versions.
 	 * @see VersioningProfile
@@ -0,0 +1,127 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.impl.encoding;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An OutputStream that writes into a reusable ByteBuffer, which is grown as needed.
+ * This allows an encoder to write directly into a (possibly direct) buffer that can
+ * be handed to a channel without copying, and to reuse that buffer for the next
+ * encoding rather than allocating a new byte array each time.
+ *
+ * Not thread safe - normally each instance is used by a single thread.
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+	protected final boolean _direct;
+	protected final int _initialCapacity;
+	protected ByteBuffer _buffer;
+
+	/**
+	 * @param initialCapacity initial size of the buffer in bytes. The buffer is shrunk
+	 * 		back to this size on reset() if it had to be grown.
+	 * @param direct if true use a direct buffer
+	 */
+	public ByteBufferOutputStream(int initialCapacity, boolean direct) {
+		_direct = direct;
+		_initialCapacity = initialCapacity;
+		_buffer = allocate(initialCapacity);
+	}
+
+	@Override
+	public void write(int b) {
+		ensureCapacity(1);
+		_buffer.put((byte)b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(len);
+		_buffer.put(b, off, len);
+	}
+
+	/**
+	 * Discard anything written so far so the buffer can be reused.
+	 */
+	public void reset() {
+		if (_buffer.capacity() > _initialCapacity)
+			_buffer = allocate(_initialCapacity);
+		_buffer.clear();
+	}
+
+	/**
+	 * @return the number of bytes written since the last reset
+	 */
+	public int size() {
+		return _buffer.position();
+	}
+
+	/**
+	 * Get a view of bytes start through end of what has been written. The view shares
+	 * the contents of this stream, so it is only valid until the next reset().
+	 * @param start offset of first byte
+	 * @param end offset after last byte
+	 * @return the view, positioned at its start
+	 */
+	public ByteBuffer getBuffer(int start, int end) {
+		ByteBuffer view = _buffer.duplicate();
+		view.limit(end);
+		view.position(start);
+		return view.slice();
+	}
+
+	/**
+	 * @return a view of everything that has been written since the last reset
+	 * @see #getBuffer(int, int)
+	 */
+	public ByteBuffer getBuffer() {
+		ByteBuffer view = _buffer.duplicate();
+		view.flip();
+		return view;
+	}
+
+	/**
+	 * @return a copy of everything that has been written since the last reset
+	 */
+	public byte [] toByteArray() {
+		byte [] result = new byte[_buffer.position()];
+		getBuffer().get(result);
+		return result;
+	}
+
+	protected void ensureCapacity(int needed) {
+		if (_buffer.remaining() >= needed)
+			return;
+		int newCapacity = _buffer.capacity() * 2;
+		if (newCapacity < _buffer.position() + needed)
+			newCapacity = _buffer.position() + needed;
+		ByteBuffer newBuffer = allocate(newCapacity);
+		_buffer.flip();
+		newBuffer.put(_buffer);
+		_buffer = newBuffer;
+	}
+
+	protected ByteBuffer allocate(int capacity) {
+		return _direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+}
@@ -21,7 +21,6 @@
 package org.ndnx.ndn.impl.encoding;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -89,10 +88,11 @@ public class TextXMLCodec implements XMLCodec {
 	 * @return the binary data base64 encoded into a String
 	 */
 	public static String encodeBinaryElement(byte [] element, int offset, int length) {
-		if ((null == element) || (0 == element.length)) 
+		if ((null == element) || (0 == length)) 
 			return new String("");
-		ByteBuffer bbuf = ByteBuffer.wrap(element, offset, length);
-		return new String(DataUtils.base64Encode(bbuf.array()));
+		byte [] range = new byte[length];
+		System.arraycopy(element, offset, range, 0, length);
+		return new String(DataUtils.base64Encode(range));
 	}
 
 	/**
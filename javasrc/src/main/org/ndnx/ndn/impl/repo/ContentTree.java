@@ -31,9 +31,11 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.logging.Level;
 
+import org.ndnx.ndn.config.SystemConfiguration;
 import org.ndnx.ndn.impl.support.DataUtils;
 import org.ndnx.ndn.impl.support.Log;
 import org.ndnx.ndn.profiles.SegmentationProfile;
+import org.ndnx.ndn.profiles.VersioningProfile;
 import org.ndnx.ndn.profiles.nameenum.NameEnumerationResponse;
 import org.ndnx.ndn.protocol.NDNTime;
 import org.ndnx.ndn.protocol.Component;
@@ -55,6 +57,18 @@ public class ContentTree {
 		public ContentObject get(ContentRef ref);
 	}
 	
+	/**
+	 * Called for each content reference in the tree by visit()
+	 */
+	public interface ContentVisitor {
+		/**
+		 * @param name the full name of the content including the digest
+		 * @param ref the reference
+		 * @return the reference to hold in the tree from now on, normally ref itself
+		 */
+		public ContentRef visit(ContentName name, ContentRef ref);
+	}
+	
 	/**
 	 * TreeNode is the data structure representing one
 	 * node of a tree which may have children and/or content.
@@ -327,6 +341,8 @@ public class ContentTree {
 	}
 	
 	protected TreeNode _root;
+	// Keep one copy of components that appear in many names, like segment numbers
+	protected final boolean _internComponents = SystemConfiguration.REPO_INTERN_NAMES;
 	
 	public ContentTree() {
 		_root = new TreeNode();
@@ -354,11 +370,61 @@ public class ContentTree {
 		if (Log.isLoggable(Log.FAC_REPO, Level.FINE)) {
 			Log.fine(Log.FAC_REPO, "inserting content: {0}", name);
 		}
+		TreeNode node = insertNodes(name, ts, ner);
+		
+		// Check for duplicate content. A node that was just added has no content yet.
+		if (null != node.oneContent) {
+			ContentObject prev = getter.get(node.oneContent);
+			if (null != prev && content.equals(prev))
+				return false;
+		} else if (null != node.content) {
+			for (ContentRef oldRef : node.content) {
+				ContentObject prev = getter.get(oldRef);
+				if (null != prev && content.equals(prev))
+					return false;
+			}
+		}
+
+		insertRef(node, ref);
+		if (Log.isLoggable(Log.FAC_REPO, Level.FINE)) {
+			Log.fine(Log.FAC_REPO, "Inserted: {0}", content.name());
+		}
+		return true;
+	}
+	
+	/**
+	 * Insert entry for content already known not to duplicate anything in the tree, given only
+	 * its full name (including the digest). This is used to reload the tree from a saved index
+	 * without having to read and decode the content itself. No NameEnumerationResponse is
+	 * generated.
+	 * 
+	 * @param name the full name of the content including the digest component
+	 * @param ref pointer to position of data in the file storage
+	 * @param ts last modification time of the data
+	 */
+	public void insert(ContentName name, ContentRef ref, long ts) {
+		if (Log.isLoggable(Log.FAC_REPO, Level.FINEST)) {
+			Log.finest(Log.FAC_REPO, "inserting indexed content: {0}", name);
+		}
+		insertRef(insertNodes(name, ts, null), ref);
+	}
+	
+	/**
+	 * Find or add the nodes for each component of a name
+	 * 
+	 * @param name the full name
+	 * @param ts last modification time of the data, used to timestamp parents of new nodes
+	 * @param ner NameEnumerationResponse object to populate if a node is added at a parent
+	 *   with the interest flag set
+	 * @return the node for the last component of the name
+	 */
+	protected TreeNode insertNodes(ContentName name, long ts, NameEnumerationResponse ner) {
 		TreeNode node = _root; // starting point
 		assert(null != _root);
-		boolean added = false;
 		
+		int remaining = name.count();
 		for (byte[] component : name) {
+			remaining--;
 			synchronized(node) {
 				//Library.finest("getting node for component: "+new String(component));
 				TreeNode child = node.getChild(component);
@@ -367,9 +433,9 @@ public class ContentTree {
 						Log.finest(Log.FAC_REPO, "child was null: adding here");
 					}
 					// add it
-					added = true;
 					child = new TreeNode();
-					child.component = component;
+					// The last component is the digest, which is never shared
+					child.component = (_internComponents && remaining > 0) ? ContentName.internComponent(component) : component;
 					if (null == node.oneChild && null == node.children) {
 						// This is first and only child of current node
 						node.oneChild = child;
@@ -431,24 +497,16 @@ public class ContentTree {
 				node = child;
 			}
 		}
-		
-		// Check for duplicate content
-		if (!added) {
-			if (null != node.oneContent) {
-				ContentObject prev = getter.get(node.oneContent);
-				if (null != prev && content.equals(prev))
-					return false;
-			} else if (null != node.content) {
-				for (ContentRef oldRef : node.content) {
-					ContentObject prev = getter.get(oldRef);
-					if (null != prev && content.equals(prev))
-						return false;
-				}
-			}
-		}
-
-		// At conclusion of this loop, node must be holding the last node for this name
-		// so we insert the ref there
+		return node;
+	}
+	
+	/**
+	 * Add a content reference to a node
+	 * 
+	 * @param node the node for the full name of the content
+	 * @param ref pointer to position of data in the file storage
+	 */
+	protected void insertRef(TreeNode node, ContentRef ref) {
 		if (null == node.oneContent && null == node.content) {
 			// This is first and only content at this leaf
 			node.oneContent = ref;
@@ -462,10 +520,154 @@ public class ContentTree {
 			node.content.add(ref);
 			node.oneContent = null;
 		}
-		if (Log.isLoggable(Log.FAC_REPO, Level.FINE)) {
-			Log.fine(Log.FAC_REPO, "Inserted: {0}", content.name());
+	}
+
+	/**
+	 * Call a visitor for every content reference in the tree, replacing each reference with
+	 * whatever the visitor returns. The replacement is done under the lock for the node so it is atomic
+	 * with respect to inserts, and searches see either the old or the new reference.
+	 * Content inserted while the visit is in progress may or may not be visited.
+	 * 
+	 * @param visitor
+	 */
+	public void visit(ContentVisitor visitor) {
+		visit(_root, new ContentName(), visitor);
+	}
+	
+	protected void visit(TreeNode node, ContentName nodeName, ContentVisitor visitor) {
+		List<ContentRef> refs = new ArrayList<ContentRef>();
+		synchronized (node) {
+			if (null != node.oneContent)
+				refs.add(node.oneContent);
+			else if (null != node.content)
+				refs.addAll(node.content);
+		}
+		for (ContentRef ref : refs) {
+			ContentRef newRef = visitor.visit(nodeName, ref);
+			if (newRef != ref) {
+				synchronized (node) {
+					if (node.oneContent == ref) {
+						node.oneContent = newRef;
+					} else if (null != node.content) {
+						int i = node.content.indexOf(ref);
+						if (i >= 0)
+							node.content.set(i, newRef);
+					}
+				}
+			}
 		}
-		return true;
+		for (TreeNode child : getChildren(node))
+			visit(child, new ContentName(nodeName, child.component), visitor);
+	}
+	
+	/**
+	 * Remove content that a retention policy says should no longer be kept:
+	 * <ul>
+	 * <li>all but the latest keepVersions versions below any name with versions</li>
+	 * <li>all but the newest (by signing timestamp) of several objects with the same name and
+	 * different digests</li>
+	 * </ul>
+	 * 
+	 * @param keepVersions the number of versions to keep, which must be at least 1
+	 * @param getter to retrieve content to compare objects with the same name
+	 * @return the number of content references removed
+	 */
+	public int retain(int keepVersions, ContentGetter getter) {
+		if (keepVersions < 1)
+			throw new IllegalArgumentException("Must keep at least one version");
+		return retain(_root, keepVersions, getter);
+	}
+	
+	protected int retain(TreeNode node, int keepVersions, ContentGetter getter) {
+		int removed = 0;
+		List<TreeNode> children = getChildren(node);
+		
+		// Children are in canonical order so the versions are oldest first
+		List<TreeNode> versions = new ArrayList<TreeNode>();
+		for (TreeNode child : children) {
+			if (VersioningProfile.isVersionComponent(child.component))
+				versions.add(child);
+		}
+		for (int i = 0; i < versions.size() - keepVersions; i++) {
+			removed += removeChild(node, versions.get(i));
+			children.remove(versions.get(i));
+		}
+		
+		// Content is held at a leaf named by its digest, so several leaves here are
+		// several objects with this node's name
+		List<TreeNode> leaves = new ArrayList<TreeNode>();
+		List<ContentRef> leafRefs = new ArrayList<ContentRef>();
+		for (TreeNode child : children) {
+			synchronized (child) {
+				if (null == child.oneChild && null == child.children && null != child.oneContent) {
+					leaves.add(child);
+					leafRefs.add(child.oneContent);
+				}
+			}
+		}
+		if (leaves.size() > 1) {
+			TreeNode newest = null;
+			NDNTime newestTime = null;
+			for (int i = 0; i < leaves.size(); i++) {
+				ContentObject co = getter.get(leafRefs.get(i));
+				NDNTime time = (null == co) ? null : co.signedInfo().getTimestamp();
+				if (null == newest || (null != time && (null == newestTime || time.after(newestTime)))) {
+					newest = leaves.get(i);
+					newestTime = time;
+				}
+			}
+			for (TreeNode leaf : leaves) {
+				if (leaf != newest) {
+					removed += removeChild(node, leaf);
+					children.remove(leaf);
+				}
+			}
+		}
+		
+		for (TreeNode child : children)
+			removed += retain(child, keepVersions, getter);
+		return removed;
+	}
+	
+	/**
+	 * @return a snapshot of the children of a node
+	 */
+	protected List<TreeNode> getChildren(TreeNode node) {
+		List<TreeNode> children = new ArrayList<TreeNode>();
+		synchronized (node) {
+			if (null != node.oneChild)
+				children.add(node.oneChild);
+			else if (null != node.children)
+				children.addAll(node.children.keySet());
+		}
+		return children;
+	}
+	
+	/**
+	 * Remove a child and everything below it
+	 * @return the number of content references removed
+	 */
+	protected int removeChild(TreeNode node, TreeNode child) {
+		synchronized (node) {
+			if (node.oneChild == child)
+				node.oneChild = null;
+			else if (null != node.children)
+				node.children.remove(child);
+		}
+		return countRefs(child);
+	}
+	
+	protected int countRefs(TreeNode node) {
+		int count = 0;
+		synchronized (node) {
+			if (null != node.oneContent)
+				count = 1;
+			else if (null != node.content)
+				count = node.content.size();
+		}
+		for (TreeNode child : getChildren(node))
+			count += countRefs(child);
+		return count;
 	}
 
 	/**
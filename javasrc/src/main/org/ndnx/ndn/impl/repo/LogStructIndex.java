@@ -0,0 +1,434 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.impl.repo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+import org.ndnx.ndn.impl.repo.LogStructRepoStore.FileRef;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.io.content.ContentDecodingException;
+import org.ndnx.ndn.protocol.ContentName;
+
+/**
+ * A persistent index for LogStructRepoStore, kept in the repository meta directory alongside the
+ * data files. It allows the in memory ContentTree to be rebuilt on startup from names and file
+ * positions alone, rather than by reading and decoding every ContentObject in every data file.
+ *
+ * The index is an append-only log of entry records, each holding the full name of an object
+ * (including its digest) and where it is stored, interspersed with checkpoint records. A checkpoint
+ * records, for each data file, the position up to which all objects in that file have been
+ * entered in the index. Entries are buffered in memory and written together with a checkpoint
+ * every checkpointInterval entries and on close, so a checkpoint is only ever written after the
+ * data it covers. On load everything up to the last complete checkpoint is entered into the tree
+ * and anything after it (from a crash) is discarded. The caller then only needs to replay the data
+ * files beyond the positions covered by that checkpoint, which is normally just the tail of the
+ * active file.
+ *
+ * The index is read through a sliding MappedByteBuffer window so that arbitrarily large index
+ * files can be loaded without copying them onto the heap.
+ */
+public class LogStructIndex {
+
+	public static final int INDEX_MAGIC = 0x4e444958; // "NDIX"
+	public static final int INDEX_VERSION = 2;
+
+	protected static final int HEADER_LENGTH = 8;
+	protected static final byte ENTRY = 1;
+	protected static final byte CHECKPOINT = 2;
+	protected static final int MAX_NAME_LENGTH = 65536;
+	protected static final long MAP_WINDOW = 64 * 1024 * 1024;
+
+	protected final File _file;
+	protected final int _checkpointInterval;
+	protected FileChannel _channel = null;
+
+	// Entries written since the last checkpoint
+	protected ByteArrayOutputStream _pending = new ByteArrayOutputStream();
+	protected DataOutputStream _pendingOut = new DataOutputStream(_pending);
+	protected int _pendingCount = 0;
+	protected boolean _dirty = false;
+
+	// File id -> position up to which that file is covered by the index
+	protected TreeMap<Integer, Long> _covered = new TreeMap<Integer, Long>();
+
+	/**
+	 * Reads successive records from the index, remapping the window as needed
+	 */
+	protected class RecordReader {
+		protected long _size;
+		protected long _base;
+		protected MappedByteBuffer _map;
+
+		// The last record read
+		protected byte _type;
+		protected int _fileId;
+		protected long _offset;
+		protected int _length;
+		protected long _timestamp;
+		protected byte [] _name;
+		protected Map<Integer, Long> _coverage;
+		protected long _end;
+
+		protected RecordReader(long start) throws IOException {
+			_size = _channel.size();
+			remap(start);
+		}
+
+		/**
+		 * @return false at the end of the valid records in the file
+		 * @throws IOException
+		 */
+		protected boolean next() throws IOException {
+			long start = _base + _map.position();
+			if (start >= _size)
+				return false;
+			try {
+				if (!read())
+					return false;
+			} catch (BufferUnderflowException e) {
+				if (_base + _map.limit() >= _size)
+					return false;	// Partial record at the end - must have crashed while writing it
+				remap(start);
+				try {
+					if (!read())
+						return false;
+				} catch (BufferUnderflowException e2) {
+					return false;
+				}
+			}
+			_end = _base + _map.position();
+			return true;
+		}
+
+		protected boolean read() {
+			_type = _map.get();
+			switch (_type) {
+			case ENTRY:
+				_fileId = _map.getInt();
+				_offset = _map.getLong();
+				_length = _map.getInt();
+				_timestamp = _map.getLong();
+				int length = _map.getInt();
+				if (length <= 0 || length > MAX_NAME_LENGTH)
+					return false;
+				_name = new byte[length];
+				_map.get(_name);
+				return true;
+			case CHECKPOINT:
+				int count = _map.getInt();
+				if (count < 0)
+					return false;
+				_coverage = new HashMap<Integer, Long>();
+				for (int i = 0; i < count; i++) {
+					int fileId = _map.getInt();
+					_coverage.put(fileId, _map.getLong());
+				}
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		protected void remap(long position) throws IOException {
+			_base = position;
+			_map = _channel.map(MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, _size - position));
+		}
+	}
+
+	/**
+	 * @param file the file holding the index
+	 * @param checkpointInterval the maximum number of entries to hold before writing a checkpoint
+	 */
+	public LogStructIndex(File file, int checkpointInterval) {
+		_file = file;
+		_checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Open the index and load its contents into a tree. The index is discarded if it is not
+	 * consistent with the data files, for example if a file it covers is missing or shorter than
+	 * the index expects.
+	 *
+	 * @param tree the tree to load entries into
+	 * @param fileLengths the ids and current lengths of the data files in the repository
+	 * @return the position covered by the index for each data file, or null if the index
+	 * 	could not be used. In that case the tree may have been partially loaded and should be discarded,
+	 * 	and the index is left empty, ready for the data files to be replayed from the start.
+	 * @throws IOException if the index can't be opened or written
+	 */
+	public synchronized Map<Integer, Long> load(ContentTree tree, Map<Integer, Long> fileLengths) throws IOException {
+		_covered.clear();
+		_pending.reset();
+		_pendingCount = 0;
+		_dirty = false;
+		_channel = new RandomAccessFile(_file, "rw").getChannel();
+
+		long checkpointEnd = 0;
+		Map<Integer, Long> covered = null;
+		if (_channel.size() >= HEADER_LENGTH) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			_channel.read(header, 0);
+			header.flip();
+			if (header.getInt() == INDEX_MAGIC && header.getInt() == INDEX_VERSION) {
+				// First find the last complete checkpoint
+				RecordReader reader = new RecordReader(HEADER_LENGTH);
+				while (reader.next()) {
+					if (reader._type == CHECKPOINT) {
+						covered = reader._coverage;
+						checkpointEnd = reader._end;
+					}
+				}
+			}
+		}
+
+		if (null != covered && !isConsistent(covered, fileLengths)) {
+			Log.warning(Log.FAC_REPO, "Repository index {0} does not match data files - rebuilding it", _file.getName());
+			covered = null;
+		}
+
+		if (null != covered) {
+			try {
+				RecordReader reader = new RecordReader(HEADER_LENGTH);
+				int count = 0;
+				while (reader._base + reader._map.position() < checkpointEnd && reader.next()) {
+					if (reader._type == ENTRY) {
+						ContentName name = new ContentName();
+						name.decode(reader._name);
+						FileRef ref = new FileRef();
+						ref.id = reader._fileId;
+						ref.offset = reader._offset;
+						ref.length = reader._length;
+						ref.timestamp = reader._timestamp;
+						tree.insert(name, ref, reader._timestamp);
+						count++;
+					}
+				}
+				if (Log.isLoggable(Log.FAC_REPO, Level.INFO)) {
+					Log.info(Log.FAC_REPO, "Loaded {0} entries from repository index {1}", count, _file.getName());
+				}
+			} catch (ContentDecodingException e) {
+				Log.warning(Log.FAC_REPO, "Bad name in repository index {0} - rebuilding it: {1}", _file.getName(), e.getMessage());
+				covered = null;
+			}
+		}
+
+		if (null == covered) {
+			reset();
+			return null;
+		}
+
+		// Drop anything written after the last checkpoint; it will be replayed from the data files
+		_channel.truncate(checkpointEnd);
+		_channel.position(checkpointEnd);
+		_covered.putAll(covered);
+		return new HashMap<Integer, Long>(_covered);
+	}
+
+	/**
+	 * Discard the contents of the index
+	 * @throws IOException
+	 */
+	public synchronized void reset() throws IOException {
+		_covered.clear();
+		_pending.reset();
+		_pendingCount = 0;
+		_dirty = false;
+		_channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putInt(INDEX_MAGIC);
+		header.putInt(INDEX_VERSION);
+		header.flip();
+		_channel.position(0);
+		while (header.hasRemaining())
+			_channel.write(header);
+	}
+
+	/**
+	 * Add an entry for an object that has been inserted into the tree
+	 *
+	 * @param name the full name of the object including its digest
+	 * @param ref where the object is stored
+	 * @param ts the timestamp the object was inserted into the tree with
+	 * @throws IOException if a checkpoint was needed and could not be written
+	 */
+	public synchronized void add(ContentName name, FileRef ref, long ts) throws IOException {
+		if (null == _channel)
+			return;
+		writeEntry(_pendingOut, name, ref, ts);
+		covered(ref.id, ref.offset + ref.length);
+		if (++_pendingCount >= _checkpointInterval)
+			checkpoint();
+	}
+
+	/**
+	 * Record that a file has been processed up to a given position without adding an entry,
+	 * for example because the object there duplicated one already in the tree.
+	 *
+	 * @param fileId the data file
+	 * @param end the position in the file just after the last object processed
+	 */
+	public synchronized void covered(int fileId, long end) {
+		Long current = _covered.get(fileId);
+		if (null == current || current < end) {
+			_covered.put(fileId, end);
+			_dirty = true;
+		}
+	}
+
+	/**
+	 * Write any pending entries followed by a checkpoint covering them
+	 * @throws IOException
+	 */
+	public synchronized void checkpoint() throws IOException {
+		if (null == _channel || !_dirty)
+			return;
+		writeCheckpoint(_pendingOut);
+		_pendingOut.flush();
+		ByteBuffer buffer = ByteBuffer.wrap(_pending.toByteArray());
+		while (buffer.hasRemaining())
+			_channel.write(buffer);
+		if (Log.isLoggable(Log.FAC_REPO, Level.FINE)) {
+			Log.fine(Log.FAC_REPO, "Checkpointed {0} entries to repository index", _pendingCount);
+		}
+		_pending.reset();
+		_pendingCount = 0;
+		_dirty = false;
+	}
+
+	/**
+	 * Replace the contents of the index with everything now in a tree. The new index is written
+	 * to a separate file which then replaces the old one, so a crash part way through leaves the old
+	 * index intact. The caller must make sure nothing is added to the tree or the index while this
+	 * is in progress.
+	 * Each entry keeps the time its content was stored.
+	 * 
+	 * @param tree the tree holding the content
+	 * @param coverage the position in each data file up to which everything in it is in the tree
+	 * @throws IOException
+	 */
+	public synchronized void rewrite(ContentTree tree, Map<Integer, Long> coverage) throws IOException {
+		if (null == _channel)
+			return;
+		File newFile = new File(_file.getPath() + ".new");
+		FileOutputStream fos = new FileOutputStream(newFile);
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 65536));
+		final IOException [] error = new IOException[1];
+		try {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			tree.visit(new ContentTree.ContentVisitor() {
+				public ContentRef visit(ContentName name, ContentRef ref) {
+					if (null == error[0]) {
+						try {
+							FileRef fref = (FileRef)ref;
+							writeEntry(out, name, fref, fref.timestamp);
+						} catch (IOException e) {
+							error[0] = e;
+						}
+					}
+					return ref;
+				}
+			});
+			if (null != error[0])
+				throw error[0];
+			_covered.clear();
+			_covered.putAll(coverage);
+			writeCheckpoint(out);
+			out.flush();
+			fos.getChannel().force(false);
+		} finally {
+			out.close();
+		}
+		
+		_channel.close();
+		if (!newFile.renameTo(_file)) {
+			_file.delete();
+			if (!newFile.renameTo(_file))
+				throw new IOException("Can not rename " + newFile + " to " + _file);
+		}
+		_channel = new RandomAccessFile(_file, "rw").getChannel();
+		_channel.position(_channel.size());
+		_pending.reset();
+		_pendingCount = 0;
+		_dirty = false;
+	}
+
+	/**
+	 * Checkpoint and close the index
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		if (null == _channel)
+			return;
+		try {
+			checkpoint();
+		} finally {
+			_channel.close();
+			_channel = null;
+		}
+	}
+
+	protected void writeEntry(DataOutputStream out, ContentName name, FileRef ref, long ts) throws IOException {
+		byte [] encoded = name.encode();
+		out.writeByte(ENTRY);
+		out.writeInt(ref.id);
+		out.writeLong(ref.offset);
+		out.writeInt(ref.length);
+		out.writeLong(ts);
+		out.writeInt(encoded.length);
+		out.write(encoded);
+	}
+
+	protected void writeCheckpoint(DataOutputStream out) throws IOException {
+		out.writeByte(CHECKPOINT);
+		out.writeInt(_covered.size());
+		for (Map.Entry<Integer, Long> entry : _covered.entrySet()) {
+			out.writeInt(entry.getKey());
+			out.writeLong(entry.getValue());
+		}
+	}
+
+	protected boolean isConsistent(Map<Integer, Long> covered, Map<Integer, Long> fileLengths) {
+		for (Map.Entry<Integer, Long> entry : covered.entrySet()) {
+			Long length = fileLengths.get(entry.getKey());
+			if (null == length)
+				length = 0L;
+			if (length < entry.getValue())
+				return false;
+		}
+		return true;
+	}
+}
@@ -21,19 +21,27 @@
 package org.ndnx.ndn.impl.repo;
 
 import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.ndnx.ndn.NDNHandle;
@@ -42,6 +50,9 @@ import org.ndnx.ndn.config.ConfigurationException;
 import org.ndnx.ndn.config.SystemConfiguration;
 import org.ndnx.ndn.config.UserConfiguration;
 import org.ndnx.ndn.config.SystemConfiguration.DEBUGGING_FLAGS;
+import org.ndnx.ndn.impl.NDNStats;
+import org.ndnx.ndn.impl.encoding.BinaryXMLEncoder;
+import org.ndnx.ndn.impl.encoding.ByteBufferOutputStream;
 import org.ndnx.ndn.impl.repo.PolicyXML.PolicyObject;
 import org.ndnx.ndn.impl.security.keys.BasicKeyManager;
 import org.ndnx.ndn.impl.support.Log;
@@ -84,10 +95,14 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 		public static final String REPOSITORY_KEYSTORE_ALIAS = REPOSITORY_USER.toLowerCase();
 
 		public static String CONTENT_FILE_PREFIX = "repoFile";
+		public static final String INDEX_FILE = "index";
+		public static final int INDEX_CHECKPOINT_INTERVAL = 1000;
+		public static final int WRITE_BUFFER_SIZE = 1024 * 1024;
 		private static String DEBUG_TREEDUMP_FILE = "debugNamesTree";
 
 		private static String DIAG_NAMETREE = "nametree"; // Diagnostic/signal to dump name tree to debug file
 		private static String DIAG_NAMETREEWIDE = "nametreewide"; // Same as DIAG_NAMETREE but with wide names per node
+		private static String DIAG_COMPACT = "compact"; // Diagnostic/signal to compact the data files now
 	}
 	
 	protected String _repositoryRoot = null;
@@ -99,18 +114,55 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 	RepoFile _activeWriteFile = null;
 	Integer _currentFileIndex = 0;
 	ContentTree _index;
+	volatile LogStructIndex _persistentIndex = null;
+	
+	// Held to write to _activeWriteFile or to change which file that is
+	protected final Object _writeLock = new Object();
+	
+	// Used under the _writeLock to encode each batch of content to be written
+	protected final BinaryXMLEncoder _writeEncoder = new BinaryXMLEncoder();
+	protected final ByteBufferOutputStream _writeBuffer = new ByteBufferOutputStream(LogStructRepoStoreProfile.WRITE_BUFFER_SIZE, true);
+	protected boolean _syncNeeded = false;
+	protected Timer _syncTimer = null;
+	protected Timer _compactTimer = null;
+	
+	// Channels of files removed by compaction, kept open for any reads still in progress
+	protected List<FileChannel> _retiredChannels = new ArrayList<FileChannel>();
+	
+	// Counts compactions that have removed data files, so a get that started before one can tell
+	// that the file it was reading from may have gone
+	protected volatile int _compactions = 0;
 	
 	protected HashMap<String, String> _bulkImportInProgress = new HashMap<String, String>();
 	
+	// Encodings of the objects most asked for, by where they are stored
+	protected final ResponseCache<FileRef> _responseCache = new ResponseCache<FileRef>(SystemConfiguration.REPO_RESPONSE_CACHE_SIZE);
+	
 	public static class RepoFile {
 		File file;
 		RandomAccessFile openFile;
 		long nextWritePos;
+		volatile FileChannel readChannel;	// Shared by all readers using positional reads
 	}
 	
 	protected static class FileRef extends ContentRef {
 		int id;
 		long offset;
+		int length;
+		long timestamp;	// When the content was stored, kept in the persistent index
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FileRef))
+				return false;
+			FileRef other = (FileRef)obj;
+			return id == other.id && offset == other.offset;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * id + (int)(offset ^ (offset >>> 32));
+		}
 	}
 
 	/**
@@ -121,7 +173,13 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 	 */
 	public ContentObject getContent(Interest interest)
 			throws RepositoryException {
+		int compactions = _compactions;
 		ContentObject co =  _index.get(interest, this);
+		if (compactions != _compactions) {
+			// We may have found content in a file that compaction has since removed, and missed
+			// it or taken something else instead. The index now refers to the copies.
+			co = _index.get(interest, this);
+		}
 		if( Log.isLoggable(Log.FAC_REPO, Level.FINE) )
 			Log.fine(Log.FAC_REPO, "Looking for: " + interest.name() + (co == null ? ": Didn't find it" : ": Found it"));
 		return co;
@@ -165,6 +223,9 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 
 	/**
 	 * Read the current repository file(s) for this repository and create an index for them.
+	 * As much of the index as possible is loaded from the persistent index in the meta directory,
+	 * so that only data written since its last checkpoint (normally the tail of the last file
+	 * written) has to be read from the data files themselves.
 	 * WARNING: multiple files are not well tested
 	 * 
 	 * @return the number of files making up the repository
@@ -175,23 +236,117 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 		assert(null != _repositoryFile);
 		assert(_repositoryFile.isDirectory());
 		String[] filenames = _repositoryFile.list();
+		TreeMap<Integer, String> dataFiles = new TreeMap<Integer, String>();
+		HashMap<Integer, Long> fileLengths = new HashMap<Integer, Long>();
 		for (int i = 0; i < filenames.length; i++) {
 			if (filenames[i].startsWith(LogStructRepoStoreProfile.CONTENT_FILE_PREFIX)) {
 				String indexPart = filenames[i].substring(LogStructRepoStoreProfile.CONTENT_FILE_PREFIX.length());
 				if (null != indexPart && indexPart.length() > 0) {
-					Integer index = Integer.parseInt(indexPart);
+					Integer index;
+					try {
+						index = Integer.parseInt(indexPart);
+					} catch (NumberFormatException e) {
+						Log.warning(Log.FAC_REPO, "Invalid file name " + filenames[i]);
+						continue;
+					}
 					if (index > max) {
 						max = index.intValue();
 					}
-					try {
-						createIndex(filenames[i], index, false);
-					} catch (RepositoryException e) {}	// This can't happen
+					dataFiles.put(index, filenames[i]);
+					fileLengths.put(index, new File(_repositoryFile, filenames[i]).length());
 				}
 			}
 		}
+		
+		Map<Integer, Long> covered = loadPersistentIndex(fileLengths);
+		for (Map.Entry<Integer, String> entry : dataFiles.entrySet()) {
+			Long start = covered.get(entry.getKey());
+			if (null == start)
+				start = 0L;
+			if (start < fileLengths.get(entry.getKey())) {
+				try {
+					createIndex(entry.getValue(), entry.getKey(), false, start);
+				} catch (RepositoryException e) {}	// This can't happen
+			} else {
+				// Everything in this file is already in the index
+				RepoFile rfile = new RepoFile();
+				rfile.file = new File(_repositoryFile, entry.getValue());
+				synchronized (_files) {
+					_files.put(entry.getKey(), rfile);
+				}
+			}
+		}
+		if (null != _persistentIndex) {
+			try {
+				_persistentIndex.checkpoint();
+			} catch (IOException e) {
+				disablePersistentIndex(e);
+			}
+		}
 		return new Integer(max);
 	}
 	
+	/**
+	 * Open the persistent index and load what it holds into _index.
+	 * 
+	 * @param fileLengths the ids and lengths of the data files in the repository
+	 * @return the position up to which each data file is already covered by _index
+	 */
+	private Map<Integer, Long> loadPersistentIndex(Map<Integer, Long> fileLengths) {
+		_persistentIndex = new LogStructIndex(new File(_repositoryMeta, LogStructRepoStoreProfile.INDEX_FILE), 
+				LogStructRepoStoreProfile.INDEX_CHECKPOINT_INTERVAL);
+		Map<Integer, Long> covered = null;
+		try {
+			covered = _persistentIndex.load(_index, fileLengths);
+		} catch (IOException e) {
+			disablePersistentIndex(e);
+		}
+		if (null == covered) {
+			// Start again from scratch with whatever was loaded discarded
+			_index = new ContentTree();
+			covered = new HashMap<Integer, Long>();
+		}
+		return covered;
+	}
+	
+	/**
+	 * Stop using the persistent index after an error. Its file is removed so that the next
+	 * startup recreates it from the data files.
+	 */
+	private void disablePersistentIndex(IOException e) {
+		Log.warning(Log.FAC_REPO, "Error using repository index, index will be rebuilt on restart: " + e.getMessage());
+		LogStructIndex persistentIndex = _persistentIndex;
+		_persistentIndex = null;
+		if (null != persistentIndex) {
+			try {
+				persistentIndex.close();
+			} catch (IOException ioe) {}
+		}
+		new File(_repositoryMeta, LogStructRepoStoreProfile.INDEX_FILE).delete();
+	}
+	
+	/**
+	 * Record an object that has been processed for _index in the persistent index
+	 * 
+	 * @param content the object
+	 * @param ref where it is stored
+	 * @param ts the timestamp it was inserted with
+	 * @param inserted true if the object was inserted, false if it was a duplicate
+	 */
+	private void updatePersistentIndex(ContentObject content, FileRef ref, long ts, boolean inserted) {
+		LogStructIndex persistentIndex = _persistentIndex;
+		if (null == persistentIndex)
+			return;
+		try {
+			if (inserted)
+				persistentIndex.add(content.fullName(), ref, ts);
+			else
+				persistentIndex.covered(ref.id, ref.offset + ref.length);
+		} catch (IOException e) {
+			disablePersistentIndex(e);
+		}
+	}
+	
 	/**
 	 * Create index from specific file. For now we will allow errors during the initial index creation,
 	 * assuming that we want to keep trying if there's an error in the existing index files. If an import
@@ -204,9 +359,10 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 	 * @param fileName
 	 * @param index
 	 * @param fromImport - this is an "import" file.
+	 * @param startOffset - where to start reading the file. Anything before this must already be in the index.
 	 * @throws RepositoryException 
 	 */
-	private void createIndex(String fileName, Integer index, boolean fromImport) throws RepositoryException {
+	private void createIndex(String fileName, Integer index, boolean fromImport, long startOffset) throws RepositoryException {
 		try {
 			RepoFile rfile = new RepoFile();
 			rfile.file = new File(_repositoryFile,fileName);
@@ -233,7 +389,7 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 			// keep track of where our pointer was also synchronized under the RepoFile so we can restore
 			// it to where it was in the case someone was reading one of our previously created nodes
 			// while the index creation is in progress.
-			long nextOffset = 0;
+			long nextOffset = startOffset;
 			while (true) {
 				FileRef ref = new FileRef();
 				ContentObject tmp = new ContentObject();
@@ -247,6 +403,7 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 						if (rfile.openFile.getFilePointer()<rfile.openFile.length() || is.available()!=0) {
 							tmp.decode(is);
 							nextOffset = rfile.openFile.getFilePointer();
+							ref.length = (int)(nextOffset - is.available() - ref.offset);
 						}
 						else{
 							if (Log.isLoggable(Log.FAC_REPO, Level.INFO)) {
@@ -269,7 +426,9 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 						break;
 					}
 				}
-				_index.insert(tmp, ref, rfile.file.lastModified(), this, null);
+				long ts = rfile.file.lastModified();
+				ref.timestamp = ts;
+				updatePersistentIndex(tmp, ref, ts, _index.insert(tmp, ref, ts, this, null));
 			}
 		} catch (NumberFormatException e) {
 			// Not valid file
@@ -380,7 +539,7 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 		_handle = handle;
 
 		// Internal initialization
-		_files = new HashMap<Integer, RepoFile>();
+		_files = new ConcurrentHashMap<Integer, RepoFile>();
 		_currentFileIndex = createIndex();
 		
 		try {
@@ -403,6 +562,24 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 		} catch (FileNotFoundException e) {
 			Log.warning(Log.FAC_REPO, "Error opening content output file index " + _currentFileIndex);
 		}
+		
+		if (SystemConfiguration.REPO_SYNC == SystemConfiguration.RepoSyncPolicy.PERIODIC) {
+			_syncTimer = new Timer("Repository sync", true);
+			_syncTimer.schedule(new TimerTask() {
+				public void run() {
+					syncActiveFile();
+				}
+			}, SystemConfiguration.REPO_SYNC_INTERVAL, SystemConfiguration.REPO_SYNC_INTERVAL);
+		}
+		if (SystemConfiguration.REPO_COMPACT_INTERVAL > 0) {
+			long interval = SystemConfiguration.REPO_COMPACT_INTERVAL * 1000L;
+			_compactTimer = new Timer("Repository compactor", true);
+			_compactTimer.schedule(new TimerTask() {
+				public void run() {
+					compact();
+				}
+			}, interval, interval);
+		}
 			
 		// Verify stored policy info
 		// TODO - we shouldn't do this if the user has specified a policy file which already has
@@ -475,33 +652,82 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 	 * @returns NameEnumerationResponse if this satisfies an outstanding NameEnumeration request
 	 */
 	public NameEnumerationResponse saveContent(ContentObject content) throws RepositoryException {
+		return saveContent(new ContentObject[]{content})[0];
+	}
+	
+	/**
+	 * Save a batch of content in the repository store. The batch is encoded into a buffer and
+	 * appended to the active file with a single write, synced according to 
+	 * SystemConfiguration.REPO_SYNC, and only then added to the index.
+	 * 
+	 * @param content the content to save
+	 * @throws RepositoryException it the content can not be written or encoded
+	 * @returns NameEnumerationResponse for each object, which has names if it satisfies an
+	 * 	outstanding NameEnumeration request
+	 */
+	public NameEnumerationResponse[] saveContent(ContentObject[] content) throws RepositoryException {
+		NameEnumerationResponse [] ners = new NameEnumerationResponse[content.length];
 		// Make sure content is within allowable nameSpace
 		if (null == _activeWriteFile) {
-			Log.warning(Log.FAC_REPO, "Tried to save: {0}, presumably after repo shutdown", content.name());
-			return null;
+			Log.warning(Log.FAC_REPO, "Tried to save: {0}, presumably after repo shutdown", 
+					content.length > 0 ? content[0].name() : null);
+			return ners;
 		}
 		try {	
-			NameEnumerationResponse ner = new NameEnumerationResponse();
-			synchronized(_activeWriteFile) {
+			synchronized(_writeLock) {
 				assert(null != _activeWriteFile.openFile);
-				FileRef ref = new FileRef();
-				ref.id = Integer.parseInt(_activeWriteFile.file.getName().substring(LogStructRepoStoreProfile.CONTENT_FILE_PREFIX.length()));
-				ref.offset = _activeWriteFile.nextWritePos;
-				_activeWriteFile.openFile.seek(_activeWriteFile.nextWritePos);
-				OutputStream os = new RandomAccessOutputStream(_activeWriteFile.openFile);
-				content.encode(os);
-				_activeWriteFile.nextWritePos = _activeWriteFile.openFile.getFilePointer();
-				_index.insert(content, ref, System.currentTimeMillis(), this, ner);
-				if (ner==null || ner.getPrefix()==null) {
-					if (Log.isLoggable(Log.FAC_REPO, Level.FINE)) {
-						Log.fine(Log.FAC_REPO, "new content did not trigger an interest flag");
-					}
-				} else {
-					if (Log.isLoggable(Log.FAC_REPO, Level.FINE)) {
-						Log.fine(Log.FAC_REPO, "new content was added where there was a name enumeration response interest flag");
+				if (SystemConfiguration.REPO_FILE_SIZE > 0 && 
+						_activeWriteFile.nextWritePos >= SystemConfiguration.REPO_FILE_SIZE * 1024L * 1024L)
+					startNewFile();
+				int id = fileId(_activeWriteFile);
+				FileRef [] refs = new FileRef[content.length];
+				_writeBuffer.reset();
+				for (int i = 0; i < content.length; i++) {
+					int start = _writeBuffer.size();
+					_writeEncoder.beginEncoding(_writeBuffer);
+					content[i].encode(_writeEncoder);
+					_writeEncoder.endEncoding();
+					refs[i] = new FileRef();
+					refs[i].id = id;
+					refs[i].offset = _activeWriteFile.nextWritePos + start;
+					refs[i].length = _writeBuffer.size() - start;
+				}
+				
+				ByteBuffer buffer = _writeBuffer.getBuffer();
+				FileChannel channel = _activeWriteFile.openFile.getChannel();
+				long position = _activeWriteFile.nextWritePos;
+				while (buffer.hasRemaining())
+					position += channel.write(buffer, position);
+				_activeWriteFile.nextWritePos = position;
+				switch (SystemConfiguration.REPO_SYNC) {
+				case BATCH:
+					channel.force(false);
+					break;
+				case PERIODIC:
+					_syncNeeded = true;
+					break;
+				default:
+					break;
+				}
+
+				// The whole batch is written so now we can make it visible
+				long ts = System.currentTimeMillis();
+				for (int i = 0; i < content.length; i++) {
+					refs[i].timestamp = ts;
+					_responseCache.invalidateOlderVersions(content[i].name());
+					ners[i] = new NameEnumerationResponse();
+					updatePersistentIndex(content[i], refs[i], ts, _index.insert(content[i], refs[i], ts, this, ners[i]));
+					if (ners[i].getPrefix()==null) {
+						if (Log.isLoggable(Log.FAC_REPO, Level.FINE)) {
+							Log.fine(Log.FAC_REPO, "new content did not trigger an interest flag");
+						}
+					} else {
+						if (Log.isLoggable(Log.FAC_REPO, Level.FINE)) {
+							Log.fine(Log.FAC_REPO, "new content was added where there was a name enumeration response interest flag");
+						}
 					}
 				}
-				return ner;
+				return ners;
 			}
 		} catch (ContentEncodingException e) {
 			throw new RepositoryException("Failed to encode content: " + e.getMessage());
@@ -509,11 +735,75 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 			throw new RepositoryException("Failed to write content: " + e.getMessage());
 		}
 	}
+	
+	/**
+	 * Force anything written to the active file since the last sync out to disk
+	 */
+	protected void syncActiveFile() {
+		if (null == _activeWriteFile)
+			return;
+		synchronized (_writeLock) {
+			if (!_syncNeeded || null == _activeWriteFile.openFile)
+				return;
+			try {
+				_activeWriteFile.openFile.getChannel().force(false);
+				_syncNeeded = false;
+			} catch (IOException e) {
+				Log.warning(Log.FAC_REPO, "Unable to sync repository file {0}: {1}", _activeWriteFile.file.getName(), e.getMessage());
+			}
+		}
+	}
 
+	/**
+	 * Finish with the active file and start writing a new one. Must be called with the _writeLock held.
+	 * @throws IOException
+	 */
+	private void startNewFile() throws IOException {
+		int index = nextFileIndex();
+		RepoFile rfile = new RepoFile();
+		rfile.file = new File(_repositoryFile, LogStructRepoStoreProfile.CONTENT_FILE_PREFIX + index);
+		rfile.openFile = new RandomAccessFile(rfile.file, "rw");
+		rfile.nextWritePos = 0;
+		_files.put(index, rfile);
+		
+		RepoFile oldFile = _activeWriteFile;
+		_activeWriteFile = rfile;
+		if (Log.isLoggable(Log.FAC_REPO, Level.INFO)) {
+			Log.info(Log.FAC_REPO, "Finished writing {0}, starting {1}", oldFile.file.getName(), rfile.file.getName());
+		}
+		synchronized (oldFile) {
+			if (_syncNeeded || SystemConfiguration.REPO_SYNC != SystemConfiguration.RepoSyncPolicy.NONE)
+				oldFile.openFile.getChannel().force(false);
+			oldFile.openFile.close();
+			oldFile.openFile = null;
+		}
+		_syncNeeded = false;
+	}
+	
+	/**
+	 * @return the index for a new data file
+	 */
+	private static int fileId(RepoFile rfile) {
+		return Integer.parseInt(rfile.file.getName().substring(LogStructRepoStoreProfile.CONTENT_FILE_PREFIX.length()));
+	}
+	
+	private int nextFileIndex() {
+		synchronized (_files) {
+			_currentFileIndex = _currentFileIndex + 1;
+			return _currentFileIndex;
+		}
+	}
+	
 	/**
 	 * Get content for the given reference from the storage files. Used to retrieve content for 
 	 * comparison operations.
 	 * 
+	 * Since the reference holds the length of the stored object, this is done with a single
+	 * positional read of exactly that object on a channel shared by all readers of the file. No lock
+	 * is held during the read, so any number of threads can read from the same file at once.
+	 * The encodings of the objects most asked for are kept in a ResponseCache, and objects found
+	 * there are decoded lazily so that they are sent with the encoding we already have.
+	 * 
 	 * @param ref the reference
 	 * @return ContentObject at the referenced slot in the storage files
 	 */
@@ -522,28 +812,60 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 		// using our subtype of ContentRef
 		FileRef fref = (FileRef)ref;
 		try {
-			RepoFile file = null;
-			synchronized (_files) {
-				file = _files.get(fref.id);
+			ContentObject content = new ContentObject();
+			byte [] encoding = _responseCache.get(fref);
+			if (null != encoding) {
+				// Keep the encoding so it is sent as it is
+				content.decodeLazily(encoding);
+				return content;
 			}
+			RepoFile file = _files.get(fref.id);
 			if (null == file)
 				return null;
-			synchronized (file) {
-				if (null == file.openFile) {
-					file.openFile = new RandomAccessFile(file.file, "r");
-				}
-				file.openFile.seek(fref.offset);
-				ContentObject content = new ContentObject();
-				InputStream is = new BufferedInputStream(new RandomAccessInputStream(file.openFile), 8192);
-				content.decode(is);
-				return content;
-			}
+			encoding = read(file, fref).array();
+			if (SystemConfiguration.LAZY_DECODING)
+				content.decodeLazily(encoding);
+			else
+				content.decode(encoding);
+			_responseCache.put(fref, content.name(), encoding);
+			return content;
 		} catch (Exception e) {
 			Log.warning(Log.FAC_REPO, "Can't get content: " + e);
 			return null;
 		}
 	}
 	
+	/**
+	 * Read the encoding of an object
+	 * @return a buffer holding exactly the encoding
+	 */
+	private ByteBuffer read(RepoFile file, FileRef fref) throws IOException {
+		FileChannel channel = getReadChannel(file);
+		ByteBuffer buffer = ByteBuffer.allocate(fref.length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, fref.offset + buffer.position()) < 0)
+				throw new EOFException("Unexpected end of " + file.file.getName() + " at " + (fref.offset + buffer.position()));
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Get the channel used for reads of a file, opening it if necessary
+	 */
+	private FileChannel getReadChannel(RepoFile file) throws IOException {
+		FileChannel channel = file.readChannel;
+		if (null == channel) {
+			synchronized (file) {
+				channel = file.readChannel;
+				if (null == channel) {
+					channel = new RandomAccessFile(file.file, "r").getChannel();
+					file.readChannel = channel;
+				}
+			}
+		}
+		return channel;
+	}
+	
 	/**
 	 * Check/write files that contain meta data for the repo
 	 * @throws RepositoryException
@@ -593,6 +915,166 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 	}
 
 	
+	/**
+	 * Compact the data files that are no longer being written to. First any content that the
+	 * retention policy set by SystemConfiguration.REPO_KEEP_VERSIONS says is no longer wanted is
+	 * removed from the index. Then the content still in the index from each file that also holds
+	 * content that isn't is copied to a new file, the index is switched over to the copies, and the
+	 * old files are deleted. Gets continue while this is in progress, and saves are only held up while
+	 * the persistent index is rewritten.
+	 * 
+	 * @return the number of data files removed
+	 */
+	synchronized public int compact() {
+		int removed = 0;
+		if (SystemConfiguration.REPO_KEEP_VERSIONS > 0) {
+			removed = _index.retain(SystemConfiguration.REPO_KEEP_VERSIONS, this);
+			if (Log.isLoggable(Log.FAC_REPO, Level.INFO)) {
+				Log.info(Log.FAC_REPO, "Compaction removed {0} objects from the index", removed);
+			}
+		}
+		closeRetiredChannels();
+		
+		// Find out how much of each file is still in use
+		final HashMap<Integer, Long> liveBytes = new HashMap<Integer, Long>();
+		_index.visit(new ContentTree.ContentVisitor() {
+			public ContentRef visit(ContentName name, ContentRef ref) {
+				FileRef fref = (FileRef)ref;
+				Long live = liveBytes.get(fref.id);
+				liveBytes.put(fref.id, (null == live ? 0 : live) + fref.length);
+				return ref;
+			}
+		});
+		
+		// A new file may have been started while we were counting, so only look at which one is
+		// active now. It and any file after it may still be written to. Everything written to the
+		// files before it is already in the index.
+		int activeId;
+		synchronized (_writeLock) {
+			activeId = fileId(_activeWriteFile);
+		}
+		final HashMap<Integer, RepoFile> oldFiles = new HashMap<Integer, RepoFile>();
+		for (Map.Entry<Integer, RepoFile> entry : _files.entrySet()) {
+			RepoFile rfile = entry.getValue();
+			if (entry.getKey() >= activeId)
+				continue;
+			Long live = liveBytes.get(entry.getKey());
+			if (null == live || live < rfile.file.length())
+				oldFiles.put(entry.getKey(), rfile);
+		}
+		if (oldFiles.isEmpty() && 0 == removed)
+			return 0;
+		
+		RepoFile newFile = null;
+		int newIndex = 0;
+		try {
+			if (!oldFiles.isEmpty()) {
+				newIndex = nextFileIndex();
+				newFile = new RepoFile();
+				newFile.file = new File(_repositoryFile, LogStructRepoStoreProfile.CONTENT_FILE_PREFIX + newIndex);
+				newFile.openFile = new RandomAccessFile(newFile.file, "rw");
+				_files.put(newIndex, newFile);
+				
+				// Copy each object and switch the index to the copy as soon as it is written
+				final RepoFile copyFile = newFile;
+				final int copyIndex = newIndex;
+				final IOException [] error = new IOException[1];
+				_index.visit(new ContentTree.ContentVisitor() {
+					public ContentRef visit(ContentName name, ContentRef ref) {
+						FileRef fref = (FileRef)ref;
+						if (null != error[0] || !oldFiles.containsKey(fref.id))
+							return ref;
+						try {
+							ByteBuffer buffer = read(oldFiles.get(fref.id), fref);
+							buffer.flip();
+							FileRef newRef = new FileRef();
+							newRef.id = copyIndex;
+							newRef.offset = copyFile.nextWritePos;
+							newRef.length = fref.length;
+							newRef.timestamp = fref.timestamp;
+							FileChannel channel = copyFile.openFile.getChannel();
+							while (buffer.hasRemaining())
+								copyFile.nextWritePos += channel.write(buffer, copyFile.nextWritePos);
+							return newRef;
+						} catch (IOException e) {
+							error[0] = e;
+							return ref;
+						}
+					}
+				});
+				if (null != error[0])
+					throw error[0];
+				newFile.openFile.getChannel().force(false);
+				synchronized (newFile) {
+					newFile.openFile.close();
+					newFile.openFile = null;
+				}
+				if (0 == newFile.nextWritePos) {
+					// Nothing was still in use
+					_files.remove(newIndex);
+					newFile.file.delete();
+				}
+			}
+			
+			// Replace the persistent index so it no longer refers to the old files
+			LogStructIndex persistentIndex = _persistentIndex;
+			if (null != persistentIndex) {
+				synchronized (_writeLock) {
+					HashMap<Integer, Long> coverage = new HashMap<Integer, Long>();
+					for (Map.Entry<Integer, RepoFile> entry : _files.entrySet()) {
+						if (oldFiles.containsKey(entry.getKey()))
+							continue;
+						RepoFile rfile = entry.getValue();
+						coverage.put(entry.getKey(), rfile == _activeWriteFile ? rfile.nextWritePos : rfile.file.length());
+					}
+					persistentIndex.rewrite(_index, coverage);
+				}
+			}
+		} catch (IOException e) {
+			// Anything already switched to the new file is OK, so just leave all the files in place
+			Log.warning(Log.FAC_REPO, "Error compacting repository, old data files not removed: {0}", e.getMessage());
+			if (null != _persistentIndex)
+				disablePersistentIndex(e);
+			return 0;
+		}
+		
+		// Gets already in progress may still try the old files, so tell them to look again
+		// before any of them goes
+		if (!oldFiles.isEmpty())
+			_compactions++;
+		for (Map.Entry<Integer, RepoFile> entry : oldFiles.entrySet()) {
+			RepoFile rfile = entry.getValue();
+			_files.remove(entry.getKey());
+			synchronized (rfile) {
+				if (null != rfile.readChannel)
+					_retiredChannels.add(rfile.readChannel);
+				if (null != rfile.openFile) {
+					try {
+						rfile.openFile.close();
+					} catch (IOException e) {}
+					rfile.openFile = null;
+				}
+			}
+			if (!rfile.file.delete())
+				Log.warning(Log.FAC_REPO, "Unable to delete compacted data file {0}", rfile.file.getName());
+		}
+		// What is cached is now stored somewhere else, if it is still stored at all
+		_responseCache.clear();
+		if (Log.isLoggable(Log.FAC_REPO, Level.INFO)) {
+			Log.info(Log.FAC_REPO, "Compaction removed {0} data files", oldFiles.size());
+		}
+		return oldFiles.size();
+	}
+	
+	private void closeRetiredChannels() {
+		for (FileChannel channel : _retiredChannels) {
+			try {
+				channel.close();
+			} catch (IOException e) {}
+		}
+		_retiredChannels.clear();
+	}
+
 	protected void dumpNames(int nodelen) {
 		// Debug: dump names tree to file
 		File namesFile = new File(_repositoryFile, LogStructRepoStoreProfile.DEBUG_TREEDUMP_FILE);
@@ -613,7 +1095,8 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 	 * Dump all names of data stored in the repository into a special file within the repository 
 	 * on diagnostic request from higher level code
 	 * 
-	 * @param name "nametree" or "nametreewide" to decide whether to limit the printout length of components
+	 * @param name "nametree" or "nametreewide" to decide whether to limit the printout length of components,
+	 * 	or "compact" to compact the data files
 	 */
 	public boolean diagnostic(String name) {
 		if (0 == name.compareToIgnoreCase(LogStructRepoStoreProfile.DIAG_NAMETREE)) {
@@ -622,10 +1105,20 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 		} else if (0 == name.compareToIgnoreCase(LogStructRepoStoreProfile.DIAG_NAMETREEWIDE)) {
 			dumpNames(-1);
 			return true;
+		} else if (0 == name.compareToIgnoreCase(LogStructRepoStoreProfile.DIAG_COMPACT)) {
+			compact();
+			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * @return the statistics of the cache of the objects most asked for
+	 */
+	public NDNStats getResponseCacheStats() {
+		return _responseCache.getStats();
+	}
+
 	/**
 	 * Cleanup on shutdown
 	 */
@@ -639,14 +1132,40 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 			KeyManager.closeDefaultKeyManager();
 		}
 		
+		if (null != _syncTimer) {
+			_syncTimer.cancel();
+			_syncTimer = null;
+		}
+		if (null != _compactTimer) {
+			_compactTimer.cancel();
+			_compactTimer = null;
+		}
 		if (null != _activeWriteFile && null != _activeWriteFile.openFile) {
 			try {
-				synchronized (_activeWriteFile) {
+				synchronized (_writeLock) {
+					if (SystemConfiguration.REPO_SYNC != SystemConfiguration.RepoSyncPolicy.NONE)
+						_activeWriteFile.openFile.getChannel().force(false);
 					_activeWriteFile.openFile.close();
 					_activeWriteFile.openFile = null;
 				}
 			} catch (IOException e) {}
 		}
+		for (RepoFile file : _files.values()) {
+			if (null != file.readChannel) {
+				try {
+					file.readChannel.close();
+				} catch (IOException e) {}
+				file.readChannel = null;
+			}
+		}
+		closeRetiredChannels();
+		if (null != _persistentIndex) {
+			try {
+				_persistentIndex.close();
+			} catch (IOException e) {
+				disablePersistentIndex(e);
+			}
+		}
 		if (SystemConfiguration.checkDebugFlag(DEBUGGING_FLAGS.REPO_EXITDUMP)) {
 			Log.warning(Log.FAC_REPO, "Debug flag ({0}) is set: dumping nametree now (on shutdown)", DEBUGGING_FLAGS.REPO_EXITDUMP.toString());
 			dumpNames(-1);
@@ -673,20 +1192,30 @@ public class LogStructRepoStore extends RepositoryStoreBase implements Repositor
 			
 			_bulkImportInProgress.put(name, name);
 		}
-		_currentFileIndex++;
-		File repoFile = new File(_repositoryFile, LogStructRepoStoreProfile.CONTENT_FILE_PREFIX + _currentFileIndex);
+		int index = nextFileIndex();
+		File repoFile = new File(_repositoryFile, LogStructRepoStoreProfile.CONTENT_FILE_PREFIX + index);
 		if (!file.renameTo(repoFile))
 			throw new RepositoryException("Can not rename file: " + file);
 		try {
-			createIndex(LogStructRepoStoreProfile.CONTENT_FILE_PREFIX + _currentFileIndex, _currentFileIndex, true);
+			createIndex(LogStructRepoStoreProfile.CONTENT_FILE_PREFIX + index, index, true, 0);
 		} catch (RepositoryException re) {
 			// The seemingly logical thing to do would be to verify the data for errors first and then submit it if it
 			// was OK. But that would require 2 passes through the data in the mainline case in which the data is good
 			// so instead we rename the file back if its bad.
 			repoFile.renameTo(file);
+			// The persistent index may already refer to the file we just removed
+			disablePersistentIndex(new IOException("bulk import of " + name + " failed"));
 			_bulkImportInProgress.remove(name);
 			throw re;
 		}
+		LogStructIndex persistentIndex = _persistentIndex;
+		if (null != persistentIndex) {
+			try {
+				persistentIndex.checkpoint();
+			} catch (IOException e) {
+				disablePersistentIndex(e);
+			}
+		}
 		_bulkImportInProgress.remove(name);
 		return true;
 	}
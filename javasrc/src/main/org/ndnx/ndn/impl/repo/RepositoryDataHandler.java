@@ -21,6 +21,7 @@
 package org.ndnx.ndn.impl.repo;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
@@ -42,6 +43,7 @@ import org.ndnx.ndn.protocol.Interest;
 public class RepositoryDataHandler implements Runnable {
 	public static final int THROTTLE_TOP = 2000;
 	public static final int THROTTLE_BOTTOM = 1800;
+	public static final int MAX_BATCH = 100;	// Most objects to hand to the store at once
 
 	private final RepositoryServer _server;
 	private final Queue<ContentObject> _queue = new ConcurrentLinkedQueue<ContentObject>();
@@ -61,8 +63,10 @@ public class RepositoryDataHandler implements Runnable {
 			_throttled = true;
 			_server.setThrottle(true);
 		}
-		_queue.add(co);
-		_queue.notify();
+		synchronized (_queue) {
+			_queue.add(co);
+			_queue.notify();
+		}
 	}
 
 	public void addKeyCheck(ContentName target) {
@@ -78,6 +82,7 @@ public class RepositoryDataHandler implements Runnable {
 	 * @see RepositoryStore
 	 */
 	public void run() {
+		ArrayList<ContentObject> batch = new ArrayList<ContentObject>(MAX_BATCH);
 		while (!_shutdownComplete) {
 			ContentObject co = null;
 			do {
@@ -90,59 +95,98 @@ public class RepositoryDataHandler implements Runnable {
 						}
 						return;
 					}
-					try {
-						_queue.wait(SystemConfiguration.MEDIUM_TIMEOUT);
-					} catch (InterruptedException e) {}
+					synchronized (_queue) {
+						if (_queue.isEmpty()) {
+							try {
+								_queue.wait(SystemConfiguration.MEDIUM_TIMEOUT);
+							} catch (InterruptedException e) {}
+						}
+					}
 				}
 			} while (null == co);
-			_currentQueueSize--;
+			
+			// Take whatever else is waiting so it can be written together
+			batch.clear();
+			do {
+				batch.add(co);
+			} while (batch.size() < MAX_BATCH && null != (co = _queue.poll()));
+			_currentQueueSize -= batch.size();
 			if (_throttled && _currentQueueSize < THROTTLE_BOTTOM) {
 				_throttled = false;
 				_server.setThrottle(false);
 			}
+			
+			NameEnumerationResponse [] ners;
 			try {
 				if (Log.isLoggable(Log.FAC_REPO, Level.FINER)) {
-					Log.finer(Log.FAC_REPO, "Saving content in: " + co.toString());
+					Log.finer(Log.FAC_REPO, "Saving {0} content objects starting with: {1}", batch.size(), batch.get(0));
 				}
-
-				NameEnumerationResponse ner = _server.getRepository().saveContent(co);
-				if (!_shutdown) {
-					if (ner!=null && ner.hasNames()) {
-						_server.sendEnumerationResponse(ner);
-					}
-				}
-
-				// When a write or some syncs are first requested we don't know what key data
-				// was being used because this is in the ContentObject which of course we didn't
-				// have yet. Bbut we need this data to make sure the key is saved along with the file.
-				// Now we can find the key data and check if we have it already or need to get it
-				// too. Also the key locator that we dont have yet could have been a link. We
-				// didn't know that either. If it was we have to get the data it points to.
-				//
-				// Also we have to check for more locators associated with our new object
-				// and the objects pointed to by the links.
-				Entry<ContentName> entry = _pendingKeyChecks.removeMatch(co);
-				if (null != entry) {
-					ContentName nameToCheck = entry.value();
-					if (Log.isLoggable(Log.FAC_REPO, Level.FINER)) {
-						Log.finer(Log.FAC_REPO, "Processing key check entry: {0}", nameToCheck);
+				ners = _server.getRepository().saveContent(batch.toArray(new ContentObject[batch.size()]));
+			} catch (Exception e) {
+				Log.logStackTrace(Level.WARNING, e);
+				ners = saveEach(batch);
+			}
+			
+			for (int i = 0; i < batch.size(); i++) {
+				co = batch.get(i);
+				if (null == co)
+					continue;	// Couldn't be saved
+				try {
+					NameEnumerationResponse ner = ners[i];
+					if (!_shutdown) {
+						if (ner!=null && ner.hasNames()) {
+							_server.sendEnumerationResponse(ner);
+						}
 					}
-					ContentName linkCheck = _server.getLinkedKeyTarget(co);
-					if (null != linkCheck) {
+	
+					// When a write or some syncs are first requested we don't know what key data
+					// was being used because this is in the ContentObject which of course we didn't
+					// have yet. Bbut we need this data to make sure the key is saved along with the file.
+					// Now we can find the key data and check if we have it already or need to get it
+					// too. Also the key locator that we dont have yet could have been a link. We
+					// didn't know that either. If it was we have to get the data it points to.
+					//
+					// Also we have to check for more locators associated with our new object
+					// and the objects pointed to by the links.
+					Entry<ContentName> entry = _pendingKeyChecks.removeMatch(co);
+					if (null != entry) {
+						ContentName nameToCheck = entry.value();
 						if (Log.isLoggable(Log.FAC_REPO, Level.FINER)) {
-							Log.finer(Log.FAC_REPO, "Processing key check entry for link: {0}", linkCheck);
+							Log.finer(Log.FAC_REPO, "Processing key check entry: {0}", nameToCheck);
+						}
+						ContentName linkCheck = _server.getLinkedKeyTarget(co);
+						if (null != linkCheck) {
+							if (Log.isLoggable(Log.FAC_REPO, Level.FINER)) {
+								Log.finer(Log.FAC_REPO, "Processing key check entry for link: {0}", linkCheck);
+							}
+							Interest linkInterest = new Interest(linkCheck);
+							_server.doSync(linkInterest, linkInterest);
+							syncKeysForObject(co, linkCheck);
 						}
-						Interest linkInterest = new Interest(linkCheck);
-						_server.doSync(linkInterest, linkInterest);
-						syncKeysForObject(co, linkCheck);
+						syncKeysForObject(co, nameToCheck);
 					}
-					syncKeysForObject(co, nameToCheck);
+				} catch (Exception e) {
+					Log.logStackTrace(Level.WARNING, e);
 				}
+			}
+		}
+	}
+
+	/**
+	 * Save the objects of a batch that couldn't be saved together one at a time, so that
+	 * only those that can't be saved at all are lost. Those are replaced by null in batch.
+	 */
+	private NameEnumerationResponse [] saveEach(ArrayList<ContentObject> batch) {
+		NameEnumerationResponse [] ners = new NameEnumerationResponse[batch.size()];
+		for (int i = 0; i < batch.size(); i++) {
+			try {
+				ners[i] = _server.getRepository().saveContent(new ContentObject[]{batch.get(i)})[0];
 			} catch (Exception e) {
-				e.printStackTrace();
 				Log.logStackTrace(Level.WARNING, e);
+				batch.set(i, null);
 			}
 		}
+		return ners;
 	}
 
 	private void syncKeysForObject(ContentObject co, ContentName name) throws RepositoryException, IOException {
@@ -22,6 +22,14 @@ package org.ndnx.ndn.impl.repo;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import org.ndnx.ndn.NDNHandle;
@@ -42,6 +50,13 @@ import org.ndnx.ndn.protocol.Interest;
 /**
  * Handles interests matching the repository's namespace.
  *
+ * Interests are answered by a pool of worker threads (see SystemConfiguration.REPO_INTEREST_THREADS),
+ * so lookups in the RepositoryStore and the puts of what they find run in parallel. Command
+ * interests - start write, name enumeration, checked write and bulk import - are processed one
+ * at a time and in the order they arrived for each prefix the command is for. When more than
+ * SystemConfiguration.REPO_INTEREST_QUEUE_SIZE interests are waiting for a thread, new ones are
+ * dropped rather than queued; they will be expressed again if they are still wanted.
+ *
  * @see RepositoryServer
  * @see RepositoryFlowControl
  * @see RepositoryDataListener
@@ -50,11 +65,40 @@ import org.ndnx.ndn.protocol.Interest;
 public class RepositoryInterestHandler extends QueuedContentHandler<Interest> implements Runnable, NDNInterestHandler {
 	private final RepositoryServer _server;
 	private final NDNHandle _handle;
-	private boolean _shutdown = false;
+	private volatile boolean _shutdown = false;
+
+	protected final ThreadPoolExecutor _workers;
+	protected final int _maxQueued;
+	// Interests waiting for a worker, including commands waiting behind others for the same prefix
+	protected final AtomicInteger _queued = new AtomicInteger(0);
+	// Commands waiting for the one being processed for the same prefix. There is an entry for
+	// each prefix with a command queued or being processed.
+	protected final HashMap<ContentName, LinkedList<InterestTask>> _commandQueues = new HashMap<ContentName, LinkedList<InterestTask>>();
 
 	public RepositoryInterestHandler(RepositoryServer server) {
+		this(server, SystemConfiguration.REPO_INTEREST_THREADS, SystemConfiguration.REPO_INTEREST_QUEUE_SIZE);
+	}
+
+	/**
+	 * @param server
+	 * @param threads number of worker threads, 0 or less for one per available processor
+	 * @param maxQueued number of interests that can wait for a worker before new ones are dropped
+	 */
+	public RepositoryInterestHandler(RepositoryServer server, int threads, int maxQueued) {
 		_server = server;
 		_handle = server.getHandle();
+		_maxQueued = maxQueued;
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		_workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger _count = new AtomicInteger(0);
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "RepositoryInterestHandler worker " + _count.getAndIncrement());
+						t.setDaemon(true);
+						return t;
+					}
+				});
 	}
 
 	public boolean handleInterest(Interest interest) {
@@ -65,6 +109,89 @@ public class RepositoryInterestHandler extends QueuedContentHandler<Interest> im
 		return true;		// In the repository we never want to service an interest again
 	}
 
+	/**
+	 * Queue an interest for a worker thread, or drop it if too many are waiting already.
+	 * A command interest waits for any earlier command for the same prefix to finish.
+	 */
+	@Override
+	public void add(Interest interest) {
+		if (_shutdown)
+			return;
+		int depth = _queued.incrementAndGet();
+		_server._stats.addSample(RepositoryServer.StatsEnum.HandleInterestQueueDepth, depth);
+		if (depth > _maxQueued) {
+			_queued.decrementAndGet();
+			_server._stats.increment(RepositoryServer.StatsEnum.HandleInterestShed);
+			if (Log.isLoggable(Log.FAC_REPO, Level.FINE))
+				Log.fine(Log.FAC_REPO, "Too many interests waiting - dropping {0}", interest.name());
+			return;
+		}
+
+		ContentName commandPrefix = null;
+		int i = interest.name().componentStartsWithWhere(CommandMarker.COMMAND_PREFIX);
+		if (i >= 0)
+			commandPrefix = interest.name().cut(i);
+		InterestTask task = new InterestTask(interest, commandPrefix);
+		if (null != commandPrefix) {
+			synchronized (_commandQueues) {
+				LinkedList<InterestTask> waiting = _commandQueues.get(commandPrefix);
+				if (null != waiting) {
+					waiting.add(task);
+					return;
+				}
+				_commandQueues.put(commandPrefix, new LinkedList<InterestTask>());
+			}
+		}
+		execute(task);
+	}
+
+	protected void execute(InterestTask task) {
+		try {
+			_workers.execute(task);
+		} catch (RejectedExecutionException ree) {
+			// We've been shut down
+			_queued.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Process an interest on a worker thread, then start the next command waiting for the
+	 * same prefix if this was a command.
+	 */
+	protected class InterestTask implements Runnable {
+		protected final Interest _interest;
+		protected final ContentName _commandPrefix;
+		protected long _queuedTime = System.nanoTime();
+
+		protected InterestTask(Interest interest, ContentName commandPrefix) {
+			_interest = interest;
+			_commandPrefix = commandPrefix;
+		}
+
+		public void run() {
+			_queued.decrementAndGet();
+			long startTime = System.nanoTime();
+			_server._stats.addSample(RepositoryServer.StatsEnum.HandleInterestQueueTime, startTime - _queuedTime);
+			if (!_checkShutdown())
+				process(_interest);
+			if (null == _commandPrefix)
+				return;
+
+			_server._stats.addSample(RepositoryServer.StatsEnum.HandleInterestCommandTime, System.nanoTime() - startTime);
+			InterestTask next;
+			synchronized (_commandQueues) {
+				next = _commandQueues.get(_commandPrefix).poll();
+				if (null == next)
+					_commandQueues.remove(_commandPrefix);
+			}
+			if (null != next) {
+				// Its time waiting for a thread starts now
+				next._queuedTime = System.nanoTime();
+				execute(next);
+			}
+		}
+	}
+
 	/**
 	 * Parse incoming interests for type and dispatch those dedicated to some special purpose.
 	 * Interests can be to start a write or a name enumeration request.
@@ -112,11 +239,15 @@ public class RepositoryInterestHandler extends QueuedContentHandler<Interest> im
 				}
 			}
 			_server._stats.increment(RepositoryServer.StatsEnum.HandleInterestUncategorized);
+			long startTime = System.nanoTime();
 			ContentObject content = _server.getRepository().getContent(interest);
+			_server._stats.addSample(RepositoryServer.StatsEnum.HandleInterestLookupTime, System.nanoTime() - startTime);
 			if (content != null) {
 				if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
 					Log.finest(Log.FAC_REPO, "Satisfying interest: {0} with content {1}", interest, content.name());
+				startTime = System.nanoTime();
 				_handle.put(content);
+				_server._stats.addSample(RepositoryServer.StatsEnum.HandleInterestPutTime, System.nanoTime() - startTime);
 			} else {
 				if (Log.isLoggable(Log.FAC_REPO, Level.FINE))
 					Log.fine(Log.FAC_REPO, "Unsatisfied interest: {0}", interest);
@@ -350,5 +481,6 @@ public class RepositoryInterestHandler extends QueuedContentHandler<Interest> im
 
 	public void shutdown() {
 		_shutdown = true;
+		_workers.shutdown();
 	}
 }
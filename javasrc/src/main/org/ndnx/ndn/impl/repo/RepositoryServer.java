@@ -679,6 +679,12 @@ public class RepositoryServer implements NDNStatistics {
 		HandleInterestStartWritePolicyHandlers ("responses", "Number of RepositoryPolicyHandler created for StartWrite"),
 		HandleInterestStartWriteExpressInterest ("responses", "Number of expressInterests created for StartWrite"),
 		HandleInterestNameEnumResponses ("responses", "Number of responses sent for Name Enums"),
+		HandleInterestShed ("interests", "Number of interests dropped because too many were waiting for a thread"),
+		HandleInterestQueueDepth ("interests", "The average number of interests waiting for a thread"),
+		HandleInterestQueueTime ("nanos", "The average time interests wait for a thread"),
+		HandleInterestCommandTime ("nanos", "The average time spent processing a command interest"),
+		HandleInterestLookupTime ("nanos", "The average time spent looking up content for an interest"),
+		HandleInterestPutTime ("nanos", "The average time spent putting content that answers an interest"),
 
 		HandleContent ("objects", "Calls to ResponsitoryDataListener.handleContent()"),
 		HandleContentHandleData ("objects", "Calls to handleData in RepositoryDataListener"),
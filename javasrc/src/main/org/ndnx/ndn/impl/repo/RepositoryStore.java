@@ -97,6 +97,14 @@ public interface RepositoryStore {
 	 */
 	public NameEnumerationResponse saveContent(ContentObject content) throws RepositoryException;
 	
+	/**
+	 * Save a batch of content in the repository. The store may write the batch in a single
+	 * operation, so this is preferred to saving the objects one at a time when several are available.
+	 * @param content
+	 * @return NameEnumerationResponse for each object in the batch, in the same order
+	 */
+	public NameEnumerationResponse[] saveContent(ContentObject[] content) throws RepositoryException;
+	
 	/**
 	 * Return the matching content if it exists
 	 * @param interest Interest to match
@@ -205,6 +205,16 @@ public abstract class RepositoryStoreBase implements RepositoryStore {
 	}
 
 	public abstract NameEnumerationResponse saveContent(ContentObject content) throws RepositoryException;
+	
+	/**
+	 * Default for stores that can't do better than saving each object in turn
+	 */
+	public NameEnumerationResponse[] saveContent(ContentObject[] content) throws RepositoryException {
+		NameEnumerationResponse [] result = new NameEnumerationResponse[content.length];
+		for (int i = 0; i < content.length; i++)
+			result[i] = saveContent(content[i]);
+		return result;
+	}
 
 	public void setPolicy(Policy policy) {
 		_policy = policy;
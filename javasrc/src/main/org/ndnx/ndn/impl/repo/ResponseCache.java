@@ -0,0 +1,313 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.impl.repo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats.IStatsEnum;
+import org.ndnx.ndn.impl.NDNStats.NDNStatistics;
+import org.ndnx.ndn.impl.support.DataUtils;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+
+/**
+ * Keeps the wire encodings of the stored objects most often asked for, so they can be
+ * answered without reading them from disk and sent without encoding them again. Each
+ * key stands for exactly one stored object.
+ *
+ * The cache is bounded by the total size of the encodings it holds. Entries are
+ * evicted least recently used first, but a new object is only let in if it has been
+ * asked for more often recently than each of the objects it would push out (TinyLFU).
+ * How often keys have been asked for is estimated with a count-min sketch of small
+ * counters that are halved from time to time, so a burst of requests for objects that
+ * are read once can't flush out the ones that are read all the time.
+ *
+ * When a new version of something is saved, the cached objects of its older versions
+ * are dropped, since requests will go to the new version from now on.
+ */
+public class ResponseCache<K> implements NDNStatistics {
+
+	// Depth of the sketch, and the largest count a counter holds
+	public static final int SKETCH_DEPTH = 4;
+	public static final int MAX_COUNT = 15;
+	// Expected size of an object, used to size the sketch
+	public static final int AVERAGE_OBJECT_SIZE = 4096;
+
+	protected static class CacheEntry {
+		protected final byte [] _encoding;
+		protected final ContentName _versionBase;
+		protected final byte [] _version;
+
+		protected CacheEntry(byte [] encoding, ContentName versionBase, byte [] version) {
+			_encoding = encoding;
+			_versionBase = versionBase;
+			_version = version;
+		}
+	}
+
+	protected final long _maxBytes;
+	protected long _bytes = 0;
+	protected final LinkedHashMap<K, CacheEntry> _entries = new LinkedHashMap<K, CacheEntry>(16, 0.75f, true);
+	// Keys of cached objects with versioned names by the name up to the version
+	protected final HashMap<ContentName, HashSet<K>> _versions = new HashMap<ContentName, HashSet<K>>();
+
+	protected final boolean _internNames = SystemConfiguration.REPO_INTERN_NAMES;
+
+	protected final byte [][] _sketch;
+	protected final int _sketchMask;
+	protected final int _sampleSize;
+	protected int _samples = 0;
+
+	/**
+	 * @param maxBytes the most bytes of encodings to keep; 0 or less keeps nothing
+	 */
+	public ResponseCache(long maxBytes) {
+		_maxBytes = maxBytes;
+		long expected = Math.max(64, maxBytes / AVERAGE_OBJECT_SIZE);
+		int width = Integer.highestOneBit((int)Math.min(expected, 1 << 24) - 1) << 1;
+		_sketch = new byte[SKETCH_DEPTH][width];
+		_sketchMask = width - 1;
+		_sampleSize = 10 * width;
+	}
+
+	/**
+	 * Get the encoding of an object if it is cached. Whether it is or not, this counts
+	 * as a request for the object.
+	 * @return the encoding, which must not be changed, or null
+	 */
+	public synchronized byte [] get(K key) {
+		if (_maxBytes <= 0)
+			return null;
+		countRequest(key);
+		CacheEntry entry = _entries.get(key);
+		if (null == entry) {
+			_stats.increment(StatsEnum.Misses);
+			return null;
+		}
+		_stats.increment(StatsEnum.Hits);
+		return entry._encoding;
+	}
+
+	/**
+	 * Offer the encoding of an object just read to the cache. It is only kept if the
+	 * object is asked for more often than the objects that would be evicted to make room.
+	 * @param key
+	 * @param name the object's name
+	 * @param encoding the object's encoding, which must not be changed after this
+	 * @return true if the encoding is in the cache
+	 */
+	public synchronized boolean put(K key, ContentName name, byte [] encoding) {
+		if (encoding.length > _maxBytes)
+			return false;
+		if (_entries.containsKey(key))
+			return true;
+
+		long needed = _bytes + encoding.length - _maxBytes;
+		if (needed > 0) {
+			int frequency = frequency(key);
+			ArrayList<K> victims = new ArrayList<K>();
+			Iterator<Map.Entry<K, CacheEntry>> it = _entries.entrySet().iterator();
+			while (needed > 0 && it.hasNext()) {
+				Map.Entry<K, CacheEntry> victim = it.next();
+				if (frequency(victim.getKey()) >= frequency) {
+					_stats.increment(StatsEnum.Rejections);
+					return false;
+				}
+				victims.add(victim.getKey());
+				needed -= victim.getValue()._encoding.length;
+			}
+			for (K victim : victims) {
+				remove(victim);
+				_stats.increment(StatsEnum.Evictions);
+			}
+		}
+
+		ContentName versionBase = null;
+		byte [] version = null;
+		int i = VersioningProfile.findLastVersionComponent(name);
+		if (i >= 0) {
+			// Many objects share a base, so keep a copy of it that doesn't hold on to name,
+			// and only one copy if names are interned
+			versionBase = _internNames ? name.cut(i).intern() : name.cut(i).compact();
+			version = name.component(i);
+			HashSet<K> keys = _versions.get(versionBase);
+			if (null == keys) {
+				keys = new HashSet<K>();
+				_versions.put(versionBase, keys);
+			}
+			keys.add(key);
+		}
+		_entries.put(key, new CacheEntry(encoding, versionBase, version));
+		_bytes += encoding.length;
+		_stats.increment(StatsEnum.Admissions);
+		return true;
+	}
+
+	/**
+	 * Drop the cached objects of versions older than the one in name, if it has one
+	 * @param name the name of an object just saved
+	 */
+	public synchronized void invalidateOlderVersions(ContentName name) {
+		if (_versions.isEmpty())
+			return;
+		int i = VersioningProfile.findLastVersionComponent(name);
+		if (i < 0)
+			return;
+		HashSet<K> keys = _versions.get(name.cut(i));
+		if (null == keys)
+			return;
+		byte [] version = name.component(i);
+		for (K key : new ArrayList<K>(keys)) {
+			if (DataUtils.compare(_entries.get(key)._version, version) < 0) {
+				remove(key);
+				_stats.increment(StatsEnum.Invalidations);
+			}
+		}
+	}
+
+	public synchronized void remove(K key) {
+		CacheEntry entry = _entries.remove(key);
+		if (null == entry)
+			return;
+		_bytes -= entry._encoding.length;
+		if (null != entry._versionBase) {
+			HashSet<K> keys = _versions.get(entry._versionBase);
+			keys.remove(key);
+			if (keys.isEmpty())
+				_versions.remove(entry._versionBase);
+		}
+	}
+
+	public synchronized void clear() {
+		_entries.clear();
+		_versions.clear();
+		_bytes = 0;
+	}
+
+	/**
+	 * @return the total size of the cached encodings
+	 */
+	public synchronized long getSize() {
+		return _bytes;
+	}
+
+	public synchronized int getCount() {
+		return _entries.size();
+	}
+
+	protected int index(K key, int row) {
+		int h = key.hashCode() * (0x9e3779b9 + 2 * row);
+		return (h ^ (h >>> 16)) & _sketchMask;
+	}
+
+	protected void countRequest(K key) {
+		for (int row = 0; row < SKETCH_DEPTH; row++) {
+			int i = index(key, row);
+			if (_sketch[row][i] < MAX_COUNT)
+				_sketch[row][i]++;
+		}
+		if (++_samples >= _sampleSize) {
+			// Age the counts so the sketch follows what is popular now
+			for (byte [] row : _sketch) {
+				for (int i = 0; i < row.length; i++)
+					row[i] >>= 1;
+			}
+			_samples /= 2;
+		}
+	}
+
+	protected int frequency(K key) {
+		int frequency = MAX_COUNT;
+		for (int row = 0; row < SKETCH_DEPTH; row++)
+			frequency = Math.min(frequency, _sketch[row][index(key, row)]);
+		return frequency;
+	}
+
+	// ==============================================================
+	// Statistics
+
+	protected NDNEnumStats<StatsEnum> _stats = new NDNEnumStats<StatsEnum>(StatsEnum.Hits);
+
+	public NDNStats getStats() {
+		return _stats;
+	}
+
+	public enum StatsEnum implements IStatsEnum {
+		// ====================================
+		// Just edit this list, dont need to change anything else
+
+		Hits ("count", "Requests for objects that were cached"),
+		Misses ("count", "Requests for objects that were not cached"),
+		Admissions ("count", "Objects added to the cache"),
+		Rejections ("count", "Objects not added because they were asked for less than those they would evict"),
+		Evictions ("count", "Objects evicted to make room for others"),
+		Invalidations ("count", "Objects dropped because a newer version was saved"),
+		;
+
+		// ====================================
+		// This is the same for every user of IStatsEnum
+
+		protected final String _units;
+		protected final String _description;
+		protected final static String [] _names;
+
+		static {
+			_names = new String[StatsEnum.values().length];
+			for(StatsEnum stat : StatsEnum.values() )
+				_names[stat.ordinal()] = stat.toString();
+
+		}
+
+		StatsEnum(String units, String description) {
+			_units = units;
+			_description = description;
+		}
+
+		public String getDescription(int index) {
+			return StatsEnum.values()[index]._description;
+		}
+
+		public int getIndex(String name) {
+			StatsEnum x = StatsEnum.valueOf(name);
+			return x.ordinal();
+		}
+
+		public String getName(int index) {
+			return StatsEnum.values()[index].toString();
+		}
+
+		public String getUnits(int index) {
+			return StatsEnum.values()[index]._units;
+		}
+
+		public String [] getNames() {
+			return _names;
+		}
+	}
+}
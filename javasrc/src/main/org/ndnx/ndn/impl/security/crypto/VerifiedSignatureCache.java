@@ -0,0 +1,361 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.impl.security.crypto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.config.UserConfiguration;
+import org.ndnx.ndn.impl.NDNStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats.IStatsEnum;
+import org.ndnx.ndn.impl.NDNStats.NDNStatistics;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+
+/**
+ * Remembers which content objects have already had their signatures verified, so that
+ * objects we see over and over - keys, links, access control metadata - only pay for the
+ * public key operation (and for retrieving the key) once.
+ *
+ * Entries are keyed by the digest of the whole object, which covers its signature, together
+ * with the digest of the publisher's key. Only successful verifications are remembered; an
+ * object that fails is checked again next time, in case we now have the right key. The cache
+ * holds at most SystemConfiguration.VERIFY_CACHE_SIZE entries, dropping the least recently
+ * used, and forgets an entry SystemConfiguration.VERIFY_CACHE_TTL seconds after it was added.
+ *
+ * If SystemConfiguration.VERIFY_CACHE_FILE is set the default cache is loaded from that file
+ * on first use and saved to it when the default KeyManager is closed. Anyone who can write
+ * that file can make us accept unverified content, so keep it with the user's keystore.
+ */
+public class VerifiedSignatureCache implements NDNStatistics {
+
+	protected static final int FILE_VERSION = 1;
+
+	protected static VerifiedSignatureCache _defaultCache = null;
+
+	protected final int _maxSize;
+	protected final long _ttl;
+
+	protected final LinkedHashMap<CacheKey, Long> _entries;
+
+	/**
+	 * The digests identifying a verified object.
+	 */
+	protected static class CacheKey {
+		protected final byte [] _contentDigest;
+		protected final byte [] _publisher;
+		protected final int _hashCode;
+
+		public CacheKey(byte [] contentDigest, byte [] publisher) {
+			_contentDigest = contentDigest;
+			_publisher = (null == publisher) ? new byte[0] : publisher;
+			_hashCode = 31 * Arrays.hashCode(_contentDigest) + Arrays.hashCode(_publisher);
+		}
+
+		public CacheKey(ContentObject object) {
+			this(object.digest(), publisher(object));
+		}
+
+		protected static byte [] publisher(ContentObject object) {
+			PublisherPublicKeyDigest publisher = object.signedInfo().getPublisherKeyID();
+			return (null == publisher) ? null : publisher.digest();
+		}
+
+		@Override
+		public int hashCode() {
+			return _hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CacheKey))
+				return false;
+			CacheKey other = (CacheKey)obj;
+			return Arrays.equals(_contentDigest, other._contentDigest) && Arrays.equals(_publisher, other._publisher);
+		}
+	}
+
+	/**
+	 * @return the cache shared by everything using ContentObject.verify(KeyManager), configured
+	 * 	from SystemConfiguration and loaded from VERIFY_CACHE_FILE if that is set
+	 */
+	public static synchronized VerifiedSignatureCache getDefault() {
+		if (null == _defaultCache) {
+			_defaultCache = new VerifiedSignatureCache(SystemConfiguration.VERIFY_CACHE_SIZE, SystemConfiguration.VERIFY_CACHE_TTL * 1000L);
+			File cacheFile = cacheFile();
+			if (null != cacheFile && cacheFile.exists()) {
+				try {
+					_defaultCache.load(cacheFile);
+				} catch (IOException e) {
+					Log.warning(Log.FAC_KEYS, "Proceeding without saved signature verifications -- cannot read {0}: {1}", cacheFile.getAbsolutePath(), e.getMessage());
+					_defaultCache.clear();
+				}
+			}
+		}
+		return _defaultCache;
+	}
+
+	/**
+	 * Save the default cache to VERIFY_CACHE_FILE, if it has been used and a file is configured.
+	 */
+	public static void saveDefault() {
+		VerifiedSignatureCache cache;
+		synchronized (VerifiedSignatureCache.class) {
+			cache = _defaultCache;
+		}
+		File cacheFile = cacheFile();
+		if (null == cache || null == cacheFile)
+			return;
+		try {
+			cache.save(cacheFile);
+		} catch (IOException e) {
+			Log.warning(Log.FAC_KEYS, "Cannot save signature verifications to {0}: {1}", cacheFile.getAbsolutePath(), e.getMessage());
+		}
+	}
+
+	protected static File cacheFile() {
+		if (null == SystemConfiguration.VERIFY_CACHE_FILE)
+			return null;
+		File cacheFile = new File(SystemConfiguration.VERIFY_CACHE_FILE);
+		if (!cacheFile.isAbsolute())
+			cacheFile = new File(UserConfiguration.userConfigurationDirectory(), SystemConfiguration.VERIFY_CACHE_FILE);
+		return cacheFile;
+	}
+
+	/**
+	 * @param maxSize the most verifications to remember; 0 or less remembers none
+	 * @param ttl how long to remember a verification in ms; 0 or less remembers it until evicted
+	 */
+	public VerifiedSignatureCache(int maxSize, long ttl) {
+		_maxSize = maxSize;
+		_ttl = ttl;
+		_entries = new LinkedHashMap<CacheKey, Long>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, Long> eldest) {
+				if (size() <= _maxSize)
+					return false;
+				_stats.increment(StatsEnum.Evictions);
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Has this object's signature already been verified?
+	 */
+	public boolean isVerified(ContentObject object) {
+		if (_maxSize <= 0)
+			return false;
+		return isVerified(new CacheKey(object));
+	}
+
+	protected boolean isVerified(CacheKey key) {
+		synchronized (_entries) {
+			Long added = _entries.get(key);
+			if (null != added) {
+				if (!expired(added, System.currentTimeMillis())) {
+					_stats.increment(StatsEnum.Hits);
+					return true;
+				}
+				_entries.remove(key);
+				_stats.increment(StatsEnum.Expirations);
+			}
+		}
+		_stats.increment(StatsEnum.Misses);
+		return false;
+	}
+
+	/**
+	 * Remember that this object's signature has been verified.
+	 */
+	public void verified(ContentObject object) {
+		if (_maxSize <= 0)
+			return;
+		add(new CacheKey(object), System.currentTimeMillis());
+	}
+
+	protected void add(CacheKey key, long added) {
+		synchronized (_entries) {
+			_entries.put(key, added);
+		}
+	}
+
+	protected boolean expired(long added, long now) {
+		return (_ttl > 0) && (now - added >= _ttl);
+	}
+
+	public int size() {
+		synchronized (_entries) {
+			return _entries.size();
+		}
+	}
+
+	public void clear() {
+		synchronized (_entries) {
+			_entries.clear();
+		}
+	}
+
+	/**
+	 * Add the unexpired verifications saved in a file. Entries keep the time they were
+	 * originally added, so they expire when they would have had we not restarted.
+	 */
+	public void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			int version = in.readInt();
+			if (version != FILE_VERSION)
+				throw new IOException("Unknown verified signature cache version " + version);
+			int count = in.readInt();
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < count; i++) {
+				byte [] contentDigest = new byte[in.readUnsignedShort()];
+				in.readFully(contentDigest);
+				byte [] publisher = new byte[in.readUnsignedShort()];
+				in.readFully(publisher);
+				long added = in.readLong();
+				if (!expired(added, now))
+					add(new CacheKey(contentDigest, publisher), added);
+			}
+		} finally {
+			in.close();
+		}
+		if (Log.isLoggable(Log.FAC_KEYS, Level.INFO))
+			Log.info(Log.FAC_KEYS, "Loaded {0} signature verifications from {1}", size(), file.getAbsolutePath());
+	}
+
+	/**
+	 * Save the unexpired verifications, least recently used first so that reloading
+	 * them into a smaller cache keeps the most useful ones.
+	 */
+	public void save(File file) throws IOException {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		int count = 0;
+		try {
+			synchronized (_entries) {
+				long now = System.currentTimeMillis();
+				Iterator<Map.Entry<CacheKey, Long>> it = _entries.entrySet().iterator();
+				while (it.hasNext()) {
+					if (expired(it.next().getValue(), now))
+						it.remove();
+				}
+				out.writeInt(FILE_VERSION);
+				out.writeInt(_entries.size());
+				for (Map.Entry<CacheKey, Long> entry : _entries.entrySet()) {
+					out.writeShort(entry.getKey()._contentDigest.length);
+					out.write(entry.getKey()._contentDigest);
+					out.writeShort(entry.getKey()._publisher.length);
+					out.write(entry.getKey()._publisher);
+					out.writeLong(entry.getValue());
+				}
+				count = _entries.size();
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(file)) {
+			file.delete();
+			if (!tmpFile.renameTo(file))
+				throw new IOException("Cannot rename " + tmpFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+		}
+		if (Log.isLoggable(Log.FAC_KEYS, Level.INFO))
+			Log.info(Log.FAC_KEYS, "Saved {0} signature verifications to {1}", count, file.getAbsolutePath());
+	}
+
+	// ==============================================================
+	// Statistics
+
+	protected NDNEnumStats<StatsEnum> _stats = new NDNEnumStats<StatsEnum>(StatsEnum.Hits);
+
+	public NDNStats getStats() {
+		return _stats;
+	}
+
+	public enum StatsEnum implements IStatsEnum {
+		// ====================================
+		// Just edit this list, dont need to change anything else
+
+		Hits ("count", "Objects whose signatures were already verified"),
+		Misses ("count", "Objects whose signatures had to be verified"),
+		Expirations ("count", "Verifications forgotten because they were too old"),
+		Evictions ("count", "Verifications forgotten to make room for newer ones"),
+		;
+
+		// ====================================
+		// This is the same for every user of IStatsEnum
+
+		protected final String _units;
+		protected final String _description;
+		protected final static String [] _names;
+
+		static {
+			_names = new String[StatsEnum.values().length];
+			for(StatsEnum stat : StatsEnum.values() )
+				_names[stat.ordinal()] = stat.toString();
+
+		}
+
+		StatsEnum(String units, String description) {
+			_units = units;
+			_description = description;
+		}
+
+		public String getDescription(int index) {
+			return StatsEnum.values()[index]._description;
+		}
+
+		public int getIndex(String name) {
+			StatsEnum x = StatsEnum.valueOf(name);
+			return x.ordinal();
+		}
+
+		public String getName(int index) {
+			return StatsEnum.values()[index].toString();
+		}
+
+		public String getUnits(int index) {
+			return StatsEnum.values()[index]._units;
+		}
+
+		public String [] getNames() {
+			return _names;
+		}
+	}
+}
@@ -26,12 +26,14 @@ import java.io.IOException;
 import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.logging.Level;
 
 import org.ndnx.ndn.NDNHandle;
 import org.ndnx.ndn.TrustManager;
+import org.ndnx.ndn.config.SystemConfiguration;
 import org.ndnx.ndn.config.UserConfiguration;
+import org.ndnx.ndn.impl.NDNStats;
+import org.ndnx.ndn.impl.support.BoundedCache;
 import org.ndnx.ndn.impl.support.Log;
 import static org.ndnx.ndn.impl.support.Log.FAC_KEYS;
 import org.ndnx.ndn.io.ErrorStateException;
@@ -64,6 +66,11 @@ import org.ndnx.ndn.protocol.SignedInfo.ContentType;
  * the library. So we allow the KeyRepository to have a NDNHandle, we can use
  * all of the library functionality to write keys once that handle is sufficiently
  * initialized.
+ *
+ * The keys held by digest are bounded by SystemConfiguration.PUBLIC_KEY_CACHE_SIZE, evicting
+ * the least recently used keys, which can be retrieved again from the network if needed.
+ * The key objects, certificates and versions recorded for a key are dropped along with it.
+ * Keys loaded from our own keystore are pinned and never evicted.
  */
 public class PublicKeyCache {
 
@@ -73,13 +80,51 @@ public class PublicKeyCache {
 	// Reference count in case we are shared. 
 	protected int _refCount = 0;
 
-	protected HashMap<ContentName, PublicKeyObject> _keyMap = new HashMap<ContentName, PublicKeyObject>();
-	protected HashMap<PublisherPublicKeyDigest, ArrayList<ContentName>> _idMap = new HashMap<PublisherPublicKeyDigest, ArrayList<ContentName>>();
-	protected HashMap<PublisherPublicKeyDigest, PublicKey> _rawKeyMap = new HashMap<PublisherPublicKeyDigest, PublicKey>();
-	protected HashMap<PublisherPublicKeyDigest, ArrayList<Certificate>> _rawCertificateMap = new HashMap<PublisherPublicKeyDigest, ArrayList<Certificate>>();
-	protected HashMap<PublisherPublicKeyDigest, NDNTime> _rawVersionMap = new HashMap<PublisherPublicKeyDigest, NDNTime>();
+	/** Map the digest of a key to the key. The only bounded map, the others are dropped along with it. */
+	protected final BoundedCache<PublisherPublicKeyDigest, PublicKey> _rawKeyMap;
+	protected final BoundedCache<ContentName, PublicKeyObject> _keyMap;
+	protected final BoundedCache<PublisherPublicKeyDigest, ArrayList<ContentName>> _idMap;
+	protected final BoundedCache<PublisherPublicKeyDigest, ArrayList<Certificate>> _rawCertificateMap;
+	protected final BoundedCache<PublisherPublicKeyDigest, NDNTime> _rawVersionMap;
 
 	public PublicKeyCache() {
+		this(SystemConfiguration.PUBLIC_KEY_CACHE_SIZE, SystemConfiguration.PUBLIC_KEY_CACHE_SOFT_SPILL);
+	}
+
+	/**
+	 * @param maxSize the most keys to hold, not counting pinned ones; 0 or less holds them all
+	 * @param softSpill keep evicted keys through soft references until memory is needed. Only
+	 * 		the keys themselves are kept, not their key objects, certificates or versions.
+	 */
+	public PublicKeyCache(int maxSize, boolean softSpill) {
+		_rawKeyMap = new BoundedCache<PublisherPublicKeyDigest, PublicKey>(maxSize, softSpill);
+		_keyMap = new BoundedCache<ContentName, PublicKeyObject>(0, false);
+		_idMap = new BoundedCache<PublisherPublicKeyDigest, ArrayList<ContentName>>(0, false);
+		_rawCertificateMap = new BoundedCache<PublisherPublicKeyDigest, ArrayList<Certificate>>(0, false);
+		_rawVersionMap = new BoundedCache<PublisherPublicKeyDigest, NDNTime>(0, false);
+
+		// Evictions can happen on any thread that adds or reads a key, so this takes
+		// no lock of ours other than the ones guarding the lists
+		_rawKeyMap.setEvictionListener(new BoundedCache.EvictionListener<PublisherPublicKeyDigest, PublicKey>() {
+			public void evicted(PublisherPublicKeyDigest id, PublicKey key) {
+				forget(id);
+			}
+		});
+	}
+
+	/**
+	 * Drop everything recorded for a key that has been evicted.
+	 */
+	protected void forget(PublisherPublicKeyDigest id) {
+		synchronized(_idMap) {
+			ArrayList<ContentName> nameList = _idMap.remove(id);
+			if (null != nameList) {
+				for (ContentName name : nameList)
+					_keyMap.remove(name);
+			}
+		}
+		_rawCertificateMap.remove(id);
+		_rawVersionMap.remove(id);
 	}
 
 	/**
@@ -92,11 +137,12 @@ public class PublicKeyCache {
 	 */
 	public void remember(PublicKeyObject theKey) throws ContentNotReadyException, ContentGoneException, ErrorStateException, IOException {
 
+		// Add the key last, so if adding it evicts it again what we recorded about it goes too
 		_keyMap.put(theKey.getVersionedName(), theKey);
 		PublisherPublicKeyDigest id = theKey.publicKeyDigest();
 		rememberContentName(id, theKey.getVersionedName());
-		_rawKeyMap.put(id, theKey.publicKey());
 		_rawVersionMap.put(id, theKey.getVersion());
+		_rawKeyMap.put(id, theKey.publicKey());
 		if (_DEBUG) {
 			recordKeyToFile(theKey);
 		}
@@ -120,10 +166,10 @@ public class PublicKeyCache {
 	 */
 	public void remember(PublicKey theKey, NDNTime version) {
 		PublisherPublicKeyDigest keyDigest = new PublisherPublicKeyDigest(theKey);
-		_rawKeyMap.put(keyDigest, theKey);
 		if (null != version) {
 			_rawVersionMap.put(keyDigest, version);
 		}
+		_rawKeyMap.put(keyDigest, theKey);
 	}
 
 	/**
@@ -131,12 +177,26 @@ public class PublicKeyCache {
 	 * @param theCertificate the certificate to remember
 	 */
 	public void remember(Certificate theCertificate, NDNTime version) {
+		remember(theCertificate, version, false);
+	}
+
+	/**
+	 * Remember a certificate, optionally pinning it in the cache.
+	 * @param theCertificate the certificate to remember
+	 * @param pinned if true the certificate is never evicted. Used for our own keys, which
+	 * 		we need to have to publish them.
+	 */
+	public void remember(Certificate theCertificate, NDNTime version, boolean pinned) {
 		PublisherPublicKeyDigest keyDigest = new PublisherPublicKeyDigest(theCertificate.getPublicKey());
 		rememberCertificate(keyDigest, theCertificate);
-		_rawKeyMap.put(keyDigest, theCertificate.getPublicKey());
 		if (null != version) {
 			_rawVersionMap.put(keyDigest, version);
 		}
+		if (pinned) {
+			_rawKeyMap.putPinned(keyDigest, theCertificate.getPublicKey());
+		} else {
+			_rawKeyMap.put(keyDigest, theCertificate.getPublicKey());
+		}
 	}
 
 	protected void rememberCertificate(PublisherPublicKeyDigest id, Certificate certificate) {
@@ -145,9 +205,9 @@ public class PublicKeyCache {
 			ArrayList<Certificate> certificateList = _rawCertificateMap.get(id);
 			if (null == certificateList) {
 				certificateList = new ArrayList<Certificate>();
-				_rawCertificateMap.put(id, certificateList);
 			}
 			certificateList.add(certificate);
+			_rawCertificateMap.put(id, certificateList);
 		}
 	}
 
@@ -342,8 +402,9 @@ public class PublicKeyCache {
 	public PublicKey getPublicKeyFromCache(PublisherPublicKeyDigest desiredKeyID) {
 		PublicKey theKey = _rawKeyMap.get(desiredKeyID);
 		if (null == theKey) {
-			if (_rawCertificateMap.containsKey(desiredKeyID)) {
-				Certificate theCertificate = _rawCertificateMap.get(desiredKeyID).get(0);
+			ArrayList<Certificate> certificateList = _rawCertificateMap.get(desiredKeyID);
+			if (null != certificateList) {
+				Certificate theCertificate = certificateList.get(0);
 				if (null != theCertificate) {
 					theKey = theCertificate.getPublicKey();
 				}
@@ -361,10 +422,11 @@ public class PublicKeyCache {
 	 * @param keyName key digest
 	 */
 	public PublicKeyObject retrieve(PublisherPublicKeyDigest keyID) {
-		if (!_idMap.containsKey(keyID)) {
+		ArrayList<ContentName> nameList = _idMap.get(keyID);
+		if (null == nameList) {
 			return null;
 		}
-		ContentName name = _idMap.get(keyID).get(0);
+		ContentName name = nameList.get(0);
 		if (null != name) {
 			return _keyMap.get(name);
 		}		
@@ -395,4 +457,11 @@ public class PublicKeyCache {
 	public ArrayList<Certificate> retrieveCertificates(PublisherPublicKeyDigest keyID) {
 		return _rawCertificateMap.get(keyID);
 	}
+
+	/**
+	 * @return the hit, miss and eviction statistics of the keys held by digest
+	 */
+	public NDNStats getStats() {
+		return _rawKeyMap.getStats();
+	}
 }
@@ -20,6 +20,10 @@
 
 package org.ndnx.ndn.impl.security.keys;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.security.Key;
 import java.security.KeyStore;
@@ -29,15 +33,21 @@ import java.security.PrivateKey;
 import java.security.UnrecoverableEntryException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.logging.Level;
 
 import javax.crypto.SecretKey;
 
 import org.ndnx.ndn.KeyManager;
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNStats;
 import org.ndnx.ndn.impl.security.crypto.NDNDigestHelper;
+import org.ndnx.ndn.impl.support.BoundedCache;
 import org.ndnx.ndn.impl.support.ByteArrayCompare;
 import org.ndnx.ndn.impl.support.DataUtils;
 import org.ndnx.ndn.impl.support.Log;
@@ -49,6 +59,11 @@ import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
  * A container for our private keys and other secret key 
  * material that we have retrieved (e.g. from access control).
  * 
+ * Keys we have retrieved are held in BoundedCaches of SystemConfiguration.SECURE_KEY_CACHE_SIZE
+ * entries each, dropping the least recently used; we can retrieve them again if we need
+ * them. Our own signing keys are never dropped. The names and identifiers recorded for a key
+ * are dropped along with it.
+ *
  * TODO: finish mechanism that saves the key cache between runs.
  */
 public class SecureKeyCache implements Serializable {
@@ -61,21 +76,136 @@ public class SecureKeyCache implements Serializable {
 	public static String privateKeyFormat = "PKCS#8";
 
 	static Comparator<byte[]> byteArrayComparator = new ByteArrayCompare();
-	
+
+	// We are serialized as the TreeMaps we used to be made of
+	private static final ObjectStreamField [] serialPersistentFields = {
+		new ObjectStreamField("_keyMap", TreeMap.class),
+		new ObjectStreamField("_myKeyMap", TreeMap.class),
+		new ObjectStreamField("_privateKeyMap", TreeMap.class),
+		new ObjectStreamField("_secretKeyMap", TreeMap.class),
+		new ObjectStreamField("_privateKeyIdentifierMap", TreeMap.class),
+		new ObjectStreamField("_nameKeyMap", TreeMap.class)
+	};
+
+	/**
+	 * A key digest usable as a hash key.
+	 */
+	protected static class KeyID implements Serializable {
+		private static final long serialVersionUID = -4207452271232744396L;
+
+		protected final byte [] _id;
+		protected final int _hashCode;
+
+		public KeyID(byte [] id) {
+			_id = id;
+			_hashCode = Arrays.hashCode(id);
+		}
+
+		@Override
+		public int hashCode() {
+			return _hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof KeyID))
+				return false;
+			return Arrays.equals(_id, ((KeyID)obj)._id);
+		}
+	}
+
+	protected static KeyID id(byte [] id) {
+		return new KeyID(id);
+	}
+
 	/** Map the digest of a key to the key. */
-	private TreeMap<byte [], Key> _keyMap = new TreeMap<byte [], Key>(byteArrayComparator);
-	/** Map the digest of a public key to <I>my</I> corresponding private key. */
-	private TreeMap<byte [], PrivateKey> _myKeyMap = new TreeMap<byte [], PrivateKey>(byteArrayComparator);
+	private BoundedCache<KeyID, Key> _keyMap;
+	/** Map the digest of a public key to <I>my</I> corresponding private key. Never evicted. */
+	private BoundedCache<KeyID, PrivateKey> _myKeyMap;
 	/** Map the digest of a public key to the corresponding private key */
-	private TreeMap<byte [], PrivateKey> _privateKeyMap = new TreeMap<byte [], PrivateKey>(byteArrayComparator);
-	/** Map the digest of a secret key to the corresponding key. 
+	private BoundedCache<KeyID, PrivateKey> _privateKeyMap;
+	/** Map the digest of a secret key to the corresponding key. My keys are never evicted.
 	 * TODO - do we need to keep the secretKeyMap & privateKeyMap separate? */
-	private TreeMap<byte[], SecretKey> _secretKeyMap = new TreeMap<byte[], SecretKey>(byteArrayComparator);
-	private TreeMap<byte [], byte []> _privateKeyIdentifierMap = new TreeMap<byte [], byte[]>(byteArrayComparator);
-	/** Map the name of a key to its digest */
-	private TreeMap<ContentName, byte []> _nameKeyMap = new TreeMap<ContentName, byte []>();
+	private BoundedCache<KeyID, SecretKey> _secretKeyMap;
+	/** Map the digest of a private or secret key to the identifier it is recorded under. Not bounded
+	 * itself, entries go when their key is evicted. */
+	private BoundedCache<KeyID, byte []> _privateKeyIdentifierMap;
+	/** Map the name of a key to its digest. Not bounded itself, entries go when their key is evicted. */
+	private BoundedCache<ContentName, byte []> _nameKeyMap;
+	/** The names recorded for each key digest, to drop them when the key is evicted */
+	private HashMap<KeyID, ArrayList<ContentName>> _keyNames;
 	
 	public SecureKeyCache() {
+		this(SystemConfiguration.SECURE_KEY_CACHE_SIZE);
+	}
+
+	/**
+	 * @param maxSize the most keys of each kind to hold, not counting our own; 0 or less for no limit
+	 */
+	public SecureKeyCache(int maxSize) {
+		init(maxSize);
+	}
+
+	private void init(int maxSize) {
+		_keyMap = new BoundedCache<KeyID, Key>(maxSize, false);
+		_myKeyMap = new BoundedCache<KeyID, PrivateKey>(0, false);
+		_privateKeyMap = new BoundedCache<KeyID, PrivateKey>(maxSize, false);
+		_secretKeyMap = new BoundedCache<KeyID, SecretKey>(maxSize, false);
+		_privateKeyIdentifierMap = new BoundedCache<KeyID, byte []>(0, false);
+		_nameKeyMap = new BoundedCache<ContentName, byte []>(0, false);
+		_keyNames = new HashMap<KeyID, ArrayList<ContentName>>();
+
+		// Evictions happen while a key is added, so under our lock
+		_keyMap.setEvictionListener(new BoundedCache.EvictionListener<KeyID, Key>() {
+			public void evicted(KeyID id, Key key) {
+				dropNames(id);
+			}
+		});
+		BoundedCache.EvictionListener<KeyID, Key> privateListener = new BoundedCache.EvictionListener<KeyID, Key>() {
+			public void evicted(KeyID id, Key key) {
+				KeyID keyID = id(getKeyIdentifier(key));
+				if (!_myKeyMap.containsKey(id) && !_secretKeyMap.containsKey(id) && !_privateKeyMap.containsKey(id))
+					_privateKeyIdentifierMap.remove(keyID);
+				dropNames(id);
+			}
+		};
+		_privateKeyMap.setEvictionListener(privateListener);
+		_secretKeyMap.setEvictionListener(privateListener);
+	}
+
+	/**
+	 * Forget the names recorded for a key that is no longer held, unless we still
+	 * hold a key of another kind with the same identifier.
+	 */
+	private void dropNames(KeyID id) {
+		if (containsKey(id._id) || _secretKeyMap.containsKey(id))
+			return;
+		ArrayList<ContentName> names = _keyNames.remove(id);
+		if (null == names)
+			return;
+		for (ContentName name : names) {
+			if (Arrays.equals(id._id, _nameKeyMap.get(name)))
+				_nameKeyMap.remove(name);
+		}
+	}
+
+	/**
+	 * Record a name for a key. Must be called with our lock held.
+	 */
+	private void addName(ContentName name, byte [] identifier) {
+		if (null == name)
+			return;
+		_nameKeyMap.put(name, identifier);
+		KeyID id = id(identifier);
+		ArrayList<ContentName> names = _keyNames.get(id);
+		if (null == names) {
+			names = new ArrayList<ContentName>(1);
+			_keyNames.put(id, names);
+		}
+		if (!names.contains(name))
+			names.add(name);
 	}
 	
 	/**
@@ -84,6 +214,7 @@ public class SecureKeyCache implements Serializable {
 	 * TODO bug -- should merge key caches, not just load signing keys.
 	 */
 	public SecureKeyCache(KeyManager keyManagerToLoadFrom) {
+		this();
 		Key [] pks = keyManagerToLoadFrom.getSigningKeys();
 		for (Key pk : pks) {
 			PublisherPublicKeyDigest ppkd = keyManagerToLoadFrom.getPublisherKeyID(pk);
@@ -122,7 +253,7 @@ public class SecureKeyCache implements Serializable {
 							PublisherPublicKeyDigest ppkd = new PublisherPublicKeyDigest(certificate.getPublicKey());
 							Log.info("KeyCache: loading signing key {0}, remembering public key in public key cache.", ppkd);
 							addMySigningKey(ppkd.digest(), pk);
-							publicKeyCache.remember(certificate, keyStoreInfo.getVersion());
+							publicKeyCache.remember(certificate, keyStoreInfo.getVersion(), true);
 						} else {
 							Log.warning("Private key for alias: " + alias + " has no certificate entry. No way to get public key. Not caching.");
 						}
@@ -142,12 +273,12 @@ public class SecureKeyCache implements Serializable {
 	 * @return the key
 	 */
 	public Key getKey(byte [] desiredKeyIdentifier) {
-		Key theKey = _keyMap.get(desiredKeyIdentifier);
+		Key theKey = _keyMap.get(id(desiredKeyIdentifier));
 		if (null == theKey) {
-			theKey = _privateKeyMap.get(desiredKeyIdentifier);
+			theKey = _privateKeyMap.get(id(desiredKeyIdentifier));
 		}
 		if (null == theKey) {
-			theKey = _myKeyMap.get(desiredKeyIdentifier);
+			theKey = _myKeyMap.get(id(desiredKeyIdentifier));
 		}
 		return theKey;
 	}
@@ -186,8 +317,9 @@ public class SecureKeyCache implements Serializable {
 	 * @return
 	 */
 	public boolean containsKey(byte [] keyIdentifier) {
-		if ((_keyMap.containsKey(keyIdentifier)) || (_myKeyMap.containsKey(keyIdentifier)) ||
-					(_privateKeyMap.containsKey(keyIdentifier))) {
+		KeyID id = id(keyIdentifier);
+		if ((_keyMap.containsKey(id)) || (_myKeyMap.containsKey(id)) ||
+					(_privateKeyMap.containsKey(id))) {
 			return true;
 		}
 		return false;
@@ -223,12 +355,13 @@ public class SecureKeyCache implements Serializable {
 	 * @return the corresponding private key.
 	 */
 	public Key getPrivateKey(byte [] desiredPublicKeyIdentifier) {
-		Key key = _myKeyMap.get(desiredPublicKeyIdentifier);
+		KeyID id = id(desiredPublicKeyIdentifier);
+		Key key = _myKeyMap.get(id);
 		if (null == key) {
-			key = _secretKeyMap.get(desiredPublicKeyIdentifier);
+			key = _secretKeyMap.get(id);
 		}
 		if (null == key) {
-			key = _privateKeyMap.get(desiredPublicKeyIdentifier);
+			key = _privateKeyMap.get(id);
 		}
 		return key;
 	}
@@ -255,13 +388,12 @@ public class SecureKeyCache implements Serializable {
 	}
 	
 	public PrivateKey [] getMyPrivateKeys() {
-		PrivateKey [] pkarray = new PrivateKey[_myKeyMap.size()];
-		return _myKeyMap.values().toArray(pkarray);
+		return _myKeyMap.values().toArray(new PrivateKey[0]);
 	}
 	
 	private ContentName getContentName(byte[] ident) {
 		for (ContentName name : _nameKeyMap.keySet()) {
-			if (byteArrayComparator.compare(ident, _nameKeyMap.get(name)) == 0) {
+			if (Arrays.equals(ident, _nameKeyMap.get(name))) {
 				return name;
 			}
 		}
@@ -276,10 +408,10 @@ public class SecureKeyCache implements Serializable {
 	 * @param pk the private key
 	 */
 	public synchronized void addPrivateKey(ContentName keyName, byte [] publicKeyIdentifier, PrivateKey pk) {
-		_privateKeyMap.put(publicKeyIdentifier, pk);
-		_privateKeyIdentifierMap.put(getKeyIdentifier(pk), publicKeyIdentifier);
+		_privateKeyIdentifierMap.put(id(getKeyIdentifier(pk)), publicKeyIdentifier);
+		_privateKeyMap.put(id(publicKeyIdentifier), pk);
 		if (null != keyName) {
-			_nameKeyMap.put(keyName, publicKeyIdentifier);
+			addName(keyName, publicKeyIdentifier);
 			Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: adding private key {0} with name {1}",
 					DataUtils.printHexBytes(publicKeyIdentifier), keyName);
 		} else {
@@ -296,10 +428,10 @@ public class SecureKeyCache implements Serializable {
 	 * @param sk the secret key
 	 */
 	public synchronized void addSecretKey(ContentName keyName, byte [] identifier, SecretKey sk) {
-		_secretKeyMap.put(identifier, sk);
-		_privateKeyIdentifierMap.put(getKeyIdentifier(sk), identifier);
+		_privateKeyIdentifierMap.put(id(getKeyIdentifier(sk)), identifier);
+		_secretKeyMap.put(id(identifier), sk);
 		if (null != keyName) {
-			_nameKeyMap.put(keyName, identifier);
+			addName(keyName, identifier);
 			Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: adding secret key {0} with name {1}",
 					DataUtils.printHexBytes(identifier), keyName);
 		} else {
@@ -310,16 +442,17 @@ public class SecureKeyCache implements Serializable {
 
 	/**
 	 * Records one of my private keys and the digest of the corresponding public key.
+	 * These are never evicted from the cache.
 	 * @param publicKeyIdentifier the digest of the public key.
 	 * @param pk the corresponding private key.
 	 */
 	public synchronized void addMySigningKey(byte [] publicKeyIdentifier, Key k) {
-		_privateKeyIdentifierMap.put(getKeyIdentifier(k), publicKeyIdentifier);
+		_privateKeyIdentifierMap.putPinned(id(getKeyIdentifier(k)), publicKeyIdentifier);
 		String alg = k.getFormat();
 		if (alg.equals("RAW"))
-			_secretKeyMap.put(publicKeyIdentifier, (SecretKey)k);
+			_secretKeyMap.putPinned(id(publicKeyIdentifier), (SecretKey)k);
 		else
-			_myKeyMap.put(publicKeyIdentifier, (PrivateKey)k);
+			_myKeyMap.putPinned(id(publicKeyIdentifier), (PrivateKey)k);
 		Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: adding my private key {0}",
 				DataUtils.printHexBytes(publicKeyIdentifier));			
 	}
@@ -331,9 +464,9 @@ public class SecureKeyCache implements Serializable {
 	 */
 	public synchronized void addKey(ContentName name, Key key) {
 		byte [] id = getKeyIdentifier(key);
-		_keyMap.put(id, key);
+		_keyMap.put(id(id), key);
 		if (null != name) {
-			_nameKeyMap.put(name, id);
+			addName(name, id);
 			Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: adding key {0} with name {1} of type {2}",
 					DataUtils.printHexBytes(id), name, key.getClass().getName());
 		} else {
@@ -342,8 +475,12 @@ public class SecureKeyCache implements Serializable {
 		}
 	}
 	
+	/**
+	 * @return the identifier a private or secret key we hold was recorded under, or null
+	 */
 	public PublisherPublicKeyDigest getPublicKeyIdentifier(Key pk) {
-		return new PublisherPublicKeyDigest(_privateKeyIdentifierMap.get(getKeyIdentifier(pk)));
+		byte [] identifier = _privateKeyIdentifierMap.get(id(getKeyIdentifier(pk)));
+		return (null == identifier) ? null : new PublisherPublicKeyDigest(identifier);
 	}
 	
 	/**
@@ -366,6 +503,27 @@ public class SecureKeyCache implements Serializable {
 		count += _privateKeyMap.size();
 		return count;
 	}
+
+	/**
+	 * @return the hit, miss and eviction statistics of the keys held by digest
+	 */
+	public NDNStats getKeyStats() {
+		return _keyMap.getStats();
+	}
+
+	/**
+	 * @return the hit, miss and eviction statistics of the private keys we have retrieved
+	 */
+	public NDNStats getPrivateKeyStats() {
+		return _privateKeyMap.getStats();
+	}
+
+	/**
+	 * @return the hit, miss and eviction statistics of the secret keys
+	 */
+	public NDNStats getSecretKeyStats() {
+		return _secretKeyMap.getStats();
+	}
 	
 	/**
 	 * Merges the SecureKeyCache with a given SecureKeyCache. The original SecureKeyCache
@@ -395,31 +553,40 @@ public class SecureKeyCache implements Serializable {
 		*/
 		 
 		// check that all my private keys are already in cache
-		for (PrivateKey pkey : cache._myKeyMap.values()) {
-			byte[] identifier = cache.getPublicKeyIdentifier(pkey).digest();
-			if (!this._myKeyMap.containsKey(identifier)) {
+		for (KeyID id : cache._myKeyMap.keySet()) {
+			PrivateKey pkey = cache._myKeyMap.get(id);
+			if (null == pkey)
+				continue;
+			byte[] identifier = id._id;
+			if (!this._myKeyMap.containsKey(id(identifier))) {
 				this.addMySigningKey(identifier, pkey);
 			}
 		}
 		
 		// check that all my symmetric keys are already in cache
-		for (SecretKey skey : cache._secretKeyMap.values()) {
-			byte[] identifier = cache.getPublicKeyIdentifier(skey).digest();
-			if (!this._myKeyMap.containsKey(identifier)) {
+		for (KeyID id : cache._secretKeyMap.keySet()) {
+			SecretKey skey = cache._secretKeyMap.get(id);
+			if (null == skey)
+				continue;
+			byte[] identifier = id._id;
+			if (!this._myKeyMap.containsKey(id(identifier))) {
 				this.addMySigningKey(identifier, skey);
 			}
 		}
 		
 		// check that all other private keys are already in cache
-		for (PrivateKey pkey : cache._privateKeyMap.values()) {
-			byte[] identifier = cache.getPublicKeyIdentifier(pkey).digest();
+		for (KeyID id : cache._privateKeyMap.keySet()) {
+			PrivateKey pkey = cache._privateKeyMap.get(id);
+			if (null == pkey)
+				continue;
+			byte[] identifier = id._id;
 			ContentName name = cache.getContentName(identifier);
-			if (!this._privateKeyMap.containsKey(identifier)) {	
+			if (!this._privateKeyMap.containsKey(id(identifier))) {	
 				this.addPrivateKey(name, identifier, pkey);
 			}
 			else {
 				if (this.getContentName(identifier) == null) {
-					_nameKeyMap.put(name, identifier);
+					addName(name, identifier);
 				}
 			}
 		}
@@ -433,7 +600,7 @@ public class SecureKeyCache implements Serializable {
 			}
 			else {
 				if (this.getContentName(identifier) == null) {
-					_nameKeyMap.put(name, identifier);
+					addName(name, identifier);
 				}
 			}
 		}
@@ -447,8 +614,8 @@ public class SecureKeyCache implements Serializable {
 	public void printContents() {
 		Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: {0} keys in _keyMap ", _keyMap.size());
 		Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: {0} keys in _myKeyMap ", _myKeyMap.size());
-		for (byte[] b: _myKeyMap.keySet()) {
-			Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: myKeyMap contains key with hash {0}", DataUtils.printHexBytes(b));
+		for (KeyID b: _myKeyMap.keySet()) {
+			Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: myKeyMap contains key with hash {0}", DataUtils.printHexBytes(b._id));
 		}
 		Log.info(Log.FAC_ACCESSCONTROL, "SecureKeyCache: {0} keys in _privateKeyMap ", _privateKeyMap.size());
 		for (ContentName cn: _nameKeyMap.keySet()) {
@@ -457,18 +624,18 @@ public class SecureKeyCache implements Serializable {
 		}
 		
 		Log.info(Log.FAC_ACCESSCONTROL, "Dumping _keyMap"); 
-		for (byte [] keyHash : _keyMap.keySet()) {
-			Log.info(Log.FAC_ACCESSCONTROL, "  KeyID: {0}", DataUtils.printHexBytes(keyHash));
+		for (KeyID keyHash : _keyMap.keySet()) {
+			Log.info(Log.FAC_ACCESSCONTROL, "  KeyID: {0}", DataUtils.printHexBytes(keyHash._id));
 		}
 		
 		Log.info(Log.FAC_ACCESSCONTROL, "Dumping _myKeyMap"); 
-		for (byte [] keyHash : _myKeyMap.keySet()) {
-			Log.info(Log.FAC_ACCESSCONTROL, "  KeyID: {0}", DataUtils.printHexBytes(keyHash));
+		for (KeyID keyHash : _myKeyMap.keySet()) {
+			Log.info(Log.FAC_ACCESSCONTROL, "  KeyID: {0}", DataUtils.printHexBytes(keyHash._id));
 		}
 		
 		Log.info(Log.FAC_ACCESSCONTROL, "Dumping _privateKeyMap"); 
-		for (byte [] keyHash : _privateKeyMap.keySet()) {
-			Log.info(Log.FAC_ACCESSCONTROL, "  KeyID: {0}", DataUtils.printHexBytes(keyHash));
+		for (KeyID keyHash : _privateKeyMap.keySet()) {
+			Log.info(Log.FAC_ACCESSCONTROL, "  KeyID: {0}", DataUtils.printHexBytes(keyHash._id));
 		}
 	}
 	
@@ -512,4 +679,51 @@ public class SecureKeyCache implements Serializable {
 
 	}
 
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("_keyMap", toTreeMap(_keyMap));
+		fields.put("_myKeyMap", toTreeMap(_myKeyMap));
+		fields.put("_privateKeyMap", toTreeMap(_privateKeyMap));
+		fields.put("_secretKeyMap", toTreeMap(_secretKeyMap));
+		fields.put("_privateKeyIdentifierMap", toTreeMap(_privateKeyIdentifierMap));
+		TreeMap<ContentName, byte []> nameKeyMap = new TreeMap<ContentName, byte []>();
+		for (ContentName name : _nameKeyMap.keySet()) {
+			byte [] identifier = _nameKeyMap.get(name);
+			if (null != identifier)
+				nameKeyMap.put(name, identifier);
+		}
+		fields.put("_nameKeyMap", nameKeyMap);
+		out.writeFields();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		init(SystemConfiguration.SECURE_KEY_CACHE_SIZE);
+		// Nothing says which of the secret keys are ours, so none of them are dropped
+		for (Map.Entry<byte [], PrivateKey> entry : ((TreeMap<byte [], PrivateKey>)fields.get("_myKeyMap", null)).entrySet())
+			_myKeyMap.putPinned(id(entry.getKey()), entry.getValue());
+		for (Map.Entry<byte [], SecretKey> entry : ((TreeMap<byte [], SecretKey>)fields.get("_secretKeyMap", null)).entrySet())
+			_secretKeyMap.putPinned(id(entry.getKey()), entry.getValue());
+		for (Map.Entry<byte [], byte []> entry : ((TreeMap<byte [], byte []>)fields.get("_privateKeyIdentifierMap", null)).entrySet())
+			_privateKeyIdentifierMap.put(id(entry.getKey()), entry.getValue());
+		for (Map.Entry<byte [], PrivateKey> entry : ((TreeMap<byte [], PrivateKey>)fields.get("_privateKeyMap", null)).entrySet())
+			_privateKeyMap.put(id(entry.getKey()), entry.getValue());
+		for (Map.Entry<byte [], Key> entry : ((TreeMap<byte [], Key>)fields.get("_keyMap", null)).entrySet())
+			_keyMap.put(id(entry.getKey()), entry.getValue());
+		for (Map.Entry<ContentName, byte []> entry : ((TreeMap<ContentName, byte []>)fields.get("_nameKeyMap", null)).entrySet()) {
+			if (containsKey(entry.getValue()) || _secretKeyMap.containsKey(id(entry.getValue())))
+				addName(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private static <V> TreeMap<byte [], V> toTreeMap(BoundedCache<KeyID, V> cache) {
+		TreeMap<byte [], V> map = new TreeMap<byte [], V>(byteArrayComparator);
+		for (KeyID id : cache.keySet()) {
+			V value = cache.get(id);
+			if (null != value)
+				map.put(id._id, value);
+		}
+		return map;
+	}
 }
@@ -0,0 +1,392 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.impl.support;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ndnx.ndn.impl.NDNStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats.IStatsEnum;
+import org.ndnx.ndn.impl.NDNStats.NDNStatistics;
+
+/**
+ * A map with a bounded number of entries that can be read and written from many threads
+ * without a common lock.
+ *
+ * When there are more than maxSize entries the least recently used are evicted, as
+ * approximated by the CLOCK algorithm: entries wait in a queue in the order they were
+ * added, and each read marks its entry as referenced. The evictor takes entries off the
+ * head of the queue, giving referenced ones a second chance at the tail, until it finds
+ * an unreferenced one. Reads don't take any lock. Pinned entries are never evicted and
+ * don't count towards maxSize - use them for things that can't be got back, like our
+ * own keys.
+ *
+ * With soft spill on, evicted entries are kept through SoftReferences until the garbage
+ * collector needs the memory, and are put back in the cache if they are asked for before
+ * then.
+ *
+ * Null keys and values are not allowed.
+ */
+public class BoundedCache<K, V> implements NDNStatistics, Serializable {
+
+	private static final long serialVersionUID = -3702816524946102154L;
+
+	/**
+	 * Told about each entry evicted to make room, so that anything kept about it elsewhere
+	 * can go with it. Entries that are removed aren't reported.
+	 */
+	public interface EvictionListener<K, V> {
+		public void evicted(K key, V value);
+	}
+
+	protected static class CacheEntry<K, V> implements Serializable {
+		private static final long serialVersionUID = 6188244410474587624L;
+
+		protected final K _key;
+		protected volatile V _value;
+		protected final boolean _pinned;
+		protected volatile boolean _referenced = false;
+
+		protected CacheEntry(K key, V value, boolean pinned) {
+			_key = key;
+			_value = value;
+			_pinned = pinned;
+		}
+	}
+
+	protected static class SoftValue<K, V> extends SoftReference<V> {
+		protected final K _key;
+
+		protected SoftValue(K key, V value, ReferenceQueue<V> queue) {
+			super(value, queue);
+			_key = key;
+		}
+	}
+
+	protected final int _maxSize;
+	protected final boolean _softSpill;
+
+	protected final ConcurrentHashMap<K, CacheEntry<K, V>> _entries = new ConcurrentHashMap<K, CacheEntry<K, V>>();
+	// Unpinned entries in the order they were added, maybe including some that have since been removed
+	protected final ConcurrentLinkedQueue<CacheEntry<K, V>> _clock = new ConcurrentLinkedQueue<CacheEntry<K, V>>();
+	protected final AtomicInteger _unpinned = new AtomicInteger(0);
+	protected final AtomicInteger _stale = new AtomicInteger(0);
+
+	protected transient Object _evictLock;
+	protected transient EvictionListener<? super K, ? super V> _evictionListener;
+	protected transient ConcurrentHashMap<K, SoftValue<K, V>> _spill;
+	protected transient ReferenceQueue<V> _spillQueue;
+
+	/**
+	 * @param maxSize the most unpinned entries to keep; 0 or less keeps them all
+	 * @param softSpill keep evicted entries through SoftReferences
+	 */
+	public BoundedCache(int maxSize, boolean softSpill) {
+		_maxSize = maxSize;
+		_softSpill = softSpill;
+		init();
+	}
+
+	protected void init() {
+		_evictLock = new Object();
+		if (_softSpill) {
+			_spill = new ConcurrentHashMap<K, SoftValue<K, V>>();
+			_spillQueue = new ReferenceQueue<V>();
+		}
+		_stats = new NDNEnumStats<StatsEnum>(StatsEnum.Hits);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		init();
+	}
+
+	/**
+	 * Set the listener told about evicted entries. It is called while the cache is being
+	 * changed, so it shouldn't add to this cache. It isn't serialized with the cache.
+	 */
+	public void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+		_evictionListener = listener;
+	}
+
+	public V get(K key) {
+		CacheEntry<K, V> entry = _entries.get(key);
+		if (null != entry) {
+			entry._referenced = true;
+			_stats.increment(StatsEnum.Hits);
+			return entry._value;
+		}
+		if (null != _spill) {
+			SoftValue<K, V> ref = _spill.remove(key);
+			if (null != ref) {
+				V value = ref.get();
+				if (null != value) {
+					_stats.increment(StatsEnum.SpillHits);
+					put(key, value, false);
+					return value;
+				}
+			}
+		}
+		_stats.increment(StatsEnum.Misses);
+		return null;
+	}
+
+	/**
+	 * Like get, but doesn't count as a use of the entry.
+	 */
+	public boolean containsKey(K key) {
+		if (_entries.containsKey(key))
+			return true;
+		if (null != _spill) {
+			SoftValue<K, V> ref = _spill.get(key);
+			return (null != ref) && (null != ref.get());
+		}
+		return false;
+	}
+
+	/**
+	 * Add or replace an entry, evicting others if the cache is full. Replacing a
+	 * pinned entry leaves it pinned.
+	 * @return the previous value, or null
+	 */
+	public V put(K key, V value) {
+		return put(key, value, false);
+	}
+
+	/**
+	 * Add or replace an entry that will never be evicted
+	 * @return the previous value, or null
+	 */
+	public V putPinned(K key, V value) {
+		return put(key, value, true);
+	}
+
+	protected V put(K key, V value, boolean pinned) {
+		if (null == value)
+			throw new NullPointerException("BoundedCache doesn't hold null values");
+		if (null != _spill)
+			_spill.remove(key);
+
+		// Retry if another thread adds or replaces the entry under us, so a pinned
+		// entry can't be replaced by an unpinned one
+		CacheEntry<K, V> entry = null;
+		CacheEntry<K, V> old;
+		while (true) {
+			old = _entries.get(key);
+			if (null != old && (old._pinned || !pinned)) {
+				// Just update it in place
+				V oldValue = old._value;
+				old._value = value;
+				old._referenced = true;
+				return oldValue;
+			}
+			if (null == entry)
+				entry = new CacheEntry<K, V>(key, value, pinned);
+			if (null == old) {
+				if (null == _entries.putIfAbsent(key, entry))
+					break;
+			} else if (_entries.replace(key, old, entry))
+				break;
+		}
+		if (null != old) {
+			// Only an unpinned entry is replaced by a pinned one
+			_unpinned.decrementAndGet();
+			_stale.incrementAndGet();
+		}
+		if (!pinned) {
+			_unpinned.incrementAndGet();
+			_clock.add(entry);
+		}
+
+		if (_maxSize > 0 && _unpinned.get() > _maxSize)
+			evict();
+		purge();
+		return (null == old) ? null : old._value;
+	}
+
+	public V remove(K key) {
+		if (null != _spill)
+			_spill.remove(key);
+		CacheEntry<K, V> old = _entries.remove(key);
+		if (null == old)
+			return null;
+		if (!old._pinned) {
+			_unpinned.decrementAndGet();
+			_stale.incrementAndGet();
+			purge();
+		}
+		return old._value;
+	}
+
+	protected void evict() {
+		synchronized (_evictLock) {
+			while (_unpinned.get() > _maxSize) {
+				CacheEntry<K, V> entry = _clock.poll();
+				if (null == entry)
+					break;
+				if (_entries.get(entry._key) != entry) {
+					_stale.decrementAndGet();
+					continue;
+				}
+				if (entry._referenced) {
+					entry._referenced = false;
+					_clock.add(entry);
+					continue;
+				}
+				if (_entries.remove(entry._key, entry)) {
+					_unpinned.decrementAndGet();
+					_stats.increment(StatsEnum.Evictions);
+					if (null != _spill)
+						_spill.put(entry._key, new SoftValue<K, V>(entry._key, entry._value, _spillQueue));
+					if (null != _evictionListener)
+						_evictionListener.evicted(entry._key, entry._value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop removed entries from the eviction queue if there are a lot of them, and forget
+	 * spilled entries the garbage collector has cleared.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void purge() {
+		if (_stale.get() > Math.max(_maxSize, 64)) {
+			synchronized (_evictLock) {
+				for (Iterator<CacheEntry<K, V>> it = _clock.iterator(); it.hasNext(); ) {
+					CacheEntry<K, V> entry = it.next();
+					if (_entries.get(entry._key) != entry) {
+						it.remove();
+						_stale.decrementAndGet();
+					}
+				}
+			}
+		}
+		if (null != _spillQueue) {
+			SoftValue<K, V> ref;
+			while (null != (ref = (SoftValue<K, V>)_spillQueue.poll()))
+				_spill.remove(ref._key, ref);
+		}
+	}
+
+	/**
+	 * @return the number of entries, pinned or not, not counting spilled ones
+	 */
+	public int size() {
+		return _entries.size();
+	}
+
+	public Set<K> keySet() {
+		return _entries.keySet();
+	}
+
+	/**
+	 * @return a snapshot of the values, not counting spilled ones
+	 */
+	public Collection<V> values() {
+		ArrayList<V> values = new ArrayList<V>(_entries.size());
+		for (CacheEntry<K, V> entry : _entries.values())
+			values.add(entry._value);
+		return values;
+	}
+
+	public void clear() {
+		synchronized (_evictLock) {
+			_entries.clear();
+			_clock.clear();
+			_unpinned.set(0);
+			_stale.set(0);
+			if (null != _spill)
+				_spill.clear();
+		}
+	}
+
+	// ==============================================================
+	// Statistics
+
+	protected transient NDNEnumStats<StatsEnum> _stats;
+
+	public NDNStats getStats() {
+		return _stats;
+	}
+
+	public enum StatsEnum implements IStatsEnum {
+		// ====================================
+		// Just edit this list, dont need to change anything else
+
+		Hits ("count", "Lookups that found an entry"),
+		SpillHits ("count", "Lookups that found an evicted entry not yet garbage collected"),
+		Misses ("count", "Lookups that found nothing"),
+		Evictions ("count", "Entries evicted to make room for newer ones"),
+		;
+
+		// ====================================
+		// This is the same for every user of IStatsEnum
+
+		protected final String _units;
+		protected final String _description;
+		protected final static String [] _names;
+
+		static {
+			_names = new String[StatsEnum.values().length];
+			for(StatsEnum stat : StatsEnum.values() )
+				_names[stat.ordinal()] = stat.toString();
+
+		}
+
+		StatsEnum(String units, String description) {
+			_units = units;
+			_description = description;
+		}
+
+		public String getDescription(int index) {
+			return StatsEnum.values()[index]._description;
+		}
+
+		public int getIndex(String name) {
+			StatsEnum x = StatsEnum.valueOf(name);
+			return x.ordinal();
+		}
+
+		public String getName(int index) {
+			return StatsEnum.values()[index].toString();
+		}
+
+		public String getUnits(int index) {
+			return StatsEnum.values()[index]._units;
+		}
+
+		public String [] getNames() {
+			return _names;
+		}
+	}
+}
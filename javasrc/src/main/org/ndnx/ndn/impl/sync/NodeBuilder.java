@@ -98,8 +98,8 @@ public class NodeBuilder {
 				return null;
 			}
 			SyncTreeEntry ste = new SyncTreeEntry(snc.getHash(), cache);
-			shc.putHashEntry(ste);
 			ste.setLocal(true);
+			shc.putHashEntry(ste);
 			ste.setNode(snc);
 			return ste;
 		}
@@ -20,6 +20,10 @@
 package org.ndnx.ndn.impl.sync;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Stack;
@@ -66,6 +70,13 @@ import org.ndnx.ndn.protocol.Interest;
  * 
  * New hashes seen from the network are fed into the system via the "addPending" methods.
  * 
+ * Nodes are fetched ahead of the comparison. When a node arrives its unknown children are requested
+ * too, up to SystemConfiguration.SYNC_FETCH_WINDOW requests at a time, so the tree being compared is
+ * fetched a level at a time in parallel rather than a node at a time. The comparison itself still walks
+ * the trees in order, but while it waits for a node it keeps decoding the nodes that have arrived and
+ * requesting their children. Catching up on a large tree therefore takes about one round trip per level
+ * of the tree rather than one per node.
+ * 
  * Note: We purposely don't decode SyncNodeComposites in handlers since they are big and slow and we risk
  * timing out the handler by doing so.
  * 
@@ -112,6 +123,15 @@ public class SliceComparator implements Runnable {
 	
 	protected SyncHashCache _shc = new SyncHashCache();
 	
+	// Nodes we have requested ahead of the comparison, with the time they were requested
+	protected HashMap<SyncHashEntry, Long> _prefetching = new HashMap<SyncHashEntry, Long>();
+	// Hashes of nodes which have arrived but whose children we haven't looked at yet
+	protected Queue<byte[]> _fetched = new ConcurrentLinkedQueue<byte[]>();
+	// Hashes of nodes to prefetch when there is room in the window. Only used by the run thread.
+	protected LinkedList<byte[]> _toPrefetch = new LinkedList<byte[]>();
+	// The node the comparison is waiting for, so it can be woken to prefetch when other nodes arrive
+	protected volatile Pending _waitingFor = null;
+	
 	/**
 	 * Start a comparison on a slice which will call back each registered "callback" each time
 	 * a previously unseen name is seen. Note that with the 0 length hash we can only base the "start" of our
@@ -362,13 +382,111 @@ public class SliceComparator implements Runnable {
 		SyncNodeComposite snc = null;
 		snc = srt.getNode(_decoder);
 		if (null != snc) {
-			for (SyncNodeElement sne : snc.getRefs()) {
-				if (sne.getType() == SyncNodeType.HASH) {
-					SyncTreeEntry tsrt = _shc.addHash(sne.getData(), _snc);
-					getOrRequestNode(tsrt, false);
+			prefetchChildren(snc);
+		}
+		fillPrefetchWindow();
+	}
+	
+	/**
+	 * Queue the children of a node for prefetching
+	 * @param node
+	 */
+	private void prefetchChildren(SyncNodeComposite node) {
+		for (SyncNodeElement sne : node.getRefs()) {
+			if (sne.getType() == SyncNodeType.HASH)
+				_toPrefetch.add(sne.getData());
+		}
+	}
+	
+	/**
+	 * Request queued nodes until SYNC_FETCH_WINDOW requests are outstanding. Nodes are requested
+	 * in the order they were queued so that the tree is fetched breadth first. Requests that have
+	 * been outstanding longer than LONG_TIMEOUT are assumed lost and no longer count.
+	 * 
+	 * @throws SyncException
+	 */
+	private void fillPrefetchWindow() throws SyncException {
+		long now = System.currentTimeMillis();
+		expirePrefetches(_prefetching, _snc, now);
+		while (!_toPrefetch.isEmpty()) {
+			synchronized (_prefetching) {
+				if (_prefetching.size() >= SystemConfiguration.SYNC_FETCH_WINDOW)
+					return;
+			}
+			byte[] hash = _toPrefetch.removeFirst();
+			SyncTreeEntry entry = _shc.getHash(hash);
+			if (null != entry && (entry.isCovered() || null != entry.getNode(_decoder)))
+				continue;
+			Pending lock = _snc.pending(hash);
+			synchronized (lock) {
+				if (lock.getPending())	// Already requested by us or someone else
+					continue;
+				lock.setPending(true);
+			}
+			_shc.addHash(hash, _snc);
+			synchronized (_prefetching) {
+				_prefetching.put(new SyncHashEntry(hash), now);
+			}
+			if (Log.isLoggable(Log.FAC_SYNC, Level.FINEST))
+				Log.finest(Log.FAC_SYNC, "Prefetching node {0}", Component.printURI(hash));
+			_snc.countFetch();
+			ProtocolBasedSyncMonitor.requestNode(_slice, hash, _handle, _nfh);
+		}
+	}
+	
+	/**
+	 * Forget prefetches that have been outstanding longer than LONG_TIMEOUT. Their requests are
+	 * assumed lost, so the nodes are no longer marked pending and anyone waiting for one of them
+	 * is woken up to request it again.
+	 * 
+	 * @param prefetching outstanding prefetches and the times they were requested
+	 * @param snc cache holding the pending locks
+	 * @param now
+	 */
+	static void expirePrefetches(HashMap<SyncHashEntry, Long> prefetching, SyncNodeCache snc, long now) {
+		ArrayList<SyncHashEntry> expired = null;
+		synchronized (prefetching) {
+			Iterator<Entry<SyncHashEntry, Long>> it = prefetching.entrySet().iterator();
+			while (it.hasNext()) {
+				Entry<SyncHashEntry, Long> entry = it.next();
+				if (now - entry.getValue() > SystemConfiguration.LONG_TIMEOUT) {
+					if (null == expired)
+						expired = new ArrayList<SyncHashEntry>();
+					expired.add(entry.getKey());
+					it.remove();
 				}
 			}
 		}
+		if (null == expired)
+			return;
+		for (SyncHashEntry she : expired) {
+			if (Log.isLoggable(Log.FAC_SYNC, Level.FINE))
+				Log.fine(Log.FAC_SYNC, "Prefetch of node {0} timed out", Component.printURI(she._hash));
+			Pending lock = snc.pending(she._hash);
+			synchronized (lock) {
+				lock.setPending(false);
+				lock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Decode nodes which have arrived since we last looked and queue their children for
+	 * prefetching. We do the decoding here rather than in the handler because it is slow.
+	 * 
+	 * @throws SyncException
+	 */
+	private void processFetched() throws SyncException {
+		byte[] hash;
+		while (null != (hash = _fetched.poll())) {
+			SyncTreeEntry entry = _shc.getHash(hash);
+			if (null == entry || entry.isCovered())
+				continue;
+			SyncNodeComposite node = entry.getNode(_decoder);
+			if (null != node)
+				prefetchChildren(node);
+		}
+		fillPrefetchWindow();
 	}
 	
 	/**
@@ -387,27 +505,40 @@ public class SliceComparator implements Runnable {
 	 * @throws SyncException
 	 */
 	private SyncNodeComposite getOrRequestNode(SyncTreeEntry srt, boolean wait) throws SyncException {
+		if (!_fetched.isEmpty())
+			processFetched();
 		SyncNodeComposite node = srt.getNode(_decoder);
 		if (null != node)
 			return node;
 		Pending lock = _snc.pending(srt.getHash());
 		long ourTime = System.currentTimeMillis();
 		long endTime = ourTime + SystemConfiguration.LONG_TIMEOUT;
-		while (wait && lock.getPending()) {
-			try {
-				synchronized (lock) {
-					lock.wait(SystemConfiguration.LONG_TIMEOUT);
+		_waitingFor = lock;
+		try {
+			while (wait && lock.getPending()) {
+				// Keep the prefetch going while we wait
+				processFetched();
+				try {
+					synchronized (lock) {
+						if (_fetched.isEmpty() && lock.getPending())
+							lock.wait(SystemConfiguration.LONG_TIMEOUT);
+					}
+				} catch (InterruptedException e) {
+					return null;
+				}
+				node = srt.getNode(_decoder);
+				if (null != node)
+					return node;
+				ourTime = System.currentTimeMillis();
+				if (ourTime > endTime) {
+					// If it was our prefetch that got lost, this stops it being pending so we request it again
+					expirePrefetches(_prefetching, _snc, ourTime);
+					if (lock.getPending())
+						throw new SyncException("Node fetch timeout for: " + Component.printURI(srt.getHash()));
 				}
-			} catch (InterruptedException e) {
-				return null;
-			}
-			node = srt.getNode(_decoder);
-			if (null != node)
-				return node;
-			ourTime = System.currentTimeMillis();
-			if (ourTime > endTime) {
-				throw new SyncException("Node fetch timeout for: " + Component.printURI(srt.getHash()));
 			}
+		} finally {
+			_waitingFor = null;
 		}
 		
 		synchronized (lock) {
@@ -415,6 +546,7 @@ public class SliceComparator implements Runnable {
 				return null;
 			lock.setPending(true);
 		}
+		_snc.countFetch();
 		ProtocolBasedSyncMonitor.requestNode(_slice, srt.getHash(), _handle, _nfh);
 		return null;
 	}
@@ -1117,7 +1249,19 @@ public class SliceComparator implements Runnable {
 				Log.fine(Log.FAC_SYNC, "Saw data from nodefind: hash: {0}", Component.printURI(hash));
 			SyncTreeEntry ste = _shc.addHash(hash, _snc);
 			ste.setRawContent(data.content());
+			synchronized (_prefetching) {
+				_prefetching.remove(new SyncHashEntry(hash));
+			}
+			_fetched.add(hash);
 			_snc.wakeupPending(hash);
+			
+			// If the comparison is waiting for some other node, wake it up to prefetch this one's children
+			Pending waiting = _waitingFor;
+			if (null != waiting) {
+				synchronized (waiting) {
+					waiting.notifyAll();
+				}
+			}
 			kickCompare();
 			return null;
 		}
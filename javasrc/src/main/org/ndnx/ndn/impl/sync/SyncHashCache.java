@@ -20,14 +20,38 @@
 package org.ndnx.ndn.impl.sync;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.ndnx.ndn.config.SystemConfiguration;
 
 /**
  * This cache hashes sync hashes to their "SyncTreeEntry" used to walk through trees of hashes.
  * Since SyncTreeEntries can not be shared across comparators since they contain information about where
  * in the walk the comparator currently is, these hashes can not be shared on a slice either.
+ * 
+ * The cache holds at most SystemConfiguration.SYNC_HASH_CACHE_SIZE entries, dropping the least recently
+ * used. Entries for nodes we built ourselves are kept apart and never dropped here since we couldn't get
+ * the node back; they are removed explicitly when no longer needed. Dropping any other entry only costs us
+ * its "covered" flag - a comparator still walking it keeps its own reference.
  */
 public class SyncHashCache {
-	protected HashMap<SyncHashEntry, SyncTreeEntry> _hashes = new HashMap<SyncHashEntry, SyncTreeEntry>();
+	protected LinkedHashMap<SyncHashEntry, SyncTreeEntry> _hashes = new LinkedHashMap<SyncHashEntry, SyncTreeEntry>(16, 0.75f, true);
+	// Entries for local nodes. These aren't counted against _maxEntries.
+	protected HashMap<SyncHashEntry, SyncTreeEntry> _localHashes = new HashMap<SyncHashEntry, SyncTreeEntry>();
+	protected final int _maxEntries;
+	
+	public SyncHashCache() {
+		this(SystemConfiguration.SYNC_HASH_CACHE_SIZE);
+	}
+	
+	/**
+	 * @param maxEntries the most entries to hold, not counting local ones. 0 or less for no limit.
+	 */
+	public SyncHashCache(int maxEntries) {
+		_maxEntries = maxEntries;
+	}
 
 	/**
 	 * Add a new hash to the list of ones we've seen
@@ -35,11 +59,13 @@ public class SyncHashCache {
 	 * @return new SyncTreeEntry for the hash
 	 */
 	public SyncTreeEntry addHash(byte[] hash, SyncNodeCache snc) {
+		SyncHashEntry she = new SyncHashEntry(hash);
 		synchronized (this) {
-			SyncTreeEntry entry = _hashes.get(new SyncHashEntry(hash));
+			SyncTreeEntry entry = get(she);
 			if (null == entry) {
 				entry = new SyncTreeEntry(hash, snc);
-				_hashes.put(new SyncHashEntry(hash), entry);
+				_hashes.put(she, entry);
+				evict();
 			}
 			return entry;
 		}
@@ -54,20 +80,25 @@ public class SyncHashCache {
 		if (null == hash)
 			return null;
 		synchronized (this) {
-			return _hashes.get(new SyncHashEntry(hash));
+			return get(new SyncHashEntry(hash));
 		}
 	}
 	
 	/**
-	 * Put a specific entry in for a hash
+	 * Put a specific entry in for a hash. Entries for local nodes should be marked local
+	 * before they are put in.
 	 */
 	public void putHashEntry(SyncTreeEntry entry) {
 		SyncHashEntry she = new SyncHashEntry(entry.getHash());
 		synchronized (this) {
-			SyncTreeEntry tste = _hashes.get(she);
-			if (null != tste)
-				_hashes.remove(she);
-			_hashes.put(she, entry);
+			_hashes.remove(she);
+			_localHashes.remove(she);
+			if (entry.isLocal()) {
+				_localHashes.put(she, entry);
+			} else {
+				_hashes.put(she, entry);
+				evict();
+			}
 		}
 	}
 	
@@ -79,6 +110,38 @@ public class SyncHashCache {
 		SyncHashEntry she = new SyncHashEntry(entry.getHash());
 		synchronized (this) {
 			_hashes.remove(she);
+			_localHashes.remove(she);
+		}
+	}
+	
+	public synchronized int size() {
+		return _hashes.size() + _localHashes.size();
+	}
+	
+	/**
+	 * Must be called with the cache locked.
+	 */
+	protected SyncTreeEntry get(SyncHashEntry she) {
+		SyncTreeEntry entry = _localHashes.get(she);
+		if (null == entry)
+			entry = _hashes.get(she);
+		return entry;
+	}
+	
+	/**
+	 * Drop the least recently used entries until we are within our limit. An entry that has been
+	 * made local since it was added is moved to the local entries instead, so each local entry is
+	 * only passed over once. Must be called with the cache locked.
+	 */
+	protected void evict() {
+		if (_maxEntries <= 0)
+			return;
+		Iterator<Entry<SyncHashEntry, SyncTreeEntry>> it = _hashes.entrySet().iterator();
+		while (_hashes.size() > _maxEntries && it.hasNext()) {
+			Entry<SyncHashEntry, SyncTreeEntry> entry = it.next();
+			it.remove();
+			if (entry.getValue().isLocal())
+				_localHashes.put(entry.getKey(), entry.getValue());
 		}
 	}
 }
@@ -20,17 +20,34 @@
 package org.ndnx.ndn.impl.sync;
 
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats.IStatsEnum;
+import org.ndnx.ndn.impl.NDNStats.NDNStatistics;
 import org.ndnx.ndn.io.content.SyncNodeComposite;
+import org.ndnx.ndn.io.content.SyncNodeComposite.SyncNodeElement;
+import org.ndnx.ndn.protocol.ContentName;
 
 /**
  * Nodes can be cached by hash across different comparators. We use WeakReferences to avoid accidentally caching nodes that
  * no longer have any real referents.
  * 
+ * Nodes that came from the network are also held strongly, up to a budget of SystemConfiguration.SYNC_NODE_CACHE_SIZE
+ * bytes, so that they survive garbage collection and don't have to be fetched again. The least recently used are evicted
+ * first. If SystemConfiguration.SYNC_NODE_SPILL_SIZE is set, the encoded form of evicted nodes is kept outside the heap
+ * and handed back to SyncTreeEntry to decode if the node is wanted again. Nodes we built ourselves are held by their
+ * SyncTreeEntry and are not counted.
+ * 
  * Since we only need to request nodes once per slice, the pending mechanism should be global
  */
-public class SyncNodeCache {
+public class SyncNodeCache implements NDNStatistics {
 	
 	/**
 	 * This mechanism is used to avoid requesting the same node more than once (see below). One of
@@ -53,15 +70,75 @@ public class SyncNodeCache {
 	private HashMap<SyncHashEntry, Pending> _hashesPending = new HashMap<SyncHashEntry, Pending>();
 	
 	protected HashMap<SyncHashEntry, WeakReference<SyncNodeComposite>> _nodes = new HashMap<SyncHashEntry, WeakReference<SyncNodeComposite>>();
+	
+	/**
+	 * A node held strongly, with its encoding if we have it
+	 */
+	protected static class CachedNode {
+		protected final SyncNodeComposite _node;
+		protected final byte[] _encoded;
+		protected final int _size;
+		
+		protected CachedNode(SyncNodeComposite node, byte[] encoded) {
+			_node = node;
+			_encoded = encoded;
+			_size = (null == encoded) ? estimateSize(node) : encoded.length;
+		}
+	}
+	
+	// Retrievable nodes in least recently used order
+	protected LinkedHashMap<SyncHashEntry, CachedNode> _recent = new LinkedHashMap<SyncHashEntry, CachedNode>(16, 0.75f, true);
+	protected long _recentBytes = 0;
+	protected final long _maxBytes;
+	
+	// Encodings of evicted nodes, in least recently used order
+	protected LinkedHashMap<SyncHashEntry, ByteBuffer> _spilled = new LinkedHashMap<SyncHashEntry, ByteBuffer>(16, 0.75f, true);
+	protected long _spilledBytes = 0;
+	protected final long _maxSpillBytes;
+	
+	public SyncNodeCache() {
+		this(SystemConfiguration.SYNC_NODE_CACHE_SIZE, SystemConfiguration.SYNC_NODE_SPILL_SIZE);
+	}
+	
+	/**
+	 * @param maxBytes bytes of retrieved nodes to hold in memory
+	 * @param maxSpillBytes bytes of encoded nodes to keep outside the heap after eviction. 0 for none.
+	 */
+	public SyncNodeCache(long maxBytes, long maxSpillBytes) {
+		_maxBytes = maxBytes;
+		_maxSpillBytes = maxSpillBytes;
+	}
 
 	/**
 	 * Put a newly decoded node into the cache
 	 * @param node
 	 */
 	public void putNode(SyncNodeComposite node) {
+		putNode(node, null);
+	}
+	
+	/**
+	 * Put a newly decoded node into the cache along with the data it was decoded from,
+	 * which is used to size it and is what we spill if the node is evicted.
+	 * @param node
+	 * @param encoded the encoded node or null if we don't have it
+	 */
+	public void putNode(SyncNodeComposite node, byte[] encoded) {
 		synchronized (this) {
+			SyncHashEntry she = new SyncHashEntry(node.getHash());
 			WeakReference<SyncNodeComposite> wr = new WeakReference<SyncNodeComposite>(node);
-			_nodes.put((new SyncHashEntry(node.getHash())), wr);
+			_nodes.put(she, wr);
+			if (node.retrievable() && _maxBytes > 0) {
+				CachedNode cn = new CachedNode(node, encoded);
+				CachedNode old = _recent.put(she, cn);
+				if (null != old)
+					_recentBytes -= old._size;
+				_recentBytes += cn._size;
+				ByteBuffer spilled = _spilled.remove(she);
+				if (null != spilled)
+					_spilledBytes -= spilled.capacity();
+				evict();
+			}
 			clearPending(node.getHash());
 		}
 	}
@@ -75,13 +152,112 @@ public class SyncNodeCache {
 		if (null == hash)
 			return null;
 		synchronized (this) {
-			WeakReference<SyncNodeComposite> wr = _nodes.get(new SyncHashEntry(hash));
-			if (null == wr)
+			SyncHashEntry she = new SyncHashEntry(hash);
+			CachedNode cn = _recent.get(she);
+			if (null != cn) {
+				_stats.increment(StatsEnum.Hits);
+				return cn._node;
+			}
+			WeakReference<SyncNodeComposite> wr = _nodes.get(she);
+			SyncNodeComposite node = (null == wr) ? null : wr.get();
+			if (null == node) {
+				if (null != wr)
+					_nodes.remove(she);
+				_stats.increment(StatsEnum.Misses);
+			} else
+				_stats.increment(StatsEnum.Hits);
+			return node;
+		}
+	}
+	
+	/**
+	 * Get back the encoding of a node we evicted, if we spilled it. The caller should decode
+	 * it and put the node back with putNode.
+	 * @param hash
+	 * @return the encoded node or null if we don't have it
+	 */
+	public byte[] getSpilledNode(byte[] hash) {
+		if (null == hash)
+			return null;
+		synchronized (this) {
+			ByteBuffer spilled = _spilled.remove(new SyncHashEntry(hash));
+			if (null == spilled)
 				return null;
-			return wr.get();
+			_spilledBytes -= spilled.capacity();
+			_stats.increment(StatsEnum.SpillHits);
+			byte[] encoded = new byte[spilled.capacity()];
+			spilled.clear();
+			spilled.get(encoded);
+			return encoded;
 		}
 	}
 	
+	/**
+	 * Note that a node is being fetched from the network
+	 */
+	public void countFetch() {
+		_stats.increment(StatsEnum.Fetches);
+	}
+	
+	/**
+	 * Drop least recently used nodes until we are within our budget. Must be called
+	 * with the cache locked.
+	 */
+	protected void evict() {
+		Iterator<Map.Entry<SyncHashEntry, CachedNode>> it = _recent.entrySet().iterator();
+		while (_recentBytes > _maxBytes && it.hasNext()) {
+			Map.Entry<SyncHashEntry, CachedNode> entry = it.next();
+			CachedNode cn = entry.getValue();
+			it.remove();
+			_recentBytes -= cn._size;
+			_stats.increment(StatsEnum.Evictions);
+			if (_maxSpillBytes > 0 && null != cn._encoded && cn._encoded.length <= _maxSpillBytes) {
+				ByteBuffer spilled = ByteBuffer.allocateDirect(cn._encoded.length);
+				spilled.put(cn._encoded);
+				_spilled.put(entry.getKey(), spilled);
+				_spilledBytes += spilled.capacity();
+				_stats.increment(StatsEnum.Spills);
+			}
+		}
+		Iterator<ByteBuffer> sit = _spilled.values().iterator();
+		while (_spilledBytes > _maxSpillBytes && sit.hasNext()) {
+			_spilledBytes -= sit.next().capacity();
+			sit.remove();
+		}
+	}
+	
+	/**
+	 * Rough size of a node we don't have the encoding for
+	 */
+	protected static int estimateSize(SyncNodeComposite node) {
+		int size = 64;
+		for (SyncNodeElement sne : node.getRefs()) {
+			size += 8;
+			if (null != sne.getData())
+				size += sne.getData().length;
+			ContentName name = sne.getName();
+			if (null != name) {
+				for (int i = 0; i < name.count(); i++)
+					size += name.component(i).length + 2;
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * @return bytes of nodes held in memory
+	 */
+	public synchronized long getSize() {
+		return _recentBytes;
+	}
+	
+	/**
+	 * @return bytes of nodes spilled outside the heap
+	 */
+	public synchronized long getSpilledSize() {
+		return _spilledBytes;
+	}
+	
 	/**
 	 * Activate the mechanism to avoid multiple requests for the same node and to wait for a
 	 * node in the process of being fetched by another comparator if it is.
@@ -141,4 +317,66 @@ public class SyncNodeCache {
 			}
 		}
 	}
+	
+	// ==============================================================
+	// Statistics
+
+	protected NDNEnumStats<StatsEnum> _stats = new NDNEnumStats<StatsEnum>(StatsEnum.Hits);
+
+	public NDNStats getStats() {
+		return _stats;
+	}
+
+	public enum StatsEnum implements IStatsEnum {
+		// ====================================
+		// Just edit this list, dont need to change anything else
+
+		Hits ("count", "Lookups that found a node"),
+		Misses ("count", "Lookups that found nothing"),
+		SpillHits ("count", "Evicted nodes decoded again from their spilled encoding"),
+		Fetches ("count", "Nodes requested from the network"),
+		Evictions ("count", "Nodes evicted to stay within the cache size"),
+		Spills ("count", "Evicted nodes whose encoding was kept outside the heap"),
+		;
+
+		// ====================================
+		// This is the same for every user of IStatsEnum
+
+		protected final String _units;
+		protected final String _description;
+		protected final static String [] _names;
+
+		static {
+			_names = new String[StatsEnum.values().length];
+			for(StatsEnum stat : StatsEnum.values() )
+				_names[stat.ordinal()] = stat.toString();
+
+		}
+
+		StatsEnum(String units, String description) {
+			_units = units;
+			_description = description;
+		}
+
+		public String getDescription(int index) {
+			return StatsEnum.values()[index]._description;
+		}
+
+		public int getIndex(String name) {
+			StatsEnum x = StatsEnum.valueOf(name);
+			return x.ordinal();
+		}
+
+		public String getName(int index) {
+			return StatsEnum.values()[index].toString();
+		}
+
+		public String getUnits(int index) {
+			return StatsEnum.values()[index]._units;
+		}
+
+		public String [] getNames() {
+			return _names;
+		}
+	}
 }
@@ -106,11 +106,15 @@ public class SyncTreeEntry {
 	public SyncNodeComposite getNode(XMLDecoder decoder) {
 		SyncNodeComposite node = getNodeIfPossible();
 		synchronized (this) {
-			if (null != node || null == _rawContent || null == decoder) {
+			if (null != node || null == decoder) {
 				if (null != node)
 					_rawContent = null;
 				return node;
 			}
+			if (null == _rawContent && null != _snc)
+				_rawContent = _snc.getSpilledNode(_hash);	// We may have evicted it
+			if (null == _rawContent)
+				return null;
 			
 			// If we have to decode it, its not local by definition
 			node = new SyncNodeComposite();
@@ -122,11 +126,12 @@ public class SyncTreeEntry {
 				_rawContent = null;
 				return null;
 			}
+			byte[] encoded = _rawContent;
 			_rawContent = null;
 			_softNodeRef = new SoftReference<SyncNodeComposite>(node);
 			if (null != _snc) {
 				_snc.clearPending(_hash);
-				_snc.putNode(node);
+				_snc.putNode(node, encoded);
 			}
 		}
 		if (Log.isLoggable(Log.FAC_SYNC, Level.FINEST)) {
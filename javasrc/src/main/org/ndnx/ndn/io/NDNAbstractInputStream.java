@@ -28,6 +28,12 @@ import java.security.InvalidKeyException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.crypto.BadPaddingException;
@@ -37,7 +43,12 @@ import javax.crypto.IllegalBlockSizeException;
 import org.ndnx.ndn.NDNContentHandler;
 import org.ndnx.ndn.NDNHandle;
 import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNStats;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats;
+import org.ndnx.ndn.impl.NDNStats.NDNStatistics;
+import org.ndnx.ndn.impl.NDNStats.NDNEnumStats.IStatsEnum;
 import org.ndnx.ndn.impl.security.crypto.ContentKeys;
+import org.ndnx.ndn.impl.support.ByteArrayCompare;
 import org.ndnx.ndn.impl.support.DataUtils;
 import org.ndnx.ndn.impl.support.Log;
 import org.ndnx.ndn.io.content.Link.LinkObject;
@@ -62,7 +73,7 @@ import org.ndnx.ndn.protocol.SignedInfo.ContentType;
  *
  * @see SegmentationProfile for description of NDN segmentation
  */
-public abstract class NDNAbstractInputStream extends InputStream implements NDNContentHandler {
+public abstract class NDNAbstractInputStream extends InputStream implements NDNContentHandler, NDNStatistics {
 
 	/**
 	 * Flags:
@@ -146,6 +157,55 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 	protected byte [] _verifiedRootSignature = null;
 	protected byte [] _verifiedProxy = null;
 
+	/**
+	 * Segments are verified in whatever order the verifier threads get to them, so those of
+	 * the last few trees can arrive mixed together. Keep the root hashes and signatures of the
+	 * most recently verified trees, oldest first, so no tree is verified more than once.
+	 * Protected by verifiedRootLock.
+	 */
+	private final ArrayList<byte [][]> _verifiedRoots = new ArrayList<byte [][]>();
+	private static final int MAX_VERIFIED_ROOTS = 8;
+
+	/**
+	 * Root signatures that a verifier thread is checking right now, by root hash. Segments
+	 * of a tree that is being verified wait for that verification rather than repeating it,
+	 * while segments of other trees verify in parallel. Protected by verifiedRootLock.
+	 */
+	private final TreeMap<byte [], RootVerification> _verifyingRoots = new TreeMap<byte [], RootVerification>(new ByteArrayCompare());
+
+	/**
+	 * The outcome of one root signature verification, for the segments waiting on it.
+	 */
+	private static class RootVerification {
+		private final byte [] _signature;
+		private boolean _done = false;
+		private boolean _verified = false;
+
+		RootVerification(byte [] signature) {
+			_signature = signature;
+		}
+
+		synchronized void finish(boolean verified) {
+			_verified = verified;
+			_done = true;
+			notifyAll();
+		}
+
+		synchronized boolean await() {
+			boolean interrupted = false;
+			while (!_done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			return _verified;
+		}
+	}
+
 	protected boolean _atEOF = false;
 
 	/**
@@ -171,12 +231,37 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 	private final Object readerReadyObj = new Object();
 	private long readerReadyVal = -1;
 
-	private double avgResponseTime = -1;
+	/**
+	 * Sizes the pipeline and times out segment interests.
+	 */
+	protected PipelineWindow _pipelineWindow = PipelineWindow.create();
 
+	/**
+	 * Segments we have received and are still verifying, so they are neither holes
+	 * nor buffered yet. Protected by processingSegmentLock.
+	 */
 	private final Object processingSegmentLock = new Object();
-	private long processingSegment = -1;
+	private final HashSet<Long> processingSegments = new HashSet<Long>();
 
-	private final int processingDefer = 0;
+	/**
+	 * Segments we have expressed an interest for more than once. We can't tell which
+	 * expression such a segment answers, so it gives no round trip time sample (Karn's rule).
+	 * Protected by processingSegmentLock.
+	 */
+	private final HashSet<Long> retransmittedSegments = new HashSet<Long>();
+
+	/**
+	 * Protects _verifiedRoots and _verifyingRoots. It is never held while a signature
+	 * is being verified.
+	 */
+	private final Object verifiedRootLock = new Object();
+
+	/**
+	 * Threads shared by all streams to verify segment signatures.
+	 * @see SystemConfiguration#PIPELINE_VERIFY_THREADS
+	 */
+	private static ThreadPoolExecutor _verifyPool = null;
+	private static final int VERIFY_QUEUE_PER_THREAD = 64;
 
 	/**
 	 * Set up an input stream to read segmented NDN content under a given name.
@@ -290,13 +375,25 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 	}
 
 
+	/**
+	 * Log the state of the pipeline window alongside the "plot" lines printed when
+	 * SystemConfiguration.PIPELINE_STATS is on.
+	 * @param site which of the plot lines this goes with
+	 */
+	private void logPipelineWindow(int site) {
+		if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+			Log.info(Log.FAC_PIPELINE, "PIPELINE: [{0}].{1} rtt {2} window {3}", _baseName, site, _pipelineWindow.smoothedRtt(), _pipelineWindow.window());
+	}
+
 	private void startPipeline() {
 		synchronized (inOrderSegments) {
 			Log.info(Log.FAC_PIPELINE, "PIPELINE: starting pipelining");
 
 			_pipelineStartTime = System.currentTimeMillis();
-			if (SystemConfiguration.PIPELINE_STATS)
-				System.out.println("plot "+(System.currentTimeMillis() - _pipelineStartTime)+" inOrder: "+inOrderSegments.size() +" outOfOrder: "+outOfOrderSegments.size() + " interests: "+_sentInterests.size() +" holes: "+_holes + " received: "+_totalReceived+" ["+_baseName+"].1"+ "avgResponseTime "+avgResponseTime);
+			if (SystemConfiguration.PIPELINE_STATS) {
+				System.out.println("plot "+(System.currentTimeMillis() - _pipelineStartTime)+" inOrder: "+inOrderSegments.size() +" outOfOrder: "+outOfOrderSegments.size() + " interests: "+_sentInterests.size() +" holes: "+_holes + " received: "+_totalReceived+" ["+_baseName+"].1"+ "avgResponseTime "+_pipelineWindow.smoothedRtt());
+				logPipelineWindow(1);
+			}
 
 			long segmentToGet = -1;
 			Interest interest = null;
@@ -440,6 +537,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 						Log.info(Log.FAC_PIPELINE, "PIPELINE: this is a pipeline segment, add to outOfOrderSegment queue");
 					_totalReceived++;
 					_holes++;
+					_stats.increment(StatsEnum.Holes);
 					int i = 0;
 					for (ContentObject c:outOfOrderSegments) {
 						if(returnedSegment < SegmentationProfile.getSegmentNumber(c.name()))
@@ -460,7 +558,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 			if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 				Log.info(Log.FAC_PIPELINE, "PIPELINE: the next segment needed is {0}", _nextPipelineSegment);
 			synchronized(processingSegmentLock) {
-				processingSegment = -1;
+				processingSegments.remove(SegmentationProfile.getSegmentNumber(co.name()));
 			}
 
 			if(returnedSegment == waitingSegment) {
@@ -488,10 +586,14 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 			}
 
 			Interest i = null;
+			int processing;
+			synchronized(processingSegmentLock) {
+				processing = processingSegments.size();
+			}
 
-			while (_sentInterests.size() + inOrderSegments.size() + outOfOrderSegments.size() + processingDefer < SystemConfiguration.PIPELINE_SIZE && !doneAdvancing) {
+			while (_sentInterests.size() + inOrderSegments.size() + outOfOrderSegments.size() + processing < _pipelineWindow.window() && !doneAdvancing) {
 				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-					Log.info(Log.FAC_PIPELINE, "PIPELINE: _sentInterests.size() = {0} inOrderSegments.size() = {1} outOfOrderSegments.size()  = {2} processingDefer = {3} total = {4}", _sentInterests.size(), inOrderSegments.size(), outOfOrderSegments.size(), processingDefer, (_sentInterests.size() + inOrderSegments.size() + outOfOrderSegments.size() + processingDefer) );
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: _sentInterests.size() = {0} inOrderSegments.size() = {1} outOfOrderSegments.size()  = {2} processing = {3} total = {4}", _sentInterests.size(), inOrderSegments.size(), outOfOrderSegments.size(), processing, (_sentInterests.size() + inOrderSegments.size() + outOfOrderSegments.size() + processing) );
 
 				//we have tokens to use
 				i = null;
@@ -522,7 +624,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 						_sentInterests.add(i);
 						_lastRequestedPipelineSegment++;
 						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-							Log.info(Log.FAC_PIPELINE, "PIPELINE: requested segment "+_lastRequestedPipelineSegment +" ("+(SystemConfiguration.PIPELINE_SIZE - _sentInterests.size())+" tokens)");
+							Log.info(Log.FAC_PIPELINE, "PIPELINE: requested segment "+_lastRequestedPipelineSegment +" ("+(_pipelineWindow.window() - _sentInterests.size())+" tokens)");
 					} catch (IOException e) {
 						// This could happen if the handle got closed underneath us - maybe that's OK?
 						// For now will leave it as a warning
@@ -561,7 +663,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 
 		//first check the incoming segment to see if it is here already
 		synchronized (processingSegmentLock) {
-			if(processingSegment != -1 && hole == processingSegment) {
+			if(processingSegments.contains(hole)) {
 				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 					Log.info(Log.FAC_PIPELINE, "PIPELINE: the segment is being processed... not a hole.");
 				return;
@@ -677,18 +779,19 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 						elapsed2 = System.currentTimeMillis() - expressed.userTime;
 						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 							Log.info(Log.FAC_PIPELINE, "PIPELINE: elapsed2 time {0}", elapsed2);
-						if(elapsed2 > avgResponseTime * SystemConfiguration.PIPELINE_RTTFACTOR && avgResponseTime > -1) {
+						if(elapsed2 > _pipelineWindow.retransmitTimeout()) {
 							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 								Log.info(Log.FAC_PIPELINE, "PIPELINE: expressing the next interest! {0} old express time {1} new express time {2}", i, expressed.userTime, newUserTime);
 							//i.userTime = System.currentTimeMillis();
 							i.userTime = newUserTime;
+							segmentRetransmitted(hole);
 							_handle.expressInterest(i, this);
 							_sentInterests.add(index2, i);
 
 							_handle.cancelInterest(toDelete, this);
 							_sentInterests.remove(toDelete);
 
-							adjustAvgResponseTimeForHole();
+							segmentTimedOut();
 
 							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)) {
 								Log.info(Log.FAC_PIPELINE, "PIPELINE: expressed: {0} deleted: {1}", i, toDelete);
@@ -714,7 +817,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 					}
 				}
 
-				if((elapsed1 > avgResponseTime * 2 && avgResponseTime > -1) || (avgResponseTime == -1 && elapsed1 > SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT) || notRequested) {
+				if(elapsed1 > _pipelineWindow.retransmitTimeout() || notRequested) {
 					//long userTime = System.currentTimeMillis();
 					if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)) {
 						if (notRequested)
@@ -732,6 +835,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 					if (newUserTime == -1)
 						newUserTime = System.currentTimeMillis();
 					i.userTime = newUserTime;
+					segmentRetransmitted(hole);
 					_handle.expressInterest(i, this);
 					if (index != -1)
 						_sentInterests.add(index, i);
@@ -741,7 +845,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 					// interest
 					if (index != -1) {
 						_handle.cancelInterest(_sentInterests.remove(index+1), this);
-						adjustAvgResponseTimeForHole();
+						segmentTimedOut();
 					}
 
 					if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
@@ -749,7 +853,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 					return;
 				} else {
 					if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-						Log.info(Log.FAC_PIPELINE, "PIPELINE: we need to wait longer to see if the original interest will return the segment: avgResponseTime: {0}", avgResponseTime);
+						Log.info(Log.FAC_PIPELINE, "PIPELINE: we need to wait longer to see if the original interest will return the segment: {0}", _pipelineWindow);
 				}
 			}
 			//}
@@ -759,14 +863,20 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 		}
 	}
 
-	private void adjustAvgResponseTimeForHole() {
-		synchronized (processingSegmentLock) {
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: before adjusting avgResponseTime for hole. avgResponseTime = {0}", avgResponseTime);
-			avgResponseTime = 0.9 * avgResponseTime + 0.1 * (SystemConfiguration.PIPELINE_RTTFACTOR * avgResponseTime);
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: after adjusting avgResponseTime for hole. avgResponseTime = {0}", avgResponseTime);
+	private void segmentRetransmitted(long segmentNumber) {
+		synchronized(processingSegmentLock) {
+			retransmittedSegments.add(segmentNumber);
 		}
 	}
 
+	private void segmentTimedOut() {
+		_stats.increment(StatsEnum.Retransmissions);
+		if (_pipelineWindow.segmentTimedOut())
+			_stats.increment(StatsEnum.WindowDecreases);
+		if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+			Log.info(Log.FAC_PIPELINE, "PIPELINE: after a segment timed out: {0}", _pipelineWindow);
+	}
+
 	private void printSegments() {
 		String s = "inOrder: [";
 		for(ContentObject c: inOrderSegments)
@@ -913,7 +1023,7 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 					interest.userTime = System.currentTimeMillis();
 					_handle.expressInterest(interest, this);
 					ArrayList<Object> toRemove = new ArrayList<Object>();
-					long maxExpress = segmentNumber + SystemConfiguration.PIPELINE_SIZE-1;
+					long maxExpress = segmentNumber + _pipelineWindow.window()-1;
 					long lastExpressed = segmentNumber;
 					long segNum;
 					for (Interest i: _sentInterests) {
@@ -1056,12 +1166,15 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 			_lastSegmentNumber = -1;
 			_currentSegment = null;
 		}
+		synchronized(processingSegmentLock) {
+			retransmittedSegments.clear();
+		}
 	}
 
 
 	private boolean requestedSegment(long number) {
 		synchronized(processingSegmentLock) {
-			if (processingSegment!=-1 && processingSegment == number) {
+			if (processingSegments.contains(number)) {
 				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 					Log.info(Log.FAC_PIPELINE, "PIPELINE: someone is processing it right now!");
 				return true;
@@ -1146,31 +1259,21 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 		IncomingSegment is;
 
 		synchronized(processingSegmentLock) {
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: before adjusting avgResponseTime after reception. avgResponseTime = {0} elapsed time {1}", avgResponseTime, (starttime - interest.userTime));
-			if (avgResponseTime == -1) {
-				avgResponseTime = starttime - interest.userTime;
-			} else {
-				//do not include hole filling responses, they will be extra fast
-				//if (interest.exclude()==null)
-
-				//TODO:  find true cause of this bug, temporary fix to get seek/skip fix merged
-				long newResponseTime = starttime - interest.userTime;
-				if (newResponseTime < 100 * avgResponseTime)
-					avgResponseTime = 0.9 * avgResponseTime + 0.1 * newResponseTime;
-				else {
-					//do not include this response time for now.  Will be fixed in bug 100478
-					Log.info(Log.FAC_PIPELINE, "PIPELINE: did not use response time for calculation...  would have been incorrect.  will be fixed in a new branch for 100478 {0}", newResponseTime);
-				}
+			// Interests we expressed again carry the time the segment was first asked for,
+			// so only segments we asked for once give us a true round trip time.
+			if (interest.userTime > 0 && !retransmittedSegments.contains(SegmentationProfile.getSegmentNumber(result.name()))) {
+				long rtt = starttime - interest.userTime;
+				_pipelineWindow.rttSample(rtt);
+				_stats.addSample(StatsEnum.RoundTripTime, rtt);
 			}
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: after adjusting avgResponseTime after reception. avgResponseTime = {0}", avgResponseTime);
 
 			interest.userTime = -1;
 
 			if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-				Log.info(Log.FAC_PIPELINE, "PIPELINE: in handleContent after reading {0} avgResponseTime {1}", result.name(), avgResponseTime);
+				Log.info(Log.FAC_PIPELINE, "PIPELINE: in handleContent after reading {0} {1}", result.name(), _pipelineWindow);
 			is = new IncomingSegment(result, interest);
 
-			processingSegment = SegmentationProfile.getSegmentNumber(is.content.name());
+			processingSegments.add(SegmentationProfile.getSegmentNumber(is.content.name()));
 		}
 
 		synchronized(inOrderSegments){
@@ -1178,8 +1281,10 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 			//was this a content object we were looking for?
 			//synchronized(inOrderSegments) {
 
-			if (SystemConfiguration.PIPELINE_STATS)
-				System.out.println("plot "+(System.currentTimeMillis() - _pipelineStartTime)+" inOrder: "+inOrderSegments.size() +" outOfOrder: "+outOfOrderSegments.size() + " interests: "+_sentInterests.size() +" holes: "+_holes + " received: "+_totalReceived+" ["+_baseName+"].2" + " avgResponseTime "+avgResponseTime);
+			if (SystemConfiguration.PIPELINE_STATS) {
+				System.out.println("plot "+(System.currentTimeMillis() - _pipelineStartTime)+" inOrder: "+inOrderSegments.size() +" outOfOrder: "+outOfOrderSegments.size() + " interests: "+_sentInterests.size() +" holes: "+_holes + " received: "+_totalReceived+" ["+_baseName+"].2" + " avgResponseTime "+_pipelineWindow.smoothedRtt());
+				logPipelineWindow(2);
+			}
 
 			if (_sentInterests.remove(is.interest)) {
 				//we had this interest outstanding...
@@ -1204,35 +1309,160 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 					}
 				}
 				if (is.interest == null) {
-					is = null;
 					synchronized(processingSegmentLock) {
-						processingSegment = -1;
+						processingSegments.remove(SegmentationProfile.getSegmentNumber(is.content.name()));
 					}
+					is = null;
 				}
 			}
 
-			if (is != null) {
-				// verify the content object
-				if (_handle.defaultVerifier().verify(is.content)) {
-					// this content verified
-					receivePipelineContent(is.content);
-				} else {
-					// content didn't verify, don't hand it up...
-					// TODO content that fails verification needs to be handled better.  need to express a new interest
-					if (Log.isLoggable(Log.FAC_PIPELINE, Level.WARNING))
-						Log.warning(Log.FAC_PIPELINE, "Dropping content object due to failed verification: {0} Need to add interest re-expression with exclude", is.content.name());
-					_sentInterests.remove(is.interest);
-				}
+			if (is == null)
+				advancePipeline();
+		}
+
+		if (is == null) {
+			attemptHoleFilling();
+		} else {
+			// Verify the segment off the network thread if we can. Segments may finish
+			// verifying out of order, receivePipelineContent puts them back in order.
+			final IncomingSegment segment = is;
+			ThreadPoolExecutor pool = getVerifyPool();
+			if (null == pool) {
+				processSegment(segment);
+			} else {
+				pool.execute(new Runnable() {
+					public void run() {
+						processSegment(segment);
+					}
+				});
 			}
+		}
+
+		if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+			Log.info(Log.FAC_PIPELINE, "PIPELINE: {0} done with handleContent after reading {1}", (System.currentTimeMillis() - starttime),  result.name());
 
+		return null;
+	}
+
+	/**
+	 * Verify a segment we were waiting for and, if it verifies, add it to the pipeline.
+	 */
+	private void processSegment(IncomingSegment is) {
+		boolean verified = verifySegment(is.content);
+		synchronized(inOrderSegments) {
+			if (verified) {
+				receivePipelineContent(is.content);
+				_pipelineWindow.segmentReceived();
+				_stats.increment(StatsEnum.SegmentsReceived);
+				_stats.addSample(StatsEnum.Window, _pipelineWindow.window());
+			} else {
+				// content didn't verify, don't hand it up...
+				// TODO content that fails verification needs to be handled better.  need to express a new interest
+				if (Log.isLoggable(Log.FAC_PIPELINE, Level.WARNING))
+					Log.warning(Log.FAC_PIPELINE, "Dropping content object due to failed verification: {0} Need to add interest re-expression with exclude", is.content.name());
+				_stats.increment(StatsEnum.VerificationFailures);
+				_sentInterests.remove(is.interest);
+				synchronized(processingSegmentLock) {
+					processingSegments.remove(SegmentationProfile.getSegmentNumber(is.content.name()));
+				}
+			}
 			advancePipeline();
 		}//try holding lock more consistently to control how notify is done
 		attemptHoleFilling();
+	}
 
-		if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: {0} done with handleContent after reading {1}", (System.currentTimeMillis() - starttime),  result.name());
+	/**
+	 * Verify a segment with the handle's default verifier. If the segment carries a Merkle
+	 * path to a root whose signature we have already verified, checking the path is enough.
+	 * @return true if the segment verified
+	 */
+	protected boolean verifySegment(ContentObject segment) {
+		if ((null == segment.signature()) || (null == segment.signature().witness())) {
+			_stats.increment(StatsEnum.SignaturesVerified);
+			return _handle.defaultVerifier().verify(segment);
+		}
 
-		return null;
+		byte [] proxy;
+		try {
+			proxy = segment.computeProxy();
+		} catch (Exception e) {
+			if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+				Log.info(Log.FAC_PIPELINE, "PIPELINE: cannot compute Merkle root for {0}: {1}", segment.name(), e.getMessage());
+			return false;
+		}
+
+		if (null == proxy) {
+			_stats.increment(StatsEnum.SignaturesVerified);
+			return _handle.defaultVerifier().verify(segment);
+		}
+
+		byte [] signature = segment.signature().signature();
+		RootVerification verification;
+		boolean verifying = false;
+		synchronized(verifiedRootLock) {
+			for (byte [][] root : _verifiedRoots) {
+				if (Arrays.equals(proxy, root[0]) && Arrays.equals(signature, root[1])) {
+					_stats.increment(StatsEnum.SignaturesSkipped);
+					return true;
+				}
+			}
+			verification = _verifyingRoots.get(proxy);
+			if (null == verification) {
+				verification = new RootVerification(signature);
+				_verifyingRoots.put(proxy, verification);
+				verifying = true;
+			}
+		}
+
+		if (!verifying) {
+			// Another segment of this tree is being verified; its answer is ours unless
+			// it failed or was signed differently, in which case check this one ourselves.
+			if (Arrays.equals(signature, verification._signature) && verification.await()) {
+				_stats.increment(StatsEnum.SignaturesSkipped);
+				return true;
+			}
+			_stats.increment(StatsEnum.SignaturesVerified);
+			return _handle.defaultVerifier().verify(segment);
+		}
+
+		boolean verified = false;
+		try {
+			_stats.increment(StatsEnum.SignaturesVerified);
+			verified = _handle.defaultVerifier().verify(segment);
+		} finally {
+			synchronized(verifiedRootLock) {
+				_verifyingRoots.remove(proxy);
+				if (verified) {
+					_verifiedProxy = proxy;
+					_verifiedRootSignature = signature;
+					if (_verifiedRoots.size() >= MAX_VERIFIED_ROOTS)
+						_verifiedRoots.remove(0);
+					_verifiedRoots.add(new byte [][]{_verifiedProxy, _verifiedRootSignature});
+				}
+			}
+			verification.finish(verified);
+		}
+		return verified;
+	}
+
+	private static synchronized ThreadPoolExecutor getVerifyPool() {
+		if ((null == _verifyPool) && (SystemConfiguration.PIPELINE_VERIFY_THREADS > 0)) {
+			int threads = SystemConfiguration.PIPELINE_VERIFY_THREADS;
+			// When the queue is full the delivering thread verifies the segment itself,
+			// which slows the network thread down rather than queueing without bound.
+			_verifyPool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(VERIFY_QUEUE_PER_THREAD * threads),
+					new ThreadFactory() {
+						private int _count = 0;
+						public synchronized Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "NDNAbstractInputStream verifier " + _count++);
+							t.setDaemon(true);
+							return t;
+						}
+					}, new ThreadPoolExecutor.CallerRunsPolicy());
+			_verifyPool.allowCoreThreadTimeOut(true);
+		}
+		return _verifyPool;
 	}
 
 
@@ -1246,6 +1476,22 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 		_timeout = timeout;
 	}
 
+	/**
+	 * Replace the controller that sizes this stream's pipeline, e.g. to use a different
+	 * algorithm than the one set by SystemConfiguration.PIPELINE_WINDOW.
+	 */
+	public void setPipelineWindow(PipelineWindow window) {
+		if (null == window)
+			throw new IllegalArgumentException("window cannot be null!");
+		synchronized (inOrderSegments) {
+			_pipelineWindow = window;
+		}
+	}
+
+	public PipelineWindow getPipelineWindow() {
+		return _pipelineWindow;
+	}
+
 	/**
 	 * Add flags to this stream. Adds to existing flags.
 	 */
@@ -1578,8 +1824,10 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 
 			if (_baseName.equals(_basePipelineName)) {
 				// we already have the base name...
-				if (SystemConfiguration.PIPELINE_STATS)
-					System.out.println("plot " + (System.currentTimeMillis() - _pipelineStartTime) + " inOrder: " + inOrderSegments.size() + " outOfOrder: " + outOfOrderSegments.size() + " interests: " + _sentInterests.size() + " holes: " + _holes + " received: " + _totalReceived + " [" + _baseName + "].3" +" avgResponseTime "+avgResponseTime);
+				if (SystemConfiguration.PIPELINE_STATS) {
+					System.out.println("plot " + (System.currentTimeMillis() - _pipelineStartTime) + " inOrder: " + inOrderSegments.size() + " outOfOrder: " + outOfOrderSegments.size() + " interests: " + _sentInterests.size() + " holes: " + _holes + " received: " + _totalReceived + " [" + _baseName + "].3" +" avgResponseTime "+_pipelineWindow.smoothedRtt());
+					logPipelineWindow(3);
+				}
 			} else {
 				// we don't have the base name... set for pipelining.
 				Log.info(Log.FAC_PIPELINE, "PIPELINE: in getSegment and we detected a name change.  _baseName: {0} _basePipelineName: {1}", _baseName, _basePipelineName);
@@ -1635,11 +1883,12 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 							sleepCheck = SystemConfiguration.EXTRA_LONG_TIMEOUT;
 						else
 							sleepCheck = _timeout - sleep;
-						if(avgResponseTime > 0 && avgResponseTime < SystemConfiguration.SHORT_TIMEOUT) {
-							if(avgResponseTime > sleepCheck)
+						double rtt = _pipelineWindow.smoothedRtt();
+						if(rtt > 0 && rtt < SystemConfiguration.SHORT_TIMEOUT) {
+							if(rtt > sleepCheck)
 								inOrderSegments.wait(sleepCheck);
 							else
-								inOrderSegments.wait((long)avgResponseTime);
+								inOrderSegments.wait((long)rtt);
 						}
 						else {
 							if(SystemConfiguration.SHORT_TIMEOUT > sleepCheck)
@@ -2155,4 +2404,68 @@ public abstract class NDNAbstractInputStream extends InputStream implements NDNC
 		}
 	}
 
+	// ==============================================================
+	// Statistics
+
+	protected NDNEnumStats<StatsEnum> _stats = new NDNEnumStats<StatsEnum>(StatsEnum.SegmentsReceived);
+
+	public NDNStats getStats() {
+		return _stats;
+	}
+
+	public enum StatsEnum implements IStatsEnum {
+		// ====================================
+		// Just edit this list, dont need to change anything else
+
+		SegmentsReceived ("ContentObjects", "Segments received and verified by the pipeline"),
+		Holes ("count", "Segments received out of order"),
+		Retransmissions ("interests", "Segment interests expressed again after the retransmit timeout"),
+		WindowDecreases ("count", "Times a timeout reduced the pipeline window"),
+		RoundTripTime ("ms", "Time from expressing a segment interest to receiving the segment"),
+		Window ("segments", "Pipeline window size as each segment is received"),
+		SignaturesVerified ("count", "Segment signatures checked with the default verifier"),
+		SignaturesSkipped ("count", "Segments accepted because their Merkle root signature was already verified"),
+		VerificationFailures ("count", "Segments dropped because they failed verification"),
+		;
+
+		// ====================================
+		// This is the same for every user of IStatsEnum
+
+		protected final String _units;
+		protected final String _description;
+		protected final static String [] _names;
+
+		static {
+			_names = new String[StatsEnum.values().length];
+			for(StatsEnum stat : StatsEnum.values() )
+				_names[stat.ordinal()] = stat.toString();
+
+		}
+
+		StatsEnum(String units, String description) {
+			_units = units;
+			_description = description;
+		}
+
+		public String getDescription(int index) {
+			return StatsEnum.values()[index]._description;
+		}
+
+		public int getIndex(String name) {
+			StatsEnum x = StatsEnum.valueOf(name);
+			return x.ordinal();
+		}
+
+		public String getName(int index) {
+			return StatsEnum.values()[index].toString();
+		}
+
+		public String getUnits(int index) {
+			return StatsEnum.values()[index]._units;
+		}
+
+		public String [] getNames() {
+			return _names;
+		}
+	}
 }
@@ -0,0 +1,273 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.io;
+
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.config.SystemConfiguration.PipelineWindowType;
+
+/**
+ * Decides how many segment interests an NDNAbstractInputStream keeps outstanding, and
+ * how long it waits for a segment before expressing its interest again.
+ *
+ * Round trip times are estimated from per-segment samples the way TCP does it (RFC 6298):
+ * the retransmit timeout is the smoothed round trip time plus four times its variation,
+ * and is doubled each time a segment times out until a new sample arrives. Subclasses
+ * decide how the window grows as segments arrive and shrinks when they time out.
+ * The window starts at SystemConfiguration.PIPELINE_SIZE and never exceeds
+ * SystemConfiguration.PIPELINE_MAX_SIZE.
+ *
+ * Not all timeouts are losses - a segment may simply not have been published yet - so
+ * the window is cut at most once per round trip however many segments time out.
+ */
+public abstract class PipelineWindow {
+
+	public static final long MIN_RETRANSMIT_TIMEOUT = 50;
+	public static final long MAX_RETRANSMIT_TIMEOUT = 60000;
+	public static final long INITIAL_RETRANSMIT_TIMEOUT = SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT;
+
+	protected final int _maxWindow;
+	protected double _window;
+	protected double _slowStartThreshold;
+
+	protected double _smoothedRtt = -1;
+	protected double _rttVariation = -1;
+	protected long _retransmitTimeout = INITIAL_RETRANSMIT_TIMEOUT;
+	protected long _lastDecrease = 0;
+
+	/**
+	 * Make the window controller selected by SystemConfiguration.PIPELINE_WINDOW.
+	 */
+	public static PipelineWindow create() {
+		return create(SystemConfiguration.PIPELINE_WINDOW, SystemConfiguration.PIPELINE_SIZE, SystemConfiguration.PIPELINE_MAX_SIZE);
+	}
+
+	public static PipelineWindow create(PipelineWindowType type, int initialWindow, int maxWindow) {
+		switch (type) {
+		case FIXED:
+			return new Fixed(initialWindow);
+		case CUBIC:
+			return new Cubic(initialWindow, maxWindow);
+		default:
+			return new AIMD(initialWindow, maxWindow);
+		}
+	}
+
+	protected PipelineWindow(int initialWindow, int maxWindow) {
+		if (initialWindow < 1)
+			initialWindow = 1;
+		if (maxWindow < initialWindow)
+			maxWindow = initialWindow;
+		_window = initialWindow;
+		_maxWindow = maxWindow;
+		_slowStartThreshold = maxWindow;
+	}
+
+	/**
+	 * Grow the window when a segment arrives.
+	 */
+	protected abstract void grow();
+
+	/**
+	 * Shrink the window after a segment times out.
+	 */
+	protected abstract void shrink();
+
+	/**
+	 * @return the number of segments that may be outstanding (requested or buffered)
+	 */
+	public synchronized int window() {
+		int window = (int)_window;
+		if (window < 1)
+			return 1;
+		return (window > _maxWindow) ? _maxWindow : window;
+	}
+
+	/**
+	 * @return how long to wait for a segment before expressing its interest again, in ms
+	 */
+	public synchronized long retransmitTimeout() {
+		return _retransmitTimeout;
+	}
+
+	/**
+	 * @return the smoothed round trip time in ms, or -1 if we have no samples yet
+	 */
+	public synchronized double smoothedRtt() {
+		return _smoothedRtt;
+	}
+
+	/**
+	 * Add a round trip time sample. Only use samples from interests that have not been
+	 * expressed again, or we can't tell which expression the segment answers.
+	 * @param rtt time from expressing the interest to receiving the segment in ms
+	 */
+	public synchronized void rttSample(long rtt) {
+		if (rtt < 0)
+			return;
+		if (_smoothedRtt < 0) {
+			_smoothedRtt = rtt;
+			_rttVariation = rtt / 2.0;
+		} else {
+			_rttVariation = 0.75 * _rttVariation + 0.25 * Math.abs(_smoothedRtt - rtt);
+			_smoothedRtt = 0.875 * _smoothedRtt + 0.125 * rtt;
+		}
+		_retransmitTimeout = clampTimeout((long)Math.ceil(_smoothedRtt + 4 * _rttVariation));
+	}
+
+	/**
+	 * A segment we wanted has arrived.
+	 */
+	public synchronized void segmentReceived() {
+		grow();
+		if (_window > _maxWindow)
+			_window = _maxWindow;
+	}
+
+	/**
+	 * A segment didn't arrive within the retransmit timeout, and we are about to ask again.
+	 * @return true if this reduced the window
+	 */
+	public synchronized boolean segmentTimedOut() {
+		_retransmitTimeout = clampTimeout(_retransmitTimeout * 2);
+		long now = System.currentTimeMillis();
+		if (_smoothedRtt >= 0 && now - _lastDecrease < _smoothedRtt)
+			return false;
+		_lastDecrease = now;
+		double window = _window;
+		shrink();
+		if (_window < 1)
+			_window = 1;
+		return _window < window;
+	}
+
+	protected static long clampTimeout(long timeout) {
+		if (timeout < MIN_RETRANSMIT_TIMEOUT)
+			return MIN_RETRANSMIT_TIMEOUT;
+		return (timeout > MAX_RETRANSMIT_TIMEOUT) ? MAX_RETRANSMIT_TIMEOUT : timeout;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + " window " + window() + " rtt " + _smoothedRtt + " rto " + _retransmitTimeout;
+	}
+
+	/**
+	 * Always keep the same number of segments outstanding - the way the pipeline used to work.
+	 */
+	public static class Fixed extends PipelineWindow {
+
+		public Fixed(int window) {
+			super(window, window);
+		}
+
+		protected void grow() {}
+
+		protected void shrink() {}
+	}
+
+	/**
+	 * Additive increase, multiplicative decrease as in TCP Reno: grow by a segment per
+	 * segment received until the first timeout (slow start), then by a segment per window,
+	 * and halve the window on a timeout.
+	 */
+	public static class AIMD extends PipelineWindow {
+
+		public AIMD(int initialWindow, int maxWindow) {
+			super(initialWindow, maxWindow);
+		}
+
+		protected void grow() {
+			if (_window < _slowStartThreshold)
+				_window += 1;
+			else
+				_window += 1 / _window;
+		}
+
+		protected void shrink() {
+			_slowStartThreshold = Math.max(_window / 2, 1);
+			_window = _slowStartThreshold;
+		}
+	}
+
+	/**
+	 * CUBIC (RFC 8312): after a timeout the window follows a cubic function of the time
+	 * since the decrease, flattening out near the window at which we last lost segments
+	 * and probing more quickly past it. This recovers a large window much faster than AIMD
+	 * on paths with a high bandwidth-delay product.
+	 */
+	public static class Cubic extends PipelineWindow {
+
+		public static final double C = 0.4;
+		public static final double BETA = 0.7;
+
+		protected double _lastMaxWindow = 0;
+		protected double _renoWindow = 0;
+		protected double _k = 0;
+		protected long _epochStart = -1;
+
+		public Cubic(int initialWindow, int maxWindow) {
+			super(initialWindow, maxWindow);
+		}
+
+		protected void grow() {
+			if (_window < _slowStartThreshold) {
+				_window += 1;
+				return;
+			}
+			long now = System.currentTimeMillis();
+			if (_epochStart < 0) {
+				_epochStart = now;
+				_renoWindow = _window;
+				if (_window < _lastMaxWindow) {
+					_k = Math.cbrt((_lastMaxWindow - _window) / C);
+				} else {
+					_k = 0;
+					_lastMaxWindow = _window;
+				}
+			}
+			// Aim for where the cubic curve will be one round trip from now
+			double t = (now - _epochStart + Math.max(_smoothedRtt, 0)) / 1000.0;
+			double target = C * Math.pow(t - _k, 3) + _lastMaxWindow;
+
+			// but never grow more slowly than Reno would
+			_renoWindow += 3 * (1 - BETA) / (1 + BETA) / _window;
+			if (target < _renoWindow)
+				target = _renoWindow;
+
+			if (target > _window)
+				_window += (target - _window) / _window;
+			else
+				_window += 0.01 / _window;
+		}
+
+		protected void shrink() {
+			_epochStart = -1;
+			// Fast convergence: if we lost segments below the last maximum, another
+			// flow is probably competing with us, so back off further
+			if (_window < _lastMaxWindow)
+				_lastMaxWindow = _window * (1 + BETA) / 2;
+			else
+				_lastMaxWindow = _window;
+			_slowStartThreshold = Math.max(_window * BETA, 1);
+			_window = _slowStartThreshold;
+		}
+	}
+}
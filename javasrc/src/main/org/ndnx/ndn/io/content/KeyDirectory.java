@@ -199,7 +199,8 @@ public class KeyDirectory extends EnumeratedNameList {
 		} else {
 			try{
 				_otherNamesLock.writeLock().lock();
-				_otherNames.add(wkChildName);
+				// The same names turn up in many directories
+				_otherNames.add(SystemConfiguration.KEY_DIRECTORY_INTERN_NAMES ? ContentName.internComponent(wkChildName) : wkChildName);
 			}finally{
 				_otherNamesLock.writeLock().unlock();
 			}
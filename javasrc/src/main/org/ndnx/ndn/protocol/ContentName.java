@@ -20,18 +20,22 @@
 
 package org.ndnx.ndn.protocol;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.ndnx.ndn.impl.encoding.NDNProtocolDTags;
 import org.ndnx.ndn.impl.encoding.GenericXMLEncodable;
 import org.ndnx.ndn.impl.encoding.XMLDecoder;
 import org.ndnx.ndn.impl.encoding.XMLEncodable;
 import org.ndnx.ndn.impl.encoding.XMLEncoder;
-import org.ndnx.ndn.impl.support.DataUtils;
 import org.ndnx.ndn.io.content.ContentDecodingException;
 import org.ndnx.ndn.io.content.ContentEncodingException;
 
@@ -58,11 +62,54 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	public static final String ORIGINAL_SCHEME = "ndn:";
 
 	public static final String SEPARATOR = "/";
-	private static final byte[][] empty = new byte[][]{ };
+	// Room left after the components of a name built by adding to another, so names built one
+	// component at a time from it can share its storage.
+	protected static final int APPEND_SPACE = 16;
+	// A name cut from another gets storage of its own if it would use less than a
+	// 1/COMPACT_RATIO of the other's, and that is at least COMPACT_MIN_STORAGE bytes.
+	protected static final int COMPACT_RATIO = 4;
+	protected static final int COMPACT_MIN_STORAGE = 128;
+
+	/**
+	 * A buffer holding the components of one or more names. Names built by adding components
+	 * to another name write them after the other name's in the same buffer if nobody else has
+	 * used that space already.
+	 */
+	protected static final class NameStorage {
+		protected final byte [] _bytes;
+		protected int _used;
+
+		protected NameStorage(int capacity) {
+			_bytes = new byte[capacity];
+		}
+
+		/**
+		 * Claim space to write into if offset is where the space used so far ends
+		 * @return true if the space is ours
+		 */
+		protected synchronized boolean claim(int offset, int length) {
+			if (offset != _used || offset + length > _bytes.length)
+				return false;
+			_used += length;
+			return true;
+		}
+	}
+
+	private static final NameStorage EMPTY_STORAGE = new NameStorage(0);
+	private static final int [] EMPTY_OFFSETS = new int[]{0};
 	public static final ContentName ROOT = new ContentName();
 
-	// Goal is to make this final in the future.
-	protected byte[][]  _components;
+	// We are serialized as the components, as we always have been
+	private static final ObjectStreamField [] serialPersistentFields = {
+		new ObjectStreamField("_components", byte[][].class)
+	};
+
+	// The components one after another. Component i runs from _offsets[i] up to
+	// _offsets[i + 1] in _storage, which may be shared with other names.
+	protected transient NameStorage _storage;
+	protected transient int [] _offsets;
+	// 0 until worked out
+	protected transient int _hash = 0;
 
 	// Constructors
 	/**
@@ -70,7 +117,8 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * to decode a ContentName. In the future there will be a XMLDecoder constructor used for decoding.
 	 */
 	public ContentName() {
-		_components = empty;
+		_storage = EMPTY_STORAGE;
+		_offsets = EMPTY_OFFSETS;
 	}
 
 	// support for name builder methods
@@ -88,17 +136,17 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 
 	@Deprecated
 	protected ContentName(ArrayList<byte[]> components) {
-		_components = components.toArray(new byte[components.size()][]);
+		init(components.toArray(new byte[components.size()][]), components.size());
 	}
 
 	/**
 	 * This Constructor is required to avoid the varargs constructor interpreting
 	 * a single byte[] as a list of separate byte arguments.
-	 * @param component a single component. The data is cloned, so there is no restriction on
+	 * @param component a single component. The data is copied, so there is no restriction on
 	 * its use after this call.
 	 */
 	public ContentName(byte[] component) {
-		_components = new byte[][] { component.clone() };
+		init(new byte[][] { component }, 1);
 	}
 
 	/**
@@ -111,45 +159,60 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 */
 	public ContentName(Object... args) {
 		int componentCount = 0;
+		int length = 0;
 
 		// first make 1 pass through the arguments validating them,
-		// converting them to either byte[] or byte[][]
-		// and determining the final component count.
+		// converting them to either byte[] or ContentName
+		// and determining the final component count and length.
 		for(int i = 0; i < args.length; i++) {
 			Object arg = args[i];
 			if (arg instanceof byte[]) {
-				// incoming byte[] needs to be cloned to ensure ContentName's immutability
+				// incoming byte[] is copied into our storage so no need to clone it
 				byte[] component = (byte[]) arg;
 				componentCount++;
-				args[i] = component.clone();
+				length += component.length;
 			} else if (arg instanceof ContentNameProvider) {
 				ContentName name = ((ContentNameProvider) arg).getContentName();
-				componentCount += name._components.length;
-				args[i] = name._components;
+				componentCount += name.count();
+				length += name.length();
+				args[i] = name;
 			} else if (arg instanceof String) {
 				String str = (String) arg;
-				args[i] = str.getBytes();
+				byte[] component = str.getBytes();
+				args[i] = component;
 				componentCount ++;
+				length += component.length;
 			} else if (arg instanceof ContentName.ComponentProvider) {
 				ContentName.ComponentProvider p = (ContentName.ComponentProvider) arg;
+				byte[] component = p.getComponent();
+				args[i] = component;
 				componentCount++;
-				args[i] = p.getComponent();
+				length += component.length;
 			} else
 				throw new IllegalArgumentException("Argument " + i+1 + " is " + (arg==null?"null":("a " + arg.getClass().getSimpleName())));
 		}
 
-		// allocate an array for the components
-		_components = new byte[componentCount][];
-
-		// and collect the components into the array
-		// now the args must be either byte[], byte[][] or null.
+		// and collect the components into our storage
+		// now the args must be either byte[], ContentName or null.
+		_storage = new NameStorage(length);
+		_storage._used = length;
+		_offsets = new int[componentCount + 1];
 		int c = 0;
+		int position = 0;
 		for(Object arg : args) {
 			if (arg instanceof byte[]) {
-				_components[c++] = (byte[]) arg;
+				byte [] component = (byte[]) arg;
+				System.arraycopy(component, 0, _storage._bytes, position, component.length);
+				position += component.length;
+				_offsets[++c] = position;
 			} else if (arg != null) {
-				for(byte[] component : (byte[][]) arg)
-					_components[c++] = component;
+				ContentName name = (ContentName) arg;
+				int [] offsets = name._offsets;
+				int start = offsets[0];
+				System.arraycopy(name._storage._bytes, start, _storage._bytes, position, name.length());
+				for (int i = 1; i < offsets.length; i++)
+					_offsets[++c] = position + offsets[i] - start;
+				position += name.length();
 			}
 		}
 	}
@@ -159,54 +222,47 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * in an Object[], costing a heap allocation. A very common case is taking a
 	 * ContentName and adding a single item to it. For this case explicit non varargs
 	 * methods are provided, to avoid the speed & allocation penalty of the varargs call.
+	 * These also put the new component straight after the parent's in the parent's storage
+	 * if they can, rather than copying the parent.
 	 */
 	public ContentName(ContentName parent, byte[] component) {
 		if (parent == null)
 			parent = ROOT;
 		if (component == null) {
-			_components = parent._components;
+			share(parent);
 			return;
 		}
-		_components = new byte[parent._components.length+1][];
-		System.arraycopy(parent._components, 0, _components, 0, parent._components.length);
-		_components[parent._components.length] = component;
+		appendComponent(parent, component);
 	}
 
 	public ContentName(ContentName parent, ContentNameProvider cnp) {
 		if (parent == null)
 			parent = ROOT;
 		if (cnp == null) {
-			_components = parent._components;
+			share(parent);
 			return;
 		}
-		ContentName cn = cnp.getContentName();
-		_components = new byte[parent._components.length+cn._components.length][];
-		System.arraycopy(parent._components, 0, _components, 0, parent._components.length);
-		System.arraycopy(cn._components, 0, _components, parent._components.length, cn._components.length);
+		appendName(parent, cnp.getContentName());
 	}
 
 	public ContentName(ContentName parent, String component) {
 		if (parent == null)
 			parent = ROOT;
 		if (component == null) {
-			_components = parent._components;
+			share(parent);
 			return;
 		}
-		_components = new byte[parent._components.length+1][];
-		System.arraycopy(parent._components, 0, _components, 0, parent._components.length);
-		_components[parent._components.length] = component.getBytes();
+		appendComponent(parent, component.getBytes());
 	}
 
 	public ContentName(ContentName parent, ComponentProvider cprov) {
 		if (parent == null)
 			parent = ROOT;
 		if (cprov == null) {
-			_components = parent._components;
+			share(parent);
 			return;
 		}
-		_components = new byte[parent._components.length+1][];
-		System.arraycopy(parent._components, 0, _components, 0, parent._components.length);
-		_components[parent._components.length] = cprov.getComponent();
+		appendComponent(parent, cprov.getComponent());
 	}
 
 	public final ContentName getContentName() {
@@ -229,9 +285,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 */
 	@Deprecated
 	public ContentName(ContentName parent, byte [][] childComponents) {
-		_components = new byte[parent._components.length + childComponents.length][];
-		System.arraycopy(parent._components, 0, _components, 0, parent._components.length);
-		System.arraycopy(childComponents, 0, _components, parent._components.length, childComponents.length);
+		appendComponents(parent, childComponents, 0, childComponents.length);
 	}
 
 	/**
@@ -243,10 +297,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 */
 	@Deprecated
 	public ContentName(ContentName parent, ArrayList<byte []> childComponents) {
-		_components = new byte[parent._components.length + childComponents.size()][];
-		System.arraycopy(parent._components, 0, _components, 0, parent._components.length);
-		for(int i = parent._components.length, j = 0; j < childComponents.size(); i++, j++)
-			_components[i] = childComponents.get(j);
+		appendComponents(parent, childComponents.toArray(new byte[childComponents.size()][]), 0, childComponents.size());
 	}
 
 	/**
@@ -260,10 +311,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 */
 	@Deprecated
 	public ContentName(ContentName parent, int start, ArrayList<byte []> childComponents) {
-		_components = new byte[parent._components.length + childComponents.size() - start][];
-		System.arraycopy(parent._components, 0, _components, 0, parent._components.length);
-		for(int i = parent._components.length, j = start; j < childComponents.size(); i++, j++)
-			_components[i] = childComponents.get(j);
+		appendComponents(parent, childComponents.toArray(new byte[childComponents.size()][]), start, childComponents.size() - start);
 	}
 
 	/**
@@ -275,22 +323,21 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	@Deprecated
 	public ContentName(int count, byte components[][]) {
 		if (0 >= count) {
-			_components = new byte[0][];
+			init(null, 0);
 		} else {
 			int max = (null == components) ? 0 :
 				((count > components.length) ?
 						components.length : count);
-			_components = new byte[count][];
+			byte [][] taken = new byte[count][];
 			for (int i=0; i < max; ++i) {
-				_components[i] = components[i].clone();
+				taken[i] = components[i];
 			}
+			init(taken, count);
 		}
 	}
 
 	/**
 	 * Constructor for extending or contracting names.
-	 * Performs a faster shallow copy of the components, as we don't tend to alter name components
-	 * once created.
 	 * @param count Only this number of name components are copied into the new name.
 	 * @param components These are the name components to be copied. Can be null, empty, or longer or shorter than count.
 	 * @deprecated Use {@link ContentName#cut(int)} instead.
@@ -298,23 +345,22 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	@Deprecated
 	public ContentName(int count, ArrayList<byte []>components) {
 		if (0 >= count) {
-			_components = new byte[0][];
+			init(null, 0);
 		} else {
 			int max = (null == components) ? 0 :
 				((count > components.size()) ?
 						components.size() : count);
-			_components = new byte[count][];
+			byte [][] taken = new byte[count][];
 			for (int i=0; i < max; ++i) {
-				_components[i] = components.get(i).clone();
+				taken[i] = components.get(i);
 			}
+			init(taken, count);
 		}
 	}
 
 	/**
 	 * Subname constructor for extending or contracting names, extracts particular
 	 * subcomponents from an existing set.
-	 * Performs a faster shallow copy of the components, as we don't tend to alter name components
-	 * once created.
 	 * @param start This is index (0-based) of the first component to copy.
 	 * @param count Only this number of name components are copied into the new name. If count-start is
 	 * 	greater than the last component in the components array, only copies count-start.
@@ -324,15 +370,16 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	@Deprecated
 	public ContentName(int start, int count, ArrayList<byte []>components) {
 		if (0 >= count) {
-			_components = new byte[0][];
+			init(null, 0);
 		} else {
 			int max = (null == components) ? 0 :
 				((count > (components.size()-start)) ?
 						(components.size()-start) : count);
-			_components = new byte[max][];
+			byte [][] taken = new byte[max][];
 			for (int i=start; i < max+start; ++i) {
-				_components[i] = components.get(i).clone();
+				taken[i - start] = components.get(i);
 			}
+			init(taken, max);
 		}
 	}
 
@@ -342,7 +389,138 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * a different type of name for encoding/decoding.
 	 */
 	public ContentName(ContentName otherName) {
-		_components = otherName._components;
+		share(otherName);
+	}
+
+	/**
+	 * Set our components to a copy of the first count of components, in storage of our own
+	 * that is just big enough. Missing components are taken as empty.
+	 */
+	private void init(byte [][] components, int count) {
+		int length = 0;
+		for (int i = 0; i < count; i++) {
+			if (null != components[i])
+				length += components[i].length;
+		}
+		_storage = new NameStorage(length);
+		_storage._used = length;
+		_offsets = new int[count + 1];
+		_hash = 0;
+		int position = 0;
+		for (int i = 0; i < count; i++) {
+			if (null != components[i]) {
+				System.arraycopy(components[i], 0, _storage._bytes, position, components[i].length);
+				position += components[i].length;
+			}
+			_offsets[i + 1] = position;
+		}
+	}
+
+	private static ContentName fromComponents(byte [][] components) {
+		ContentName result = new ContentName();
+		result.init(components, components.length);
+		return result;
+	}
+
+	/**
+	 * Use the same components as another name
+	 */
+	private void share(ContentName other) {
+		_storage = other._storage;
+		_offsets = other._offsets;
+		_hash = other._hash;
+	}
+
+	/**
+	 * Make room for extra components after those of parent, in parent's storage if nobody has
+	 * used the space after them yet, and otherwise in a copy. Our offsets are set up for parent's
+	 * components, and the caller must fill in the rest.
+	 * @return where to write the first extra component in our storage
+	 */
+	private int initAppend(ContentName parent, int extraCount, int extraLength) {
+		int [] parentOffsets = parent._offsets;
+		int parentCount = parentOffsets.length - 1;
+		int start = parentOffsets[0];
+		int end = parentOffsets[parentCount];
+		_offsets = new int[parentCount + extraCount + 1];
+		NameStorage storage = parent._storage;
+		if (0 == extraLength || storage.claim(end, extraLength)) {
+			System.arraycopy(parentOffsets, 0, _offsets, 0, parentCount + 1);
+			_storage = storage;
+			return end;
+		}
+		_storage = new NameStorage(end - start + extraLength + APPEND_SPACE);
+		_storage._used = end - start + extraLength;
+		System.arraycopy(storage._bytes, start, _storage._bytes, 0, end - start);
+		for (int i = 0; i <= parentCount; i++)
+			_offsets[i] = parentOffsets[i] - start;
+		return end - start;
+	}
+
+	private void appendComponent(ContentName parent, byte [] component) {
+		int position = initAppend(parent, 1, component.length);
+		System.arraycopy(component, 0, _storage._bytes, position, component.length);
+		_offsets[_offsets.length - 1] = position + component.length;
+	}
+
+	private void appendComponents(ContentName parent, byte [][] components, int start, int count) {
+		int length = 0;
+		for (int i = start; i < start + count; i++)
+			length += components[i].length;
+		int position = initAppend(parent, count, length);
+		int c = parent.count();
+		for (int i = start; i < start + count; i++) {
+			System.arraycopy(components[i], 0, _storage._bytes, position, components[i].length);
+			position += components[i].length;
+			_offsets[++c] = position;
+		}
+	}
+
+	private void appendName(ContentName parent, ContentName child) {
+		int [] childOffsets = child._offsets;
+		int childStart = childOffsets[0];
+		int position = initAppend(parent, child.count(), child.length());
+		System.arraycopy(child._storage._bytes, childStart, _storage._bytes, position, child.length());
+		int c = parent.count();
+		for (int i = 1; i < childOffsets.length; i++)
+			_offsets[++c] = position + childOffsets[i] - childStart;
+	}
+
+	/**
+	 * Make a name from some of our components, sharing our storage unless that would keep
+	 * much more of it around than the new name uses
+	 */
+	private ContentName range(int start, int end) {
+		ContentName result = new ContentName();
+		result._storage = _storage;
+		result._offsets = new int[end - start + 1];
+		System.arraycopy(_offsets, start, result._offsets, 0, end - start + 1);
+		int capacity = _storage._bytes.length;
+		if (capacity >= COMPACT_MIN_STORAGE && result.length() * COMPACT_RATIO < capacity)
+			return result.compact();
+		return result;
+	}
+
+	/**
+	 * @return the total length of the components
+	 */
+	private int length() {
+		return _offsets[_offsets.length - 1] - _offsets[0];
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		byte [][] components = new byte[count()][];
+		for (int i = 0; i < components.length; i++)
+			components[i] = component(i);
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("_components", components);
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		byte [][] components = (byte [][])fields.get("_components", null);
+		init(components, (null == components) ? 0 : components.length);
 	}
 
 	/**
@@ -412,7 +590,6 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * @throws MalformedContentNameStringException
 	 */
 	public static ContentName fromURI(String name) throws MalformedContentNameStringException {
-		ContentName result;
 		if ((name == null) || (name.length() == 0)) {
 			return ROOT;
 		}
@@ -454,9 +631,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 				}
 			}
 
-			result = new ContentName();
-			result._components = comps.toArray(new byte[comps.size()][]);
-			return result;
+			return fromComponents(comps.toArray(new byte[comps.size()][]));
 		} catch (URISyntaxException e) {
 			throw new MalformedContentNameStringException(e.getMessage());
 		}
@@ -493,9 +668,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 					}
 				}
 			}
-			ContentName result = new ContentName();
-			result._components = comps.toArray(new byte[comps.size()][]);
-			return result;
+			return fromComponents(comps.toArray(new byte[comps.size()][]));
 		} catch (URISyntaxException e) {
 			throw new MalformedContentNameStringException(e.getMessage());
 		}
@@ -517,7 +690,6 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 		if (name == null)
 			return parent;
 		try {
-			ContentName result = new ContentName();
 			try {
 				byte[] decodedName = Component.parseURI(name);
 
@@ -525,19 +697,15 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 					return parent;
 
 				// add a single component
-				result._components = new byte[parent._components.length + 1][];
-				System.arraycopy(parent._components, 0, result._components, 0, parent._components.length);
-				result._components[parent._components.length] = decodedName;
+				return new ContentName(parent, decodedName);
 			} catch (Component.DotDot c) {
 				// Need to strip "parent"
-				if (result._components.length < 1) {
+				if (parent.count() < 1) {
 					throw new MalformedContentNameStringException("ContentName parts contains too many .. components");
 				} else {
-					result._components = new byte[parent._components.length - 1][];
-					System.arraycopy(parent._components, 0, result._components, 0, parent._components.length - 1);
+					return parent.parent();
 				}
 			}
-			return result;
 		} catch (URISyntaxException e) {
 			throw new MalformedContentNameStringException(e.getMessage());
 		}
@@ -564,13 +732,12 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 			return ROOT;
 		}
 
-		ContentName result = new ContentName();
-		result._components = new byte[parts.length-1][];
+		byte [][] components = new byte[parts.length-1][];
 		// Leave off initial empty component
 		for (int i=1; i < parts.length; ++i) {
-			result._components[i-1] = Component.parseNative(parts[i]);
+			components[i-1] = Component.parseNative(parts[i]);
 		}
-		return result;
+		return fromComponents(components);
 	}
 
 	/**
@@ -620,38 +787,29 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	@Deprecated
 	public static ContentName fromNative(ContentName parent, String [] parts) {
 		int extra = (null != parts) ? parts.length : 0;
-		int parentCount = (null != parent) ? parent._components.length : 0;
-		ContentName result = new ContentName();
-		result._components = new byte[parentCount + extra][];
-		if (parent != null)
-			System.arraycopy(parent._components, 0, result._components, 0, parentCount);
-		if (parts != null) {
-			for (int i=0; i < parts.length; ++i)
-				result._components[i+parentCount] = Component.parseNative(parts[i]);
-		}
-		return result;
+		byte [][] components = new byte[extra][];
+		for (int i=0; i < extra; ++i)
+			components[i] = Component.parseNative(parts[i]);
+		return new ContentName((null != parent) ? parent : ROOT, components);
 	}
 
 	/**
 	 * Returns a new name with the last component removed.
 	 */
 	public ContentName parent() {
-		ContentName result = new ContentName();
-		result._components = new byte[_components.length - 1][];
-		System.arraycopy(_components, 0, result._components, 0, _components.length-1);
-		return result;
+		return range(0, count() - 1);
 	}
 
 	@Override
 	public String toString() {
-		if (null == _components) return "(null)";
+		if (null == _offsets) return "(null)";
 		// toString of root name is "/"
-		if (_components.length == 0) return SEPARATOR;
+		if (_offsets.length == 1) return SEPARATOR;
 
 		StringBuffer nameBuf = new StringBuffer();
-		for (byte[] component : _components) {
+		for (int i = 0; i < _offsets.length - 1; i++) {
 			nameBuf.append(SEPARATOR);
-			nameBuf.append(Component.printURI(component));
+			nameBuf.append(Component.printURI(component(i)));
 		}
 		return nameBuf.toString();
 	}
@@ -757,16 +915,13 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	}
 
 	/**
-	 * @return
-	 * Warning: this returns the internal byte arrays used in the ContentName component representation, without copying them.
-	 * You must not modify the contents of these byte arrays, or you will break the immutability
-	 * of ContentNames, which can have many problematic consequences.
+	 * @return copies of the components
 	 * @deprecated Use an iterator instead.
 	 */
 	@Deprecated
 	public ArrayList<byte[]> components() {
-		ArrayList<byte[]> result = new ArrayList<byte []>(_components.length);
-		for(byte[] component : _components)
+		ArrayList<byte[]> result = new ArrayList<byte []>(count());
+		for(byte[] component : this)
 			result.add(component);
 		return result;
 	}
@@ -775,19 +930,15 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * @return The number of components in the name.
 	 */
 	public int count() {
-		if (null == _components) return 0;
-		return _components.length;
+		if (null == _offsets) return 0;
+		return _offsets.length - 1;
 	}
 
 	/**
 	 * Append a name to this name.
 	 */
 	public ContentName append(ContentName other) {
-		ContentName cn = new ContentName();
-		cn._components = new byte[_components.length + other._components.length][];
-		System.arraycopy(_components, 0, cn._components, 0, _components.length);
-		System.arraycopy(other._components, 0, cn._components, _components.length, other._components.length);
-		return cn;
+		return new ContentName(this, (ContentNameProvider)other);
 	}
 
 	/**
@@ -806,35 +957,53 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 
 	/**
 	 * Get the i'th component, indexed from 0.
+	 * The components are stored one after another, so this makes a copy each time it is called.
+	 * To look at a component without copying it use componentEquals(), compareComponent() or
+	 * componentHashCode().
 	 * @param i index of component to fetch, first (leftmost) component = 0.
-	 * @return null if i is out of range.
-	 * Warning: this returns the internal byte array used in the ContentName component representation.
-	 * You must not modify the contents of this byte array, or you will break the immutability
-	 * of ContentNames, which can have many problematic consequences.
+	 * @return a copy of the component, or null if i is out of range.
 	 */
 	public final byte[] component(int i) {
-		if ((null == _components) || (i >= _components.length) || i < 0) return null;
-		return _components[i];
+		if ((null == _offsets) || (i >= _offsets.length - 1) || i < 0) return null;
+		byte [] component = new byte[_offsets[i + 1] - _offsets[i]];
+		System.arraycopy(_storage._bytes, _offsets[i], component, 0, component.length);
+		return component;
+	}
+
+	/**
+	 * @return the length of the i'th component, indexed from 0.
+	 */
+	public final int componentLength(int i) {
+		return _offsets[i + 1] - _offsets[i];
 	}
 
 	/**
-	 * @return null if there are no components.
-	 * Warning: this returns the internal byte array used in the ContentName component representation.
-	 * You must not modify the contents of this byte array, or you will break the immutability
-	 * of ContentNames, which can have many problematic consequences.
+	 * @return the hash of the i'th component, the same as Arrays.hashCode(component(i)) but
+	 * without copying it
+	 */
+	public final int componentHashCode(int i) {
+		byte [] bytes = _storage._bytes;
+		int hash = 1;
+		for (int k = _offsets[i]; k < _offsets[i + 1]; k++)
+			hash = 31 * hash + bytes[k];
+		return hash;
+	}
+
+	/**
+	 * @return a copy of the last component, or null if there are no components.
 	 */
 	public final byte [] lastComponent() {
-		if (null == _components || _components.length == 0)
+		if (null == _offsets || _offsets.length == 1)
 			return null;
-		return _components[_components.length-1];
+		return component(_offsets.length - 2);
 	}
 
 	/**
 	 * @return The i'th component, converted using URI encoding.
 	 */
 	public String stringComponent(int i) {
-		if ((null == _components) || (i >= _components.length)) return null;
-		return Component.printURI(_components[i]);
+		if ((null == _offsets) || (i >= _offsets.length - 1)) return null;
+		return Component.printURI(component(i));
 	}
 
 	/**
@@ -851,7 +1020,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 			components.add(decoder.readBinaryElement(NDNProtocolDTags.Component));
 
 		decoder.readEndElement();
-		_components = components.toArray(new byte[components.size()][]);
+		init(components.toArray(new byte[components.size()][]), components.size());
 	}
 
 	/**
@@ -861,7 +1030,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * @param name name being compared with.
 	 */
 	public boolean isPrefixOf(ContentName name) {
-		return isPrefixOf(name, _components.length);
+		return isPrefixOf(name, count());
 	}
 
 	/**
@@ -872,13 +1041,9 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	public boolean isPrefixOf(ContentName name, int count) {
 		if (null == name)
 			return false;
-		if (count > name._components.length)
+		if (count > name.count() || count > count())
 			return false;
-		for (int i=0; i < count; ++i) {
-			if (!Arrays.equals(name.component(i), component(i)))
-				return false;
-		}
-		return true;
+		return equalComponents(name, count);
 	}
 
 	/**
@@ -893,15 +1058,15 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 */
 
 	public boolean isPrefixOf(ContentObject other) {
-		return isPrefixOf(other, _components.length);
+		return isPrefixOf(other, count());
 	}
 
 	public boolean isPrefixOf(ContentObject other, int count) {
 		boolean match = isPrefixOf(other.name(), count);
-		if (match || _components.length != count)
+		if (match || count() != count)
 			return match;
-		if (_components.length == other.name()._components.length + 1) {
-			return Arrays.equals(_components[_components.length-1], other.digest());
+		if (count() == other.name().count() + 1) {
+			return Arrays.equals(lastComponent(), other.digest());
 		}
 		return false;
 	}
@@ -917,12 +1082,56 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 				return false;
 		}
 		ContentName other = (ContentName) obj;
-		return Arrays.deepEquals(_components, other._components);
+		if (this == other || (_offsets == other._offsets && _storage == other._storage))
+			return true;
+		if (_offsets.length != other._offsets.length)
+			return false;
+		if (0 != _hash && 0 != other._hash && _hash != other._hash)
+			return false;
+		return equalComponents(other, count());
+	}
+
+	/**
+	 * @return true if our first count components are the same as other's
+	 */
+	private boolean equalComponents(ContentName other, int count) {
+		int [] offsets = _offsets;
+		int [] otherOffsets = other._offsets;
+		int start = offsets[0];
+		int otherStart = otherOffsets[0];
+		for (int i = 1; i <= count; i++) {
+			if (offsets[i] - start != otherOffsets[i] - otherStart)
+				return false;
+		}
+		byte [] bytes = _storage._bytes;
+		byte [] otherBytes = other._storage._bytes;
+		if (bytes == otherBytes && start == otherStart)
+			return true;
+		int end = offsets[count];
+		for (int i = start, j = otherStart; i < end; i++, j++) {
+			if (bytes[i] != otherBytes[j])
+				return false;
+		}
+		return true;
 	}
 
+	/**
+	 * The hash is worked out the first time it is asked for and kept.
+	 */
 	@Override
 	public int hashCode() {
-		return Arrays.deepHashCode(_components);
+		int hash = _hash;
+		if (0 == hash) {
+			int [] offsets = _offsets;
+			byte [] bytes = _storage._bytes;
+			hash = 1;
+			for (int i = 1; i < offsets.length; i++)
+				hash = 31 * hash + offsets[i] - offsets[i - 1];
+			for (int i = offsets[0]; i < offsets[offsets.length - 1]; i++)
+				hash = 31 * hash + bytes[i];
+			_hash = hash;
+		}
+		return hash;
 	}
 
 	/**
@@ -1015,8 +1224,8 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * @return -1 on failure, component index otherwise (starts at 0).
 	 */
 	public int containsWhere(byte [] component) {
-		for (int i=0; i < _components.length; ++i)
-			if (Arrays.equals(_components[i],component))
+		for (int i=0; i < count(); ++i)
+			if (componentEquals(i, component))
 				return i;
 		return -1;
 	}
@@ -1027,8 +1236,8 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * @return -1 on failure, component index otherwise (starts at 0).
 	 */
 	public int whereLast(byte [] component) {
-		for (int i=_components.length-1; i >= 0; --i)
-			if (Arrays.equals(_components[i],component))
+		for (int i=count()-1; i >= 0; --i)
+			if (componentEquals(i, component))
 				return i;
 		return -1;
 	}
@@ -1074,12 +1283,13 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	public int componentStartsWithWhere(byte [] value) {
 		int i=0;
 		int size = value.length;
-		for (i=0; i < _components.length; ++i) {
-			byte [] component = _components[i];
-			if (size <= component.length) {
+		byte [] bytes = _storage._bytes;
+		for (i=0; i < count(); ++i) {
+			int offset = _offsets[i];
+			if (size <= _offsets[i + 1] - offset) {
 				boolean result = true;
 				for (int j = 0; j < size; j++) {
-					if (component[j] != value[j]) {
+					if (bytes[offset + j] != value[j]) {
 						result = false;
 						break;
 					}
@@ -1097,17 +1307,14 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * @return
 	 */
 	public ContentName cut(int componentCount) {
-		if ((componentCount < 0) || (componentCount > _components.length)) {
+		if ((componentCount < 0) || (componentCount > count())) {
 			throw new IllegalArgumentException("Illegal component count: " + componentCount);
 		}
 
-		if (componentCount == _components.length)
+		if (componentCount == count())
 			return this;
 
-		ContentName result = new ContentName();
-		result._components = new byte[componentCount][];
-		System.arraycopy(_components, 0, result._components, 0, componentCount);
-		return result;
+		return range(0, componentCount);
 	}
 
 	/**
@@ -1117,17 +1324,13 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * @return A new name using the components starting from position.
 	 */
 	public ContentName right(int position) {
-		if ((position < 0) || (position > _components.length)) {
+		if ((position < 0) || (position > count())) {
 			throw new IllegalArgumentException("Illegal component count: " + position);
 		}
 		if (position == 0)
 			return this;
 
-		ContentName result = new ContentName();
-		int length = _components.length - position;
-		result._components = new byte[length][];
-		System.arraycopy(_components, position, result._components, 0, length);
-		return result;
+		return range(position, count());
 	}
 
 	/**
@@ -1175,18 +1378,15 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 * @return the new name.
 	 */
 	public ContentName subname(int start, int end) {
-		if (start < 0 || start > _components.length)
+		if (start < 0 || start > count())
 			throw new IllegalArgumentException("Start out of range");
-		if (end < start || end > _components.length)
+		if (end < start || end > count())
 			throw new IllegalArgumentException("End out of range");
 
 		if (start == end)
 			return ROOT;
 
-		ContentName result = new ContentName();
-		result._components = new byte[end-start][];
-		System.arraycopy(_components, start, result._components, 0, end-start);
-		return result;
+		return range(start, end);
 	}
 	
 	/**
@@ -1198,7 +1398,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 		for (int i = 0; i < count(); i++) {
 			if (otherLength < i)
 				break;
-			if (!Arrays.equals(_components[i], name.component(i)))
+			if (0 != compareComponent(i, name, i))
 				break;
 			length++;
 		}
@@ -1214,7 +1414,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 		if (!prefix.isPrefixOf(this))
 			return null;
 
-		return subname(prefix._components.length, _components.length);
+		return subname(prefix.count(), count());
 	}
 
 	/**
@@ -1228,15 +1428,15 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 		}
 
 		encoder.writeStartElement(getElementLabel());
-		for (int i=0; i < _components.length; ++i) {
-			encoder.writeElement(NDNProtocolDTags.Component, _components[i]);
+		for (int i=1; i < _offsets.length; ++i) {
+			encoder.writeElement(NDNProtocolDTags.Component, _storage._bytes, _offsets[i - 1], _offsets[i] - _offsets[i - 1]);
 		}
 		encoder.writeEndElement();
 	}
 
 	@Override
 	public boolean validate() {
-		return (null != _components);
+		return (null != _offsets);
 	}
 
 	@Override
@@ -1244,6 +1444,53 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 		return NDNProtocolDTags.Name;
 	}
 
+	/**
+	 * Get the one copy of this name kept by the pool of interned names, adding this name to
+	 * the pool if it isn't there yet. Code that holds on to a lot of names that are often the
+	 * same, like the repository's index, can use this to keep one copy of each. Interned names
+	 * stay in the pool only as long as something else refers to them.
+	 *
+	 * The name added to the pool is a plain ContentName with storage of its own, so interning
+	 * a prefix cut from a longer name doesn't keep the longer name's components around.
+	 * @return the interned name equal to this one
+	 */
+	public ContentName intern() {
+		return NamePool.intern(this);
+	}
+
+	/**
+	 * Get the one copy of a name component kept by the pool of interned names, adding
+	 * component to the pool if it isn't there yet.
+	 * @param component the component, which must not be changed after this
+	 * @return the interned component equal to component
+	 */
+	public static byte [] internComponent(byte [] component) {
+		if (null == component)
+			return null;
+		return NamePool.intern(component);
+	}
+
+	/**
+	 * Names made from part of another name, like those from cut() or parent(), can share the
+	 * other name's storage. Use this to keep a name without holding on to the rest of that.
+	 * @return this name if it uses all of its storage, otherwise a copy that does
+	 */
+	public ContentName compact() {
+		int start = _offsets[0];
+		int length = length();
+		if (0 == start && length == _storage._bytes.length && getClass() == ContentName.class)
+			return this;
+		ContentName result = new ContentName();
+		result._storage = new NameStorage(length);
+		result._storage._used = length;
+		System.arraycopy(_storage._bytes, start, result._storage._bytes, 0, length);
+		result._offsets = new int[_offsets.length];
+		for (int i = 0; i < _offsets.length; i++)
+			result._offsets[i] = _offsets[i] - start;
+		result._hash = _hash;
+		return result;
+	}
+
 	/**
 	 * @deprecated Use {@link #cut(int)}
 	 */
@@ -1255,26 +1502,97 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	public int compareTo(ContentName o) {
 		if (this == o)
 			return 0;
-		int thisCount = _components.length;
-		int oCount = o._components.length;
-		int len = (thisCount > oCount) ? thisCount : oCount;
+		int thisCount = count();
+		int oCount = o.count();
+		int len = (thisCount < oCount) ? thisCount : oCount;
 		int componentResult;
 		for (int i=0; i < len; ++i) {
-			componentResult = DataUtils.compare(this.component(i), o.component(i));
+			componentResult = compareComponent(i, o, i);
 			if (0 != componentResult)
 				return componentResult;
 		}
+		// A missing component sorts first
+		return (thisCount < oCount) ? -1 : ((thisCount > oCount) ? 1 : 0);
+	}
+
+	/**
+	 * Compare one of our components with one of another name's in canonical order - shorter
+	 * components first, and components of the same length by their unsigned bytes.
+	 */
+	private int compareComponent(int i, ContentName other, int j) {
+		int offset = _offsets[i];
+		int length = _offsets[i + 1] - offset;
+		int otherOffset = other._offsets[j];
+		int otherLength = other._offsets[j + 1] - otherOffset;
+		if (length != otherLength)
+			return (length < otherLength) ? -1 : 1;
+		byte [] bytes = _storage._bytes;
+		byte [] otherBytes = other._storage._bytes;
+		for (int k = 0; k < length; k++) {
+			int left = bytes[offset + k] & 0xff;
+			int right = otherBytes[otherOffset + k] & 0xff;
+			if (left != right)
+				return (left < right) ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Compare our i'th component with component in canonical order - shorter components first,
+	 * and components of the same length by their unsigned bytes - without copying it.
+	 * @return less than, equal to or greater than 0 as DataUtils.compare(component(i), component) would
+	 */
+	public final int compareComponent(int i, byte [] component) {
+		int offset = _offsets[i];
+		int length = _offsets[i + 1] - offset;
+		if (length != component.length)
+			return (length < component.length) ? -1 : 1;
+		byte [] bytes = _storage._bytes;
+		for (int k = 0; k < length; k++) {
+			int left = bytes[offset + k] & 0xff;
+			int right = component[k] & 0xff;
+			if (left != right)
+				return (left < right) ? -1 : 1;
+		}
 		return 0;
 	}
 
 	/**
-	 * This returns the components of the name.
-	 * Warning - the iterator directly returns the underlying byte arrays used in the name to
-	 * hold the components. These must not be modified (they may be reused in multiple places,
-	 * and are assumed not to change).
+	 * @return true if our i'th component is the same as component, without copying it
+	 */
+	public final boolean componentEquals(int i, byte [] component) {
+		int offset = _offsets[i];
+		if (_offsets[i + 1] - offset != component.length)
+			return false;
+		byte [] bytes = _storage._bytes;
+		for (int k = 0; k < component.length; k++) {
+			if (bytes[offset + k] != component[k])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * This returns the components of the name. Like component(), it copies each one.
 	 * @return iterator over the name components.
 	 */
 	public Iterator<byte[]> iterator() {
-		return Arrays.asList(_components).iterator();
+		return new Iterator<byte[]>() {
+			private int _next = 0;
+
+			public boolean hasNext() {
+				return _next < count();
+			}
+
+			public byte[] next() {
+				if (_next >= count())
+					throw new NoSuchElementException();
+				return component(_next++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException("ContentNames are immutable");
+			}
+		};
 	}
 }
@@ -29,6 +29,7 @@ import java.security.Key;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
+import java.nio.ByteBuffer;
 import java.security.cert.CertificateEncodingException;
 import java.util.Arrays;
 import java.util.logging.Level;
@@ -37,6 +38,8 @@ import org.ndnx.ndn.ContentVerifier;
 import org.ndnx.ndn.KeyManager;
 import org.ndnx.ndn.config.SystemConfiguration;
 import org.ndnx.ndn.impl.encoding.BinaryXMLCodec;
+import org.ndnx.ndn.impl.encoding.BinaryXMLDecoder;
+import org.ndnx.ndn.impl.encoding.BinaryXMLEncoder;
 import org.ndnx.ndn.impl.encoding.NDNProtocolDTags;
 import org.ndnx.ndn.impl.encoding.GenericXMLEncodable;
 import org.ndnx.ndn.impl.encoding.XMLCodecFactory;
@@ -45,6 +48,7 @@ import org.ndnx.ndn.impl.encoding.XMLEncodable;
 import org.ndnx.ndn.impl.encoding.XMLEncoder;
 import org.ndnx.ndn.impl.security.crypto.NDNDigestHelper;
 import org.ndnx.ndn.impl.security.crypto.NDNSignatureHelper;
+import org.ndnx.ndn.impl.security.crypto.VerifiedSignatureCache;
 import org.ndnx.ndn.impl.support.DataUtils;
 import org.ndnx.ndn.impl.support.Log;
 import org.ndnx.ndn.io.NullOutputStream;
@@ -59,6 +63,11 @@ import org.ndnx.ndn.protocol.SignedInfo.ContentType;
  * 
  * prepareContent() is called to create the MerkelTree hash.  That encoding can be cached because
  * _name, _signedInfo, and _content are only assigned in a constructor or in decode.
+ *
+ * A ContentObject can also be decoded lazily (see decodeLazily()). Then only the name is decoded
+ * up front and the rest of the object is decoded from the saved wire encoding the first time it
+ * is needed. The wire encoding is also reused by encode() and calcDigest(), so an object that is
+ * just being passed on never has to be re-encoded.
  */
 public class ContentObject extends GenericXMLEncodable implements XMLEncodable, Comparable<ContentObject>, ContentNameProvider {
 
@@ -74,6 +83,17 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 	 */
 	protected byte [] _digest = null;
 	protected Signature _signature; 
+
+	/**
+	 * The binary encoding of the whole object, if it was decoded lazily. Cleared if the
+	 * object is changed.
+	 */
+	protected byte [] _wireEncoding = null;
+
+	/**
+	 * Set while _signature, _signedInfo and _content still have to be decoded from _wireEncoding.
+	 */
+	protected volatile boolean _decodePending = false;
 	
 	/**
 	 * We don't specify a required publisher, and right now we don't enforce
@@ -316,7 +336,7 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 
 	public ContentObject clone() {
 		// Constructor will clone the _content, signedInfo and signature are immutable types.
-		return new ContentObject(_name, _signedInfo, _content, _signature);
+		return new ContentObject(_name, signedInfo(), content(), signature());
 	}
 
 	/**
@@ -341,7 +361,11 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 		return new ContentName(_name, digest());
 	}
 
-	public final SignedInfo signedInfo() { return _signedInfo;}
+	public final SignedInfo signedInfo() {
+		if (_decodePending)
+			finishDecoding();
+		return _signedInfo;
+	}
 
 	/**
 	 * Final here doesn't really make it immutable. There have been
@@ -349,21 +373,40 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 	 * and it would be expensive.
 	 * @return
 	 */
-	public final byte [] content() { return _content; }
+	public final byte [] content() {
+		if (_decodePending)
+			finishDecoding();
+		return _content;
+	}
 	
 	/**
 	 * Avoid problems where content().length might be expensive.
 	 * @return content length in bytes
 	 */
-	public final int contentLength() { return ((null == _content) ? 0 : _content.length); }
+	public final int contentLength() {
+		byte [] content = content();
+		return ((null == content) ? 0 : content.length);
+	}
 
-	public final Signature signature() { return _signature; }
+	public final Signature signature() {
+		if (_decodePending)
+			finishDecoding();
+		return _signature;
+	}
+
+	/**
+	 * @return the binary encoding of this object as it was received, or null if
+	 * 	it wasn't decoded lazily. Must not be modified.
+	 */
+	public final byte [] wireEncoding() { return _wireEncoding; }
 
 	/**
 	 * Used by NetworkObject to decode the object from a network stream.
 	 * @see org.ndnx.ndn.impl.encoding.XMLEncodable
 	 */
 	public void decode(XMLDecoder decoder) throws ContentDecodingException {
+		_wireEncoding = null;
+		_decodePending = false;
 		decoder.readStartElement(getElementLabel());
 
 		_signature = new Signature();
@@ -380,11 +423,93 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 		decoder.readEndElement();
 	}
 
+	/**
+	 * Decode only the name of this object, keeping a copy of its encoding to decode
+	 * the rest of it from when it is needed. The elements we don't decode are still
+	 * checked to be there and complete, so a badly framed object fails here rather
+	 * than when it is used.
+	 * @param decoder a decoder positioned at the start of the object
+	 * @param wireEncoding the complete binary encoding of the object that decoder is decoding
+	 * @throws ContentDecodingException
+	 */
+	public void decodeLazily(BinaryXMLDecoder decoder, byte [] wireEncoding) throws ContentDecodingException {
+		decoder.readStartElement(getElementLabel());
+		decoder.skipElement(NDNProtocolDTags.Signature);
+
+		ContentName name = new ContentName();
+		name.decode(decoder);
+
+		decoder.skipElement(NDNProtocolDTags.SignedInfo);
+		decoder.skipElement(NDNProtocolDTags.Content);
+		decoder.readEndElement();
+
+		_name = name;
+		_signature = null;
+		_signedInfo = null;
+		_content = null;
+		_wireEncoding = wireEncoding;
+		_decodePending = true;
+	}
+
+	/**
+	 * Decode lazily from a complete binary encoding.
+	 * @param wireEncoding the encoding, which is kept by this object and must not be modified
+	 * @throws ContentDecodingException
+	 * @see #decodeLazily(BinaryXMLDecoder, byte[])
+	 */
+	public void decodeLazily(byte [] wireEncoding) throws ContentDecodingException {
+		BinaryXMLDecoder decoder = new BinaryXMLDecoder();
+		ByteBuffer buffer = ByteBuffer.wrap(wireEncoding);
+		decoder.beginDecoding(buffer);
+		if (buffer.hasRemaining())
+			throw new ContentDecodingException("Content object encoding has " + buffer.remaining() + " bytes after its end");
+		decodeLazily(decoder, wireEncoding);
+	}
+
+	/**
+	 * Decode whatever decodeLazily() left undecoded. The framing was checked by decodeLazily(),
+	 * so this can only fail if the contents of an element don't parse.
+	 */
+	protected synchronized void finishDecoding() {
+		if (!_decodePending)
+			return;
+		try {
+			BinaryXMLDecoder decoder = new BinaryXMLDecoder();
+			decoder.beginDecoding(ByteBuffer.wrap(_wireEncoding));
+			decoder.readStartElement(getElementLabel());
+
+			Signature signature = new Signature();
+			signature.decode(decoder);
+
+			decoder.skipElement(NDNProtocolDTags.Name);	// Already decoded
+
+			SignedInfo signedInfo = new SignedInfo();
+			signedInfo.decode(decoder);
+
+			_content = decoder.readBinaryElement(NDNProtocolDTags.Content);
+
+			decoder.readEndElement();
+
+			_signature = signature;
+			_signedInfo = signedInfo;
+		} catch (ContentDecodingException e) {
+			Log.warning(Log.FAC_ENCODING, "Cannot finish decoding content object {0}: {1}", _name, e.getMessage());
+			throw new RuntimeException(e);
+		}
+		_decodePending = false;
+	}
+
 	/**
 	 * Used by NetworkObject to encode the object to a network stream.
 	 * @see org.ndnx.ndn.impl.encoding.XMLEncodable
 	 */
 	public void encode(XMLEncoder encoder) throws ContentEncodingException {
+		byte [] wireEncoding = _wireEncoding;
+		if ((null != wireEncoding) && (encoder instanceof BinaryXMLEncoder)) {
+			// We already have it
+			((BinaryXMLEncoder)encoder).writeEncoded(wireEncoding, 0, wireEncoding.length);
+			return;
+		}
 		if (!validate()) {
 			throw new ContentEncodingException("Cannot encode " + this.getClass().getName() + ": field values missing.");
 		}
@@ -394,7 +519,7 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 		name().encode(encoder);
 		signedInfo().encode(encoder);
 
-		encoder.writeElement(NDNProtocolDTags.Content, _content);
+		encoder.writeElement(NDNProtocolDTags.Content, content());
 
 		encoder.writeEndElement();   		
 	}
@@ -414,9 +539,9 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 		final int PRIME = 31;
 		int result = 1;
 		result = PRIME * result + ((_name == null) ? 0 : _name.hashCode());
-		result = PRIME * result + ((_signedInfo == null) ? 0 : _signedInfo.hashCode());
-		result = PRIME * result + ((_signature == null) ? 0 : _signature.hashCode());
-		result = PRIME * result + Arrays.hashCode(_content);
+		result = PRIME * result + ((signedInfo() == null) ? 0 : _signedInfo.hashCode());
+		result = PRIME * result + ((signature() == null) ? 0 : _signature.hashCode());
+		result = PRIME * result + Arrays.hashCode(content());
 		return result;
 	}
 
@@ -434,17 +559,17 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 				return false;
 		} else if (!_name.equals(other.name()))
 			return false;
-		if (_signedInfo == null) {
+		if (signedInfo() == null) {
 			if (other.signedInfo() != null)
 				return false;
 		} else if (!_signedInfo.equals(other.signedInfo()))
 			return false;
-		if (_signature == null) {
+		if (signature() == null) {
 			if (other.signature() != null)
 				return false;
 		} else if (!_signature.equals(other.signature()))
 			return false;
-		if (!Arrays.equals(_content, other._content))
+		if (!Arrays.equals(content(), other.content()))
 			return false;
 		return true;
 	}
@@ -455,6 +580,9 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 	 * @param signature
 	 */
 	public void setSignature(Signature signature) {
+		if (_decodePending)
+			finishDecoding();
+		_wireEncoding = null;
 		if (null != _signature) {
 			// Only do this if FAC_SIGNING is on, as we use it in tests.
 			if (Log.isLoggable(Log.FAC_SIGNING, Level.FINE))
@@ -468,12 +596,13 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 	}
 
 	public void sign(Key signingKey) throws InvalidKeyException, SignatureException {
-		// Use _content to avoid case where content() might want to clone.
-		setSignature(sign(this.name(), this.signedInfo(), this._content, 0, this._content.length, signingKey));
+		byte [] content = content();
+		setSignature(sign(this.name(), this.signedInfo(), content, 0, content.length, signingKey));
 	}
 	
 	public void sign(String digestAlgorithm, Key signingKey) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException {
-		setSignature(sign(this.name(), this.signedInfo(), this._content, 0, this._content.length, 
+		byte [] content = content();
+		setSignature(sign(this.name(), this.signedInfo(), content, 0, content.length, 
 						digestAlgorithm, signingKey));
 	}
 
@@ -609,9 +738,17 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 		return result;
 	}
 	
+	/**
+	 * Verify an object using a key retrieved by a KeyManager. Objects that have already
+	 * been verified are found in the VerifiedSignatureCache, without retrieving the key
+	 * or checking the signature again.
+	 */
 	public static boolean verify(ContentObject object,
 								 KeyManager keyManager) throws SignatureException, InvalidKeyException, 
 					NoSuchAlgorithmException, ContentEncodingException {
+		VerifiedSignatureCache verifiedCache = VerifiedSignatureCache.getDefault();
+		if (verifiedCache.isVerified(object))
+			return true;
 		try {
 			if (null == keyManager)
 				keyManager = KeyManager.getDefaultKeyManager();
@@ -626,7 +763,10 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 						object.signedInfo().getKeyLocator());
 			}
 			
-			return verify(object, verificationKey);
+			boolean result = verify(object, verificationKey);
+			if (result)
+				verifiedCache.verified(object);
+			return result;
 			
 		} catch (IOException e) {
 			throw new SignatureException("Cannot obtain key to verify object. Key locator: " + 
@@ -771,12 +911,18 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 	}
 
 	/**
-	 * Encode this object and calculate the digest.
+	 * Encode this object and calculate the digest. If we have the wire encoding we
+	 * digest that directly.
 	 */
 	protected byte[] calcDigest() {
 		MessageDigest md;
 		try {
 			md = MessageDigest.getInstance(NDNDigestHelper.DEFAULT_DIGEST_ALGORITHM);
+			byte [] wireEncoding = _wireEncoding;
+			if (null != wireEncoding) {
+				md.update(wireEncoding);
+				return md.digest();
+			}
 			DigestOutputStream dos = new DigestOutputStream(new NullOutputStream(), md);
 			encode(dos);
 		} catch (NoSuchAlgorithmException e) {
@@ -837,7 +983,7 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 	public String toString() {
 		StringBuffer s = new StringBuffer();
 		s.append(String.format("CObj: name=%s, digest=%s, SI:%s len=%d, data=", _name,
-				DataUtils.printHexBytes(digest()), _signedInfo, _content.length));
+				DataUtils.printHexBytes(digest()), signedInfo(), content().length));
 		int len = _content.length;
 		if (len > 16)
 			len = 16;
@@ -176,6 +176,41 @@ public class Exclude extends GenericXMLEncodable implements XMLEncodable,
 		return lastFiller != null && lastFiller.match(component);
 	}
 
+	/**
+	 * The same as match(name.component(i)), but the component is only copied if a filler
+	 * other than Any has to look at it.
+	 * @param name a name
+	 * @param i the index of the component in name to check
+	 * @return true if this component would be excluded by the exclude filter
+	 */
+	public boolean match(ContentName name, int i) {
+		if (i < 0 || i >= name.count())
+			return match((byte [])null);
+		Filler lastFiller = null;
+		synchronized (_values) {
+			for (Element ee : _values) {
+				if (ee instanceof ExcludeComponent) {
+					int res = name.compareComponent(i, ((ExcludeComponent) ee).body);
+					if (res == 0)
+						return true;
+					else if (res < 0)
+						// The filter has gone past our component, so only the filler before can match
+						return lastFiller != null && matchFiller(lastFiller, name, i);
+					lastFiller = null;
+				} else {
+					lastFiller = (Filler) ee;
+				}
+			}
+		}
+		return lastFiller != null && matchFiller(lastFiller, name, i);
+	}
+
+	private static boolean matchFiller(Filler filler, ContentName name, int i) {
+		if (filler instanceof ExcludeAny)
+			return true;
+		return filler.match(name.component(i));
+	}
+
 	/**
 	 * Return a new Exclude filter that is a copy of this one with 
 	 * the supplied omissions added.
@@ -293,6 +328,54 @@ public class Exclude extends GenericXMLEncodable implements XMLEncodable,
 		return;		
 	}
 
+	/**
+	 * Find the end of the run of excluded components containing an excluded component, so that
+	 * a search through components in order can skip the whole run at once. Only Any fillers
+	 * are followed - a run stops at a component next to any other kind of filler.
+	 * 
+	 * @param component a component this filter excludes
+	 * @param after true for the last component of the run, false for the first
+	 * @return the component at the end of the run, which may be the one passed in, or null if
+	 * 		every component from this one on in that direction is excluded
+	 */
+	public byte [] excludedRunEnd(byte [] component, boolean after) {
+		synchronized (_values) {
+			int n = _values.size();
+			// Find the first component in the filter at or after this one
+			int i = 0;
+			int res = 1;
+			for (; i < n; i++) {
+				Element ee = _values.get(i);
+				if (ee instanceof ExcludeComponent) {
+					res = ((ExcludeComponent)ee).compareTo(component);
+					if (res >= 0)
+						break;
+				}
+			}
+			byte [] end = component;
+			int k = i;
+			if (res != 0) {
+				// Not in the filter itself, so it is excluded by the filler before position i
+				if (i == 0 || !(_values.get(i - 1) instanceof ExcludeAny))
+					return component;
+				k = after ? i : i - 2;
+				if (k < 0 || k >= n)
+					return null;
+				end = ((ExcludeComponent)_values.get(k)).getComponent();
+			}
+			int step = after ? 1 : -1;
+			while (k + step >= 0 && k + step < n && _values.get(k + step) instanceof ExcludeAny) {
+				k += 2 * step;
+				if (k < 0 || k >= n)
+					return null;
+				if (!(_values.get(k) instanceof ExcludeComponent))
+					break;
+				end = ((ExcludeComponent)_values.get(k)).getComponent();
+			}
+			return end;
+		}
+	}
+
 	/**
 	 * Check for exclude with no elements
 	 * @return true if exclude has no elements
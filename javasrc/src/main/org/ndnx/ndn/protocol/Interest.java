@@ -246,7 +246,7 @@ public class Interest extends GenericXMLEncodable implements XMLEncodable, Compa
 			}
 		}
 		if (null != exclude()) {
-			if (exclude().match(name.component(name().count()))) {
+			if (exclude().match(name, name().count())) {
 				if (Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
 					Log.finest(Log.FAC_ENCODING, "Interest match failed. {0} has been excluded", name);
 				return false;
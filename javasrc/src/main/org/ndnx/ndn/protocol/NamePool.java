@@ -0,0 +1,125 @@
+/*
+ * Part of the NDNx Java Library.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ndnx.ndn.protocol;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The pool behind ContentName.intern() and ContentName.internComponent(). It holds names
+ * and components through WeakReferences, so they are dropped from it once nothing else
+ * refers to them. Lookups don't take any lock.
+ */
+final class NamePool {
+
+	/**
+	 * A weak reference to a pooled name or component that is equal to another if their
+	 * referents are equal, so it can be used as a key. A cleared reference is only equal
+	 * to itself.
+	 */
+	protected static final class PooledRef extends WeakReference<Object> {
+		protected final int _hash;
+
+		protected PooledRef(Object referent, int hash, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			_hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return _hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof PooledRef))
+				return false;
+			Object value = get();
+			Object other = ((PooledRef)obj).get();
+			if (null == value || null == other)
+				return false;
+			if (value instanceof byte [])
+				return (other instanceof byte []) && Arrays.equals((byte [])value, (byte [])other);
+			return value.equals(other);
+		}
+	}
+
+	private static final ConcurrentHashMap<PooledRef, PooledRef> _pool = new ConcurrentHashMap<PooledRef, PooledRef>();
+	private static final ReferenceQueue<Object> _cleared = new ReferenceQueue<Object>();
+
+	private NamePool() {}
+
+	static ContentName intern(ContentName name) {
+		int hash = name.hashCode();
+		ContentName pooled = (ContentName)get(name, hash);
+		if (null != pooled)
+			return pooled;
+		return (ContentName)add(name.compact(), hash);
+	}
+
+	static byte [] intern(byte [] component) {
+		int hash = Arrays.hashCode(component);
+		byte [] pooled = (byte [])get(component, hash);
+		if (null != pooled)
+			return pooled;
+		return (byte [])add(component, hash);
+	}
+
+	/**
+	 * @return the number of names and components in the pool, including any that have
+	 * been dropped but not yet cleaned out
+	 */
+	static int size() {
+		expunge();
+		return _pool.size();
+	}
+
+	private static Object get(Object value, int hash) {
+		expunge();
+		PooledRef ref = _pool.get(new PooledRef(value, hash, null));
+		return (null == ref) ? null : ref.get();
+	}
+
+	private static Object add(Object value, int hash) {
+		PooledRef ref = new PooledRef(value, hash, _cleared);
+		while (true) {
+			PooledRef old = _pool.putIfAbsent(ref, ref);
+			if (null == old)
+				return value;
+			// Someone else added it first, unless theirs has been dropped since
+			Object pooled = old.get();
+			if (null != pooled)
+				return pooled;
+			_pool.remove(old, old);
+		}
+	}
+
+	private static void expunge() {
+		Reference<?> ref;
+		while (null != (ref = _cleared.poll()))
+			_pool.remove(ref, ref);
+	}
+}
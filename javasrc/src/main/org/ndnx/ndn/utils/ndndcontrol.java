@@ -112,7 +112,8 @@ public class ndndcontrol {
 			entry.protocol = null;
 			for (NetworkProtocol p : NetworkProtocol.values()) {
 				String pAsString = p.toString();
-				if (tmp.equalsIgnoreCase(pAsString)) {
+				// ndnd only makes faces to IP addresses
+				if (p != NetworkProtocol.LOOPBACK && p != NetworkProtocol.UNIX && tmp.equalsIgnoreCase(pAsString)) {
 					entry.protocol = p;
 					break;
 				}
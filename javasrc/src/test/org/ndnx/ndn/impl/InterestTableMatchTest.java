@@ -0,0 +1,134 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.ndnx.ndn.impl.InterestTable.Entry;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Check matching in a large InterestTable with many shared prefixes against a scan of
+ * every interest in it. This doesn't need ndnd.
+ */
+public class InterestTableMatchTest {
+
+	public static final int TABLE_SIZE = 2000;
+	public static final int TARGETS = 500;
+	public static final int MAX_DEPTH = 8;
+
+	static Random rnd = new Random(1);
+	static ContentObject [] targets = new ContentObject[TARGETS];
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		byte [] publisher = new byte[32];
+		rnd.nextBytes(publisher);
+		PublisherPublicKeyDigest pub = new PublisherPublicKeyDigest(publisher);
+		SignedInfo si = new SignedInfo(pub, NDNTime.now(), SignedInfo.ContentType.DATA,
+				new KeyLocator(ContentName.fromNative("/key")));
+		Signature signature = new Signature(new byte[64]);
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = new ContentObject(randomName(MAX_DEPTH + 2), si, new byte[8], signature);
+		}
+	}
+
+	static ContentName randomName(int depth) {
+		// Use a small alphabet near the root so that names share prefixes
+		byte [][] components = new byte[depth][];
+		for (int i = 0; i < depth; i++)
+			components[i] = ("c" + rnd.nextInt(i < 2 ? 4 : 16)).getBytes();
+		return new ContentName(components);
+	}
+
+	/**
+	 * Check the table's matches for every target against what a scan of the interests finds
+	 */
+	static void checkMatches(InterestTable<Integer> table, List<Interest> interests) {
+		for (ContentObject target : targets) {
+			List<Integer> byName = new ArrayList<Integer>();
+			List<Integer> byObject = new ArrayList<Integer>();
+			for (int i = 0; i < interests.size(); i++) {
+				Interest interest = interests.get(i);
+				if (null == interest)
+					continue;
+				if (interest.name().isPrefixOf(target.name()))
+					byName.add(i);
+				if (interest.matches(target))
+					byObject.add(i);
+			}
+			checkMatches(table.getMatches(target.name()), byName);
+			checkMatches(table.getMatches(target), byObject);
+		}
+	}
+
+	static void checkMatches(List<Entry<Integer>> matches, List<Integer> expected) {
+		List<Integer> values = new ArrayList<Integer>();
+		int count = Integer.MAX_VALUE;
+		for (Entry<Integer> match : matches) {
+			// Longest match first
+			Assert.assertTrue(match.name().count() <= count);
+			count = match.name().count();
+			values.add(match.value());
+		}
+		Collections.sort(values);
+		Assert.assertEquals(expected, values);
+	}
+
+	@Test
+	public void testMatchAgainstScan() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testMatchAgainstScan");
+
+		InterestTable<Integer> table = new InterestTable<Integer>();
+		List<Interest> interests = new ArrayList<Interest>();
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			Interest interest = new Interest(randomName(1 + rnd.nextInt(MAX_DEPTH)));
+			table.add(interest, i);
+			interests.add(interest);
+		}
+		Assert.assertEquals(TABLE_SIZE, table.size());
+		checkMatches(table, interests);
+
+		// Take out every other one, which leaves some names with no interests
+		for (int i = 0; i < TABLE_SIZE; i += 2) {
+			Assert.assertNotNull(table.remove(interests.get(i), i));
+			interests.set(i, null);
+		}
+		Assert.assertEquals(TABLE_SIZE / 2, table.size());
+		checkMatches(table, interests);
+
+		Log.info(Log.FAC_TEST, "Completed testMatchAgainstScan");
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.ndnx.ndn.impl.support.DataUtils;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Exclude;
+import org.ndnx.ndn.protocol.ExcludeAny;
+import org.ndnx.ndn.protocol.ExcludeComponent;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Check that the indexed lookup of the flow controller's holding area finds the same
+ * objects as a scan of every object would. No network is needed.
+ */
+public class NDNFlowControlMatchTest {
+
+	static Random rnd = new Random(1);
+
+	static ContentObject object(ContentName name) throws Exception {
+		SignedInfo si = new SignedInfo(new PublisherPublicKeyDigest(new byte[32]), NDNTime.now(), SignedInfo.ContentType.DATA,
+				new KeyLocator(ContentName.fromNative("/key")));
+		return new ContentObject(name, si, new byte[8], new Signature(new byte[64]));
+	}
+
+	static byte [] randomComponent() {
+		// Include empty and all 0xff components to exercise the ends of each range
+		switch (rnd.nextInt(8)) {
+		case 0:
+			return new byte[0];
+		case 1:
+			return new byte[]{(byte)0xff};
+		default:
+			return new byte[]{(byte)rnd.nextInt(4)};
+		}
+	}
+
+	static ContentName randomName(int depth) {
+		byte [][] components = new byte[depth][];
+		for (int i = 0; i < depth; i++)
+			components[i] = randomComponent();
+		return new ContentName(components);
+	}
+
+	static Exclude randomExclude() {
+		byte [] first = randomComponent();
+		byte [] second = randomComponent();
+		if (DataUtils.compare(first, second) > 0) {
+			byte [] tmp = first;
+			first = second;
+			second = tmp;
+		}
+		ArrayList<Exclude.Element> elements = new ArrayList<Exclude.Element>();
+		switch (rnd.nextInt(5)) {
+		case 0:
+			return new Exclude(new byte [][]{first, second});
+		case 1:
+			return Exclude.uptoFactory(first);
+		case 2:
+			elements.add(new ExcludeComponent(first));
+			elements.add(new ExcludeAny());
+			break;
+		case 3:
+			if (DataUtils.compare(first, second) == 0)
+				return Exclude.uptoFactory(first);
+			elements.add(new ExcludeComponent(first));
+			elements.add(new ExcludeAny());
+			elements.add(new ExcludeComponent(second));
+			break;
+		default:
+			if (DataUtils.compare(first, second) == 0)
+				return Exclude.uptoFactory(first);
+			elements.add(new ExcludeAny());
+			elements.add(new ExcludeComponent(first));
+			elements.add(new ExcludeComponent(second));
+			elements.add(new ExcludeAny());
+			break;
+		}
+		return new Exclude(elements);
+	}
+
+	/**
+	 * What NDNFlowControl used to do
+	 */
+	static ContentObject linearBestMatch(TreeMap<ContentName, ContentObject> holdingArea, Interest interest) {
+		ContentObject bestMatch = null;
+		for (Map.Entry<ContentName, ContentObject> entry : holdingArea.entrySet()) {
+			if (interest.matches(entry.getValue())) {
+				if (null == interest.childSelector() || interest.childSelector() != Interest.CHILD_SELECTOR_RIGHT)
+					return entry.getValue();
+				if (null == bestMatch || entry.getKey().compareTo(bestMatch.name()) > 0)
+					bestMatch = entry.getValue();
+			}
+		}
+		return bestMatch;
+	}
+
+	@Test
+	public void testMatchesLinearScan() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testMatchesLinearScan");
+
+		TreeMap<ContentName, ContentObject> holdingArea = new TreeMap<ContentName, ContentObject>();
+		for (int i = 0; i < 300; i++) {
+			ContentObject co = object(randomName(1 + rnd.nextInt(4)));
+			holdingArea.put(co.name(), co);
+		}
+		ContentObject [] objects = holdingArea.values().toArray(new ContentObject[holdingArea.size()]);
+
+		int found = 0;
+		for (int i = 0; i < 3000; i++) {
+			Interest interest;
+			if (rnd.nextInt(10) == 0) {
+				// Name a particular object including its digest
+				interest = new Interest(objects[rnd.nextInt(objects.length)].fullName());
+			} else if (rnd.nextInt(10) == 0) {
+				ContentName name = objects[rnd.nextInt(objects.length)].name();
+				int prefixCount = rnd.nextInt(name.count());
+				interest = rnd.nextBoolean() ? Interest.next(name, prefixCount, null) : Interest.last(name, prefixCount, null);
+			} else
+				interest = new Interest(randomName(rnd.nextInt(3)));
+			if (rnd.nextBoolean())
+				interest.childSelector(Interest.CHILD_SELECTOR_RIGHT);
+			if (rnd.nextInt(3) == 0)
+				interest.maxSuffixComponents(1 + rnd.nextInt(3));
+			if (rnd.nextInt(3) == 0)
+				interest.minSuffixComponents(1 + rnd.nextInt(3));
+			if (rnd.nextInt(3) == 0)
+				interest.exclude(randomExclude());
+
+			ContentObject expected = linearBestMatch(holdingArea, interest);
+			Assert.assertSame("Wrong match for " + interest, expected, NDNFlowControl.getBestMatch(holdingArea, interest));
+			if (null != expected)
+				found++;
+		}
+		// Make sure we tested something
+		Assert.assertTrue(found > 300);
+
+		Log.info(Log.FAC_TEST, "Completed testMatchesLinearScan");
+	}
+
+	@Test
+	public void testFollowing() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testFollowing");
+
+		Assert.assertNull(NDNFlowControl.following(new ContentName()));
+		ContentName prefix = new ContentName(new byte [][]{"a".getBytes(), new byte[]{1, (byte)0xff}});
+		Assert.assertEquals(new ContentName(new byte [][]{"a".getBytes(), new byte[]{2, 0}}), NDNFlowControl.following(prefix));
+		prefix = new ContentName(new byte [][]{new byte[]{(byte)0xff, (byte)0xff}});
+		Assert.assertEquals(new ContentName(new byte [][]{new byte[3]}), NDNFlowControl.following(prefix));
+
+		Log.info(Log.FAC_TEST, "Completed testFollowing");
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl;
+
+import java.nio.ByteBuffer;
+
+import org.ndnx.ndn.impl.NDNLoopbackForwarder.StatsEnum;
+import org.ndnx.ndn.impl.encoding.XMLEncodable;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test forwarding between loopback channels. This talks to the channels directly rather than
+ * through handles, so no network manager threads or keys are involved.
+ */
+public class NDNLoopbackForwarderTest {
+
+	protected NDNLoopbackForwarder _forwarder;
+	protected NDNLoopbackChannel _consumer;
+	protected NDNLoopbackChannel _producer;
+
+	@Before
+	public void setUp() throws Exception {
+		_forwarder = new NDNLoopbackForwarder();
+		_consumer = new NDNLoopbackChannel(_forwarder, null);
+		_consumer.open();
+		_producer = new NDNLoopbackChannel(_forwarder, null);
+		_producer.open();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		_consumer.close();
+		_producer.close();
+	}
+
+	static ContentObject object(ContentName name) {
+		SignedInfo si = new SignedInfo(new PublisherPublicKeyDigest(new byte[32]), NDNTime.now(), SignedInfo.ContentType.DATA,
+				new KeyLocator(name));
+		return new ContentObject(name, si, "content".getBytes(), new Signature(new byte[64]));
+	}
+
+	static void write(NDNLoopbackChannel channel, XMLEncodable packet) throws Exception {
+		channel.write(ByteBuffer.wrap(packet.encode()));
+	}
+
+	@Test
+	public void testInterestAndContent() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testInterestAndContent");
+
+		ContentName prefix = ContentName.fromNative("/loopback/test");
+		_producer.registerPrefix(prefix, null);
+
+		Interest interest = new Interest(new ContentName(prefix, "object"));
+		write(_consumer, interest);
+		XMLEncodable packet = _producer.getPacket();
+		Assert.assertEquals(interest, packet);
+		Assert.assertEquals(1, _forwarder.pendingInterests());
+
+		ContentObject co = object(new ContentName(prefix, "object", "1"));
+		write(_producer, co);
+		Assert.assertEquals(co, _consumer.getPacket());
+		Assert.assertEquals(0, _forwarder.pendingInterests());
+
+		// The interest has been used up, so the same content again goes nowhere
+		write(_producer, co);
+		Assert.assertEquals(1, _forwarder.getStats().getCounter(StatsEnum.ContentUnsolicited.toString()));
+
+		Log.info(Log.FAC_TEST, "Completed testInterestAndContent");
+	}
+
+	@Test
+	public void testRouting() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testRouting");
+
+		ContentName prefix = ContentName.fromNative("/loopback/routing");
+		_producer.registerPrefix(prefix, null);
+		// Registering our own prefix doesn't send our interests back to us
+		_consumer.registerPrefix(prefix, null);
+
+		write(_consumer, new Interest(ContentName.fromNative("/somewhere/else")));
+		Assert.assertEquals(1, _forwarder.getStats().getCounter(StatsEnum.InterestsUnrouted.toString()));
+
+		// Several packets in one write
+		Interest first = new Interest(new ContentName(prefix, "first"));
+		Interest second = new Interest(new ContentName(prefix, "second"));
+		_consumer.write(new ByteBuffer[]{ByteBuffer.wrap(first.encode()), ByteBuffer.wrap(second.encode())});
+		Assert.assertEquals(first, _producer.getPacket());
+		Assert.assertEquals(second, _producer.getPacket());
+
+		_producer.unregisterPrefix(prefix);
+		_consumer.unregisterPrefix(prefix);
+		write(_consumer, first);
+		Assert.assertEquals(2, _forwarder.getStats().getCounter(StatsEnum.InterestsUnrouted.toString()));
+
+		Log.info(Log.FAC_TEST, "Completed testRouting");
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testExpiry");
+
+		NDNLoopbackForwarder forwarder = new NDNLoopbackForwarder(50);
+		NDNLoopbackChannel consumer = new NDNLoopbackChannel(forwarder, null);
+		consumer.open();
+		NDNLoopbackChannel producer = new NDNLoopbackChannel(forwarder, null);
+		producer.open();
+
+		ContentName prefix = ContentName.fromNative("/loopback/expiry");
+		producer.registerPrefix(prefix, null);
+
+		Interest interest = new Interest(prefix);
+		write(consumer, interest);
+		Assert.assertEquals(interest, producer.getPacket());
+		Thread.sleep(100);
+
+		write(producer, object(new ContentName(prefix, "late")));
+		Assert.assertEquals(1, forwarder.getStats().getCounter(StatsEnum.ContentUnsolicited.toString()));
+
+		// Closing a face forgets what was registered on it
+		producer.close();
+		write(consumer, interest);
+		Assert.assertEquals(1, forwarder.getStats().getCounter(StatsEnum.InterestsUnrouted.toString()));
+		consumer.close();
+
+		Log.info(Log.FAC_TEST, "Completed testExpiry");
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNNetworkManager.NetworkProtocol;
+import org.ndnx.ndn.impl.support.Log;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the parts of the UNIX agent protocol that don't need ndnd
+ */
+public class NDNNetworkChannelTest {
+
+	@Test
+	public void testParseProtocol() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testParseProtocol");
+
+		Assert.assertEquals(NetworkProtocol.UNIX, SystemConfiguration.parseAgentProtocol("UNIX"));
+		Assert.assertEquals(NetworkProtocol.UNIX, SystemConfiguration.parseAgentProtocol("unix"));
+		Assert.assertEquals(NetworkProtocol.TCP, SystemConfiguration.parseAgentProtocol("tcp"));
+		Assert.assertEquals(NetworkProtocol.UDP, SystemConfiguration.parseAgentProtocol("Udp"));
+		Assert.assertEquals(NetworkProtocol.LOOPBACK, SystemConfiguration.parseAgentProtocol("loopback"));
+		try {
+			SystemConfiguration.parseAgentProtocol("unixx");
+			Assert.fail("Parsed a protocol that doesn't exist");
+		} catch (IllegalArgumentException e) {}
+
+		// UNIX mustn't look like an IP protocol number
+		Assert.assertTrue(NetworkProtocol.UNIX.value() < 0 || NetworkProtocol.UNIX.value() > 255);
+		for (NetworkProtocol p : NetworkProtocol.values()) {
+			if (p != NetworkProtocol.UNIX)
+				Assert.assertFalse(p.value().equals(NetworkProtocol.UNIX.value()));
+		}
+
+		Log.info(Log.FAC_TEST, "Completed testParseProtocol");
+	}
+
+	@Test
+	public void testSocketName() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testSocketName");
+
+		String sockname = SystemConfiguration.LOCAL_SOCKNAME;
+		try {
+			SystemConfiguration.LOCAL_SOCKNAME = "/tmp/.test.sock";
+			Assert.assertEquals("/tmp/.test.sock", NDNNetworkChannel.unixSocketName(NDNNetworkManager.DEFAULT_AGENT_PORT));
+			Assert.assertEquals("/tmp/.test.sock", NDNNetworkChannel.unixSocketName(0));
+			Assert.assertEquals("/tmp/.test.sock.9696", NDNNetworkChannel.unixSocketName(9696));
+		} finally {
+			SystemConfiguration.LOCAL_SOCKNAME = sockname;
+		}
+
+		Log.info(Log.FAC_TEST, "Completed testSocketName");
+	}
+
+	@Test
+	public void testNoUnixSockets() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testNoUnixSockets");
+
+		// As on a runtime older than Java 16
+		try {
+			NDNNetworkChannel.openUnixSocket("java.net.NoSuchProtocolFamily");
+			Assert.fail("Opened a unix socket without unix socket support");
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage().contains("Java 16"));
+		}
+		try {
+			NDNNetworkChannel.unixSocketAddress("java.net.NoSuchUnixDomainSocketAddress", "/tmp/.test.sock");
+			Assert.fail("Made a unix socket address without unix socket support");
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage().contains("Java 16"));
+		}
+
+		// The runtime we are on may have them
+		boolean supported = true;
+		try {
+			Class.forName("java.net.UnixDomainSocketAddress");
+		} catch (ClassNotFoundException e) {
+			supported = false;
+		}
+		File missing = File.createTempFile("ndnx", ".sock");
+		missing.delete();
+		try {
+			SocketAddress address = NDNNetworkChannel.unixSocketAddress(missing.getPath());
+			Assert.assertTrue(supported);
+			SocketChannel channel = NDNNetworkChannel.openUnixSocket();
+			try {
+				channel.connect(address);
+				Assert.fail("Connected to a socket that doesn't exist");
+			} catch (IOException e) {
+				Assert.assertFalse(e.getMessage(), String.valueOf(e.getMessage()).contains("Java 16"));
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			Assert.assertFalse(supported);
+			Assert.assertTrue(e.getMessage().contains("Java 16"));
+		}
+
+		Log.info(Log.FAC_TEST, "Completed testNoUnixSockets");
+	}
+}
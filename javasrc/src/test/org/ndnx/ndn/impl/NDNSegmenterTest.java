@@ -0,0 +1,204 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.ArrayList;
+
+import org.ndnx.ndn.NDNHandle;
+import org.ndnx.ndn.NDNTestHelper;
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNNetworkManager.NetworkProtocol;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.profiles.SegmentationProfile;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that segments signed by NDNSegmenter's signing threads come out in order, with the
+ * right content and valid signatures, and that signing failures reach the writer. This uses
+ * the loopback transport, so it doesn't need ndnd.
+ */
+public class NDNSegmenterTest {
+
+	public static NDNTestHelper testHelper = new NDNTestHelper(NDNSegmenterTest.class);
+
+	public static final int BLOCKS = 3001;
+	public static final int BLOCK_SIZE = 64;
+	// Blocks handed to the segmenter at a time, as a stream writing a buffer at a time would
+	public static final int BLOCKS_PER_PUT = 100;
+
+	static NetworkProtocol savedProtocol;
+	static int savedSigningThreads;
+	static NDNHandle readHandle;
+	static NDNHandle writeHandle;
+	static byte [][] content = new byte[BLOCKS][];
+
+	/**
+	 * Records the order segments are put in.
+	 */
+	static class RecordingFlowControl extends NDNFlowControl {
+		ArrayList<ContentObject> _puts = new ArrayList<ContentObject>();
+
+		RecordingFlowControl(ContentName name, NDNHandle handle) throws IOException {
+			super(name, handle);
+		}
+
+		@Override
+		public ContentObject put(ContentObject co) throws IOException {
+			synchronized (_puts) {
+				_puts.add(co);
+			}
+			return super.put(co);
+		}
+	}
+
+	/**
+	 * Fails to sign the third batch if it is signed in the background.
+	 */
+	static class FailingSegmenter extends NDNSegmenter {
+		int _batches = 0;
+
+		FailingSegmenter(NDNFlowControl flowControl) {
+			super(flowControl);
+		}
+
+		@Override
+		protected void signBlocks(ContentObject [] blocks, Key signingKey) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException, IOException {
+			synchronized (this) {
+				if ((++_batches == 3) && Thread.currentThread().getName().startsWith("NDNSegmenter signer"))
+					throw new SignatureException("Failed to sign batch on purpose");
+			}
+			super.signBlocks(blocks, signingKey);
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		savedProtocol = SystemConfiguration.AGENT_PROTOCOL;
+		savedSigningThreads = SystemConfiguration.SIGNING_THREADS;
+		SystemConfiguration.AGENT_PROTOCOL = NetworkProtocol.LOOPBACK;
+		readHandle = NDNHandle.open();
+		writeHandle = NDNHandle.open();
+		for (int i = 0; i < BLOCKS; i++) {
+			content[i] = new byte[BLOCK_SIZE];
+			for (int j = 0; j < BLOCK_SIZE; j++)
+				content[i][j] = (byte)(i + j);
+		}
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		readHandle.close();
+		writeHandle.close();
+		SystemConfiguration.AGENT_PROTOCOL = savedProtocol;
+		SystemConfiguration.SIGNING_THREADS = savedSigningThreads;
+	}
+
+	/**
+	 * Put every block through a segmenter, a buffer at a time, the last put ending the stream.
+	 */
+	static void putBlocks(NDNSegmenter segmenter, ContentName name) throws Exception {
+		long segment = SegmentationProfile.baseSegment();
+		NDNTime timestamp = NDNTime.now();
+		for (int first = 0; first < BLOCKS; first += BLOCKS_PER_PUT) {
+			int count = Math.min(BLOCKS_PER_PUT, BLOCKS - first);
+			Long finalSegment = (first + count == BLOCKS) ? Long.valueOf(NDNSegmenter.LAST_SEGMENT) : null;
+			segment = segmenter.fragmentedPut(name, segment, content, count, first, BLOCK_SIZE,
+					null, timestamp, null, finalSegment, null, null, null);
+		}
+	}
+
+	void writeAndCheck(int signingThreads) throws Exception {
+		SystemConfiguration.SIGNING_THREADS = signingThreads;
+		ContentName name = VersioningProfile.addVersion(testHelper.getTestNamespace("threads" + signingThreads));
+		RecordingFlowControl flowControl = new RecordingFlowControl(name, writeHandle);
+		flowControl.setMaximumCapacity();
+		NDNSegmenter segmenter = new NDNSegmenter(flowControl);
+		putBlocks(segmenter, name);
+
+		// Everything has been put by the time the last put returns, in segment order
+		Assert.assertEquals(BLOCKS, flowControl._puts.size());
+		for (int i = 0; i < BLOCKS; i++)
+			Assert.assertEquals(SegmentationProfile.baseSegment() + i, SegmentationProfile.getSegmentNumber(flowControl._puts.get(i).name()));
+
+		// Read them back through the forwarder, checking each against what we wrote
+		PublicKey publicKey = writeHandle.keyManager().getDefaultPublicKey();
+		for (int i = 0; i < BLOCKS; i++) {
+			ContentName segmentName = flowControl._puts.get(i).name();
+			ContentObject co = readHandle.get(new Interest(segmentName), SystemConfiguration.getDefaultTimeout());
+			Assert.assertNotNull("no segment " + segmentName, co);
+			Assert.assertEquals(segmentName, co.name());
+			Assert.assertArrayEquals(content[i], co.content());
+			Assert.assertTrue("segment " + i + " didn't verify", co.verify(publicKey));
+		}
+		flowControl.close();
+	}
+
+	@Test
+	public void testSignOnWriterThread() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testSignOnWriterThread");
+
+		writeAndCheck(0);
+
+		Log.info(Log.FAC_TEST, "Completed testSignOnWriterThread");
+	}
+
+	@Test
+	public void testSignInBackground() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testSignInBackground");
+
+		writeAndCheck(4);
+
+		Log.info(Log.FAC_TEST, "Completed testSignInBackground");
+	}
+
+	@Test
+	public void testSigningFailure() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testSigningFailure");
+
+		SystemConfiguration.SIGNING_THREADS = 4;
+		ContentName name = VersioningProfile.addVersion(testHelper.getTestNamespace("failure"));
+		NDNFlowControl flowControl = new NDNFlowControl(name, writeHandle);
+		flowControl.setMaximumCapacity();
+		try {
+			putBlocks(new FailingSegmenter(flowControl), name);
+			Assert.fail("signing failure didn't reach the writer");
+		} catch (SignatureException e) {
+			Assert.assertEquals("Failed to sign batch on purpose", e.getMessage());
+		}
+		flowControl.close();
+
+		Log.info(Log.FAC_TEST, "Completed testSigningFailure");
+	}
+}
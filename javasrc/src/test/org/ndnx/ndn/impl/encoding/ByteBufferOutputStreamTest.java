@@ -0,0 +1,77 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.encoding;
+
+import java.nio.ByteBuffer;
+
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.Interest;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test encoding into a reusable ByteBuffer
+ */
+public class ByteBufferOutputStreamTest {
+
+	@Test
+	public void testGrowAndReset() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testGrowAndReset");
+
+		ByteBufferOutputStream bbos = new ByteBufferOutputStream(4, true);
+		byte [] data = new byte[37];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte)i;
+		bbos.write(data[0]);
+		bbos.write(data, 1, data.length - 1);
+		Assert.assertEquals(data.length, bbos.size());
+		Assert.assertArrayEquals(data, bbos.toByteArray());
+
+		ByteBuffer view = bbos.getBuffer(5, 10);
+		Assert.assertEquals(5, view.remaining());
+		Assert.assertEquals(5, view.get());
+
+		bbos.reset();
+		Assert.assertEquals(0, bbos.size());
+		Assert.assertEquals(0, bbos.getBuffer().remaining());
+
+		Log.info(Log.FAC_TEST, "Completed testGrowAndReset");
+	}
+
+	@Test
+	public void testEncodeMatches() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testEncodeMatches");
+
+		ByteBufferOutputStream bbos = new ByteBufferOutputStream(16, true);
+		BinaryXMLEncoder encoder = new BinaryXMLEncoder();
+		for (int i = 0; i < 3; i++) {
+			Interest interest = new Interest(new ContentName("test", "bbos", "interest" + i));
+			bbos.reset();
+			encoder.beginEncoding(bbos);
+			interest.encode(encoder);
+			encoder.endEncoding();
+			Assert.assertArrayEquals(interest.encode(BinaryXMLCodec.codecName()), bbos.toByteArray());
+		}
+
+		Log.info(Log.FAC_TEST, "Completed testEncodeMatches");
+	}
+}
@@ -20,6 +20,8 @@
 package org.ndnx.ndn.impl.encoding;
 
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 
 import junit.framework.Assert;
@@ -31,6 +33,11 @@ import org.ndnx.ndn.io.content.ContentDecodingException;
 import org.ndnx.ndn.protocol.ContentName;
 import org.ndnx.ndn.protocol.ContentObject;
 import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
 import org.junit.Test;
 
 public class DecoderTest {
@@ -62,6 +69,60 @@ public class DecoderTest {
 		Assert.assertEquals(((ContentObject)packet).name(), contentName);
 	}
 
+	@Test
+	public void testBufferDecoding() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testBufferDecoding");
+
+		ContentName interestName = ContentName.fromNative(interestTest);
+		byte[] interestBytes = new Interest(interestName).encode();
+		ContentName contentName = ContentName.fromNative(contentTest);
+		byte [] digest = new byte[32];
+		Arrays.fill(digest, (byte)3);
+		byte [] signatureBits = new byte[64];
+		Arrays.fill(signatureBits, (byte)1);
+		SignedInfo signedInfo = new SignedInfo(new PublisherPublicKeyDigest(digest), NDNTime.now(),
+				SignedInfo.ContentType.DATA, new KeyLocator(contentName));
+		ContentObject co = new ContentObject(contentName, signedInfo, "test decoder".getBytes(),
+				new Signature(signatureBits));
+		byte[] contentBytes = co.encode();
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(interestBytes.length + contentBytes.length);
+		buffer.put(interestBytes);
+		buffer.put(contentBytes);
+		buffer.flip();
+
+		// Only part of the packet is available
+		ByteBuffer partial = buffer.duplicate();
+		partial.limit(interestBytes.length - 1);
+		Assert.assertEquals(-1, BinaryXMLDecoder.frameLength(partial));
+
+		Assert.assertEquals(interestBytes.length, BinaryXMLDecoder.frameLength(buffer));
+		_decoder.beginDecoding(buffer);
+		XMLEncodable packet = _decoder.getPacket();
+		Assert.assertTrue("Packet has incorrect type", packet instanceof Interest);
+		Assert.assertEquals(((Interest)packet).name(), interestName);
+		Assert.assertEquals(interestBytes.length, buffer.position());
+
+		Assert.assertEquals(contentBytes.length, BinaryXMLDecoder.frameLength(buffer));
+		_decoder.beginDecoding(buffer);
+		packet = _decoder.getPacket();
+		Assert.assertTrue("Packet has incorrect type", packet instanceof ContentObject);
+		Assert.assertEquals(co, packet);
+		Assert.assertFalse(buffer.hasRemaining());
+
+		// Lazily decoded content should look the same
+		BinaryXMLDecoder lazyDecoder = new BinaryXMLDecoder();
+		lazyDecoder.setLazyDecoding(true);
+		buffer.position(interestBytes.length);
+		lazyDecoder.beginDecoding(buffer);
+		ContentObject lazy = (ContentObject)lazyDecoder.getPacket();
+		Assert.assertTrue(Arrays.equals(contentBytes, lazy.wireEncoding()));
+		Assert.assertEquals(contentName, lazy.name());
+		Assert.assertEquals(co, lazy);
+
+		Log.info(Log.FAC_TEST, "Completed testBufferDecoding");
+	}
+
 	@Test
 	public void testResync() throws Exception {
 		Log.info(Log.FAC_TEST, "Starting testResync");
@@ -0,0 +1,127 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.repo;
+
+import java.util.ArrayList;
+
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the ContentTree operations used to compact a repository. This doesn't need ndnd.
+ */
+public class ContentTreeTest {
+
+	static class TestRef extends ContentRef {
+		int index;
+	}
+
+	ArrayList<ContentObject> _objects = new ArrayList<ContentObject>();
+
+	ContentTree.ContentGetter _getter = new ContentTree.ContentGetter() {
+		public ContentObject get(ContentRef ref) {
+			return _objects.get(((TestRef)ref).index);
+		}
+	};
+
+	static ContentName base = new ContentName(new byte[][]{"test".getBytes(), "tree".getBytes()});
+
+	ContentObject insert(ContentTree tree, ContentName name, long time, String content) {
+		SignedInfo si = new SignedInfo(new PublisherPublicKeyDigest(new byte[32]), new NDNTime(time),
+				SignedInfo.ContentType.DATA, new KeyLocator(new ContentName(new byte[][]{"key".getBytes()})));
+		ContentObject co = new ContentObject(name, si, content.getBytes(), new Signature(new byte[64]));
+		TestRef ref = new TestRef();
+		ref.index = _objects.size();
+		_objects.add(co);
+		Assert.assertTrue(tree.insert(co, ref, time, _getter, null));
+		return co;
+	}
+
+	@Test
+	public void testRetain() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testRetain");
+
+		ContentTree tree = new ContentTree();
+		ContentObject [][] versions = new ContentObject[4][];
+		for (int v = 0; v < versions.length; v++) {
+			ContentName versionName = VersioningProfile.addVersion(base, (long)(1000 + v));
+			versions[v] = new ContentObject[3];
+			for (int seg = 0; seg < 3; seg++)
+				versions[v][seg] = insert(tree, new ContentName(versionName, "seg" + seg), 1000 + v, "v" + v + "s" + seg);
+		}
+		ContentName plain = new ContentName(base, "plain");
+		ContentObject older = insert(tree, plain, 1000, "older");
+		ContentObject newer = insert(tree, plain, 2000, "newer");
+
+		Assert.assertEquals(7, tree.retain(2, _getter));
+		for (int v = 0; v < versions.length; v++)
+			for (ContentObject co : versions[v])
+				Assert.assertEquals(v >= 2, tree.matchContent(co.fullName()));
+		Assert.assertFalse(tree.matchContent(older.fullName()));
+		Assert.assertTrue(tree.matchContent(newer.fullName()));
+		Assert.assertEquals("newer", new String(tree.get(new Interest(plain), _getter).content()));
+		Assert.assertEquals(0, tree.retain(2, _getter));
+
+		Log.info(Log.FAC_TEST, "Completed testRetain");
+	}
+
+	@Test
+	public void testVisit() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testVisit");
+
+		ContentTree tree = new ContentTree();
+		for (int i = 0; i < 10; i++)
+			insert(tree, new ContentName(base, "name" + (i % 3), "item" + i), i, "item" + i);
+
+		// Swap every reference for one to a copy of the same object, as compaction does
+		final int count = _objects.size();
+		tree.visit(new ContentTree.ContentVisitor() {
+			public ContentRef visit(ContentName name, ContentRef ref) {
+				ContentObject co = _objects.get(((TestRef)ref).index);
+				Assert.assertEquals(co.fullName(), name);
+				TestRef newRef = new TestRef();
+				newRef.index = _objects.size();
+				_objects.add(co);
+				return newRef;
+			}
+		});
+		Assert.assertEquals(2 * count, _objects.size());
+		tree.visit(new ContentTree.ContentVisitor() {
+			public ContentRef visit(ContentName name, ContentRef ref) {
+				Assert.assertTrue(((TestRef)ref).index >= count);
+				return ref;
+			}
+		});
+		Assert.assertEquals("item4", new String(tree.get(new Interest(new ContentName(base, "name1", "item4")), _getter).content()));
+
+		Log.info(Log.FAC_TEST, "Completed testVisit");
+	}
+}
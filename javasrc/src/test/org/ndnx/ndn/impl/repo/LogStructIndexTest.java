@@ -0,0 +1,172 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.repo;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ndnx.ndn.impl.repo.LogStructRepoStore.FileRef;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.ContentName;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test saving and reloading the persistent index used by LogStructRepoStore.
+ * This doesn't need ndnd.
+ */
+public class LogStructIndexTest {
+
+	File _indexFile;
+
+	@Before
+	public void setUp() throws Exception {
+		_indexFile = File.createTempFile("LogStructIndexTest", null);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		_indexFile.delete();
+	}
+
+	static ContentName name(int i) {
+		return new ContentName(new byte[][]{"test".getBytes(), ("name" + (i % 10)).getBytes(), ("object" + i).getBytes()});
+	}
+
+	static FileRef ref(int id, long offset, int length) {
+		FileRef ref = new FileRef();
+		ref.id = id;
+		ref.offset = offset;
+		ref.length = length;
+		return ref;
+	}
+
+	@Test
+	public void testReload() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testReload");
+
+		Map<Integer, Long> lengths = new HashMap<Integer, Long>();
+		LogStructIndex index = new LogStructIndex(_indexFile, 7);
+		Assert.assertNull(index.load(new ContentTree(), lengths));
+		for (int i = 0; i < 20; i++)
+			index.add(name(i), ref(1, i * 100, 100), i);
+		index.covered(2, 50);
+		index.close();
+
+		lengths.put(1, 2000L);
+		lengths.put(2, 50L);
+		ContentTree tree = new ContentTree();
+		index = new LogStructIndex(_indexFile, 7);
+		Map<Integer, Long> covered = index.load(tree, lengths);
+		Assert.assertNotNull(covered);
+		Assert.assertEquals(Long.valueOf(2000), covered.get(1));
+		Assert.assertEquals(Long.valueOf(50), covered.get(2));
+		for (int i = 0; i < 20; i++)
+			Assert.assertTrue(tree.matchContent(name(i)));
+		Assert.assertFalse(tree.matchContent(name(20)));
+		FileRef ref = (FileRef)tree.lookup(name(13)).get(0);
+		Assert.assertEquals(1300, ref.offset);
+		Assert.assertEquals(100, ref.length);
+		Assert.assertEquals(13, ref.timestamp);
+
+		// Entries written after the last checkpoint are lost in a crash and must be replayed
+		for (int i = 20; i < 30; i++)
+			index.add(name(i), ref(1, i * 100, 100), i);
+		RandomAccessFile raf = new RandomAccessFile(_indexFile, "rw");
+		raf.seek(raf.length());
+		raf.write(LogStructIndex.ENTRY);
+		raf.writeInt(1);
+		raf.close();
+		lengths.put(1, 3000L);
+		tree = new ContentTree();
+		covered = new LogStructIndex(_indexFile, 7).load(tree, lengths);
+		Assert.assertNotNull(covered);
+		Assert.assertEquals(Long.valueOf(2700), covered.get(1));
+		for (int i = 0; i < 27; i++)
+			Assert.assertTrue(tree.matchContent(name(i)));
+		for (int i = 27; i < 30; i++)
+			Assert.assertFalse(tree.matchContent(name(i)));
+
+		Log.info(Log.FAC_TEST, "Completed testReload");
+	}
+
+	@Test
+	public void testInconsistent() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testInconsistent");
+
+		Map<Integer, Long> lengths = new HashMap<Integer, Long>();
+		LogStructIndex index = new LogStructIndex(_indexFile, 100);
+		index.load(new ContentTree(), lengths);
+		for (int i = 0; i < 5; i++)
+			index.add(name(i), ref(1, i * 100, 100), i);
+		index.close();
+
+		// Data file shorter than the index thinks - index must be discarded
+		lengths.put(1, 400L);
+		index = new LogStructIndex(_indexFile, 100);
+		Assert.assertNull(index.load(new ContentTree(), lengths));
+		index.close();
+
+		// and it was reset, so there is now nothing to load
+		lengths.put(1, 500L);
+		ContentTree tree = new ContentTree();
+		Map<Integer, Long> covered = new LogStructIndex(_indexFile, 100).load(tree, lengths);
+		Assert.assertNull(covered);
+		Assert.assertFalse(tree.matchContent(name(0)));
+
+		Log.info(Log.FAC_TEST, "Completed testInconsistent");
+	}
+
+	@Test
+	public void testRewrite() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testRewrite");
+
+		Map<Integer, Long> lengths = new HashMap<Integer, Long>();
+		LogStructIndex index = new LogStructIndex(_indexFile, 100);
+		ContentTree tree = new ContentTree();
+		index.load(tree, lengths);
+		for (int i = 0; i < 10; i++) {
+			FileRef ref = ref(1, i * 100, 100);
+			ref.timestamp = 1000 + i;
+			index.add(name(i), ref, ref.timestamp);
+			tree.insert(name(i), ref, ref.timestamp);
+		}
+		Map<Integer, Long> coverage = new HashMap<Integer, Long>();
+		coverage.put(1, 1000L);
+		index.rewrite(tree, coverage);
+		index.close();
+
+		// The entries keep the time they were stored, not the time of the rewrite
+		lengths.put(1, 1000L);
+		tree = new ContentTree();
+		Assert.assertNotNull(new LogStructIndex(_indexFile, 100).load(tree, lengths));
+		for (int i = 0; i < 10; i++) {
+			FileRef ref = (FileRef)tree.lookup(name(i)).get(0);
+			Assert.assertEquals(1000 + i, ref.timestamp);
+		}
+
+		Log.info(Log.FAC_TEST, "Completed testRewrite");
+	}
+}
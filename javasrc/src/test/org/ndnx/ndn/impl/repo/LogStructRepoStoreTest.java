@@ -0,0 +1,240 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.repo;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ndnx.ndn.NDNHandle;
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNNetworkManager.NetworkProtocol;
+import org.ndnx.ndn.impl.support.DataUtils;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.Interest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test LogStructRepoStore with data files small enough that compaction has several to work on.
+ * The store uses a loopback handle, so this doesn't need ndnd.
+ */
+public class LogStructRepoStoreTest {
+
+	public static final int STABLE_OBJECTS = 200;
+	public static final int CHANGING_OBJECTS = 600;
+	public static final int ROUNDS = 4;
+	public static final int READERS = 4;
+	public static final int CONTENT_SIZE = 1000;
+
+	/**
+	 * Holds up the first read by a chosen thread until we say so, so that we can compact
+	 * between its lookup in the index and its read of the data file.
+	 */
+	static class HeldStore extends LogStructRepoStore {
+		volatile Thread _heldThread = null;
+		final CountDownLatch _reading = new CountDownLatch(1);
+		final CountDownLatch _release = new CountDownLatch(1);
+
+		@Override
+		public ContentObject get(ContentRef ref) {
+			if (Thread.currentThread() == _heldThread) {
+				_heldThread = null;
+				_reading.countDown();
+				try {
+					_release.await();
+				} catch (InterruptedException e) {}
+			}
+			return super.get(ref);
+		}
+	}
+
+	File _repoDir;
+	NDNHandle _handle;
+	HeldStore _repo;
+	NetworkProtocol _savedProtocol;
+	int _savedFileSize;
+	int _savedKeepVersions;
+	int _savedCacheSize;
+
+	@Before
+	public void setUp() throws Exception {
+		_savedProtocol = SystemConfiguration.AGENT_PROTOCOL;
+		_savedFileSize = SystemConfiguration.REPO_FILE_SIZE;
+		_savedKeepVersions = SystemConfiguration.REPO_KEEP_VERSIONS;
+		_savedCacheSize = SystemConfiguration.REPO_RESPONSE_CACHE_SIZE;
+		SystemConfiguration.AGENT_PROTOCOL = NetworkProtocol.LOOPBACK;
+		// The smallest file size there is (1MB), so each round of saves starts another file
+		SystemConfiguration.REPO_FILE_SIZE = 1;
+		SystemConfiguration.REPO_KEEP_VERSIONS = 1;
+		// Every get has to read from the data files
+		SystemConfiguration.REPO_RESPONSE_CACHE_SIZE = 0;
+
+		_repoDir = File.createTempFile("LogStructRepoStoreTest", null);
+		_repoDir.delete();
+		_handle = NDNHandle.open();
+		_repo = new HeldStore();
+		_repo.initialize(_repoDir.getPath(), null, null, null, null, _handle);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// This closes the handle too
+		_repo.shutDown();
+		DataUtils.deleteDirectory(_repoDir);
+		SystemConfiguration.AGENT_PROTOCOL = _savedProtocol;
+		SystemConfiguration.REPO_FILE_SIZE = _savedFileSize;
+		SystemConfiguration.REPO_KEEP_VERSIONS = _savedKeepVersions;
+		SystemConfiguration.REPO_RESPONSE_CACHE_SIZE = _savedCacheSize;
+	}
+
+	static ContentObject content(ContentName name, int seed) {
+		byte [] data = new byte[CONTENT_SIZE];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte)(seed + i);
+		return ContentObject.buildContentObject(name, data);
+	}
+
+	/**
+	 * Save one object we keep, and enough versions of others that it is in a file with
+	 * content that is no longer wanted.
+	 * @return the full name of the object we keep
+	 */
+	ContentName saveStable(ContentName name) throws Exception {
+		ContentObject stable = content(name, 0);
+		_repo.saveContent(stable);
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < CHANGING_OBJECTS; i++)
+				_repo.saveContent(content(VersioningProfile.addVersion(new ContentName(new byte[][]{"changing".getBytes(), ("object" + i).getBytes()}), round), i + round));
+		}
+		return stable.fullName();
+	}
+
+	@Test
+	public void testGetAcrossCompaction() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testGetAcrossCompaction");
+
+		ContentName name = new ContentName(new byte[][]{"stable".getBytes(), "object".getBytes()});
+		final Interest interest = new Interest(saveStable(name));
+		interest.maxSuffixComponents(0);
+
+		final ContentObject [] result = new ContentObject[1];
+		Thread reader = new Thread() {
+			public void run() {
+				try {
+					result[0] = _repo.getContent(interest);
+				} catch (Exception e) {
+					Log.warning(Log.FAC_TEST, "Get failed: {0}", e);
+				}
+			}
+		};
+		_repo._heldThread = reader;
+		reader.start();
+
+		// The reader has found the object in the index; move it and delete the file it was in
+		_repo._reading.await();
+		Assert.assertTrue(_repo.compact() > 0);
+		_repo._release.countDown();
+		reader.join();
+
+		Assert.assertNotNull(result[0]);
+		Assert.assertArrayEquals(content(name, 0).content(), result[0].content());
+
+		Log.info(Log.FAC_TEST, "Completed testGetAcrossCompaction");
+	}
+
+	@Test
+	public void testGetWhileCompacting() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testGetWhileCompacting");
+
+		final ContentName [] stableNames = new ContentName[STABLE_OBJECTS];
+		final ContentName [] fullNames = new ContentName[STABLE_OBJECTS];
+		for (int i = 0; i < STABLE_OBJECTS; i++)
+			stableNames[i] = new ContentName(new byte[][]{"stable".getBytes(), ("object" + i).getBytes()});
+
+		// Mix the objects that stay with ones that have new versions each round, so every
+		// compaction copies them to a new file and removes the one they were in.
+		for (int i = 0; i < CHANGING_OBJECTS; i++) {
+			if (i < STABLE_OBJECTS) {
+				ContentObject co = content(stableNames[i], i);
+				fullNames[i] = co.fullName();
+				_repo.saveContent(co);
+			}
+			_repo.saveContent(content(VersioningProfile.addVersion(new ContentName(new byte[][]{"changing".getBytes(), ("object" + i).getBytes()}), 0), i));
+		}
+
+		final AtomicInteger gets = new AtomicInteger();
+		final AtomicInteger misses = new AtomicInteger();
+		final AtomicBoolean done = new AtomicBoolean(false);
+		Thread [] readers = new Thread[READERS];
+		for (int r = 0; r < READERS; r++) {
+			final int start = r;
+			readers[r] = new Thread() {
+				public void run() {
+					int i = start;
+					while (!done.get()) {
+						try {
+							// Ask for some by their full name, which reads them without holding the index
+							Interest interest = new Interest((0 == i % 2) ? stableNames[i] : fullNames[i]);
+							if (1 == i % 2)
+								interest.maxSuffixComponents(0);
+							ContentObject co = _repo.getContent(interest);
+							if (null == co || !stableNames[i].isPrefixOf(co.name()))
+								misses.incrementAndGet();
+						} catch (Exception e) {
+							misses.incrementAndGet();
+						}
+						gets.incrementAndGet();
+						i = (i + 1) % STABLE_OBJECTS;
+					}
+				}
+			};
+			readers[r].start();
+		}
+
+		int removed = 0;
+		try {
+			for (int round = 1; round <= ROUNDS; round++) {
+				for (int i = 0; i < CHANGING_OBJECTS; i++)
+					_repo.saveContent(content(VersioningProfile.addVersion(new ContentName(new byte[][]{"changing".getBytes(), ("object" + i).getBytes()}), round), i + round));
+				removed += _repo.compact();
+			}
+		} finally {
+			done.set(true);
+			for (Thread reader : readers)
+				reader.join();
+		}
+
+		Assert.assertTrue(removed >= ROUNDS);
+		Assert.assertTrue(gets.get() > 0);
+		Assert.assertEquals(0, misses.get());
+		for (int i = 0; i < STABLE_OBJECTS; i++)
+			Assert.assertArrayEquals(content(stableNames[i], i).content(), _repo.getContent(new Interest(stableNames[i])).content());
+
+		Log.info(Log.FAC_TEST, "Completed testGetWhileCompacting");
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.repo;
+
+import org.ndnx.ndn.impl.repo.ResponseCache.StatsEnum;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.profiles.SegmentationProfile;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the admission, eviction and invalidation of the repository's cache of encoded
+ * objects. This doesn't need ndnd.
+ */
+public class ResponseCacheTest {
+
+	static ContentName name(int i) throws Exception {
+		return ContentName.fromNative("/test/responsecache/" + i);
+	}
+
+	@Test
+	public void testAdmission() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testAdmission");
+
+		ResponseCache<Integer> cache = new ResponseCache<Integer>(300);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertNull(cache.get(i));
+			Assert.assertTrue(cache.put(i, name(i), new byte[100]));
+		}
+		Assert.assertEquals(300, cache.getSize());
+		// Make 0 and 1 popular
+		for (int j = 0; j < 5; j++) {
+			Assert.assertNotNull(cache.get(0));
+			Assert.assertNotNull(cache.get(1));
+		}
+
+		// Something asked for once doesn't get in ahead of anything asked for as often
+		Assert.assertNull(cache.get(3));
+		Assert.assertFalse(cache.put(3, name(3), new byte[100]));
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.Rejections.toString()));
+
+		// Asked for more often than the least recently used, it replaces it
+		for (int j = 0; j < 3; j++)
+			cache.get(3);
+		Assert.assertTrue(cache.put(3, name(3), new byte[100]));
+		Assert.assertNull(cache.get(2));
+		Assert.assertNotNull(cache.get(0));
+		Assert.assertNotNull(cache.get(1));
+		Assert.assertNotNull(cache.get(3));
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.Evictions.toString()));
+
+		// Too big to cache at all
+		Assert.assertFalse(cache.put(4, name(4), new byte[301]));
+		Assert.assertEquals(300, cache.getSize());
+
+		Log.info(Log.FAC_TEST, "Completed testAdmission");
+	}
+
+	@Test
+	public void testInvalidateOlderVersions() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testInvalidateOlderVersions");
+
+		ResponseCache<Integer> cache = new ResponseCache<Integer>(10000);
+		ContentName base = ContentName.fromNative("/test/responsecache/versioned");
+		ContentName v1 = VersioningProfile.addVersion(base, 1);
+		ContentName v2 = VersioningProfile.addVersion(base, 2);
+		ContentName v3 = VersioningProfile.addVersion(base, 3);
+		cache.put(1, SegmentationProfile.segmentName(v1, 0), new byte[10]);
+		cache.put(2, SegmentationProfile.segmentName(v1, 1), new byte[10]);
+		cache.put(3, SegmentationProfile.segmentName(v3, 0), new byte[10]);
+		cache.put(4, name(4), new byte[10]);
+
+		cache.invalidateOlderVersions(SegmentationProfile.segmentName(v2, 0));
+		Assert.assertNull(cache.get(1));
+		Assert.assertNull(cache.get(2));
+		Assert.assertNotNull(cache.get(3));
+		Assert.assertNotNull(cache.get(4));
+		Assert.assertEquals(20, cache.getSize());
+		Assert.assertEquals(2, cache.getStats().getCounter(StatsEnum.Invalidations.toString()));
+
+		Log.info(Log.FAC_TEST, "Completed testInvalidateOlderVersions");
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.security.keys;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+
+import org.ndnx.ndn.impl.support.BoundedCache.StatsEnum;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that what a bounded PublicKeyCache records about a key goes when the key is
+ * evicted. This doesn't need ndnd.
+ */
+public class PublicKeyCacheTest {
+
+	static final int KEYS = 6;
+	static PublicKey [] keys = new PublicKey[KEYS];
+	static PublisherPublicKeyDigest [] ids = new PublisherPublicKeyDigest[KEYS];
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+		kpg.initialize(1024);
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = kpg.generateKeyPair().getPublic();
+			ids[i] = new PublisherPublicKeyDigest(keys[i]);
+		}
+	}
+
+	@Test
+	public void testEvictionDropsVersions() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testEvictionDropsVersions");
+
+		PublicKeyCache cache = new PublicKeyCache(2, false);
+		for (int i = 0; i < KEYS; i++)
+			cache.remember(keys[i], NDNTime.now());
+
+		int held = 0;
+		for (int i = 0; i < KEYS; i++) {
+			boolean hasKey = (null != cache.getPublicKeyFromCache(ids[i]));
+			Assert.assertEquals("version of key " + i, hasKey, null != cache.getPublicKeyVersionFromCache(ids[i]));
+			if (hasKey)
+				held++;
+		}
+		Assert.assertEquals(2, held);
+		Assert.assertEquals(KEYS - 2, cache.getStats().getCounter(StatsEnum.Evictions.toString()));
+
+		Log.info(Log.FAC_TEST, "Completed testEvictionDropsVersions");
+	}
+
+	@Test
+	public void testReaddAfterEviction() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testReaddAfterEviction");
+
+		PublicKeyCache cache = new PublicKeyCache(1, false);
+		cache.remember(keys[0], NDNTime.now());
+		cache.remember(keys[1], NDNTime.now());
+		Assert.assertNull(cache.getPublicKeyFromCache(ids[0]));
+		Assert.assertNull(cache.getPublicKeyVersionFromCache(ids[0]));
+
+		// Coming back, the key gets its version back and pushes out the other one's
+		cache.remember(keys[0], NDNTime.now());
+		Assert.assertNotNull(cache.getPublicKeyFromCache(ids[0]));
+		Assert.assertNotNull(cache.getPublicKeyVersionFromCache(ids[0]));
+		Assert.assertNull(cache.getPublicKeyVersionFromCache(ids[1]));
+
+		Log.info(Log.FAC_TEST, "Completed testReaddAfterEviction");
+	}
+}
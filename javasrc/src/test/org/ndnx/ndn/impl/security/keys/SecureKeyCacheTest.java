@@ -0,0 +1,128 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.security.keys;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.Arrays;
+
+import org.ndnx.ndn.impl.support.BoundedCache.StatsEnum;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.ContentName;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that what a bounded SecureKeyCache records about a key goes when the key is
+ * evicted. This doesn't need ndnd.
+ */
+public class SecureKeyCacheTest {
+
+	static final int KEYS = 6;
+	static KeyPair [] pairs = new KeyPair[KEYS];
+	static byte [][] ids = new byte[KEYS][];
+	static ContentName [] names = new ContentName[KEYS];
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+		kpg.initialize(1024);
+		for (int i = 0; i < KEYS; i++) {
+			pairs[i] = kpg.generateKeyPair();
+			ids[i] = SecureKeyCache.getKeyIdentifier(pairs[i].getPublic());
+			names[i] = ContentName.fromNative("/test/securekeycache/key" + i);
+		}
+	}
+
+	static void checkConsistent(SecureKeyCache cache, int first) {
+		int held = 0;
+		for (int i = first; i < KEYS; i++) {
+			PrivateKey pk = pairs[i].getPrivate();
+			if (null == cache.getPrivateKey(ids[i])) {
+				Assert.assertNull(cache.getPrivateKey(names[i]));
+				Assert.assertFalse(cache.containsKey(names[i]));
+				Assert.assertNull(cache.getPublicKeyIdentifier(pk));
+			} else {
+				held++;
+				Assert.assertSame(pk, cache.getPrivateKey(names[i]));
+				Assert.assertTrue(Arrays.equals(ids[i], cache.getPublicKeyIdentifier(pk).digest()));
+			}
+		}
+		Assert.assertTrue(held > 0);
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testEviction");
+
+		SecureKeyCache cache = new SecureKeyCache(2);
+		cache.addMySigningKey(ids[0], pairs[0].getPrivate());
+		for (int i = 1; i < KEYS; i++)
+			cache.addPrivateKey(names[i], ids[i], pairs[i].getPrivate());
+		Assert.assertEquals(3, cache.size());
+		Assert.assertSame(pairs[0].getPrivate(), cache.getPrivateKey(ids[0]));
+		checkConsistent(cache, 1);
+		Assert.assertEquals(KEYS - 3, cache.getPrivateKeyStats().getCounter(StatsEnum.Evictions.toString()));
+
+		// Merging needs the identifiers of everything that is still there
+		SecureKeyCache merged = new SecureKeyCache(KEYS);
+		merged.merge(cache);
+		Assert.assertSame(pairs[0].getPrivate(), merged.getPrivateKey(ids[0]));
+		for (int i = 1; i < KEYS; i++) {
+			if (null != cache.getPrivateKey(ids[i]))
+				Assert.assertSame(pairs[i].getPrivate(), merged.getPrivateKey(names[i]));
+		}
+
+		Log.info(Log.FAC_TEST, "Completed testEviction");
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testSerialization");
+
+		SecureKeyCache cache = new SecureKeyCache(KEYS);
+		cache.addMySigningKey(ids[0], pairs[0].getPrivate());
+		cache.addPrivateKey(names[1], ids[1], pairs[1].getPrivate());
+		cache.addKey(names[2], pairs[2].getPublic());
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(cache);
+		oos.close();
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		SecureKeyCache copy = (SecureKeyCache)ois.readObject();
+
+		Assert.assertEquals(3, copy.size());
+		Assert.assertEquals(pairs[0].getPrivate(), copy.getPrivateKey(ids[0]));
+		Assert.assertEquals(1, copy.getMyPrivateKeys().length);
+		Assert.assertEquals(pairs[1].getPrivate(), copy.getPrivateKey(names[1]));
+		Assert.assertTrue(Arrays.equals(ids[1], copy.getPublicKeyIdentifier(pairs[1].getPrivate()).digest()));
+		Assert.assertEquals(pairs[2].getPublic(), copy.getKey(names[2]));
+
+		Log.info(Log.FAC_TEST, "Completed testSerialization");
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.support;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.ndnx.ndn.impl.support.BoundedCache.StatsEnum;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+	@Test
+	public void testEviction() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testEviction");
+
+		BoundedCache<Integer, String> cache = new BoundedCache<Integer, String>(3, false);
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.put(3, "three");
+		// Using 1 gives it a second chance, so 2 is the one to go
+		Assert.assertEquals("one", cache.get(1));
+		cache.put(4, "four");
+		Assert.assertEquals(3, cache.size());
+		Assert.assertNull(cache.get(2));
+		Assert.assertEquals("one", cache.get(1));
+		Assert.assertEquals("four", cache.get(4));
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.Evictions.toString()));
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.Misses.toString()));
+
+		// Replacing doesn't grow the cache
+		Assert.assertEquals("four", cache.put(4, "FOUR"));
+		Assert.assertEquals(3, cache.size());
+		Assert.assertEquals("FOUR", cache.remove(4));
+		Assert.assertFalse(cache.containsKey(4));
+		Assert.assertEquals(2, cache.size());
+
+		Log.info(Log.FAC_TEST, "Completed testEviction");
+	}
+
+	@Test
+	public void testPinned() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testPinned");
+
+		BoundedCache<Integer, String> cache = new BoundedCache<Integer, String>(2, false);
+		cache.putPinned(0, "mine");
+		for (int i = 1; i <= 10; i++)
+			cache.put(i, Integer.toString(i));
+		Assert.assertEquals(3, cache.size());
+		Assert.assertEquals("mine", cache.get(0));
+		Assert.assertEquals("10", cache.get(10));
+
+		// Replacing a pinned entry with an ordinary put leaves it pinned
+		cache.put(0, "still mine");
+		for (int i = 11; i <= 20; i++)
+			cache.put(i, Integer.toString(i));
+		Assert.assertEquals("still mine", cache.get(0));
+
+		Log.info(Log.FAC_TEST, "Completed testPinned");
+	}
+
+	@Test
+	public void testSoftSpill() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testSoftSpill");
+
+		BoundedCache<Integer, String> cache = new BoundedCache<Integer, String>(1, true);
+		String first = "first";
+		cache.put(1, first);
+		cache.put(2, "second");
+		Assert.assertEquals(1, cache.size());
+		// We still hold a strong reference to the first value, so it can't have been collected
+		Assert.assertTrue(cache.containsKey(1));
+		Assert.assertSame(first, cache.get(1));
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.SpillHits.toString()));
+		Assert.assertEquals(1, cache.size());
+
+		Log.info(Log.FAC_TEST, "Completed testSoftSpill");
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testConcurrentAccess");
+
+		final int SIZE = 100;
+		final BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(SIZE, false);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		Thread [] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t * 1000;
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						int key = offset + (i % 500);
+						cache.put(key, key);
+						Integer value = cache.get(key);
+						if (null != value && value.intValue() != key)
+							failed.set(true);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		Assert.assertFalse(failed.get());
+		Assert.assertTrue(cache.size() <= SIZE);
+
+		Log.info(Log.FAC_TEST, "Completed testConcurrentAccess");
+	}
+
+	@Test
+	public void testConcurrentPinning() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testConcurrentPinning");
+
+		final int KEYS = 1000;
+		final BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(10, false);
+		// Race an ordinary put against a pinned put of each key
+		Thread [] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final boolean pin = (t % 2 == 0);
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < KEYS; i++) {
+						if (pin)
+							cache.putPinned(i, i);
+						else
+							cache.put(i, i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		// Push out everything that isn't pinned
+		for (int i = KEYS; i < 2 * KEYS; i++)
+			cache.put(i, i);
+		for (int i = 0; i < KEYS; i++)
+			Assert.assertTrue("pinned key " + i + " was evicted", cache.containsKey(i));
+		Assert.assertEquals(KEYS + 10, cache.size());
+
+		Log.info(Log.FAC_TEST, "Completed testConcurrentPinning");
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.impl.sync;
+
+import java.util.HashMap;
+
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.impl.sync.SyncNodeCache.Pending;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test that a prefetch which never gets an answer stops holding up the node. No network is needed.
+ */
+public class SliceComparatorPrefetchTest {
+
+	@Test
+	public void testDroppedPrefetch() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testDroppedPrefetch");
+
+		SyncNodeCache snc = new SyncNodeCache();
+		HashMap<SyncHashEntry, Long> prefetching = new HashMap<SyncHashEntry, Long>();
+		long now = System.currentTimeMillis();
+		byte [] dropped = new byte[] {1, 2, 3};
+		byte [] recent = new byte[] {4, 5, 6};
+		final Pending droppedLock = snc.pending(dropped);
+		droppedLock.setPending(true);
+		prefetching.put(new SyncHashEntry(dropped), now - SystemConfiguration.LONG_TIMEOUT - 1);
+		Pending recentLock = snc.pending(recent);
+		recentLock.setPending(true);
+		prefetching.put(new SyncHashEntry(recent), now);
+
+		// Someone waiting for the dropped node, as getOrRequestNode does
+		final boolean [] woken = new boolean[1];
+		Thread waiter = new Thread() {
+			public void run() {
+				synchronized (droppedLock) {
+					while (droppedLock.getPending()) {
+						try {
+							droppedLock.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					woken[0] = true;
+				}
+			}
+		};
+		waiter.start();
+
+		SliceComparator.expirePrefetches(prefetching, snc, now);
+		waiter.join(SystemConfiguration.MEDIUM_TIMEOUT);
+		Assert.assertTrue(woken[0]);
+
+		// The dropped node can be requested again through the same lock, the other is left alone
+		Assert.assertSame(droppedLock, snc.pending(dropped));
+		Assert.assertFalse(droppedLock.getPending());
+		Assert.assertTrue(recentLock.getPending());
+		Assert.assertEquals(1, prefetching.size());
+		Assert.assertTrue(prefetching.containsKey(new SyncHashEntry(recent)));
+
+		Log.info(Log.FAC_TEST, "Completed testDroppedPrefetch");
+	}
+}
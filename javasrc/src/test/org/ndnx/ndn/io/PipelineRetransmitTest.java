@@ -0,0 +1,120 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.io;
+
+import org.ndnx.ndn.NDNHandle;
+import org.ndnx.ndn.NDNTestHelper;
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNNetworkManager.NetworkProtocol;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.io.NDNAbstractInputStream.StatsEnum;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that a segment whose interest had to be expressed again gives no round trip
+ * time sample. This uses the loopback transport, so it doesn't need ndnd.
+ */
+public class PipelineRetransmitTest {
+
+	public static NDNTestHelper testHelper = new NDNTestHelper(PipelineRetransmitTest.class);
+
+	static NetworkProtocol savedProtocol;
+	static NDNHandle readHandle;
+	static NDNHandle writeHandle;
+
+	/**
+	 * Start with the shortest retransmit timeout so we don't wait for the default one.
+	 */
+	static class ShortTimeoutWindow extends PipelineWindow.Fixed {
+		public ShortTimeoutWindow(int window) {
+			super(window);
+			_retransmitTimeout = MIN_RETRANSMIT_TIMEOUT;
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		savedProtocol = SystemConfiguration.AGENT_PROTOCOL;
+		SystemConfiguration.AGENT_PROTOCOL = NetworkProtocol.LOOPBACK;
+		readHandle = NDNHandle.open();
+		writeHandle = NDNHandle.open();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		readHandle.close();
+		writeHandle.close();
+		SystemConfiguration.AGENT_PROTOCOL = savedProtocol;
+	}
+
+	@Test
+	public void testNoSampleAfterRetransmit() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testNoSampleAfterRetransmit");
+
+		ContentName name = VersioningProfile.addVersion(testHelper.getTestNamespace("testNoSampleAfterRetransmit"));
+		byte [] data = "a single segment".getBytes();
+
+		// The interest for the first segment goes out now, but nothing answers it
+		// until the reader has expressed it again.
+		NDNInputStream istream = new NDNInputStream(name, readHandle);
+		istream.setTimeout(SystemConfiguration.LONG_TIMEOUT);
+		PipelineWindow window = new ShortTimeoutWindow(4);
+		istream.setPipelineWindow(window);
+
+		final ContentName writeName = name;
+		final byte [] writeData = data;
+		final Exception [] writeFailure = new Exception[1];
+		Thread writer = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(2 * SystemConfiguration.SHORT_TIMEOUT);
+					NDNOutputStream ostream = new NDNOutputStream(writeName, writeHandle);
+					ostream.write(writeData);
+					ostream.close();
+				} catch (Exception e) {
+					writeFailure[0] = e;
+				}
+			}
+		};
+		writer.start();
+
+		byte [] read = new byte[data.length];
+		int offset = 0;
+		int count;
+		while (offset < read.length && (count = istream.read(read, offset, read.length - offset)) > 0)
+			offset += count;
+		istream.close();
+		writer.join(SystemConfiguration.LONG_TIMEOUT);
+		Assert.assertNull(writeFailure[0]);
+		Assert.assertArrayEquals(data, read);
+
+		Assert.assertTrue(istream.getStats().getCounter(StatsEnum.Retransmissions.toString()) > 0);
+		Assert.assertFalse(istream.getStats().isAveragingCounter(StatsEnum.RoundTripTime.toString()));
+		Assert.assertTrue(window.smoothedRtt() < 0);
+
+		Log.info(Log.FAC_TEST, "Completed testNoSampleAfterRetransmit");
+	}
+}
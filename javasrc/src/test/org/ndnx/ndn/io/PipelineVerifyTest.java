@@ -0,0 +1,120 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.io;
+
+import org.ndnx.ndn.NDNHandle;
+import org.ndnx.ndn.NDNTestHelper;
+import org.ndnx.ndn.config.SystemConfiguration;
+import org.ndnx.ndn.impl.NDNSegmenter;
+import org.ndnx.ndn.impl.NDNNetworkManager.NetworkProtocol;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.io.NDNAbstractInputStream.StatsEnum;
+import org.ndnx.ndn.profiles.VersioningProfile;
+import org.ndnx.ndn.protocol.ContentName;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that segments verified on the pipeline's verifier threads are read in order,
+ * and that each Merkle root signature is verified once. This uses the loopback
+ * transport, so it doesn't need ndnd.
+ */
+public class PipelineVerifyTest {
+
+	public static NDNTestHelper testHelper = new NDNTestHelper(PipelineVerifyTest.class);
+
+	public static final int BLOCK_SIZE = 100;
+	// Enough segments for several Merkle trees, the last one partly full
+	public static final int SEGMENTS = 3 * NDNSegmenter.HOLD_COUNT + 17;
+
+	static NetworkProtocol savedProtocol;
+	static int savedVerifyThreads;
+	static NDNHandle readHandle;
+	static NDNHandle writeHandle;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		savedProtocol = SystemConfiguration.AGENT_PROTOCOL;
+		savedVerifyThreads = SystemConfiguration.PIPELINE_VERIFY_THREADS;
+		SystemConfiguration.AGENT_PROTOCOL = NetworkProtocol.LOOPBACK;
+		SystemConfiguration.PIPELINE_VERIFY_THREADS = 4;
+		readHandle = NDNHandle.open();
+		writeHandle = NDNHandle.open();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		readHandle.close();
+		writeHandle.close();
+		SystemConfiguration.AGENT_PROTOCOL = savedProtocol;
+		SystemConfiguration.PIPELINE_VERIFY_THREADS = savedVerifyThreads;
+	}
+
+	@Test
+	public void testParallelVerify() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testParallelVerify");
+
+		final ContentName name = VersioningProfile.addVersion(testHelper.getTestNamespace("testParallelVerify"));
+		final byte [] data = new byte[(SEGMENTS - 1) * BLOCK_SIZE + BLOCK_SIZE / 2];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte)(i + i / 251);
+
+		// Nothing holds the segments for us, so write them while we read
+		final Exception [] writeFailure = new Exception[1];
+		Thread writer = new Thread() {
+			public void run() {
+				try {
+					NDNOutputStream ostream = new NDNOutputStream(name, writeHandle);
+					ostream.setBlockSize(BLOCK_SIZE);
+					ostream.write(data);
+					ostream.close();
+				} catch (Exception e) {
+					writeFailure[0] = e;
+				}
+			}
+		};
+		writer.start();
+
+		NDNInputStream istream = new NDNInputStream(name, readHandle);
+		byte [] read = new byte[data.length];
+		int offset = 0;
+		int count;
+		while (offset < read.length && (count = istream.read(read, offset, read.length - offset)) > 0)
+			offset += count;
+		Assert.assertEquals(-1, istream.read());
+		istream.close();
+		writer.join(SystemConfiguration.EXTRA_LONG_TIMEOUT);
+		Assert.assertNull(writeFailure[0]);
+
+		Assert.assertEquals(data.length, offset);
+		Assert.assertArrayEquals(data, read);
+
+		int roots = (SEGMENTS + NDNSegmenter.HOLD_COUNT - 1) / NDNSegmenter.HOLD_COUNT;
+		Assert.assertEquals(SEGMENTS, istream.getStats().getCounter(StatsEnum.SegmentsReceived.toString()));
+		Assert.assertEquals(roots, istream.getStats().getCounter(StatsEnum.SignaturesVerified.toString()));
+		Assert.assertEquals(SEGMENTS - roots, istream.getStats().getCounter(StatsEnum.SignaturesSkipped.toString()));
+		Assert.assertEquals(0, istream.getStats().getCounter(StatsEnum.VerificationFailures.toString()));
+
+		Log.info(Log.FAC_TEST, "Completed testParallelVerify");
+	}
+}
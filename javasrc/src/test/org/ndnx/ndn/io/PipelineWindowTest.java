@@ -0,0 +1,133 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.io;
+
+import org.ndnx.ndn.config.SystemConfiguration.PipelineWindowType;
+import org.ndnx.ndn.impl.support.Log;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the window controllers used by the NDNAbstractInputStream pipeline. This doesn't need ndnd.
+ */
+public class PipelineWindowTest {
+
+	@Test
+	public void testRetransmitTimeout() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testRetransmitTimeout");
+
+		PipelineWindow window = PipelineWindow.create(PipelineWindowType.AIMD, 4, 64);
+		Assert.assertEquals(PipelineWindow.INITIAL_RETRANSMIT_TIMEOUT, window.retransmitTimeout());
+		Assert.assertTrue(window.smoothedRtt() < 0);
+
+		window.rttSample(100);
+		Assert.assertEquals(100.0, window.smoothedRtt(), 0.001);
+		Assert.assertEquals(300, window.retransmitTimeout());
+		for (int i = 0; i < 100; i++)
+			window.rttSample(100);
+		// a steady round trip time leaves little variation, but never less than the minimum
+		Assert.assertTrue(window.retransmitTimeout() < 110);
+		Assert.assertTrue(window.retransmitTimeout() >= PipelineWindow.MIN_RETRANSMIT_TIMEOUT);
+
+		long rto = window.retransmitTimeout();
+		window.segmentTimedOut();
+		Assert.assertEquals(2 * rto, window.retransmitTimeout());
+		window.segmentTimedOut();
+		Assert.assertEquals(4 * rto, window.retransmitTimeout());
+		window.rttSample(100);
+		Assert.assertTrue(window.retransmitTimeout() < 2 * rto);
+
+		Log.info(Log.FAC_TEST, "Completed testRetransmitTimeout");
+	}
+
+	@Test
+	public void testAIMD() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testAIMD");
+
+		PipelineWindow window = PipelineWindow.create(PipelineWindowType.AIMD, 4, 64);
+		Assert.assertEquals(4, window.window());
+		window.rttSample(60000);
+
+		// slow start grows by a segment per segment received, up to the maximum
+		for (int i = 0; i < 10; i++)
+			window.segmentReceived();
+		Assert.assertEquals(14, window.window());
+		for (int i = 0; i < 100; i++)
+			window.segmentReceived();
+		Assert.assertEquals(64, window.window());
+
+		// the first timeout halves it, more in the same round trip don't
+		Assert.assertTrue(window.segmentTimedOut());
+		Assert.assertEquals(32, window.window());
+		Assert.assertFalse(window.segmentTimedOut());
+		Assert.assertEquals(32, window.window());
+
+		// then it grows by about a segment per window
+		for (int i = 0; i < 32; i++)
+			window.segmentReceived();
+		Assert.assertEquals(32, window.window());
+		for (int i = 0; i < 34; i++)
+			window.segmentReceived();
+		Assert.assertEquals(34, window.window());
+
+		Log.info(Log.FAC_TEST, "Completed testAIMD");
+	}
+
+	@Test
+	public void testCubic() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testCubic");
+
+		PipelineWindow aimd = PipelineWindow.create(PipelineWindowType.AIMD, 64, 64);
+		PipelineWindow cubic = PipelineWindow.create(PipelineWindowType.CUBIC, 64, 64);
+		for (PipelineWindow window : new PipelineWindow[]{aimd, cubic}) {
+			window.rttSample(200);
+			Assert.assertTrue(window.segmentTimedOut());
+			window.rttSample(200);
+		}
+		Assert.assertEquals(32, aimd.window());
+		Assert.assertEquals(44, cubic.window());
+
+		// CUBIC climbs back towards the window where it lost segments much faster
+		for (int i = 0; i < 100; i++) {
+			aimd.segmentReceived();
+			cubic.segmentReceived();
+		}
+		Assert.assertTrue(aimd.window() < 36);
+		Assert.assertTrue(cubic.window() > 44);
+		Assert.assertTrue(cubic.window() <= 64);
+
+		Log.info(Log.FAC_TEST, "Completed testCubic");
+	}
+
+	@Test
+	public void testFixed() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testFixed");
+
+		PipelineWindow window = PipelineWindow.create(PipelineWindowType.FIXED, 4, 64);
+		for (int i = 0; i < 100; i++)
+			window.segmentReceived();
+		Assert.assertEquals(4, window.window());
+		Assert.assertFalse(window.segmentTimedOut());
+		Assert.assertEquals(4, window.window());
+
+		Log.info(Log.FAC_TEST, "Completed testFixed");
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.profiles.sync;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.impl.sync.SyncHashCache;
+import org.ndnx.ndn.impl.sync.SyncNodeCache;
+import org.ndnx.ndn.impl.sync.SyncNodeCache.StatsEnum;
+import org.ndnx.ndn.impl.sync.SyncTreeEntry;
+import org.ndnx.ndn.io.content.SyncNodeComposite;
+import org.ndnx.ndn.io.content.SyncNodeComposite.SyncNodeElement;
+import org.ndnx.ndn.protocol.ContentName;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the eviction and spilling of sync nodes and hashes. No network is needed.
+ */
+public class SyncNodeCacheTest {
+
+	/**
+	 * Make a node as if it came from the network
+	 */
+	static SyncNodeComposite node(int i) throws Exception {
+		ContentName name = ContentName.fromNative("/test/syncnodecache/" + i);
+		ArrayList<SyncNodeElement> refs = new ArrayList<SyncNodeElement>();
+		refs.add(new SyncNodeElement(name));
+		SyncNodeComposite node = new SyncNodeComposite(refs, new SyncNodeElement(name), new SyncNodeElement(name), 1, 1);
+		node._retrievable = true;
+		return node;
+	}
+
+	@Test
+	public void testEvictAndSpill() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testEvictAndSpill");
+
+		SyncNodeCache cache = new SyncNodeCache(300, 1000);
+		SyncNodeComposite [] nodes = new SyncNodeComposite[4];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = node(i);
+			byte [] encoded = new byte[100];
+			Arrays.fill(encoded, (byte)i);
+			cache.putNode(nodes[i], encoded);
+		}
+		// Only three fit
+		Assert.assertEquals(300, cache.getSize());
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.Evictions.toString()));
+		Assert.assertEquals(100, cache.getSpilledSize());
+		Assert.assertSame(nodes[3], cache.getNode(nodes[3].getHash()));
+
+		// We can get the first back from the spill until it is put back
+		byte [] spilled = cache.getSpilledNode(nodes[0].getHash());
+		Assert.assertNotNull(spilled);
+		Assert.assertEquals(100, spilled.length);
+		Assert.assertEquals(0, spilled[99]);
+		Assert.assertNull(cache.getSpilledNode(nodes[0].getHash()));
+		Assert.assertEquals(0, cache.getSpilledSize());
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.SpillHits.toString()));
+
+		// Nodes we built aren't counted
+		SyncNodeComposite local = node(10);
+		local._retrievable = false;
+		cache.putNode(local);
+		Assert.assertEquals(300, cache.getSize());
+
+		Log.info(Log.FAC_TEST, "Completed testEvictAndSpill");
+	}
+
+	@Test
+	public void testHashCacheBound() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testHashCacheBound");
+
+		SyncNodeCache snc = new SyncNodeCache(0, 0);
+		SyncHashCache shc = new SyncHashCache(10);
+		SyncTreeEntry local = shc.addHash(node(100).getHash(), snc);
+		local.setLocal(true);
+		SyncTreeEntry first = null;
+		for (int i = 0; i < 20; i++) {
+			SyncTreeEntry entry = shc.addHash(node(i).getHash(), snc);
+			if (i == 0)
+				first = entry;
+		}
+		// The local entry doesn't count against the limit
+		Assert.assertEquals(11, shc.size());
+		Assert.assertNull(shc.getHash(first.getHash()));
+		Assert.assertSame(local, shc.getHash(local.getHash()));
+
+		// Nor do local entries put in as local, however many there are
+		for (int i = 200; i < 250; i++) {
+			SyncTreeEntry entry = new SyncTreeEntry(node(i).getHash(), snc);
+			entry.setLocal(true);
+			shc.putHashEntry(entry);
+		}
+		for (int i = 20; i < 40; i++)
+			shc.addHash(node(i).getHash(), snc);
+		Assert.assertEquals(61, shc.size());
+		Assert.assertNotNull(shc.getHash(node(200).getHash()));
+		Assert.assertNull(shc.getHash(node(29).getHash()));
+		Assert.assertNotNull(shc.getHash(node(30).getHash()));
+		shc.removeHashEntry(local);
+		Assert.assertNull(shc.getHash(local.getHash()));
+		Assert.assertEquals(60, shc.size());
+
+		Log.info(Log.FAC_TEST, "Completed testHashCacheBound");
+	}
+}
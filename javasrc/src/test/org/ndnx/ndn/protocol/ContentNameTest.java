@@ -680,4 +680,61 @@ public class ContentNameTest {
 
 		Log.info(Log.FAC_TEST, "Completed testNameManipulation");
 	}
+
+	@Test
+	public void testSharedStorage() throws MalformedContentNameStringException {
+		Log.info(Log.FAC_TEST, "Starting testSharedStorage");
+
+		// Names appended to the same parent mustn't see each other's components
+		ContentName parent = ContentName.fromNative("/shared/storage");
+		ContentName first = new ContentName(parent, "first");
+		ContentName second = new ContentName(parent, "second");
+		ContentName third = new ContentName(first, "third");
+		assertEquals(ContentName.fromNative("/shared/storage/first"), first);
+		assertEquals(ContentName.fromNative("/shared/storage/second"), second);
+		assertEquals(ContentName.fromNative("/shared/storage/first/third"), third);
+		assertEquals(parent, second.parent());
+		assertEquals(parent.hashCode(), third.cut(2).hashCode());
+		assertEquals(first.hashCode(), ContentName.fromNative("/shared/storage/first").hashCode());
+		assertEquals(6, second.componentLength(2));
+		assertTrue(first.compareTo(second) < 0);
+		assertTrue(first.compareTo(third) < 0);
+		assertEquals(0, third.subname(1, 3).compareTo(ContentName.fromNative("/storage/first")));
+
+		Log.info(Log.FAC_TEST, "Completed testSharedStorage");
+	}
+
+	@Test
+	public void testComponentAccessors() throws MalformedContentNameStringException {
+		Log.info(Log.FAC_TEST, "Starting testComponentAccessors");
+
+		ContentName name = new ContentName(new byte[][]{"a".getBytes(), "bb".getBytes(), new byte[]{(byte)0xff, 1}, new byte[0]});
+		byte [][] others = {"a".getBytes(), "b".getBytes(), "bb".getBytes(), "bc".getBytes(), new byte[]{1, (byte)0xff}, new byte[0], "ccc".getBytes()};
+		for (int i = 0; i < name.count(); i++) {
+			byte [] component = name.component(i);
+			assertEquals(Arrays.hashCode(component), name.componentHashCode(i));
+			for (byte [] other : others) {
+				assertEquals(Integer.signum(DataUtils.compare(component, other)), Integer.signum(name.compareComponent(i, other)));
+				assertEquals(Arrays.equals(component, other), name.componentEquals(i, other));
+			}
+		}
+
+		// Components are copies, so changing one doesn't change the name
+		byte [] component = name.component(1);
+		assertTrue(component != name.component(1));
+		component[0] = 'x';
+		assertTrue(name.componentEquals(1, "bb".getBytes()));
+
+		// A short name cut from a long one doesn't keep the long one's storage
+		byte [] big = new byte[1000];
+		ContentName longName = new ContentName(new byte[][]{"short".getBytes(), big});
+		ContentName prefix = longName.cut(1);
+		assertEquals(ContentName.fromNative("/short"), prefix);
+		assertEquals(5, prefix._storage._bytes.length);
+		// but one cut from a short name still shares its storage
+		ContentName shortName = ContentName.fromNative("/a/b/c");
+		assertTrue(shortName.parent()._storage == shortName._storage);
+
+		Log.info(Log.FAC_TEST, "Completed testComponentAccessors");
+	}
 }
@@ -20,6 +20,7 @@
 
 package org.ndnx.ndn.protocol;
 
+import java.io.ByteArrayOutputStream;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -38,7 +39,10 @@ import org.ndnx.ndn.protocol.KeyLocator;
 import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
 import org.ndnx.ndn.protocol.Signature;
 import org.ndnx.ndn.protocol.SignedInfo;
+import org.ndnx.ndn.impl.encoding.BinaryXMLEncoder;
+import org.ndnx.ndn.impl.encoding.NDNProtocolDTags;
 import org.ndnx.ndn.impl.encoding.XMLEncodableTester;
+import org.ndnx.ndn.io.content.ContentDecodingException;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -196,4 +200,61 @@ public class ContentObjectTest {
 		
 		Log.info(Log.FAC_TEST, "Completed testDigest");
 	}
+
+	@Test
+	public void testLazyDecoding() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testLazyDecoding");
+
+		ContentObject co = new ContentObject(name, auth, document3, pair.getPrivate());
+		byte [] encoded = co.encode();
+
+		ContentObject lazy = new ContentObject();
+		lazy.decodeLazily(encoded);
+		Assert.assertEquals(name, lazy.name());
+		Assert.assertArrayEquals(co.digest(), lazy.digest());
+		Assert.assertArrayEquals(encoded, lazy.encode());
+
+		Assert.assertEquals(co, lazy);
+		Assert.assertArrayEquals(document3, lazy.content());
+		Assert.assertEquals(auth, lazy.signedInfo());
+		Assert.assertTrue(lazy.verify(pair.getPublic()));
+
+		// Changing the signature means we can't use the encoding we were given any more
+		lazy.setSignature(signature);
+		Assert.assertNull(lazy.wireEncoding());
+		Assert.assertFalse(Arrays.equals(encoded, lazy.encode()));
+
+		Log.info(Log.FAC_TEST, "Completed testLazyDecoding");
+	}
+
+	@Test
+	public void testLazyDecodingFraming() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testLazyDecodingFraming");
+
+		ContentObject co = new ContentObject(name, auth, document3, pair.getPrivate());
+		byte [] encoded = co.encode();
+
+		// Trailing garbage after the object
+		byte [] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+		try {
+			new ContentObject().decodeLazily(trailing);
+			Assert.fail("Decoded an object with bytes after its end");
+		} catch (ContentDecodingException e) {}
+
+		// A complete frame which is missing the elements after the name
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BinaryXMLEncoder encoder = new BinaryXMLEncoder();
+		encoder.beginEncoding(baos);
+		encoder.writeStartElement(NDNProtocolDTags.ContentObject);
+		co.signature().encode(encoder);
+		name.encode(encoder);
+		encoder.writeEndElement();
+		encoder.endEncoding();
+		try {
+			new ContentObject().decodeLazily(baos.toByteArray());
+			Assert.fail("Decoded an object without SignedInfo or Content");
+		} catch (ContentDecodingException e) {}
+
+		Log.info(Log.FAC_TEST, "Completed testLazyDecodingFraming");
+	}
 }
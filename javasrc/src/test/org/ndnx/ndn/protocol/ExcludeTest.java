@@ -245,4 +245,23 @@ public class ExcludeTest {
 		
 		Log.info(Log.FAC_TEST, "Completed testEncodeDecode");
 	}
+
+	@Test
+	public void testMatchNameComponent() {
+		Log.info(Log.FAC_TEST, "Starting testMatchNameComponent");
+
+		al.add(c1);
+		al.add(any);
+		al.add(c3);
+		al.add(c06);
+		al.add(bloom);
+		ef = new Exclude(al);
+		byte [][] components = { b0, b1, "2".getBytes(), b3, b06, b000, "zz".getBytes() };
+		ContentName name = new ContentName(components);
+		for (int i = 0; i < components.length; i++)
+			assertEquals(ef.match(components[i]), ef.match(name, i));
+		assertEquals(ef.match((byte [])null), ef.match(name, components.length));
+
+		Log.info(Log.FAC_TEST, "Completed testMatchNameComponent");
+	}
 }
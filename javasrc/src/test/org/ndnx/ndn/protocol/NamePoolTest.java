@@ -0,0 +1,70 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.protocol;
+
+import org.ndnx.ndn.impl.support.Log;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test interning of names and components
+ */
+public class NamePoolTest {
+
+	@Test
+	public void testIntern() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testIntern");
+
+		ContentName name = ContentName.fromNative("/test/namepool/intern/a/b");
+		ContentName prefix = name.cut(3);
+		ContentName interned = prefix.intern();
+		Assert.assertEquals(prefix, interned);
+		Assert.assertSame(interned, ContentName.fromNative("/test/namepool/intern").intern());
+		Assert.assertSame(interned, interned.intern());
+		// The pooled copy doesn't hold on to the rest of the name it was cut from
+		Assert.assertSame(interned, interned.compact());
+		Assert.assertNotSame(prefix, prefix.compact());
+
+		byte [] component = "namepool".getBytes();
+		byte [] internedComponent = ContentName.internComponent(component);
+		Assert.assertSame(internedComponent, ContentName.internComponent("namepool".getBytes()));
+		Assert.assertSame(internedComponent, ContentName.internComponent(name.component(1)));
+		Assert.assertNull(ContentName.internComponent(null));
+
+		Log.info(Log.FAC_TEST, "Completed testIntern");
+	}
+
+	@Test
+	public void testDropped() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testDropped");
+
+		ContentName name = ContentName.fromNative("/test/namepool/dropped").intern();
+		int size = NamePool.size();
+		name = null;
+		for (int i = 0; i < 50 && NamePool.size() >= size; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		Assert.assertTrue(NamePool.size() < size);
+
+		Log.info(Log.FAC_TEST, "Completed testDropped");
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * A NDNx library test.
+ *
+ * Portions Copyright (C) 2013 Regents of the University of California.
+ *
+ * Based on the CCNx C Library by PARC.
+ * Copyright (C) 2013 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ndnx.ndn.security.crypto;
+
+import java.io.File;
+import java.util.Random;
+
+import org.ndnx.ndn.impl.security.crypto.VerifiedSignatureCache;
+import org.ndnx.ndn.impl.security.crypto.VerifiedSignatureCache.StatsEnum;
+import org.ndnx.ndn.impl.support.Log;
+import org.ndnx.ndn.protocol.ContentName;
+import org.ndnx.ndn.protocol.ContentObject;
+import org.ndnx.ndn.protocol.KeyLocator;
+import org.ndnx.ndn.protocol.NDNTime;
+import org.ndnx.ndn.protocol.PublisherPublicKeyDigest;
+import org.ndnx.ndn.protocol.Signature;
+import org.ndnx.ndn.protocol.SignedInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the bookkeeping of the cache of verified signatures. The cache never checks
+ * signatures itself, so these objects don't need real ones.
+ */
+public class VerifiedSignatureCacheTest {
+
+	protected static Random _rand = new Random(1);
+
+	static ContentObject object(int i, PublisherPublicKeyDigest publisher) throws Exception {
+		SignedInfo si = new SignedInfo(publisher, NDNTime.now(), SignedInfo.ContentType.DATA,
+				new KeyLocator(ContentName.fromNative("/key")));
+		byte [] signature = new byte[64];
+		_rand.nextBytes(signature);
+		return new ContentObject(ContentName.fromNative("/test/object" + i), si, ("content" + i).getBytes(), new Signature(signature));
+	}
+
+	static PublisherPublicKeyDigest publisher() {
+		byte [] digest = new byte[32];
+		_rand.nextBytes(digest);
+		return new PublisherPublicKeyDigest(digest);
+	}
+
+	@Test
+	public void testHitsAndEviction() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testHitsAndEviction");
+
+		PublisherPublicKeyDigest publisher = publisher();
+		VerifiedSignatureCache cache = new VerifiedSignatureCache(3, 0);
+		ContentObject [] objects = new ContentObject[4];
+		for (int i = 0; i < objects.length; i++)
+			objects[i] = object(i, publisher);
+
+		Assert.assertFalse(cache.isVerified(objects[0]));
+		cache.verified(objects[0]);
+		Assert.assertTrue(cache.isVerified(objects[0]));
+
+		// A copy with the same encoding is the same object, a different signature is not
+		ContentObject copy = new ContentObject(objects[0].name(), objects[0].signedInfo(), objects[0].content(), objects[0].signature());
+		Assert.assertTrue(cache.isVerified(copy));
+		ContentObject resigned = new ContentObject(objects[0].name(), objects[0].signedInfo(), objects[0].content(), new Signature(new byte[64]));
+		Assert.assertFalse(cache.isVerified(resigned));
+
+		cache.verified(objects[1]);
+		cache.verified(objects[2]);
+		// Use 0 again so that 1 is the least recently used
+		Assert.assertTrue(cache.isVerified(objects[0]));
+		cache.verified(objects[3]);
+		Assert.assertEquals(3, cache.size());
+		Assert.assertFalse(cache.isVerified(objects[1]));
+		Assert.assertTrue(cache.isVerified(objects[0]));
+		Assert.assertTrue(cache.isVerified(objects[2]));
+		Assert.assertTrue(cache.isVerified(objects[3]));
+
+		Assert.assertEquals(6, cache.getStats().getCounter(StatsEnum.Hits.toString()));
+		Assert.assertEquals(3, cache.getStats().getCounter(StatsEnum.Misses.toString()));
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.Evictions.toString()));
+
+		VerifiedSignatureCache disabled = new VerifiedSignatureCache(0, 0);
+		disabled.verified(objects[0]);
+		Assert.assertFalse(disabled.isVerified(objects[0]));
+		Assert.assertEquals(0, disabled.size());
+
+		Log.info(Log.FAC_TEST, "Completed testHitsAndEviction");
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testExpiry");
+
+		VerifiedSignatureCache cache = new VerifiedSignatureCache(10, 100);
+		ContentObject object = object(0, publisher());
+		cache.verified(object);
+		Assert.assertTrue(cache.isVerified(object));
+		Thread.sleep(150);
+		Assert.assertFalse(cache.isVerified(object));
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(1, cache.getStats().getCounter(StatsEnum.Expirations.toString()));
+
+		Log.info(Log.FAC_TEST, "Completed testExpiry");
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testSaveAndLoad");
+
+		File file = File.createTempFile("VerifiedSignatureCacheTest", null);
+		try {
+			PublisherPublicKeyDigest publisher = publisher();
+			ContentObject [] objects = new ContentObject[5];
+			VerifiedSignatureCache cache = new VerifiedSignatureCache(10, 0);
+			for (int i = 0; i < objects.length; i++) {
+				objects[i] = object(i, publisher);
+				cache.verified(objects[i]);
+			}
+			cache.save(file);
+
+			// Loading into a smaller cache keeps the most recently used
+			VerifiedSignatureCache loaded = new VerifiedSignatureCache(3, 0);
+			loaded.load(file);
+			Assert.assertEquals(3, loaded.size());
+			Assert.assertFalse(loaded.isVerified(objects[1]));
+			for (int i = 2; i < objects.length; i++)
+				Assert.assertTrue(loaded.isVerified(objects[i]));
+			Assert.assertFalse(loaded.isVerified(object(5, publisher)));
+		} finally {
+			file.delete();
+		}
+
+		Log.info(Log.FAC_TEST, "Completed testSaveAndLoad");
+	}
+}